@@ -0,0 +1,46 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks. It accepts the same options as the JMH command line (for example, a benchmark name pattern),
+ * and always enables the GC profiler, so allocation rates are reported along with throughput.
+ * Benchmarks should be run from the repository root folder, as they read files in res/.
+ * @author Adrien PAVIE
+ */
+public class Benchmarks {
+//OTHER METHODS
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.addProfiler(GCProfiler.class)
+			.build();
+		
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,91 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.benchmark;
+
+import info.pavie.basicosmparser.controller.CSVExporter;
+import info.pavie.basicosmparser.controller.OSMParser;
+import info.pavie.basicosmparser.model.Element;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+/**
+ * Benchmarks of {@link CSVExporter#export(Map, File)}, on elements parsed once before measurement.
+ * The written elements per second are reported (elements counter of {@link ParserBenchmark.Counters}).
+ * @author Adrien PAVIE
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=3, time=5)
+@Measurement(iterations=5, time=5)
+@Fork(value=1, jvmArgsAppend="-Xmx4g")
+public class ExportBenchmark {
+//ATTRIBUTES
+	/** The input name (see {@link Inputs}) **/
+	@Param({ "bleruais", "synthetic-100000" })
+	public String input;
+
+	/** The exported elements **/
+	private Map<String,Element> elements;
+	/** The output folder **/
+	private File output;
+
+//SETUP
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, SAXException {
+		elements = new OSMParser().parse(Inputs.get(input));
+		output = Files.createTempDirectory("export").toFile();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		for(File f : output.listFiles()) {
+			f.delete();
+		}
+		output.delete();
+	}
+
+//BENCHMARKS
+	@Benchmark
+	public void export(ParserBenchmark.Counters counters) throws IOException {
+		new CSVExporter().export(elements, output);
+		counters.elements += elements.size();
+		counters.bytes += new File(output, "nodes.csv").length() + new File(output, "ways.csv").length() + new File(output, "relations.csv").length();
+	}
+}
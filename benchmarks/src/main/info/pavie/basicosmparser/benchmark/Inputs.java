@@ -0,0 +1,58 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Inputs finds or creates the OSM XML files read by benchmarks.
+ * Inputs are named either after a file in res/xml/ (for example "bleruais"), or "synthetic-N" for a file
+ * of N elements written by {@link OSMGenerator} (with default seed and ID order).
+ * @author Adrien PAVIE
+ */
+final class Inputs {
+//CONSTRUCTOR
+	private Inputs() {
+	}
+
+//OTHER METHODS
+	/**
+	 * Get the file of a benchmark input. Synthetic files are created in the temporary folder, and deleted on exit.
+	 * @param name The input name
+	 * @return The OSM XML file
+	 * @throws IOException If the file can't be found or created
+	 */
+	static File get(String name) throws IOException {
+		if(name.startsWith("synthetic-")) {
+			File result = File.createTempFile(name, ".osm");
+			result.deleteOnExit();
+			new OSMGenerator(Long.parseLong(name.substring(10))).write(result);
+			return result;
+		}
+		else {
+			File result = new File("res/xml/"+name+".osm");
+			if(!result.isFile()) {
+				throw new IOException("Input not found (benchmarks must be run from repository root): "+result.getPath());
+			}
+			return result;
+		}
+	}
+}
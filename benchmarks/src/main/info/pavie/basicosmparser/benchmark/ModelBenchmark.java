@@ -0,0 +1,127 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.benchmark;
+
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of model hot paths: tags of elements, and members of relations.
+ * Sizes cover both small elements and elements above the threshold where tags are stored in a hash map.
+ * @author Adrien PAVIE
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=3, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(1)
+public class ModelBenchmark {
+//ATTRIBUTES
+	/** The amount of tags, or of relation members **/
+	@Param({ "2", "8", "32" })
+	public int size;
+
+	/** The tag keys **/
+	private String[] keys;
+	/** The tag values **/
+	private String[] values;
+	/** An element with all tags **/
+	private Node tagged;
+	/** A relation with all members **/
+	private Relation relation;
+	/** The relation members, in reverse order **/
+	private Element[] members;
+
+//SETUP
+	@Setup(Level.Trial)
+	public void setUp() {
+		keys = new String[size];
+		values = new String[size];
+		tagged = new Node(1, 48.1, -2.1);
+		relation = new Relation(1);
+		members = new Element[size];
+		
+		for(int i=0; i < size; i++) {
+			keys[i] = "key"+i;
+			values[i] = "value"+i;
+			tagged.addTag(keys[i], values[i]);
+			
+			Way w = new Way(i);
+			relation.addMember((i % 2 == 0) ? "outer" : "inner", w);
+			members[size - 1 - i] = w;
+		}
+	}
+
+//BENCHMARKS
+	@Benchmark
+	public Element addTag() {
+		Node n = new Node(1, 48.1, -2.1);
+		for(int i=0; i < size; i++) {
+			n.addTag(keys[i], values[i]);
+		}
+		return n;
+	}
+
+	@Benchmark
+	public void getTags(Blackhole bh) {
+		for(Map.Entry<String,String> tag : tagged.getTags().entrySet()) {
+			bh.consume(tag.getValue());
+		}
+	}
+
+	@Benchmark
+	public String getTag() {
+		return tagged.getTags().get(keys[size / 2]);
+	}
+
+	@Benchmark
+	public void getMembers(Blackhole bh) {
+		for(Element e : relation.getMembers()) {
+			bh.consume(e);
+		}
+	}
+
+	@Benchmark
+	public void getMemberRole(Blackhole bh) {
+		for(Element e : members) {
+			bh.consume(relation.getMemberRole(e));
+		}
+	}
+}
@@ -0,0 +1,504 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.benchmark;
+
+import info.pavie.basicosmparser.model.Timestamps;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * OSMGenerator writes synthetic OSM XML files, with realistic content, to measure how parsing and export scale.
+ * Output only depends on the amount of elements, the seed and the ID order, so runs can be compared.
+ * <br>
+ * Content mimics OSM data: about 90% nodes, 10% ways and 0.15% relations. Most nodes are untagged way nodes,
+ * and a few are points of interest. Ways are mostly buildings (closed ways) and roads, sharing nodes at junctions.
+ * Relations are multipolygons, routes, boundaries and turn restrictions. Tag keys and values, users, versions
+ * and timestamps follow skewed distributions. Elements are written by type, in index order, and IDs
+ * are computed from indexes, so memory usage doesn't depend on the amount of elements.
+ * @author Adrien PAVIE
+ */
+public class OSMGenerator {
+//ATTRIBUTES
+	/** The share of ways among elements **/
+	private static final double WAY_RATIO = 0.1;
+	/** The share of relations among elements **/
+	private static final double RELATION_RATIO = 0.0015;
+	/** The share of tagged nodes (points of interest) **/
+	private static final double TAGGED_NODE_RATIO = 0.04;
+	/** The amount of nodes in a location block (nodes close to each other) **/
+	private static final int BLOCK_SIZE = 64;
+	/** The amount of distinct users **/
+	private static final int USERS = 5000;
+	/** The first timestamp of generated elements (2007-10-01) **/
+	private static final long MIN_TIME = 1191196800L;
+	/** The last timestamp of generated elements (2024-06-01) **/
+	private static final long MAX_TIME = 1717200000L;
+	/** The multiplier shuffling IDs (a prime above any amount of elements) **/
+	private static final long SHUFFLE_PRIME = 2147483647L;
+
+	/** Points of interest tags, as key, value pairs **/
+	private static final String[][] POI_TAGS = {
+		{ "amenity", "bench" }, { "amenity", "restaurant" }, { "amenity", "parking" }, { "amenity", "school" },
+		{ "natural", "tree" }, { "highway", "crossing" }, { "highway", "bus_stop" }, { "highway", "street_lamp" },
+		{ "shop", "bakery" }, { "shop", "supermarket" }, { "tourism", "information" }, { "power", "tower" }
+	};
+	/** Road types, from most to least frequent **/
+	private static final String[] HIGHWAYS = {
+		"residential", "service", "track", "unclassified", "footway", "path", "tertiary", "secondary", "primary", "trunk"
+	};
+	/** Land use values, from most to least frequent **/
+	private static final String[] LANDUSES = { "farmland", "residential", "grass", "meadow", "forest", "industrial" };
+	/** Street name prefixes **/
+	private static final String[] STREET_TYPES = { "Rue", "Avenue", "Chemin", "Impasse", "Boulevard", "Allée" };
+	/** Street name suffixes **/
+	private static final String[] STREET_NAMES = {
+		"de la Gare", "de l'Église", "du Moulin", "des Écoles", "Victor Hugo", "Jean Jaurès", "du Stade",
+		"de la Mairie", "Pasteur", "du Château", "des Lilas", "du 8 Mai 1945", "Saint-Martin", "de la Fontaine"
+	};
+
+	/** The total amount of elements **/
+	private final long elements;
+	/** The amount of nodes **/
+	private final long nodes;
+	/** The amount of ways **/
+	private final long ways;
+	/** The amount of relations **/
+	private final long relations;
+	/** The random seed **/
+	private long seed;
+	/** How IDs are assigned **/
+	private IdOrder order;
+
+//CONSTRUCTOR
+	/**
+	 * Creates a generator with seed 42 and sparse IDs
+	 * @param elements The amount of elements to generate (at least 100)
+	 */
+	public OSMGenerator(long elements) {
+		if(elements < 100 || elements >= SHUFFLE_PRIME) {
+			throw new RuntimeException("Invalid amount of elements: "+elements);
+		}
+		
+		this.elements = elements;
+		relations = Math.max(1, Math.round(elements * RELATION_RATIO));
+		ways = Math.round(elements * WAY_RATIO);
+		nodes = elements - ways - relations;
+		seed = 42;
+		order = IdOrder.SPARSE;
+	}
+
+//ACCESSORS
+	/**
+	 * @return The amount of generated nodes
+	 */
+	public long getNodeCount() {
+		return nodes;
+	}
+
+	/**
+	 * @return The amount of generated ways
+	 */
+	public long getWayCount() {
+		return ways;
+	}
+
+	/**
+	 * @return The amount of generated relations
+	 */
+	public long getRelationCount() {
+		return relations;
+	}
+
+	/**
+	 * @param index The element index (from 0), among elements of its type
+	 * @param count The amount of elements of this type
+	 * @return The element ID
+	 */
+	private long id(long index, long count) {
+		switch(order) {
+			case SEQUENTIAL:
+				return index + 1;
+			case SHUFFLED:
+				return Math.floorMod(index * SHUFFLE_PRIME + seed, count) + 1;
+			default:
+				return index * 8 + (mix(seed ^ index) & 7) + 1;
+		}
+	}
+
+	/**
+	 * @param index The node index
+	 * @return The node latitude, in 1e-7 degrees. Nodes of the same block are close to each other.
+	 */
+	private int latE7(long index) {
+		long block = mix(seed + index / BLOCK_SIZE);
+		return 480000000 + (int) ((block & 0xFFFFF) * 20) + (int) (mix(index) & 0x3FFF);
+	}
+
+	/**
+	 * @param index The node index
+	 * @return The node longitude, in 1e-7 degrees
+	 */
+	private int lonE7(long index) {
+		long block = mix(seed + index / BLOCK_SIZE);
+		return -25000000 + (int) (((block >>> 20) & 0xFFFFF) * 30) + (int) ((mix(index) >>> 14) & 0x3FFF);
+	}
+
+//MODIFIERS
+	/**
+	 * @param seed The random seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * @param order How IDs are assigned (default: sparse)
+	 */
+	public void setIdOrder(IdOrder order) {
+		this.order = order;
+	}
+
+//OTHER METHODS
+	/**
+	 * Writes the generated data in a file
+	 * @param f The output file
+	 * @throws IOException If writing fails
+	 */
+	public void write(File f) throws IOException {
+		try(OutputStream out = new FileOutputStream(f)) {
+			write(out);
+		}
+	}
+
+	/**
+	 * Writes the generated data as OSM XML (the stream is not closed)
+	 * @param output The output stream
+	 * @throws IOException If writing fails
+	 */
+	public void write(OutputStream output) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 1 << 16);
+		SplittableRandom random = new SplittableRandom(seed);
+		StringBuilder sb = new StringBuilder(1024);
+		
+		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<osm version=\"0.6\" generator=\"BasicOSMParser OSMGenerator\">\n");
+
+		//Nodes
+		for(long i=0; i < nodes; i++) {
+			sb.setLength(0);
+			sb.append("  <node id=\"").append(id(i, nodes)).append('"');
+			appendCommon(sb, random);
+			sb.append(" lat=\"");
+			appendCoordinate(sb, latE7(i));
+			sb.append("\" lon=\"");
+			appendCoordinate(sb, lonE7(i));
+			sb.append('"');
+			
+			if(random.nextDouble() < TAGGED_NODE_RATIO) {
+				sb.append(">\n");
+				String[] poi = POI_TAGS[skewed(random, POI_TAGS.length)];
+				appendTag(sb, poi[0], poi[1]);
+				if(random.nextInt(3) == 0) {
+					appendTag(sb, "name", streetName(random));
+				}
+				sb.append("  </node>\n");
+			}
+			else {
+				sb.append("/>\n");
+			}
+			out.append(sb);
+		}
+
+		//Ways, taking consecutive nodes (so they are compact), and sometimes starting at an existing node (junctions)
+		long cursor = 0;
+		for(long i=0; i < ways; i++) {
+			sb.setLength(0);
+			sb.append("  <way id=\"").append(id(i, ways)).append('"');
+			appendCommon(sb, random);
+			sb.append(">\n");
+			
+			int kind = random.nextInt(100);
+			boolean closed = kind < 55 || kind >= 90;
+			int size = (kind < 55) ? 4 + random.nextInt(3) : (kind < 90) ? 2 + random.nextInt(15) : 5 + random.nextInt(26);
+			long first = (!closed && cursor > 0 && random.nextInt(3) == 0) ? random.nextLong(cursor) : -1;
+			
+			for(int n=0; n < size; n++) {
+				long node = (n == 0 && first >= 0) ? first : (cursor < nodes ? cursor++ : random.nextLong(nodes));
+				if(n == 0 && first < 0) {
+					first = node;
+				}
+				sb.append("    <nd ref=\"").append(id(node, nodes)).append("\"/>\n");
+			}
+			if(closed) {
+				sb.append("    <nd ref=\"").append(id(first, nodes)).append("\"/>\n");
+			}
+			
+			if(kind < 55) {
+				appendTag(sb, "building", (random.nextInt(5) == 0) ? "house" : "yes");
+				if(random.nextInt(4) == 0) {
+					appendTag(sb, "addr:housenumber", Integer.toString(1 + random.nextInt(120)));
+					appendTag(sb, "addr:street", streetName(random));
+				}
+			}
+			else if(kind < 90) {
+				String highway = HIGHWAYS[skewed(random, HIGHWAYS.length)];
+				appendTag(sb, "highway", highway);
+				if(random.nextInt(2) == 0) {
+					appendTag(sb, "name", streetName(random));
+				}
+				if(!highway.equals("footway") && !highway.equals("path") && random.nextInt(4) == 0) {
+					appendTag(sb, "maxspeed", (random.nextInt(2) == 0) ? "50" : "30");
+				}
+				if(random.nextInt(5) == 0) {
+					appendTag(sb, "surface", "asphalt");
+				}
+			}
+			else {
+				appendTag(sb, "landuse", LANDUSES[skewed(random, LANDUSES.length)]);
+			}
+			if(random.nextInt(10) == 0) {
+				appendTag(sb, "source", "cadastre-dgi-fr source : Direction Générale des Impôts - Cadastre");
+			}
+			
+			sb.append("  </way>\n");
+			out.append(sb);
+		}
+
+		//Relations
+		for(long i=0; i < relations; i++) {
+			sb.setLength(0);
+			sb.append("  <relation id=\"").append(id(i, relations)).append('"');
+			appendCommon(sb, random);
+			sb.append(">\n");
+			
+			int kind = random.nextInt(100);
+			if(kind < 60) {
+				int outer = 1 + random.nextInt(3), inner = random.nextInt(3);
+				for(int m=0; m < outer + inner; m++) {
+					appendMember(sb, "way", id(random.nextLong(ways), ways), (m < outer) ? "outer" : "inner");
+				}
+				appendTag(sb, "type", "multipolygon");
+				appendTag(sb, "landuse", LANDUSES[skewed(random, LANDUSES.length)]);
+			}
+			else if(kind < 80) {
+				appendMember(sb, "way", id(random.nextLong(ways), ways), "from");
+				appendMember(sb, "node", id(random.nextLong(nodes), nodes), "via");
+				appendMember(sb, "way", id(random.nextLong(ways), ways), "to");
+				appendTag(sb, "type", "restriction");
+				appendTag(sb, "restriction", (random.nextInt(2) == 0) ? "no_left_turn" : "only_straight_on");
+			}
+			else if(kind < 95 || i == 0) {
+				long start = random.nextLong(ways);
+				int size = 5 + random.nextInt(50);
+				for(int m=0; m < size; m++) {
+					appendMember(sb, "way", id((start + m) % ways, ways), "");
+				}
+				for(int m=random.nextInt(4); m > 0; m--) {
+					appendMember(sb, "node", id(random.nextLong(nodes), nodes), "stop");
+				}
+				appendTag(sb, "type", "route");
+				appendTag(sb, "route", (random.nextInt(3) == 0) ? "hiking" : "bus");
+				appendTag(sb, "name", "Ligne "+(1 + random.nextInt(99)));
+			}
+			else {
+				int size = 10 + random.nextInt(30);
+				for(int m=0; m < size; m++) {
+					appendMember(sb, "way", id(random.nextLong(ways), ways), "outer");
+				}
+				appendMember(sb, "relation", id(random.nextLong(i), relations), "subarea");
+				appendTag(sb, "type", "boundary");
+				appendTag(sb, "boundary", "administrative");
+				appendTag(sb, "admin_level", Integer.toString(6 + random.nextInt(3)));
+			}
+			
+			sb.append("  </relation>\n");
+			out.append(sb);
+		}
+		
+		out.write("</osm>\n");
+		out.flush();
+	}
+
+	/**
+	 * Appends the metadata attributes of an element (version, timestamp, user, changeset)
+	 */
+	private void appendCommon(StringBuilder sb, SplittableRandom random) {
+		int version = 1;
+		while(version < 50 && random.nextInt(5) < 2) {
+			version++;
+		}
+		long time = MIN_TIME + random.nextLong(MAX_TIME - MIN_TIME);
+		int uid = 1 + skewed(random, USERS);
+		
+		sb.append(" version=\"").append(version)
+			.append("\" timestamp=\"").append(Timestamps.format(time))
+			.append("\" uid=\"").append(uid)
+			.append("\" user=\"mapper").append(uid)
+			.append("\" changeset=\"").append((time - MIN_TIME) / 3 + random.nextInt(1000))
+			.append('"');
+	}
+
+	/**
+	 * Appends a tag element
+	 */
+	private static void appendTag(StringBuilder sb, String key, String value) {
+		sb.append("    <tag k=\"");
+		escape(sb, key);
+		sb.append("\" v=\"");
+		escape(sb, value);
+		sb.append("\"/>\n");
+	}
+
+	/**
+	 * Appends a relation member element
+	 */
+	private static void appendMember(StringBuilder sb, String type, long ref, String role) {
+		sb.append("    <member type=\"").append(type).append("\" ref=\"").append(ref).append("\" role=\"").append(role).append("\"/>\n");
+	}
+
+	/**
+	 * Appends a text, escaped for XML attributes
+	 */
+	private static void escape(StringBuilder sb, String s) {
+		for(int i=0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch(c) {
+				case '&': sb.append("&amp;"); break;
+				case '<': sb.append("&lt;"); break;
+				case '"': sb.append("&quot;"); break;
+				case '\'': sb.append("&apos;"); break;
+				default: sb.append(c);
+			}
+		}
+	}
+
+	/**
+	 * @return A random street name
+	 */
+	private static String streetName(SplittableRandom random) {
+		return STREET_TYPES[skewed(random, STREET_TYPES.length)]+" "+STREET_NAMES[skewed(random, STREET_NAMES.length)];
+	}
+
+	/**
+	 * Picks a random index, where small indexes are much more frequent (approximate Zipf distribution)
+	 * @param random The random generator
+	 * @param count The amount of possible indexes
+	 * @return The index, between 0 and count - 1
+	 */
+	private static int skewed(SplittableRandom random, int count) {
+		return (int) Math.min(count - 1, Math.floor(Math.pow(count + 1, random.nextDouble())) - 1);
+	}
+
+	/**
+	 * Appends a coordinate as written in OSM files (at most 7 decimals, without trailing zeros)
+	 * @param sb The output
+	 * @param fixed The coordinate in 1e-7 degrees
+	 */
+	private static void appendCoordinate(StringBuilder sb, int fixed) {
+		long value = fixed;
+		if(value < 0) {
+			sb.append('-');
+			value = -value;
+		}
+		sb.append(value / 10000000);
+		
+		long decimals = value % 10000000;
+		if(decimals != 0) {
+			sb.append('.');
+			int digits = 7;
+			while(decimals % 10 == 0) {
+				decimals /= 10;
+				digits--;
+			}
+			String text = Long.toString(decimals);
+			for(int i=text.length(); i < digits; i++) {
+				sb.append('0');
+			}
+			sb.append(text);
+		}
+	}
+
+	/**
+	 * Mixes bits of a value (SplitMix64 finalizer), to get pseudo-random values from indexes
+	 * @param value The value
+	 * @return The mixed value
+	 */
+	private static long mix(long value) {
+		long z = value * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return (z ^ (z >>> 31)) >>> 1;
+	}
+
+	/**
+	 * Writes a generated file.
+	 * Usage: OSMGenerator [--seed=N] [--ids=sequential|sparse|shuffled] elements output.osm
+	 * @param args The command line arguments
+	 * @throws IOException If writing fails
+	 */
+	public static void main(String[] args) throws IOException {
+		long seed = 42;
+		IdOrder order = IdOrder.SPARSE;
+		int arg = 0;
+		
+		while(arg < args.length && args[arg].startsWith("--")) {
+			if(args[arg].startsWith("--seed=")) {
+				seed = Long.parseLong(args[arg].substring(7));
+			}
+			else if(args[arg].startsWith("--ids=")) {
+				order = IdOrder.valueOf(args[arg].substring(6).toUpperCase());
+			}
+			else {
+				throw new RuntimeException("Unknown option: "+args[arg]);
+			}
+			arg++;
+		}
+		
+		if(args.length - arg != 2) {
+			System.err.println("Usage: OSMGenerator [--seed=N] [--ids=sequential|sparse|shuffled] elements output.osm");
+			System.exit(1);
+		}
+		
+		OSMGenerator generator = new OSMGenerator(Long.parseLong(args[arg]));
+		generator.setSeed(seed);
+		generator.setIdOrder(order);
+		generator.write(new File(args[arg + 1]));
+	}
+
+//INNER CLASS IdOrder
+	/**
+	 * How element IDs are assigned. Elements are always written by type (nodes, then ways, then relations).
+	 */
+	public static enum IdOrder {
+		/** IDs are 1, 2, 3... in file order **/
+		SEQUENTIAL,
+		/** IDs are increasing in file order, with gaps (as in regional extracts) **/
+		SPARSE,
+		/** IDs are a permutation of 1..N, not sorted in file (as in some converted or merged files) **/
+		SHUFFLED
+	}
+}
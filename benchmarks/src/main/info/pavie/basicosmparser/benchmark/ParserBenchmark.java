@@ -0,0 +1,108 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.benchmark;
+
+import info.pavie.basicosmparser.controller.OSMParser;
+import info.pavie.basicosmparser.model.Element;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+/**
+ * Benchmarks of {@link OSMParser#parse(File)}, with SAX and with the byte tokenizer.
+ * Besides parses per second, the read elements and bytes per second are reported (elements and bytes counters).
+ * @author Adrien PAVIE
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=3, time=5)
+@Measurement(iterations=5, time=5)
+@Fork(value=1, jvmArgsAppend="-Xmx4g")
+public class ParserBenchmark {
+//ATTRIBUTES
+	/** The input name (see {@link Inputs}) **/
+	@Param({ "bleruais", "synthetic-100000", "synthetic-1000000" })
+	public String input;
+
+	/** Is the byte tokenizer used ? **/
+	@Param({ "false", "true" })
+	public boolean byteTokenizer;
+
+	/** The read file **/
+	private File file;
+	/** The parser **/
+	private OSMParser parser;
+
+//SETUP
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		file = Inputs.get(input);
+		parser = new OSMParser();
+		parser.setByteTokenizer(byteTokenizer);
+	}
+
+//BENCHMARKS
+	@Benchmark
+	public Map<String,Element> parse(Counters counters) throws IOException, SAXException {
+		Map<String,Element> result = parser.parse(file);
+		counters.elements += result.size();
+		counters.bytes += file.length();
+		return result;
+	}
+
+//INNER CLASS Counters
+	/**
+	 * The amount of read elements and bytes, reported as rates.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters {
+	//ATTRIBUTES
+		/** The amount of read elements **/
+		public long elements;
+		/** The amount of read bytes **/
+		public long bytes;
+
+	//SETUP
+		@Setup(Level.Iteration)
+		public void reset() {
+			elements = 0;
+			bytes = 0;
+		}
+	}
+}
@@ -0,0 +1,237 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.benchmark;
+
+import info.pavie.basicosmparser.controller.CSVExporter;
+import info.pavie.basicosmparser.controller.OSMParser;
+import info.pavie.basicosmparser.model.Element;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The scaling harness parses and exports generated files of increasing sizes, and writes a report
+ * of time and memory usage for each size. Each run happens in a new JVM, so peak memory and GC statistics
+ * only concern this run. Two modes are measured :
+ * <ul>
+ * <li>store: the file is parsed into a Map with {@link OSMParser#parse(File)}, then exported with {@link CSVExporter#export(Map, File)}</li>
+ * <li>stream: the file is parsed with a {@link CSVExporter} as handler, so elements are not kept</li>
+ * </ul>
+ * The report is a CSV file (separator ';'), with one row per size and mode. Its columns are: size, ids, mode, status,
+ * file bytes, parse time, export time and total time (milliseconds, export is empty for stream mode, as it happens during parse),
+ * peak heap and peak resident set size (bytes, RSS is -1 if unknown), GC count and GC time (milliseconds).
+ * A run failing (for example with OutOfMemoryError) is reported with the error name as status, and the next sizes are still run.
+ * <br>
+ * Usage: ScalingHarness [--sizes=10000,100000,...] [--modes=store,stream] [--ids=sparse] [--seed=42] [--heap=4g] [--work=folder] report.csv
+ * @author Adrien PAVIE
+ */
+public class ScalingHarness {
+//ATTRIBUTES
+	/** The report header **/
+	static final String HEADER = "size;ids;mode;status;fileBytes;parseMs;exportMs;totalMs;peakHeapBytes;peakRssBytes;gcCount;gcMs";
+	/** The prefix of the result line printed by a run **/
+	private static final String RESULT = "RESULT;";
+
+//OTHER METHODS
+	public static void main(String[] args) throws Exception {
+		if(args.length == 4 && args[0].equals("--run")) {
+			run(args[1], new File(args[2]), new File(args[3]));
+			return;
+		}
+		
+		String sizes = "10000,100000,1000000,10000000", modes = "store,stream", heap = "4g";
+		OSMGenerator.IdOrder order = OSMGenerator.IdOrder.SPARSE;
+		long seed = 42;
+		File work = new File(System.getProperty("java.io.tmpdir"), "basicosmparser-scaling");
+		int arg = 0;
+		
+		while(arg < args.length && args[arg].startsWith("--")) {
+			String option = args[arg].substring(2, args[arg].indexOf('=') > 0 ? args[arg].indexOf('=') : args[arg].length());
+			String value = args[arg].substring(args[arg].indexOf('=') + 1);
+			switch(option) {
+				case "sizes": sizes = value; break;
+				case "modes": modes = value; break;
+				case "heap": heap = value; break;
+				case "ids": order = OSMGenerator.IdOrder.valueOf(value.toUpperCase()); break;
+				case "seed": seed = Long.parseLong(value); break;
+				case "work": work = new File(value); break;
+				default: throw new RuntimeException("Unknown option: "+args[arg]);
+			}
+			arg++;
+		}
+		
+		if(args.length - arg != 1) {
+			System.err.println("Usage: ScalingHarness [--sizes=10000,100000,...] [--modes=store,stream] [--ids=sparse] [--seed=42] [--heap=4g] [--work=folder] report.csv");
+			System.exit(1);
+		}
+		
+		work.mkdirs();
+		try(PrintWriter report = new PrintWriter(new OutputStreamWriter(new FileOutputStream(args[arg]), StandardCharsets.UTF_8))) {
+			report.println(HEADER);
+			System.out.println(HEADER);
+			
+			for(String size : sizes.split(",")) {
+				long elements = Long.parseLong(size.trim());
+
+				//Generate input once, and reuse it between harness runs
+				File input = new File(work, "synthetic-"+elements+"-"+order.name().toLowerCase()+"-"+seed+".osm");
+				if(!input.isFile()) {
+					OSMGenerator generator = new OSMGenerator(elements);
+					generator.setSeed(seed);
+					generator.setIdOrder(order);
+					File partial = new File(work, input.getName()+".part");
+					generator.write(partial);
+					Files.move(partial.toPath(), input.toPath());
+				}
+				
+				for(String mode : modes.split(",")) {
+					String row = elements+";"+order.name().toLowerCase()+";"+runChild(mode.trim(), input, work, heap);
+					report.println(row);
+					report.flush();
+					System.out.println(row);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs parse and export in a new JVM
+	 * @param mode The run mode (store or stream)
+	 * @param input The input file
+	 * @param work The working folder
+	 * @param heap The maximal heap size of the JVM
+	 * @return The report columns from mode to GC time
+	 * @throws IOException If the JVM can't be started
+	 * @throws InterruptedException If interrupted while waiting for the run
+	 */
+	private static String runChild(String mode, File input, File work, String heap) throws IOException, InterruptedException {
+		File output = Files.createTempDirectory(work.toPath(), "output").toFile();
+		List<String> command = new ArrayList<String>();
+		command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+		command.add("-Xmx"+heap);
+		command.add("-Dfile.encoding=UTF-8");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ScalingHarness.class.getName());
+		command.add("--run");
+		command.add(mode);
+		command.add(input.getPath());
+		command.add(output.getPath());
+		
+		Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		String result = null;
+		try(BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while((line = out.readLine()) != null) {
+				if(line.startsWith(RESULT)) {
+					result = line.substring(RESULT.length());
+				}
+			}
+		}
+		int exit = process.waitFor();
+		
+		for(File f : output.listFiles()) {
+			f.delete();
+		}
+		output.delete();
+		
+		return (result != null) ? result : mode+";exit "+exit+";"+input.length()+";;;;;;;";
+	}
+
+	/**
+	 * Parses and exports a file, then prints the result line (run in the measured JVM)
+	 * @param mode The run mode (store or stream)
+	 * @param input The input file
+	 * @param output The CSV output folder
+	 */
+	private static void run(String mode, File input, File output) {
+		String status = "ok";
+		long start = System.nanoTime(), parsed = start, exported = start;
+		
+		try {
+			OSMParser parser = new OSMParser();
+			parser.setByteTokenizer(true);
+			
+			if(mode.equals("store")) {
+				Map<String,Element> elements = parser.parse(input);
+				parsed = System.nanoTime();
+				new CSVExporter().export(elements, output);
+				exported = System.nanoTime();
+			}
+			else if(mode.equals("stream")) {
+				parser.parse(input, new CSVExporter(output));
+				parsed = exported = System.nanoTime();
+			}
+			else {
+				throw new RuntimeException("Unknown mode: "+mode);
+			}
+		}
+		catch(Throwable e) {
+			status = e.getClass().getSimpleName();
+			parsed = exported = System.nanoTime();
+		}
+
+		//Memory and GC statistics
+		long peakHeap = 0, gcCount = 0, gcTime = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcCount += Math.max(0, gc.getCollectionCount());
+			gcTime += Math.max(0, gc.getCollectionTime());
+		}
+		
+		System.out.println(RESULT+mode+";"+status+";"+input.length()+";"
+				+(parsed - start) / 1000000+";"+(mode.equals("store") ? Long.toString((exported - parsed) / 1000000) : "")+";"
+				+(exported - start) / 1000000+";"+peakHeap+";"+peakRss()+";"+gcCount+";"+gcTime);
+	}
+
+	/**
+	 * @return The peak resident set size of this process in bytes, or -1 if unknown (only available on Linux)
+	 */
+	private static long peakRss() {
+		try {
+			for(String line : Files.readAllLines(new File("/proc/self/status").toPath(), StandardCharsets.UTF_8)) {
+				if(line.startsWith("VmHWM:")) {
+					return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+				}
+			}
+		}
+		catch(IOException | RuntimeException e) {
+		}
+		return -1;
+	}
+}
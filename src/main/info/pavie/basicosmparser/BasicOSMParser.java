@@ -19,30 +19,62 @@
 
 package info.pavie.basicosmparser;
 
-import info.pavie.basicosmparser.controller.CSVExporter;
+import info.pavie.basicosmparser.controller.ExportFormat;
+import info.pavie.basicosmparser.controller.Exporter;
 import info.pavie.basicosmparser.controller.OSMParser;
+import info.pavie.basicosmparser.controller.ParserMetrics;
+import info.pavie.basicosmparser.controller.ProgressListener;
+import info.pavie.basicosmparser.index.NodeLocationIndex;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import org.xml.sax.SAXException;
 
 /**
  * This class is a simple command line interface.
- * It parses OSM XML and create a CSV export.
- * You have to use it like this : basicosmparser <Input OSM XML> <Output folder>
+ * It parses OSM XML and create a CSV export (or another format, see {@link ExportFormat}).
+ * You have to use it like this : basicosmparser [--format=csv|csv.gz|csv-sharded|columnar|geojson|ndjson] <Input OSM XML> <Output folder>
  * @author Adrien PAVIE
  */
 public class BasicOSMParser {
+//ATTRIBUTES
+	/** The command usage **/
+	private static final String USAGE = "Command usage: basicosmparser [--format=csv|csv.gz|csv-sharded|columnar|geojson|ndjson] <Input OSM XML> <Output folder>";
+	/** The time between two progress lines, in milliseconds **/
+	private static final long PROGRESS_INTERVAL = 1000;
+
 //OTHER METHODS
 	public static void main(String[] args) {
+		//Read options
+		ExportFormat format = ExportFormat.CSV;
+		int first = 0;
+		while(first < args.length && args[first].startsWith("--")) {
+			if(args[first].startsWith("--format=")) {
+				format = ExportFormat.fromName(args[first].substring("--format=".length()));
+			}
+			else {
+				format = null;
+			}
+			
+			if(format == null) {
+				System.out.println("Invalid option: "+args[first]+"\n"+USAGE);
+				return;
+			}
+			first++;
+		}
+		
 		//Check arguments
-		if(args.length != 2) {
-			System.out.println("Invalid parameters.\nCommand usage: basicosmparser <Input OSM XML> <Output folder>");
+		if(args.length - first != 2) {
+			System.out.println("Invalid parameters.\n"+USAGE);
 		}
 		else {
-			File input = new File(args[0]);
-			File output = new File(args[1]);
+			File input = new File(args[first]);
+			File output = new File(args[first+1]);
 			
 			//Check input
 			if(!input.exists() || !input.isFile() || !input.canRead()) {
@@ -54,17 +86,62 @@ public class BasicOSMParser {
 					System.out.println("Invalid destination folder.");
 				}
 				else {
-					//Convert data
+					//Convert data, writing elements as they are read
 					OSMParser parser = new OSMParser();
-					CSVExporter exporter = new CSVExporter();
+					File locations = null;
+					NodeLocationIndex index = null;
+					ObjectName mbean = null;
 					
-					try {
-						exporter.export(parser.parse(input), output);
+					//Progress is printed on one line, and metrics can also be read with JMX tools
+					ParserMetrics metrics = new ParserMetrics();
+					metrics.setProgressListener(new ProgressListener() {
+						@Override
+						public void onProgress(ParserMetrics m) {
+							System.err.print("\r"+m+(m.isRunning() ? "" : "\n"));
+						}
+					}, PROGRESS_INTERVAL);
+					parser.setMetrics(metrics);
+					
+					try(Exporter exporter = format.create(output)) {
+						try {
+							mbean = metrics.registerMBean(input.getName());
+						} catch (JMException e) {
+							System.err.println("Can't register parser metrics MBean: "+e.getMessage());
+						}
+						
+						//Geometries need way nodes coordinates, which are kept in a temporary index
+						if(format == ExportFormat.GEOJSON || format == ExportFormat.NDJSON) {
+							locations = File.createTempFile("basicosmparser", ".idx");
+							index = NodeLocationIndex.sparse(locations);
+							parser.setNodeLocationIndex(index);
+						}
+						
+						parser.parse(input, exporter);
 						System.out.println("Exported data to "+output.getPath()+" without errors.");
-					} catch (IOException | SAXException e) {
+						System.out.println("Shared strings: "+parser.getStringDictionary());
+					} catch (IOException | UncheckedIOException | SAXException e) {
 						System.err.println("Error during data export.");
 						e.printStackTrace();
 					}
+					finally {
+						try {
+							if(mbean != null) {
+								ParserMetrics.unregisterMBean(mbean);
+							}
+						} catch (JMException e) {
+							e.printStackTrace();
+						}
+						try {
+							if(index != null) {
+								index.close();
+							}
+						} catch (IOException e) {
+							e.printStackTrace();
+						}
+						if(locations != null) {
+							locations.delete();
+						}
+					}
 				}
 			}
 		}
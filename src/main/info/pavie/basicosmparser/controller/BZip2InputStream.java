@@ -0,0 +1,475 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A minimal bzip2 decompressor, as the standard library doesn't provide one.
+ * Concatenated streams (as written by parallel compressors) are read one after the other.
+ * Obsolete randomized blocks are not supported. Block and stream checksums are verified.
+ * @author Adrien PAVIE
+ */
+class BZip2InputStream extends InputStream {
+//ATTRIBUTES
+	/** Block header magic number **/
+	private static final long BLOCK_MAGIC = 0x314159265359L;
+	/** End of stream magic number **/
+	private static final long END_MAGIC = 0x177245385090L;
+	/** The maximal Huffman code length **/
+	private static final int MAX_CODE_LENGTH = 20;
+	/** The amount of symbols coded with the same Huffman table **/
+	private static final int GROUP_SIZE = 50;
+	/** The maximal amount of Huffman table selectors **/
+	private static final int MAX_SELECTORS = 18002;
+	/** The CRC table (CRC-32, most significant bit first) **/
+	private static final int[] CRC_TABLE = new int[256];
+
+	static {
+		for(int i=0; i < 256; i++) {
+			int c = i << 24;
+			for(int j=0; j < 8; j++) {
+				c = (c < 0) ? (c << 1) ^ 0x04C11DB7 : c << 1;
+			}
+			CRC_TABLE[i] = c;
+		}
+	}
+
+	/** The compressed input **/
+	private final InputStream in;
+	/** The bits read but not used yet **/
+	private long bits;
+	/** The amount of bits available in {@link #bits} **/
+	private int bitCount;
+
+	/** The Burrows-Wheeler vector of current block (byte in low 8 bits, next position in others) **/
+	private int[] tt;
+	/** Is a block being output ? **/
+	private boolean inBlock;
+	/** The next position in {@link #tt} **/
+	private int tPos;
+	/** The amount of bytes of current block not decoded yet **/
+	private int remaining;
+	/** The last decoded byte, for run-length decoding **/
+	private int lastByte;
+	/** The amount of identical bytes decoded in a row **/
+	private int runCount;
+	/** The amount of copies of last byte still to output **/
+	private int repeat;
+	/** The expected CRC of current block **/
+	private int blockCrc;
+	/** The CRC of current block output **/
+	private int crc;
+	/** The combined CRC of all blocks of current stream **/
+	private int streamCrc;
+	/** Is end of input reached ? **/
+	private boolean ended;
+
+//CONSTRUCTOR
+	/**
+	 * Creates a decompressor, and reads the stream header
+	 * @param in The bzip2 data (should be buffered)
+	 * @throws IOException If input is not bzip2 data
+	 */
+	BZip2InputStream(InputStream in) throws IOException {
+		this.in = in;
+		if(!readStreamHeader()) {
+			throw new IOException("Empty bzip2 input");
+		}
+	}
+
+//OTHER METHODS
+	@Override
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		return (read(b, 0, 1) < 0) ? -1 : b[0] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) {
+			return 0;
+		}
+		
+		int count = 0;
+		while(count < len) {
+			if(repeat > 0) {
+				//Pending run of last byte
+				b[off + count++] = (byte) lastByte;
+				crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) ^ lastByte) & 0xFF];
+				repeat--;
+			}
+			else if(remaining > 0) {
+				tPos = tt[tPos];
+				int c = tPos & 0xFF;
+				tPos >>>= 8;
+				remaining--;
+				
+				if(runCount == 4) {
+					//Byte after four identical ones is a repeat count
+					repeat = c;
+					runCount = 0;
+				}
+				else {
+					runCount = (c == lastByte) ? runCount + 1 : 1;
+					lastByte = c;
+					b[off + count++] = (byte) c;
+					crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) ^ c) & 0xFF];
+				}
+			}
+			else {
+				if(ended) {
+					break;
+				}
+				endBlock();
+				if(!nextBlock()) {
+					break;
+				}
+			}
+		}
+		
+		return (count == 0 && ended) ? -1 : count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		ended = true;
+		remaining = 0;
+		repeat = 0;
+		in.close();
+	}
+
+	/**
+	 * Checks CRC of current block (if any)
+	 * @throws IOException If CRC doesn't match
+	 */
+	private void endBlock() throws IOException {
+		if(inBlock) {
+			if(~crc != blockCrc) {
+				throw new IOException("Invalid bzip2 block checksum");
+			}
+			streamCrc = ((streamCrc << 1) | (streamCrc >>> 31)) ^ blockCrc;
+			inBlock = false;
+		}
+	}
+
+	/**
+	 * Reads a stream header ("BZh" and block size)
+	 * @return True if a stream was found, false if end of input is reached
+	 * @throws IOException If input is not bzip2 data
+	 */
+	private boolean readStreamHeader() throws IOException {
+		int b = in.read();
+		if(b < 0) {
+			return false;
+		}
+		
+		if(b != 'B' || in.read() != 'Z' || in.read() != 'h') {
+			throw new IOException("Invalid bzip2 stream header");
+		}
+		int level = in.read() - '0';
+		if(level < 1 || level > 9) {
+			throw new IOException("Invalid bzip2 block size");
+		}
+
+		//Maximal block size depends on compression level
+		if(tt == null || tt.length < level * 100000) {
+			tt = new int[level * 100000];
+		}
+		
+		streamCrc = 0;
+		return true;
+	}
+
+	/**
+	 * Reads and decodes the next block, until the Burrows-Wheeler transform.
+	 * Streams ends are handled, so next stream is read if input contains several streams.
+	 * @return True if a block is available, false if end of input is reached
+	 * @throws IOException If data is invalid
+	 */
+	private boolean nextBlock() throws IOException {
+		long magic = readBits(24) << 24 | readBits(24);
+		
+		while(magic == END_MAGIC) {
+			int expected = (int) readBits(32);
+			if(expected != streamCrc) {
+				throw new IOException("Invalid bzip2 stream checksum");
+			}
+
+			//Streams are byte-aligned
+			bitCount -= bitCount % 8;
+			if(bitCount > 0) {
+				throw new IOException("Unexpected data after bzip2 stream");
+			}
+			if(!readStreamHeader()) {
+				ended = true;
+				return false;
+			}
+			magic = readBits(24) << 24 | readBits(24);
+		}
+		
+		if(magic != BLOCK_MAGIC) {
+			throw new IOException("Invalid bzip2 block header");
+		}
+		
+		blockCrc = (int) readBits(32);
+		if(readBits(1) != 0) {
+			throw new IOException("Randomized bzip2 blocks are not supported");
+		}
+		int origPtr = (int) readBits(24);
+
+		//Used bytes
+		int[] seqToUnseq = new int[256];
+		int inUse = 0;
+		int ranges = (int) readBits(16);
+		for(int i=0; i < 16; i++) {
+			if((ranges & (0x8000 >>> i)) != 0) {
+				int used = (int) readBits(16);
+				for(int j=0; j < 16; j++) {
+					if((used & (0x8000 >>> j)) != 0) {
+						seqToUnseq[inUse++] = i * 16 + j;
+					}
+				}
+			}
+		}
+		if(inUse == 0) {
+			throw new IOException("Invalid bzip2 block: no symbols");
+		}
+		int alphaSize = inUse + 2;
+
+		//Huffman tables selectors
+		int groups = (int) readBits(3);
+		int selectors = (int) readBits(15);
+		if(groups < 2 || groups > 6 || selectors < 1) {
+			throw new IOException("Invalid bzip2 Huffman tables");
+		}
+		byte[] selector = new byte[Math.min(selectors, MAX_SELECTORS)];
+		byte[] groupMtf = { 0, 1, 2, 3, 4, 5 };
+		for(int i=0; i < selectors; i++) {
+			int j = 0;
+			while(readBits(1) == 1) {
+				if(++j >= groups) {
+					throw new IOException("Invalid bzip2 Huffman table selector");
+				}
+			}
+			byte g = groupMtf[j];
+			System.arraycopy(groupMtf, 0, groupMtf, 1, j);
+			groupMtf[0] = g;
+			if(i < selector.length) {
+				selector[i] = g;
+			}
+		}
+		selectors = selector.length;
+
+		//Huffman tables
+		int[][] limit = new int[groups][MAX_CODE_LENGTH + 2];
+		int[][] base = new int[groups][MAX_CODE_LENGTH + 2];
+		int[][] perm = new int[groups][alphaSize];
+		int[] minLength = new int[groups];
+		int[] length = new int[alphaSize];
+		for(int t=0; t < groups; t++) {
+			int current = (int) readBits(5);
+			for(int i=0; i < alphaSize; i++) {
+				while(true) {
+					if(current < 1 || current > MAX_CODE_LENGTH) {
+						throw new IOException("Invalid bzip2 Huffman code length");
+					}
+					if(readBits(1) == 0) {
+						break;
+					}
+					current += (readBits(1) == 0) ? 1 : -1;
+				}
+				length[i] = current;
+			}
+			minLength[t] = createTable(length, alphaSize, limit[t], base[t], perm[t]);
+		}
+
+		//Symbols, with move-to-front and run-length decoding
+		int[] counts = new int[256];
+		byte[] mtf = new byte[256];
+		for(int i=0; i < 256; i++) {
+			mtf[i] = (byte) i;
+		}
+		int endOfBlock = inUse + 1;
+		int size = 0, group = -1, groupPos = 0;
+		int runLength = 0, runWeight = 1;
+		
+		while(true) {
+			//Decode next symbol
+			if(groupPos == 0) {
+				if(++group >= selectors) {
+					throw new IOException("Invalid bzip2 block: not enough selectors");
+				}
+				groupPos = GROUP_SIZE;
+			}
+			groupPos--;
+			int t = selector[group];
+			int n = minLength[t];
+			int code = (int) readBits(n);
+			while(code > limit[t][n]) {
+				if(++n > MAX_CODE_LENGTH) {
+					throw new IOException("Invalid bzip2 Huffman code");
+				}
+				code = (code << 1) | (int) readBits(1);
+			}
+			int index = code - base[t][n];
+			if(index < 0 || index >= alphaSize) {
+				throw new IOException("Invalid bzip2 Huffman code");
+			}
+			int symbol = perm[t][index];
+			
+			if(symbol <= 1) {
+				//RUNA or RUNB
+				runLength += (symbol + 1) * runWeight;
+				runWeight <<= 1;
+				if(runLength > tt.length) {
+					throw new IOException("Invalid bzip2 block: too big");
+				}
+				continue;
+			}
+
+			//End of run
+			if(runLength > 0) {
+				int c = seqToUnseq[mtf[0] & 0xFF];
+				ensureCapacity(size + runLength);
+				for(int i=0; i < runLength; i++) {
+					tt[size++] = c;
+				}
+				counts[c] += runLength;
+				runLength = 0;
+				runWeight = 1;
+			}
+			
+			if(symbol == endOfBlock) {
+				break;
+			}
+
+			//Move to front
+			int pos = symbol - 1;
+			byte m = mtf[pos];
+			System.arraycopy(mtf, 0, mtf, 1, pos);
+			mtf[0] = m;
+			int c = seqToUnseq[m & 0xFF];
+			ensureCapacity(size + 1);
+			tt[size++] = c;
+			counts[c]++;
+		}
+		
+		if(origPtr < 0 || origPtr >= size) {
+			throw new IOException("Invalid bzip2 block: bad origin pointer");
+		}
+
+		//Inverse Burrows-Wheeler transform
+		int[] start = new int[256];
+		for(int i=1; i < 256; i++) {
+			start[i] = start[i-1] + counts[i-1];
+		}
+		for(int i=0; i < size; i++) {
+			int c = tt[i] & 0xFF;
+			tt[start[c]++] |= i << 8;
+		}
+		
+		tPos = tt[origPtr] >>> 8;
+		remaining = size;
+		runCount = 0;
+		lastByte = -1;
+		crc = -1;
+		inBlock = true;
+		return true;
+	}
+
+	/**
+	 * Creates a Huffman decoding table from code lengths
+	 * @param length The code length of each symbol
+	 * @param alphaSize The amount of symbols
+	 * @param limit The maximal code of each length (filled)
+	 * @param base The offset of codes of each length in perm (filled)
+	 * @param perm The symbols, sorted by code (filled)
+	 * @return The minimal code length
+	 */
+	private static int createTable(int[] length, int alphaSize, int[] limit, int[] base, int[] perm) {
+		int minLength = MAX_CODE_LENGTH, maxLength = 0;
+		for(int i=0; i < alphaSize; i++) {
+			minLength = Math.min(minLength, length[i]);
+			maxLength = Math.max(maxLength, length[i]);
+		}
+		
+		int pp = 0;
+		for(int l=minLength; l <= maxLength; l++) {
+			for(int i=0; i < alphaSize; i++) {
+				if(length[i] == l) {
+					perm[pp++] = i;
+				}
+			}
+		}
+
+		//Amount of codes shorter than each length
+		int[] shorter = new int[MAX_CODE_LENGTH + 2];
+		for(int i=0; i < alphaSize; i++) {
+			shorter[length[i] + 1]++;
+		}
+		for(int l=1; l < shorter.length; l++) {
+			shorter[l] += shorter[l-1];
+		}
+
+		//Codes of a given length are consecutive, and follow shorter ones
+		int code = 0;
+		for(int l=minLength; l <= maxLength; l++) {
+			base[l] = code - shorter[l];
+			code += shorter[l+1] - shorter[l];
+			limit[l] = code - 1;
+			code <<= 1;
+		}
+		
+		return minLength;
+	}
+
+	/**
+	 * Checks that block size is valid
+	 * @param size The block size
+	 * @throws IOException If size exceeds maximal block size of the stream
+	 */
+	private void ensureCapacity(int size) throws IOException {
+		if(size > tt.length) {
+			throw new IOException("Invalid bzip2 block: too big");
+		}
+	}
+
+	/**
+	 * Reads bits from input, most significant first
+	 * @param n The amount of bits (at most 32)
+	 * @return The read bits
+	 * @throws IOException If input ends
+	 */
+	private long readBits(int n) throws IOException {
+		while(bitCount < n) {
+			int b = in.read();
+			if(b < 0) {
+				throw new EOFException("Truncated bzip2 input");
+			}
+			bits = (bits << 8) | b;
+			bitCount += 8;
+		}
+		bitCount -= n;
+		return (bits >>> bitCount) & ((1L << n) - 1);
+	}
+}
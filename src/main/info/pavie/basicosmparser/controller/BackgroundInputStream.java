@@ -0,0 +1,211 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An input stream which reads its source on a separate thread, ahead of the consumer.
+ * It is used for decompressing input while it is parsed. Read data is passed through a bounded queue of chunks,
+ * so the reading thread waits when the consumer is too slow.
+ * @author Adrien PAVIE
+ */
+class BackgroundInputStream extends InputStream {
+//ATTRIBUTES
+	/** The default chunk size, in bytes **/
+	static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+	/** The default maximal amount of chunks waiting to be read **/
+	static final int DEFAULT_MAX_CHUNKS = 32;
+	/** The marker of input end in the queue **/
+	private static final byte[] END = new byte[0];
+
+	/** The chunks read by the background thread **/
+	private final BlockingQueue<byte[]> chunks;
+	/** The background reading thread **/
+	private final Thread reader;
+	/** The error which stopped the background thread, if any **/
+	private volatile Throwable error;
+	/** The chunk being consumed **/
+	private byte[] chunk;
+	/** The position in current chunk **/
+	private int pos;
+	/** Is the end of input reached ? **/
+	private boolean ended;
+
+//CONSTRUCTOR
+	/**
+	 * Starts reading the given source on a new thread, with default chunk size and amount
+	 * @param source The input to read (it is closed by the background thread when it ends)
+	 */
+	BackgroundInputStream(InputStream source) {
+		this(source, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_CHUNKS);
+	}
+
+	/**
+	 * Starts reading the given source on a new thread
+	 * @param source The input to read (it is closed by the background thread when it ends)
+	 * @param chunkSize The size of read chunks, in bytes
+	 * @param maxChunks The maximal amount of chunks read ahead
+	 */
+	BackgroundInputStream(final InputStream source, final int chunkSize, int maxChunks) {
+		chunks = new ArrayBlockingQueue<byte[]>(maxChunks);
+		chunk = END;
+		
+		reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Throwable failure = null;
+				
+				try {
+					byte[] buffer = new byte[chunkSize];
+					int length = 0, read;
+					
+					while((read = source.read(buffer, length, chunkSize - length)) >= 0) {
+						length += read;
+						if(length == chunkSize) {
+							chunks.put(buffer);
+							buffer = new byte[chunkSize];
+							length = 0;
+						}
+					}
+					
+					if(length > 0) {
+						byte[] last = new byte[length];
+						System.arraycopy(buffer, 0, last, 0, length);
+						chunks.put(last);
+					}
+				}
+				catch(InterruptedException e) {
+					//Stream closed by consumer
+					failure = new InterruptedIOException();
+				}
+				catch(Throwable e) {
+					//Any failure (including decoder runtime errors) must reach the consumer
+					failure = e;
+				}
+				
+				try {
+					source.close();
+				}
+				catch(Throwable e) {
+					if(failure == null) {
+						failure = e;
+					}
+				}
+
+				//Signal end (error is visible to consumer before the marker)
+				error = failure;
+				if(!Thread.currentThread().isInterrupted() && !(failure instanceof InterruptedIOException)) {
+					try {
+						chunks.put(END);
+					}
+					catch(InterruptedException e) {
+						//Stream closed by consumer
+					}
+				}
+			}
+		}, "BasicOSMParser input reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+//OTHER METHODS
+	/**
+	 * Get the next chunk if current one is consumed
+	 * @return True if data is available, false if end of input is reached
+	 * @throws IOException If an error occurred in the background thread (other errors are wrapped)
+	 */
+	private boolean fill() throws IOException {
+		while(pos >= chunk.length) {
+			if(ended) {
+				return false;
+			}
+			
+			try {
+				chunk = chunks.take();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for input");
+			}
+			pos = 0;
+			
+			if(chunk == END) {
+				ended = true;
+				if(error instanceof IOException) {
+					throw (IOException) error;
+				}
+				else if(error != null) {
+					throw new IOException("Error while reading input", error);
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		return fill() ? chunk[pos++] & 0xFF : -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) {
+			return 0;
+		}
+		if(!fill()) {
+			return -1;
+		}
+		
+		int count = Math.min(len, chunk.length - pos);
+		System.arraycopy(chunk, pos, b, off, count);
+		pos += count;
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return chunk.length - pos;
+	}
+
+	/**
+	 * Stops the background thread, and waits for it to close the source
+	 */
+	@Override
+	public void close() throws IOException {
+		ended = true;
+		chunk = END;
+		pos = 0;
+		reader.interrupt();
+		chunks.clear();
+		
+		try {
+			reader.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while closing input");
+		}
+	}
+}
@@ -25,10 +25,7 @@ import info.pavie.basicosmparser.model.Relation;
 import info.pavie.basicosmparser.model.Way;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.util.Map;
 
 /**
@@ -38,9 +35,75 @@ import java.util.Map;
  * Nodes.csv contains nodes coordinates.
  * Ways.csv contains the nodes list for each way.
  * Relations.csv contains the members list for each relation, and members roles.
+ * Files are written in UTF-8, row by row, through large buffers. They can also be compressed with gzip.
+ * <br>
+ * An exporter created with an output folder is also an {@link OSMElementHandler}, so it can be given to a parser
+ * to write elements as soon as they are read, without keeping them in memory. Files are closed when input end is reached.
  * @author Adrien PAVIE
  */
-public class CSVExporter {
+public class CSVExporter implements Exporter {
+//ATTRIBUTES
+	/** The nodes CSV header **/
+	static final String NODES_HEADER = "ID;UserID;timestamp;isVisible;version;changesetID;latitude;longitude;tags";
+	/** The ways CSV header **/
+	static final String WAYS_HEADER = "ID;UserID;timestamp;isVisible;version;changesetID;nodes;tags";
+	/** The relations CSV header **/
+	static final String RELATIONS_HEADER = "ID;UserID;timestamp;isVisible;version;changesetID;members;tags";
+
+	/** The nodes CSV writer (null if exporter has no output) **/
+	private final UTF8Writer nodes;
+	/** The ways CSV writer (null if exporter has no output) **/
+	private final UTF8Writer ways;
+	/** The relations CSV writer (null if exporter has no output) **/
+	private final UTF8Writer relations;
+
+//CONSTRUCTOR
+	/**
+	 * Creates an exporter without output, to use with {@link #export(Map, File)}
+	 */
+	public CSVExporter() {
+		nodes = null;
+		ways = null;
+		relations = null;
+	}
+
+	/**
+	 * Creates an exporter which writes elements in the given folder, as they are given.
+	 * Existing CSV files in this folder are overwritten.
+	 * @param outputFolder The folder where CSV files will be written
+	 * @throws IOException If CSV files can't be created
+	 */
+	public CSVExporter(File outputFolder) throws IOException {
+		this(outputFolder, false);
+	}
+
+	/**
+	 * Creates an exporter which writes elements in the given folder, as they are given.
+	 * Existing CSV files in this folder are overwritten.
+	 * @param outputFolder The folder where CSV files will be written
+	 * @param gzip True to compress CSV files with gzip (files are then named nodes.csv.gz, ways.csv.gz, relations.csv.gz)
+	 * @throws IOException If CSV files can't be created
+	 */
+	public CSVExporter(File outputFolder, boolean gzip) throws IOException {
+		String extension = gzip ? ".csv.gz" : ".csv";
+		UTF8Writer n = null, w = null, r = null;
+		
+		try {
+			n = new UTF8Writer(new File(outputFolder, "nodes"+extension), gzip);
+			w = new UTF8Writer(new File(outputFolder, "ways"+extension), gzip);
+			r = new UTF8Writer(new File(outputFolder, "relations"+extension), gzip);
+		}
+		catch(IOException e) {
+			if(n != null) { n.close(); }
+			if(w != null) { w.close(); }
+			throw e;
+		}
+		
+		nodes = n.write(NODES_HEADER);
+		ways = w.write(WAYS_HEADER);
+		relations = r.write(RELATIONS_HEADER);
+	}
+
 //OTHER METHODS
 	/**
 	 * Exports a map of Elements as CSV files.
@@ -49,137 +112,163 @@ public class CSVExporter {
 	 * @throws IOException If an error occurs during CSV writing
 	 */
 	public void export(Map<String,Element> elements, File outputFolder) throws IOException {
-		Element currentElem = null;
+		try(CSVExporter output = new CSVExporter(outputFolder)) {
+			for(Element currentElem : elements.values()) {
+				output.write(currentElem);
+			}
+		}
+	}
+
+	/**
+	 * Writes an element in the CSV file of its kind
+	 * @param elem The element
+	 * @throws IOException If an error occurs during CSV writing
+	 */
+	public void write(Element elem) throws IOException {
+		if(nodes == null) {
+			throw new NullPointerException("Exporter has no output folder");
+		}
 		
-		//Create output
-		StringBuilder csvNodesBuild = new StringBuilder("ID;UserID;timestamp;isVisible;version;changesetID;latitude;longitude;tags");
-		StringBuilder csvWaysBuild = new StringBuilder("ID;UserID;timestamp;isVisible;version;changesetID;nodes;tags");
-		StringBuilder csvRelsBuild = new StringBuilder("ID;UserID;timestamp;isVisible;version;changesetID;members;tags");
+		switch(elem.getType()) {
+			case NODE:
+				writeRow(nodes, elem);
+				break;
+			case WAY:
+				writeRow(ways, elem);
+				break;
+			default:
+				writeRow(relations, elem);
+		}
+	}
 
-		//Create CSV entries for each element
-		for(String id : elements.keySet()) {
-			currentElem = elements.get(id);
+	/**
+	 * Writes the CSV row of an element, starting with a line break
+	 * @param out The writer of the CSV file for this kind of element
+	 * @param elem The element
+	 * @throws IOException If an error occurs during CSV writing
+	 */
+	static void writeRow(UTF8Writer out, Element elem) throws IOException {
+		/*
+		 * CSV content (depends of object type)
+		 */
+		if(elem instanceof Node) {
+			//Node element (define latitude, longitude)
+			Node currentNode = (Node) elem;
+			addInformations(out, elem);
 			
-			/*
-			 * CSV content (depends of object type)
-			 */
-			if(currentElem instanceof Node) {
-				//Node element (define latitude, longitude)
-				Node currentNode = (Node) currentElem;
-				addInformations(csvNodesBuild, currentElem);
-				
-				csvNodesBuild.append(";"+currentNode.getLat()+";"+currentNode.getLon()+";");
-				
-				addTags(csvNodesBuild, currentElem);
+			out.write(';');
+			out.writeCoordinate(currentNode.getLat(), currentNode.getLatE7());
+			out.write(';');
+			out.writeCoordinate(currentNode.getLon(), currentNode.getLonE7());
+			out.write(';');
+			
+			addTags(out, elem);
+		}
+		else if(elem instanceof Way) {
+			//Way element (list nodes)
+			Way currentWay = (Way) elem;
+			addInformations(out, elem);
+			
+			out.write(";\"[N").write(currentWay.getNodeId(0));
+			
+			for(int i=1; i < currentWay.getNodeCount(); i++) {
+				out.write(",N").write(currentWay.getNodeId(i));
 			}
-			else if(currentElem instanceof Way) {
-				//Way element (list nodes)
-				Way currentWay = (Way) currentElem;
-				addInformations(csvWaysBuild, currentElem);
-				
-				csvWaysBuild.append(";\"["+
-				currentWay
-						.getNodes()
-						.get(0)
-						.getId());
-				
-				for(int i=1; i < currentWay.getNodes().size(); i++) {
-					csvWaysBuild.append(","+currentWay.getNodes().get(i).getId());
+			
+			out.write("]\";");
+			
+			addTags(out, elem);
+		}
+		else if(elem instanceof Relation) {
+			//Relation element (list members and roles)
+			Relation currentRel = (Relation) elem;
+			addInformations(out, elem);
+			
+			out.write(";\"[");
+			
+			//List members and roles
+			for(int i=0; i < currentRel.getMemberCount(); i++) {
+				if(i > 0) {
+					out.write(',');
 				}
 				
-				csvWaysBuild.append("]\";");
-				
-				addTags(csvWaysBuild, currentElem);
-			}
-			else if(currentElem instanceof Relation) {
-				//Relation element (list members and roles)
-				Relation currentRel = (Relation) currentElem;
-				addInformations(csvRelsBuild, currentElem);
+				//Member
+				Element member = currentRel.getMember(i);
+				out.write(member.getType().getPrefix()).write(member.getNumericId()).write('=');
 				
-				csvRelsBuild.append(";\"[");
-				
-				//List members and roles
-				for(int i=0; i < currentRel.getMembers().size(); i++) {
-					if(i > 0) {
-						csvRelsBuild.append(",");
-					}
-					
-					//Member
-					csvRelsBuild.append(currentRel.getMembers().get(i).getId()
-							+"=");
-					
-					//Role
-					String role = currentRel.getMemberRole(currentRel.getMembers().get(i));
-					if(role.equals("")) { role = "null"; }
-					csvRelsBuild.append(role);
-				}
-				csvRelsBuild.append("]\";");
-				
-				addTags(csvRelsBuild, currentElem);
-			}
-			else {
-				throw new RuntimeException("Unexpected kind of Element: "+currentElem.getClass().toString());
+				//Role
+				String role = currentRel.getMemberRole(i);
+				if(role == null || role.equals("")) { role = "null"; }
+				out.write(role);
 			}
+			out.write("]\";");
+			
+			addTags(out, elem);
+		}
+		else {
+			throw new RuntimeException("Unexpected kind of Element: "+elem.getClass().toString());
 		}
-		
-		//Write CSV
-		File csvNodes = new File(outputFolder.getPath()+File.separator+"nodes.csv");
-		File csvWays = new File(outputFolder.getPath()+File.separator+"ways.csv");
-		File csvRels = new File(outputFolder.getPath()+File.separator+"relations.csv");
-		writeTextFile(csvNodes, csvNodesBuild.toString());
-		writeTextFile(csvWays, csvWaysBuild.toString());
-		writeTextFile(csvRels, csvRelsBuild.toString());
 	}
-	
+
 	/**
-	 * Adds the tags of an Element in the given StringBuilder
-	 * @param sb The string builder
+	 * Adds the tags of an Element in the given writer
+	 * @param out The writer
 	 * @param elem The element
+	 * @throws IOException If an error occurs during writing
 	 */
-	private void addTags(StringBuilder sb, Element elem) {
+	private static void addTags(UTF8Writer out, Element elem) throws IOException {
 		//Start tags array
-		sb.append("\"[");
+		out.write("\"[");
 		
 		boolean firstTag = true;
 		
 		//Add each tag
-		for(String key : elem.getTags().keySet()) {
+		for(Map.Entry<String,String> tag : elem.getTags().entrySet()) {
 			if(!firstTag) {
-				sb.append(",");
+				out.write(',');
 			} else {
 				firstTag = false;
 			}
 			
-			sb.append(key+"="+elem.getTags().get(key));
+			out.write(tag.getKey()).write('=').write(tag.getValue());
 		}
 		
 		//End array
-		sb.append("]\"");
+		out.write("]\"");
 	}
-	
+
 	/**
-	 * Adds common informations about a Element in a StringBuilder
-	 * @param sb The string builder
+	 * Adds common informations about a Element in the given writer
+	 * @param out The writer
 	 * @param elem The element
+	 * @throws IOException If an error occurs during writing
 	 */
-	private void addInformations(StringBuilder sb, Element elem) {
-		sb.append('\n'+elem.getId()+';'
-				+elem.getUid()+';'
-				+elem.getTimestamp()+';'
-				+elem.isVisible()+';'
-				+elem.getVersion()+';'
-				+elem.getChangeset());
+	private static void addInformations(UTF8Writer out, Element elem) throws IOException {
+		out.write('\n').write(elem.getType().getPrefix()).write(elem.getNumericId()).write(';')
+				.write(elem.getUid()).write(';')
+				.write(elem.getTimestamp()).write(';')
+				.write(elem.isVisible()).write(';')
+				.write(elem.getVersion()).write(';')
+				.write(elem.getChangeset());
 	}
-	
+
 	/**
-	 * Writes a text file.
-	 * @param output The file to write in
-	 * @param text The text to write
-	 * @throws IOException If an error occurs during writing
+	 * Flushes and closes CSV files. Nothing happens if exporter has no output.
 	 */
-	private void writeTextFile(File output, String text) throws IOException {
-		Writer w = new OutputStreamWriter(new FileOutputStream(output));
-		w.write(text);
-		w.close();
+	@Override
+	public void close() throws IOException {
+		if(nodes != null) {
+			try {
+				nodes.close();
+			}
+			finally {
+				try {
+					ways.close();
+				}
+				finally {
+					relations.close();
+				}
+			}
+		}
 	}
 }
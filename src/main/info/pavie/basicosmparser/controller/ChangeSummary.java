@@ -0,0 +1,127 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.model.Element;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A change summary lists the elements changed when an OsmChange file is applied by an {@link OSCParser}.
+ * Elements are identified the same way as in maps returned by parsers ('N', 'W' or 'R' followed by numeric ID),
+ * and listed in the order changes were applied.
+ * @author Adrien PAVIE
+ */
+public class ChangeSummary {
+//ATTRIBUTES
+	/** The IDs of elements added to data **/
+	private final List<String> created;
+	/** The IDs of elements updated in place **/
+	private final List<String> modified;
+	/** The IDs of elements removed from data **/
+	private final List<String> deleted;
+	/** The IDs of elements whose change was ignored **/
+	private final List<String> skipped;
+
+//CONSTRUCTOR
+	ChangeSummary() {
+		created = new ArrayList<String>();
+		modified = new ArrayList<String>();
+		deleted = new ArrayList<String>();
+		skipped = new ArrayList<String>();
+	}
+
+//ACCESSORS
+	/**
+	 * Get the elements added to data: created elements, and modified elements which were not in data before
+	 * @return The element IDs (read-only)
+	 */
+	public List<String> getCreated() {
+		return Collections.unmodifiableList(created);
+	}
+
+	/**
+	 * Get the elements updated in place, with a newer version
+	 * @return The element IDs (read-only)
+	 */
+	public List<String> getModified() {
+		return Collections.unmodifiableList(modified);
+	}
+
+	/**
+	 * Get the elements removed from data
+	 * @return The element IDs (read-only)
+	 */
+	public List<String> getDeleted() {
+		return Collections.unmodifiableList(deleted);
+	}
+
+	/**
+	 * Get the elements whose change was ignored: data already contained the same or a newer version,
+	 * or a deleted element wasn't in data
+	 * @return The element IDs (read-only)
+	 */
+	public List<String> getSkipped() {
+		return Collections.unmodifiableList(skipped);
+	}
+
+	/**
+	 * @return The amount of changed elements (created, modified or deleted)
+	 */
+	public int size() {
+		return created.size() + modified.size() + deleted.size();
+	}
+
+	@Override
+	public String toString() {
+		return "ChangeSummary [created="+created.size()+", modified="+modified.size()+", deleted="+deleted.size()+", skipped="+skipped.size()+"]";
+	}
+
+//MODIFIERS
+	/**
+	 * @param e The element added to data
+	 */
+	void created(Element e) {
+		created.add(e.getId());
+	}
+
+	/**
+	 * @param e The element updated in place
+	 */
+	void modified(Element e) {
+		modified.add(e.getId());
+	}
+
+	/**
+	 * @param e The element removed from data
+	 */
+	void deleted(Element e) {
+		deleted.add(e.getId());
+	}
+
+	/**
+	 * @param e The element whose change was ignored
+	 */
+	void skipped(Element e) {
+		skipped.add(e.getId());
+	}
+}
@@ -0,0 +1,546 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class exports elements as binary column files, which are smaller and faster to write than CSV,
+ * and allow readers to only load the columns they need.
+ * <br>
+ * For each element type (nodes, ways, relations), each column is written in its own file, named &lt;type&gt;.&lt;column&gt;.col
+ * (for example nodes.lat.col). Rows are grouped in blocks of {@link #BLOCK_SIZE} elements, and each block of a column
+ * is encoded independently, so it can be decoded alone. Numbers are written as varints (7 bits per byte, least significant
+ * first, high bit set if more bytes follow). Signed numbers are zigzag-encoded before. Available columns are :
+ * <ul>
+ * <li>id, changeset, timestamp (seconds since epoch), uid : delta with previous value in block (first one with 0), signed</li>
+ * <li>version : signed</li>
+ * <li>user : string index</li>
+ * <li>visible : one byte (0 or 1)</li>
+ * <li>tags : amount of tags, then key and value string indexes of each tag</li>
+ * <li>lat, lon (nodes only) : coordinate in 1e-7 degrees, delta with previous value in block, signed</li>
+ * <li>nodes (ways only) : amount of nodes, then each node ID as delta with previous node ID of the way, signed</li>
+ * <li>members (relations only) : amount of members, then for each member its type (0: node, 1: way, 2: relation),
+ * its ID as delta with previous member ID of the relation (signed), and its role string index</li>
+ * </ul>
+ * Strings (user names, tag keys and values, member roles) are only written once, in strings.dict : amount of strings,
+ * then for each string its length in bytes and its UTF-8 bytes (as varints). String indexes start at 1, 0 means null.
+ * <br>
+ * A block index is written for each type in &lt;type&gt;.index : magic number "OSMC", format version, amount of columns,
+ * columns names, amount of blocks, then for each block its amount of rows, its first and last element IDs, and for each column
+ * the block offset and length in column file. Index values are fixed-size big-endian numbers (int for counts, long for IDs,
+ * offsets and lengths, modified UTF-8 for names, as written by {@link DataOutputStream}).
+ * @author Adrien PAVIE
+ */
+public class ColumnarExporter implements Exporter {
+//ATTRIBUTES
+	/** The amount of rows per block **/
+	public static final int BLOCK_SIZE = 8192;
+	/** The index magic number ("OSMC") **/
+	public static final int MAGIC = 0x4F534D43;
+	/** The format version **/
+	public static final int FORMAT_VERSION = 1;
+	/** The strings dictionary file name **/
+	public static final String STRINGS = "strings.dict";
+
+	/** The folder where files are written **/
+	private final File outputFolder;
+	/** The nodes columns **/
+	private final Table nodes;
+	/** The ways columns **/
+	private final Table ways;
+	/** The relations columns **/
+	private final Table relations;
+	/** The nodes latitude column **/
+	private final Column lat;
+	/** The nodes longitude column **/
+	private final Column lon;
+	/** The ways nodes column **/
+	private final Column wayNodes;
+	/** The relations members column **/
+	private final Column members;
+	/** The index of each written string **/
+	private final Map<String,Integer> stringIndexes;
+	/** The written strings, by index (minus one) **/
+	private final List<String> strings;
+	/** Is the exporter closed ? **/
+	private boolean closed;
+
+//CONSTRUCTOR
+	/**
+	 * Creates an exporter which writes elements in the given folder.
+	 * Existing files with the same names in this folder are overwritten.
+	 * @param outputFolder The folder where files will be written
+	 * @throws IOException If files can't be created
+	 */
+	public ColumnarExporter(File outputFolder) throws IOException {
+		if(!outputFolder.isDirectory()) {
+			throw new IOException("Invalid destination folder: "+outputFolder.getPath());
+		}
+		
+		this.outputFolder = outputFolder;
+		stringIndexes = new HashMap<String,Integer>();
+		strings = new ArrayList<String>();
+		
+		Table n = null, w = null, r = null;
+		try {
+			n = new Table("nodes", "lat", "lon");
+			w = new Table("ways", "nodes");
+			r = new Table("relations", "members");
+		}
+		catch(IOException e) {
+			if(n != null) { n.close(); }
+			if(w != null) { w.close(); }
+			throw e;
+		}
+		nodes = n;
+		ways = w;
+		relations = r;
+		
+		lat = nodes.column("lat");
+		lon = nodes.column("lon");
+		wayNodes = ways.column("nodes");
+		members = relations.column("members");
+	}
+
+//OTHER METHODS
+	@Override
+	public void write(Element elem) throws IOException {
+		if(closed) {
+			throw new IOException("Exporter is closed");
+		}
+		
+		if(elem instanceof Node) {
+			Node n = (Node) elem;
+			nodes.start(elem);
+			lat.writeDelta(n.getLatE7());
+			lon.writeDelta(n.getLonE7());
+			nodes.end();
+		}
+		else if(elem instanceof Way) {
+			Way w = (Way) elem;
+			ways.start(elem);
+			
+			int count = w.getNodeCount();
+			wayNodes.writeVarint(count);
+			long previous = 0;
+			for(int i=0; i < count; i++) {
+				long id = w.getNodeId(i);
+				wayNodes.writeSigned(id - previous);
+				previous = id;
+			}
+			
+			ways.end();
+		}
+		else if(elem instanceof Relation) {
+			Relation r = (Relation) elem;
+			relations.start(elem);
+			
+			int count = r.getMemberCount();
+			members.writeVarint(count);
+			long previous = 0;
+			for(int i=0; i < count; i++) {
+				Element member = r.getMember(i);
+				long id = member.getNumericId();
+				members.writeVarint(member.getType().ordinal());
+				members.writeSigned(id - previous);
+				members.writeVarint(string(r.getMemberRole(i)));
+				previous = id;
+			}
+			
+			relations.end();
+		}
+		else {
+			throw new RuntimeException("Unexpected kind of Element: "+elem.getClass().toString());
+		}
+	}
+
+	/**
+	 * Get the index of a string in dictionary, and adds it if needed
+	 * @param s The string
+	 * @return The string index (0 for null)
+	 */
+	private int string(String s) {
+		if(s == null) {
+			return 0;
+		}
+		
+		Integer index = stringIndexes.get(s);
+		if(index == null) {
+			strings.add(s);
+			index = strings.size();
+			stringIndexes.put(s, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Writes the strings dictionary
+	 * @throws IOException If an error occurs during writing
+	 */
+	private void writeStrings() throws IOException {
+		try(WritableByteChannel channel = Compression.create(new File(outputFolder, STRINGS), false)) {
+			Column out = new Column(STRINGS, channel);
+			out.writeVarint(strings.size());
+			for(String s : strings) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				out.writeVarint(bytes.length);
+				out.writeBytes(bytes);
+				if(out.size >= BLOCK_SIZE * 8) {
+					out.flush();
+				}
+			}
+			out.flush();
+		}
+	}
+
+	/**
+	 * Writes last blocks, indexes and strings dictionary, then closes files.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		
+		try {
+			nodes.finish();
+			ways.finish();
+			relations.finish();
+		}
+		finally {
+			try {
+				nodes.close();
+			}
+			finally {
+				try {
+					ways.close();
+				}
+				finally {
+					relations.close();
+				}
+			}
+		}
+		
+		writeStrings();
+	}
+
+//INNER CLASS Column
+	/**
+	 * A column file, and the encoded values of its current block.
+	 */
+	private static class Column {
+	//ATTRIBUTES
+		/** The column name **/
+		private final String name;
+		/** The column file channel **/
+		private final WritableByteChannel channel;
+		/** The encoded values of current block **/
+		private byte[] buffer;
+		/** The amount of bytes in buffer **/
+		private int size;
+		/** The amount of bytes already written in file **/
+		private long written;
+		/** The previous value, for delta encoding **/
+		private long previous;
+
+	//CONSTRUCTOR
+		private Column(String name, WritableByteChannel channel) {
+			this.name = name;
+			this.channel = channel;
+			buffer = new byte[1 << 12];
+		}
+
+	//MODIFIERS
+		/**
+		 * Writes an unsigned varint
+		 * @param value The value
+		 */
+		private void writeVarint(long value) {
+			if(size + 10 > buffer.length) {
+				grow(size + 10);
+			}
+			
+			while((value & ~0x7FL) != 0) {
+				buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer[size++] = (byte) value;
+		}
+
+		/**
+		 * Writes a signed varint, with zigzag encoding
+		 * @param value The value
+		 */
+		private void writeSigned(long value) {
+			writeVarint((value << 1) ^ (value >> 63));
+		}
+
+		/**
+		 * Writes a signed varint, as delta with previous value of the block
+		 * @param value The value
+		 */
+		private void writeDelta(long value) {
+			writeSigned(value - previous);
+			previous = value;
+		}
+
+		/**
+		 * Writes a single byte
+		 * @param value The byte
+		 */
+		private void writeByte(int value) {
+			if(size + 1 > buffer.length) {
+				grow(size + 1);
+			}
+			buffer[size++] = (byte) value;
+		}
+
+		/**
+		 * Writes raw bytes
+		 * @param bytes The bytes
+		 */
+		private void writeBytes(byte[] bytes) {
+			if(size + bytes.length > buffer.length) {
+				grow(size + bytes.length);
+			}
+			System.arraycopy(bytes, 0, buffer, size, bytes.length);
+			size += bytes.length;
+		}
+
+		/**
+		 * Grows buffer
+		 * @param needed The minimal buffer size
+		 */
+		private void grow(int needed) {
+			byte[] bigger = new byte[Math.max(needed, buffer.length * 2)];
+			System.arraycopy(buffer, 0, bigger, 0, size);
+			buffer = bigger;
+		}
+
+		/**
+		 * Writes buffer content in column file, and starts a new block
+		 * @throws IOException If an error occurs during writing
+		 */
+		private void flush() throws IOException {
+			ByteBuffer data = ByteBuffer.wrap(buffer, 0, size);
+			while(data.hasRemaining()) {
+				channel.write(data);
+			}
+			written += size;
+			size = 0;
+			previous = 0;
+		}
+	}
+
+//INNER CLASS Table
+	/**
+	 * The columns of a type of element, and its block index.
+	 */
+	private class Table {
+	//ATTRIBUTES
+		/** The type name, used as file names prefix **/
+		private final String name;
+		/** All columns **/
+		private final Column[] columns;
+		/** The common columns **/
+		private final Column id, version, changeset, timestamp, uid, user, visible, tags;
+		/** The blocks index : amount of rows, first and last ID, and offset and length of each column **/
+		private final List<long[]> blocks;
+		/** The amount of rows in current block **/
+		private int rows;
+		/** The first element ID of current block **/
+		private long firstId;
+		/** The last element ID of current block **/
+		private long lastId;
+
+	//CONSTRUCTOR
+		/**
+		 * Creates the column files of a type of element
+		 * @param name The type name
+		 * @param specific The names of columns specific to this type
+		 * @throws IOException If files can't be created
+		 */
+		private Table(String name, String... specific) throws IOException {
+			this.name = name;
+			blocks = new ArrayList<long[]>();
+			
+			String[] names = { "id", "version", "changeset", "timestamp", "uid", "user", "visible", "tags" };
+			columns = new Column[names.length + specific.length];
+			
+			try {
+				for(int i=0; i < columns.length; i++) {
+					String column = (i < names.length) ? names[i] : specific[i - names.length];
+					columns[i] = new Column(column, Compression.create(new File(outputFolder, name+"."+column+".col"), false));
+				}
+			}
+			catch(IOException e) {
+				close();
+				throw e;
+			}
+			
+			id = columns[0];
+			version = columns[1];
+			changeset = columns[2];
+			timestamp = columns[3];
+			uid = columns[4];
+			user = columns[5];
+			visible = columns[6];
+			tags = columns[7];
+		}
+
+	//ACCESSORS
+		/**
+		 * @param column The column name
+		 * @return The column
+		 */
+		private Column column(String column) {
+			for(Column c : columns) {
+				if(c.name.equals(column)) {
+					return c;
+				}
+			}
+			throw new RuntimeException("Unknown column: "+column);
+		}
+
+	//OTHER METHODS
+		/**
+		 * Writes the common columns of an element. Specific columns must then be written before calling {@link #end()}.
+		 * @param elem The element
+		 */
+		private void start(Element elem) {
+			long elemId = elem.getNumericId();
+			if(rows == 0) {
+				firstId = elemId;
+			}
+			lastId = elemId;
+			
+			id.writeDelta(elemId);
+			version.writeSigned(elem.getVersion());
+			changeset.writeDelta(elem.getChangeset());
+			timestamp.writeDelta(elem.getTimestampSeconds());
+			uid.writeDelta(elem.getUid());
+			user.writeVarint(string(elem.getUser()));
+			visible.writeByte(elem.isVisible() ? 1 : 0);
+			
+			tags.writeVarint(elem.getTagCount());
+			for(Map.Entry<String,String> tag : elem.getTags().entrySet()) {
+				tags.writeVarint(string(tag.getKey()));
+				tags.writeVarint(string(tag.getValue()));
+			}
+		}
+
+		/**
+		 * Ends the current row, and writes the block if it is full
+		 * @throws IOException If an error occurs during writing
+		 */
+		private void end() throws IOException {
+			rows++;
+			if(rows == BLOCK_SIZE) {
+				flush();
+			}
+		}
+
+		/**
+		 * Writes the current block in column files
+		 * @throws IOException If an error occurs during writing
+		 */
+		private void flush() throws IOException {
+			long[] block = new long[3 + columns.length * 2];
+			block[0] = rows;
+			block[1] = firstId;
+			block[2] = lastId;
+			
+			for(int i=0; i < columns.length; i++) {
+				block[3 + i*2] = columns[i].written;
+				block[4 + i*2] = columns[i].size;
+				columns[i].flush();
+			}
+			
+			blocks.add(block);
+			rows = 0;
+		}
+
+		/**
+		 * Writes the last block and the block index
+		 * @throws IOException If an error occurs during writing
+		 */
+		private void finish() throws IOException {
+			if(rows > 0) {
+				flush();
+			}
+			
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(outputFolder, name+".index"))))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(columns.length);
+				for(Column c : columns) {
+					out.writeUTF(c.name);
+				}
+				
+				out.writeInt(blocks.size());
+				for(long[] block : blocks) {
+					out.writeInt((int) block[0]);
+					for(int i=1; i < block.length; i++) {
+						out.writeLong(block[i]);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Closes column files
+		 * @throws IOException If an error occurs during closing
+		 */
+		private void close() throws IOException {
+			IOException error = null;
+			for(Column c : columns) {
+				if(c != null) {
+					try {
+						c.channel.close();
+					}
+					catch(IOException e) {
+						error = e;
+					}
+				}
+			}
+			if(error != null) {
+				throw error;
+			}
+		}
+	}
+}
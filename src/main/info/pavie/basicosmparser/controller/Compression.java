@@ -0,0 +1,119 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression handles compressed input and output files.
+ * Input compression (gzip or bzip2) is detected from the first bytes of files, whatever their name is.
+ * Compressed input is decompressed on a separate thread, so decompression and parsing are done at the same time.
+ * @author Adrien PAVIE
+ */
+final class Compression {
+//ATTRIBUTES
+	/** The buffer size for reading files **/
+	private static final int BUFFER_SIZE = 1 << 16;
+
+//CONSTRUCTOR
+	private Compression() {
+	}
+
+//OTHER METHODS
+	/**
+	 * Opens a file for reading, and decompresses it if needed
+	 * @param f The file, which can be compressed with gzip or bzip2
+	 * @return The (decompressed) file content
+	 * @throws IOException If the file can't be read
+	 */
+	static InputStream open(File f) throws IOException {
+		return open(f, null);
+	}
+
+	/**
+	 * Opens a file for reading, and decompresses it if needed
+	 * @param f The file, which can be compressed with gzip or bzip2
+	 * @param metrics The metrics counting bytes read from file, before decompression (can be null)
+	 * @return The (decompressed) file content
+	 * @throws IOException If the file can't be read
+	 */
+	static InputStream open(File f, ParserMetrics metrics) throws IOException {
+		//File check
+		if(!f.exists() || !f.isFile()) {
+			throw new FileNotFoundException();
+		}
+		
+		if(!f.canRead()) {
+			throw new IOException("Can't read file");
+		}
+		
+		InputStream file = new FileInputStream(f);
+		InputStream in = new BufferedInputStream((metrics == null) ? file : new CountingInputStream(file, metrics), BUFFER_SIZE);
+		
+		try {
+			//Check magic bytes
+			in.mark(3);
+			int b0 = in.read(), b1 = in.read(), b2 = in.read();
+			in.reset();
+			
+			if(b0 == 0x1F && b1 == 0x8B) {
+				return new BackgroundInputStream(new GZIPInputStream(in, BUFFER_SIZE));
+			}
+			else if(b0 == 'B' && b1 == 'Z' && b2 == 'h') {
+				return new BackgroundInputStream(new BZip2InputStream(in));
+			}
+			else {
+				return in;
+			}
+		}
+		catch(IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates a file for writing (an existing file is overwritten)
+	 * @param f The file
+	 * @param gzip True to compress written data with gzip
+	 * @return The channel to write in
+	 * @throws IOException If the file can't be created
+	 */
+	static WritableByteChannel create(File f, boolean gzip) throws IOException {
+		if(gzip) {
+			return Channels.newChannel(new GZIPOutputStream(new FileOutputStream(f), BUFFER_SIZE));
+		}
+		else {
+			return FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.model.Node;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Coordinates parses decimal degrees written as text into fixed-point values (1e-7 degrees, see {@link Node#getLatE7()}),
+ * directly from characters, without going through a double. Values with more than seven decimals are rounded.
+ * @author Adrien PAVIE
+ */
+class Coordinates {
+//ATTRIBUTES
+	/** The amount of decimals of fixed-point values **/
+	private static final int DECIMALS = 7;
+	/** The maximal amount of digits in integer part **/
+	private static final int MAX_INTEGER_DIGITS = 4;
+	/** Powers of ten, for completing decimals **/
+	private static final int[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000 };
+
+//CONSTRUCTOR
+	private Coordinates() {
+	}
+
+//OTHER METHODS
+	/**
+	 * @param text The coordinate, in decimal degrees
+	 * @return The coordinate, in 1e-7 degrees
+	 * @throws NumberFormatException If text isn't a valid coordinate
+	 */
+	static int parse(String text) {
+		if(text == null) {
+			throw new NumberFormatException("Missing coordinate");
+		}
+		
+		int length = text.length();
+		int p = 0;
+		boolean negative = length > 0 && text.charAt(0) == '-';
+		if(negative || (length > 0 && text.charAt(0) == '+')) {
+			p++;
+		}
+		
+		long integer = 0, decimals = 0;
+		int integerDigits = 0, decimalDigits = 0, roundDigit = 0;
+		
+		for(; p < length && text.charAt(p) != '.'; p++) {
+			int digit = text.charAt(p) - '0';
+			if(digit < 0 || digit > 9 || ++integerDigits > MAX_INTEGER_DIGITS) {
+				return parseSlow(text);
+			}
+			integer = integer * 10 + digit;
+		}
+		
+		if(p < length) {
+			for(p++; p < length; p++) {
+				int digit = text.charAt(p) - '0';
+				if(digit < 0 || digit > 9) {
+					return parseSlow(text);
+				}
+				if(decimalDigits < DECIMALS) {
+					decimals = decimals * 10 + digit;
+				}
+				else if(decimalDigits == DECIMALS) {
+					roundDigit = digit;
+				}
+				decimalDigits++;
+			}
+		}
+		
+		return toFixed(negative, integer, integerDigits, decimals, decimalDigits, roundDigit, text);
+	}
+
+	/**
+	 * @param b The bytes containing the coordinate (in ASCII decimal degrees)
+	 * @param start The coordinate start
+	 * @param end The coordinate end
+	 * @return The coordinate, in 1e-7 degrees
+	 * @throws NumberFormatException If text isn't a valid coordinate
+	 */
+	static int parse(byte[] b, int start, int end) {
+		int p = start;
+		boolean negative = p < end && b[p] == '-';
+		if(negative || (p < end && b[p] == '+')) {
+			p++;
+		}
+		
+		long integer = 0, decimals = 0;
+		int integerDigits = 0, decimalDigits = 0, roundDigit = 0;
+		
+		for(; p < end && b[p] != '.'; p++) {
+			int digit = b[p] - '0';
+			if(digit < 0 || digit > 9 || ++integerDigits > MAX_INTEGER_DIGITS) {
+				return parseSlow(new String(b, start, end - start, StandardCharsets.UTF_8));
+			}
+			integer = integer * 10 + digit;
+		}
+		
+		if(p < end) {
+			for(p++; p < end; p++) {
+				int digit = b[p] - '0';
+				if(digit < 0 || digit > 9) {
+					return parseSlow(new String(b, start, end - start, StandardCharsets.UTF_8));
+				}
+				if(decimalDigits < DECIMALS) {
+					decimals = decimals * 10 + digit;
+				}
+				else if(decimalDigits == DECIMALS) {
+					roundDigit = digit;
+				}
+				decimalDigits++;
+			}
+		}
+		
+		return toFixed(negative, integer, integerDigits, decimals, decimalDigits, roundDigit, null);
+	}
+
+	/**
+	 * Combines parsed parts of a coordinate
+	 * @param negative Is the coordinate negative ?
+	 * @param integer The integer part
+	 * @param integerDigits The amount of digits of integer part
+	 * @param decimals The first seven decimals, as a number
+	 * @param decimalDigits The amount of decimals
+	 * @param roundDigit The eighth decimal digit (0 if none)
+	 * @param text The coordinate text, for error message (can be null)
+	 * @return The coordinate, in 1e-7 degrees
+	 * @throws NumberFormatException If there is no digit
+	 */
+	private static int toFixed(boolean negative, long integer, int integerDigits, long decimals, int decimalDigits, int roundDigit, String text) {
+		if(integerDigits == 0 && decimalDigits == 0) {
+			throw new NumberFormatException("Invalid coordinate: "+text);
+		}
+		
+		long result = integer * POWERS_OF_TEN[DECIMALS] + decimals * POWERS_OF_TEN[DECIMALS - Math.min(decimalDigits, DECIMALS)];
+		if(roundDigit >= 5) {
+			result++;
+		}
+		
+		if(result > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Coordinate out of range: "+text);
+		}
+		
+		return (int) (negative ? -result : result);
+	}
+
+	/**
+	 * Parses a coordinate using Java double parser (for exponent notation)
+	 * @param text The coordinate text
+	 * @return The coordinate, in 1e-7 degrees
+	 * @throws NumberFormatException If text isn't a valid coordinate
+	 */
+	private static int parseSlow(String text) {
+		long result = Math.round(Double.parseDouble(text) * Node.SCALE);
+		if(result > Integer.MAX_VALUE || result < -Integer.MAX_VALUE) {
+			throw new NumberFormatException("Coordinate out of range: "+text);
+		}
+		return (int) result;
+	}
+}
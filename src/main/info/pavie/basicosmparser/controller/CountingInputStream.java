@@ -0,0 +1,75 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This stream counts read bytes in parsing metrics.
+ * @author Adrien PAVIE
+ */
+class CountingInputStream extends FilterInputStream {
+//ATTRIBUTES
+	/** The metrics to update **/
+	private final ParserMetrics metrics;
+
+//CONSTRUCTOR
+	/**
+	 * @param in The counted stream
+	 * @param metrics The metrics to update
+	 */
+	CountingInputStream(InputStream in, ParserMetrics metrics) {
+		super(in);
+		this.metrics = metrics;
+	}
+
+//OTHER METHODS
+	@Override
+	public int read() throws IOException {
+		int result = in.read();
+		if(result >= 0) {
+			metrics.addBytes(1);
+		}
+		return result;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int result = in.read(b, off, len);
+		if(result > 0) {
+			metrics.addBytes(result);
+		}
+		return result;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long result = in.skip(n);
+		metrics.addBytes(result);
+		return result;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+}
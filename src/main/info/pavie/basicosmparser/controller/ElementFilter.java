@@ -0,0 +1,277 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.ElementType;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Timestamps;
+import info.pavie.basicosmparser.model.Way;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An element filter defines which elements are kept by parsers. It is evaluated as early as possible while reading :
+ * type, version, timestamp and node location are checked before the element object is created, and skipped
+ * elements don't get any tag, node or member. Tags are only known once the element is completely read,
+ * so tag conditions are checked before the element is sent to the handler.
+ * <br>
+ * A new filter accepts all elements, each condition restricts kept elements. All conditions must be met.
+ * Ways are checked against the bounding box using their nodes: a way is kept if one of its nodes is in the box.
+ * Relations are not checked against the bounding box.
+ * @author Adrien PAVIE
+ */
+public class ElementFilter {
+//ATTRIBUTES
+	/** The kept element types, by ordinal **/
+	private final boolean[] types;
+	/** Is there a bounding box condition ? **/
+	private boolean bbox;
+	/** The bounding box (min lat, min lon, max lat, max lon) **/
+	private double minLat, minLon, maxLat, maxLon;
+	/** The minimal version of kept elements **/
+	private int minVersion;
+	/** The maximal version of kept elements **/
+	private int maxVersion;
+	/** Are elements filtered by edition time ? **/
+	private boolean timeFilter;
+	/** The minimal edition time of kept elements, in seconds since epoch **/
+	private long minTime;
+	/** The maximal edition time of kept elements, in seconds since epoch **/
+	private long maxTime;
+	/** The tags conditions **/
+	private final List<TagCondition> tags;
+
+//CONSTRUCTOR
+	/**
+	 * Creates a filter which accepts all elements
+	 */
+	public ElementFilter() {
+		types = new boolean[ElementType.values().length];
+		Arrays.fill(types, true);
+		minVersion = Integer.MIN_VALUE;
+		maxVersion = Integer.MAX_VALUE;
+		tags = new ArrayList<TagCondition>();
+	}
+
+//ACCESSORS
+	/**
+	 * @param type The element type
+	 * @return True if elements of this type can be kept
+	 */
+	public boolean accepts(ElementType type) {
+		return types[type.ordinal()];
+	}
+
+	/**
+	 * @param type The element type
+	 * @return True if some elements of this type can be skipped, false if they are all kept
+	 */
+	public boolean mayReject(ElementType type) {
+		return !types[type.ordinal()] || !tags.isEmpty() || timeFilter
+				|| minVersion != Integer.MIN_VALUE || maxVersion != Integer.MAX_VALUE
+				|| (bbox && type != ElementType.RELATION);
+	}
+
+	/**
+	 * @return True if elements must have some tags to be kept
+	 */
+	public boolean hasTagConditions() {
+		return !tags.isEmpty();
+	}
+
+	/**
+	 * Checks the conditions known when an element starts: type, version and edition time
+	 * @param type The element type
+	 * @param version The element version
+	 * @param time The element edition time, in seconds since epoch ({@link Timestamps#NONE} if unknown)
+	 * @return True if the element can be kept
+	 */
+	public boolean acceptsHeader(ElementType type, int version, long time) {
+		return types[type.ordinal()]
+				&& version >= minVersion && version <= maxVersion
+				&& (!timeFilter || (time != Timestamps.NONE && time >= minTime && time <= maxTime));
+	}
+
+	/**
+	 * Checks the bounding box condition of a node
+	 * @param lat The node latitude
+	 * @param lon The node longitude
+	 * @return True if the location is in the bounding box (always true if there is none)
+	 */
+	public boolean acceptsLocation(double lat, double lon) {
+		return !bbox || (lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon);
+	}
+
+	/**
+	 * Checks the tag conditions of an element
+	 * @param e The element
+	 * @return True if the element has the required tags
+	 */
+	public boolean acceptsTags(Element e) {
+		for(TagCondition condition : tags) {
+			if(!condition.accepts(e.getTag(condition.key))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks the bounding box condition of a way
+	 * @param w The way
+	 * @return True if one of the way nodes is in the bounding box (always true if there is none)
+	 */
+	public boolean acceptsNodes(Way w) {
+		if(!bbox) {
+			return true;
+		}
+		
+		for(Node n : w.getNodes()) {
+			if(n != null && acceptsLocation(n.getLat(), n.getLon())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks all conditions of a completely read element
+	 * @param e The element
+	 * @return True if the element should be kept
+	 */
+	public boolean accepts(Element e) {
+		if(!acceptsHeader(e.getType(), e.getVersion(), e.getTimestampSeconds()) || !acceptsTags(e)) {
+			return false;
+		}
+		
+		if(e instanceof Node) {
+			return acceptsLocation(((Node) e).getLat(), ((Node) e).getLon());
+		}
+		else if(e instanceof Way) {
+			return acceptsNodes((Way) e);
+		}
+		else {
+			return e instanceof Relation;
+		}
+	}
+
+//MODIFIERS
+	/**
+	 * Only keeps elements of the given types
+	 * @param types The kept types
+	 */
+	public void setTypes(ElementType... types) {
+		Arrays.fill(this.types, false);
+		for(ElementType type : types) {
+			this.types[type.ordinal()] = true;
+		}
+	}
+
+	/**
+	 * Only keeps nodes in the given bounding box (borders included), and ways having one of their nodes in it
+	 * @param minLat The minimal latitude
+	 * @param minLon The minimal longitude
+	 * @param maxLat The maximal latitude
+	 * @param maxLon The maximal longitude
+	 */
+	public void setBBox(double minLat, double minLon, double maxLat, double maxLon) {
+		if(minLat > maxLat || minLon > maxLon) {
+			throw new RuntimeException("Invalid bounding box");
+		}
+		this.minLat = minLat;
+		this.minLon = minLon;
+		this.maxLat = maxLat;
+		this.maxLon = maxLon;
+		bbox = true;
+	}
+
+	/**
+	 * Only keeps elements with a version in the given range
+	 * @param min The minimal version (inclusive)
+	 * @param max The maximal version (inclusive)
+	 */
+	public void setVersionRange(int min, int max) {
+		if(min > max) {
+			throw new RuntimeException("Invalid version range");
+		}
+		minVersion = min;
+		maxVersion = max;
+	}
+
+	/**
+	 * Only keeps elements edited in the given time range. Elements without timestamp are skipped.
+	 * @param from The minimal edition time, in seconds since epoch (inclusive, Long.MIN_VALUE for no minimum)
+	 * @param to The maximal edition time, in seconds since epoch (inclusive, Long.MAX_VALUE for no maximum)
+	 * @see Timestamps#parse(String)
+	 */
+	public void setTimeRange(long from, long to) {
+		if(from > to) {
+			throw new RuntimeException("Invalid time range");
+		}
+		minTime = from;
+		maxTime = to;
+		timeFilter = true;
+	}
+
+	/**
+	 * Only keeps elements having the given tag. Each call adds a condition which must be met.
+	 * @param key The tag key
+	 * @param values The accepted values (if none, any value is accepted)
+	 */
+	public void requireTag(String key, String... values) {
+		if(key == null) {
+			throw new NullPointerException("Tag key can't be null");
+		}
+		tags.add(new TagCondition(key, values));
+	}
+
+//INNER CLASS TagCondition
+	/**
+	 * A tag condition: a key, and optionally a set of accepted values.
+	 */
+	private static class TagCondition {
+	//ATTRIBUTES
+		/** The tag key **/
+		private final String key;
+		/** The accepted values, or null if any value is accepted **/
+		private final Set<String> values;
+
+	//CONSTRUCTOR
+		private TagCondition(String key, String[] values) {
+			this.key = key;
+			this.values = (values.length == 0) ? null : new HashSet<String>(Arrays.asList(values));
+		}
+
+	//ACCESSORS
+		/**
+		 * @param value The element value for this key (can be null)
+		 * @return True if the value is accepted
+		 */
+		private boolean accepts(String value) {
+			return value != null && (values == null || values.contains(value));
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The output formats available for exporting elements, and their exporters.
+ * @author Adrien PAVIE
+ */
+public enum ExportFormat {
+	/** CSV files, see {@link CSVExporter} **/
+	CSV("csv") {
+		@Override
+		public Exporter create(File outputFolder) throws IOException {
+			return new CSVExporter(outputFolder);
+		}
+	},
+	/** Gzip-compressed CSV files, see {@link CSVExporter} **/
+	CSV_GZIP("csv.gz") {
+		@Override
+		public Exporter create(File outputFolder) throws IOException {
+			return new CSVExporter(outputFolder, true);
+		}
+	},
+	/** CSV files split in shards, written in parallel, see {@link ParallelCSVExporter} **/
+	CSV_SHARDED("csv-sharded") {
+		@Override
+		public Exporter create(File outputFolder) throws IOException {
+			return new ParallelCSVExporter(outputFolder);
+		}
+	},
+	/** GeoJSON FeatureCollection, see {@link GeoJSONExporter} **/
+	GEOJSON("geojson") {
+		@Override
+		public Exporter create(File outputFolder) throws IOException {
+			return new GeoJSONExporter(outputFolder);
+		}
+	},
+	/** Newline-delimited GeoJSON, see {@link GeoJSONExporter} **/
+	NDJSON("ndjson") {
+		@Override
+		public Exporter create(File outputFolder) throws IOException {
+			return new GeoJSONExporter(outputFolder, true);
+		}
+	},
+	/** Binary column files, see {@link ColumnarExporter} **/
+	COLUMNAR("columnar") {
+		@Override
+		public Exporter create(File outputFolder) throws IOException {
+			return new ColumnarExporter(outputFolder);
+		}
+	};
+
+//ATTRIBUTES
+	/** The format name, as given in command line **/
+	private final String name;
+
+//CONSTRUCTOR
+	/**
+	 * Default constructor
+	 * @param name The format name
+	 */
+	private ExportFormat(String name) {
+		this.name = name;
+	}
+
+//ACCESSORS
+	/**
+	 * @return The format name, as given in command line
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param name The format name
+	 * @return The corresponding format, or null if name is unknown
+	 */
+	public static ExportFormat fromName(String name) {
+		for(ExportFormat f : values()) {
+			if(f.name.equals(name)) {
+				return f;
+			}
+		}
+		return null;
+	}
+
+//OTHER METHODS
+	/**
+	 * Creates an exporter for this format
+	 * @param outputFolder The folder where files will be written (existing files are overwritten)
+	 * @return The exporter
+	 * @throws IOException If output files can't be created
+	 */
+	public abstract Exporter create(File outputFolder) throws IOException;
+}
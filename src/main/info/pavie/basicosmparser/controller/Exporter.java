@@ -0,0 +1,125 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * An Exporter writes OSM elements in a given output format.
+ * Elements are written one by one, so an exporter can be given to a parser as an {@link OSMElementHandler},
+ * to write elements as soon as they are read. In this case, the exporter is closed when input end is reached.
+ * Available formats are listed in {@link ExportFormat}, but any implementation of this interface can be used the same way.
+ * @author Adrien PAVIE
+ */
+public interface Exporter extends OSMElementHandler, Closeable {
+//OTHER METHODS
+	/**
+	 * Writes an element
+	 * @param elem The element
+	 * @throws IOException If an error occurs during writing
+	 */
+	public void write(Element elem) throws IOException;
+
+	/**
+	 * Finishes writing, and closes output files. Nothing happens if exporter is already closed.
+	 * @throws IOException If an error occurs during writing
+	 */
+	@Override
+	public void close() throws IOException;
+
+	/**
+	 * Exports a map of Elements, then closes the exporter
+	 * @param elements The element objects to export
+	 * @throws IOException If an error occurs during writing
+	 */
+	public default void export(Map<String,Element> elements) throws IOException {
+		try {
+			for(Element currentElem : elements.values()) {
+				write(currentElem);
+			}
+		}
+		finally {
+			close();
+		}
+	}
+
+	/**
+	 * Writes a node, for use as a handler
+	 * @param n The node
+	 * @throws UncheckedIOException If an error occurs during writing
+	 */
+	@Override
+	public default void onNode(Node n) {
+		try {
+			write(n);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes a way, for use as a handler
+	 * @param w The way
+	 * @throws UncheckedIOException If an error occurs during writing
+	 */
+	@Override
+	public default void onWay(Way w) {
+		try {
+			write(w);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes a relation, for use as a handler
+	 * @param r The relation
+	 * @throws UncheckedIOException If an error occurs during writing
+	 */
+	@Override
+	public default void onRelation(Relation r) {
+		try {
+			write(r);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Closes the exporter, as input end is reached
+	 * @throws UncheckedIOException If an error occurs during writing
+	 */
+	@Override
+	public default void onEnd() {
+		try {
+			close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,420 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class exports elements as GeoJSON features, with their geometry and their tags as properties.
+ * Output is either a single FeatureCollection (elements.geojson), or newline-delimited GeoJSON (elements.ndjson),
+ * with one feature per line. Features are :
+ * <ul>
+ * <li>Point for tagged nodes (untagged nodes are only used in ways geometries)</li>
+ * <li>Polygon for closed ways with at least four nodes, unless they are tagged area=no</li>
+ * <li>LineString for other ways</li>
+ * </ul>
+ * Relations are not exported. Feature IDs are element IDs (for example W26659127).
+ * Way nodes which can't be found are ignored, and ways with less than two known nodes are not exported.
+ * When elements are streamed from a parser, way nodes are found in the {@link info.pavie.basicosmparser.index.NodeLocationIndex}
+ * set on the parser, or else in locations of read nodes kept in memory during the parse (see {@link #requiresNodeLocations()}).
+ * For large inputs, setting an index avoids keeping these locations in memory.
+ * <br>
+ * Way geometries are resolved when elements are given. Features are then formatted by a pool of worker threads,
+ * and written in the same order as elements were given. Given elements must not be modified afterwards.
+ * @author Adrien PAVIE
+ */
+public class GeoJSONExporter implements Exporter {
+//ATTRIBUTES
+	/** The default amount of elements formatted together by a worker thread **/
+	public static final int DEFAULT_BATCH_SIZE = 2000;
+	/** Hexadecimal digits, for escaping control characters **/
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/** The output writer **/
+	private final UTF8Writer out;
+	/** Is output newline-delimited GeoJSON ? **/
+	private final boolean newlineDelimited;
+	/** The batches being formatted, in given order **/
+	private final Deque<Future<byte[]>> pending;
+	/** The elements waiting to be formatted **/
+	private List<Feature> batch;
+	/** The amount of formatting threads **/
+	private int threads;
+	/** The amount of elements per batch **/
+	private int batchSize;
+	/** The formatting threads (created when the first batch is full) **/
+	private ExecutorService pool;
+	/** Has a feature been written yet ? **/
+	private boolean written;
+	/** Is the exporter closed ? **/
+	private boolean closed;
+
+//CONSTRUCTOR
+	/**
+	 * Creates an exporter which writes a GeoJSON FeatureCollection in the given folder
+	 * @param outputFolder The folder where elements.geojson will be written
+	 * @throws IOException If the file can't be created
+	 */
+	public GeoJSONExporter(File outputFolder) throws IOException {
+		this(outputFolder, false);
+	}
+
+	/**
+	 * Creates an exporter which writes GeoJSON in the given folder
+	 * @param outputFolder The folder where elements.geojson (or elements.ndjson) will be written
+	 * @param newlineDelimited True to write one feature per line (elements.ndjson) instead of a FeatureCollection
+	 * @throws IOException If the file can't be created
+	 */
+	public GeoJSONExporter(File outputFolder, boolean newlineDelimited) throws IOException {
+		this.newlineDelimited = newlineDelimited;
+		out = new UTF8Writer(new File(outputFolder, newlineDelimited ? "elements.ndjson" : "elements.geojson"));
+		pending = new ArrayDeque<Future<byte[]>>();
+		batch = new ArrayList<Feature>();
+		threads = Runtime.getRuntime().availableProcessors();
+		batchSize = DEFAULT_BATCH_SIZE;
+		
+		if(!newlineDelimited) {
+			out.write("{\"type\":\"FeatureCollection\",\"features\":[");
+		}
+	}
+
+//MODIFIERS
+	/**
+	 * @param threads The amount of threads formatting features (default: amount of processors)
+	 */
+	public void setThreads(int threads) {
+		if(threads < 1) {
+			throw new RuntimeException("At least one thread is needed");
+		}
+		checkNotStarted();
+		this.threads = threads;
+	}
+
+	/**
+	 * @param batchSize The amount of elements formatted together by a thread (default: {@link #DEFAULT_BATCH_SIZE})
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize < 1) {
+			throw new RuntimeException("Batch size must be positive");
+		}
+		checkNotStarted();
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Checks that export settings can still be changed
+	 */
+	private void checkNotStarted() {
+		if(pool != null || closed) {
+			throw new RuntimeException("Export has already started");
+		}
+	}
+
+//OTHER METHODS
+	/**
+	 * Adds an element to the current batch, with its geometry. The batch is formatted when it is full.
+	 * Elements without a GeoJSON geometry are ignored.
+	 * @param elem The element
+	 * @throws IOException If an error occurs during writing
+	 */
+	@Override
+	public void write(Element elem) throws IOException {
+		if(closed) {
+			throw new IOException("Exporter is closed");
+		}
+		
+		if(elem instanceof Node) {
+			if(elem.getTagCount() > 0) {
+				batch.add(new Feature(elem, new Node[] { (Node) elem }));
+			}
+		}
+		else if(elem instanceof Way) {
+			//Resolve geometry now, as nodes may not be available later
+			List<Node> nodes = ((Way) elem).getNodes();
+			Node[] geometry = new Node[nodes.size()];
+			int count = 0;
+			for(Node n : nodes) {
+				if(n != null) {
+					geometry[count++] = n;
+				}
+			}
+			
+			if(count >= 2) {
+				batch.add(new Feature(elem, (count == geometry.length) ? geometry : Arrays.copyOf(geometry, count)));
+			}
+		}
+		else if(!(elem instanceof Relation)) {
+			throw new RuntimeException("Unexpected kind of Element: "+elem.getClass().toString());
+		}
+		
+		if(batch.size() >= batchSize) {
+			submit();
+		}
+	}
+
+	/**
+	 * Sends the current batch to the formatting threads
+	 * @throws IOException If an error occurs during writing of previous batches
+	 */
+	private void submit() throws IOException {
+		final List<Feature> features = batch;
+		batch = new ArrayList<Feature>();
+		
+		if(pool == null) {
+			pool = Executors.newFixedThreadPool(threads);
+		}
+		
+		pending.add(pool.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws Exception {
+				return format(features);
+			}
+		}));
+
+		//Limit the amount of formatted batches in memory
+		while(pending.size() >= threads * 4) {
+			store(pending.poll());
+		}
+	}
+
+	/**
+	 * Formats a batch of features. Each feature starts with a line break, and features are separated by a comma
+	 * (or ended by a line break if output is newline-delimited).
+	 * @param features The features
+	 * @return The formatted features, in UTF-8
+	 * @throws IOException If an error occurs during formatting
+	 */
+	private byte[] format(List<Feature> features) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(features.size() * 256);
+		UTF8Writer w = new UTF8Writer(Channels.newChannel(bytes), 1 << 16);
+		
+		for(int i=0; i < features.size(); i++) {
+			if(newlineDelimited) {
+				writeFeature(w, features.get(i));
+				w.write('\n');
+			}
+			else {
+				w.write((i == 0) ? "\n" : ",\n");
+				writeFeature(w, features.get(i));
+			}
+		}
+		w.close();
+		
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes a feature
+	 * @param w The writer
+	 * @param f The feature
+	 * @throws IOException If an error occurs during writing
+	 */
+	private static void writeFeature(UTF8Writer w, Feature f) throws IOException {
+		Element elem = f.element;
+		Node[] nodes = f.geometry;
+		
+		w.write("{\"type\":\"Feature\",\"id\":\"").write(elem.getType().getPrefix()).write(elem.getNumericId()).write("\",\"geometry\":");
+
+		//Geometry
+		if(elem instanceof Node) {
+			w.write("{\"type\":\"Point\",\"coordinates\":");
+			writePosition(w, nodes[0]);
+		}
+		else {
+			boolean polygon = nodes.length >= 4
+					&& nodes[0].getNumericId() == nodes[nodes.length-1].getNumericId()
+					&& !"no".equals(elem.getTag("area"));
+			
+			w.write(polygon ? "{\"type\":\"Polygon\",\"coordinates\":[[" : "{\"type\":\"LineString\",\"coordinates\":[");
+			for(int i=0; i < nodes.length; i++) {
+				if(i > 0) {
+					w.write(',');
+				}
+				writePosition(w, nodes[i]);
+			}
+			w.write(polygon ? "]]" : "]");
+		}
+
+		//Tags
+		w.write("},\"properties\":{");
+		boolean first = true;
+		for(Map.Entry<String,String> tag : elem.getTags().entrySet()) {
+			if(!first) {
+				w.write(',');
+			}
+			first = false;
+			writeString(w, tag.getKey());
+			w.write(':');
+			writeString(w, tag.getValue());
+		}
+		w.write("}}");
+	}
+
+	/**
+	 * Writes a position, as [longitude,latitude]
+	 * @param w The writer
+	 * @param n The node
+	 * @throws IOException If an error occurs during writing
+	 */
+	private static void writePosition(UTF8Writer w, Node n) throws IOException {
+		w.write('[')
+			.writeCoordinate(n.getLon(), n.getLonE7()).write(',')
+			.writeCoordinate(n.getLat(), n.getLatE7()).write(']');
+	}
+
+	/**
+	 * Writes a JSON string, with escaped characters
+	 * @param w The writer
+	 * @param s The string
+	 * @throws IOException If an error occurs during writing
+	 */
+	private static void writeString(UTF8Writer w, String s) throws IOException {
+		w.write('"');
+
+		//Write unescaped parts at once
+		int start = 0;
+		for(int i=0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\' || c < 0x20) {
+				w.write(s.subSequence(start, i));
+				start = i + 1;
+				
+				switch(c) {
+					case '"': w.write("\\\""); break;
+					case '\\': w.write("\\\\"); break;
+					case '\n': w.write("\\n"); break;
+					case '\r': w.write("\\r"); break;
+					case '\t': w.write("\\t"); break;
+					default:
+						w.write("\\u00").write(HEX[c >> 4]).write(HEX[c & 0xF]);
+				}
+			}
+		}
+		w.write(s.subSequence(start, s.length()));
+		
+		w.write('"');
+	}
+
+	/**
+	 * Waits for a batch to be formatted, and writes it
+	 * @param future The batch being formatted
+	 * @throws IOException If an error occurs during writing
+	 */
+	private void store(Future<byte[]> future) throws IOException {
+		byte[] data;
+		try {
+			data = future.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while formatting GeoJSON", e);
+		}
+		catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Error while formatting GeoJSON", e.getCause());
+		}
+		
+		if(data.length > 0) {
+			if(written && !newlineDelimited) {
+				out.write(',');
+			}
+			out.write(data, 0, data.length);
+			written = true;
+		}
+	}
+
+	/**
+	 * Way geometries need coordinates of their nodes
+	 * @return True
+	 */
+	@Override
+	public boolean requiresNodeLocations() {
+		return true;
+	}
+
+	/**
+	 * Formats and writes remaining features, then closes output.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		
+		try {
+			if(!batch.isEmpty()) {
+				submit();
+			}
+			while(!pending.isEmpty()) {
+				store(pending.poll());
+			}
+			
+			if(!newlineDelimited) {
+				out.write("\n]}\n");
+			}
+		}
+		finally {
+			if(pool != null) {
+				pool.shutdownNow();
+			}
+			out.close();
+		}
+	}
+
+//INNER CLASS Feature
+	/**
+	 * A feature is an element waiting to be formatted, with its resolved geometry.
+	 */
+	private static class Feature {
+	//ATTRIBUTES
+		/** The element **/
+		private final Element element;
+		/** The nodes of the geometry **/
+		private final Node[] geometry;
+
+	//CONSTRUCTOR
+		private Feature(Element element, Node[] geometry) {
+			this.element = element;
+			this.geometry = geometry;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.index.NodeLocationIndex;
+import info.pavie.basicosmparser.model.Node;
+
+import java.util.Arrays;
+
+/**
+ * A location table keeps node locations in memory, as a hash table of primitive values (about 32 bytes per node).
+ * It is used when an {@link ElementFilter} skips nodes, so kept ways can still get their nodes coordinates,
+ * without creating node objects. Locations are stored as fixed-point values, as in {@link NodeLocationIndex}.
+ * @author Adrien PAVIE
+ */
+class LocationTable {
+//ATTRIBUTES
+	/** The maximal fill ratio before the table grows **/
+	private static final double LOAD_FACTOR = 0.5;
+
+	/** The nodes IDs **/
+	private long[] keys;
+	/** The packed locations ({@link NodeLocationIndex#MISSING} for empty slots) **/
+	private long[] values;
+	/** The amount of stored locations **/
+	private int size;
+
+//CONSTRUCTOR
+	LocationTable() {
+		keys = new long[1024];
+		values = new long[1024];
+		Arrays.fill(values, NodeLocationIndex.MISSING);
+	}
+
+//ACCESSORS
+	/**
+	 * @return The amount of stored locations
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Creates a node object, using the stored location
+	 * @param id The node ID
+	 * @return The node, or null if its location is unknown
+	 */
+	Node getNode(long id) {
+		int slot = find(id);
+		long location = values[slot];
+		return (location == NodeLocationIndex.MISSING) ? null : Node.fromFixedPoint(id, (int) (location >> 32), (int) location);
+	}
+
+	/**
+	 * @param id The node ID
+	 * @return The slot containing this ID, or the empty slot where it should be stored
+	 */
+	private int find(long id) {
+		int mask = keys.length - 1;
+		int slot = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		while(values[slot] != NodeLocationIndex.MISSING && keys[slot] != id) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+//MODIFIERS
+	/**
+	 * Stores the location of a node
+	 * @param id The node ID
+	 * @param lat The latitude
+	 * @param lon The longitude
+	 */
+	void put(long id, double lat, double lon) {
+		if(size >= keys.length * LOAD_FACTOR) {
+			grow();
+		}
+		
+		int slot = find(id);
+		if(values[slot] == NodeLocationIndex.MISSING) {
+			keys[slot] = id;
+			size++;
+		}
+		values[slot] = NodeLocationIndex.pack(lat, lon);
+	}
+
+	/**
+	 * Doubles the table capacity
+	 */
+	private void grow() {
+		long[] oldKeys = keys, oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new long[oldValues.length * 2];
+		Arrays.fill(values, NodeLocationIndex.MISSING);
+		
+		for(int i=0; i < oldKeys.length; i++) {
+			if(oldValues[i] != NodeLocationIndex.MISSING) {
+				int slot = find(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,524 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.ElementStore;
+import info.pavie.basicosmparser.model.ElementType;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Timestamps;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * OSCParser reads OsmChange files (.osc), which list elements created, modified and deleted between two states
+ * of OSM data (for example, minutely or daily diffs), and applies these changes to elements already read by {@link OSMParser}
+ * (see {@link OSMParser#getElementStore()}). This avoids reading again the whole data to get its last state.
+ * <br>
+ * Changes are applied in place: modified elements keep their Java object, so ways and relations containing a modified
+ * node or way directly see its new coordinates, tags or nodes. A change is only applied if its version is newer than
+ * the one in data, so applying an old or already applied diff has no effect.
+ * <br>
+ * Changes are applied once the whole input is read: created and modified nodes, then ways and relations (so their nodes and
+ * members can be found), and then deleted relations, ways and nodes. Deleted elements are removed from data, but parents
+ * which are not modified by the diff still contain them (OSM doesn't allow deleting used elements, so a consistent diff
+ * always modifies these parents too). Modified elements which were not in data are added to it.
+ * <br>
+ * Relation members which were stub objects are replaced by created or modified elements. Way nodes which were null
+ * (nodes missing from data when it was read) don't keep their ID, so ways which are not modified by the diff still contain
+ * null for them. Ways read with lazy way nodes (see {@link OSMParser#setLazyWayNodes(boolean)}) don't have this limitation,
+ * as their nodes are found in data when requested.
+ * @author Adrien PAVIE
+ */
+public class OSCParser extends DefaultHandler {
+//ATTRIBUTES
+	/** The elements to update **/
+	private ElementStore elements;
+	/** The dictionary sharing read strings (can be null) **/
+	private StringDictionary dictionary;
+	/** The changes read from current input **/
+	private List<Change> changes;
+	/** The action of current block, or null outside of create, modify and delete blocks **/
+	private Action action;
+	/** The change being read **/
+	private Change current;
+	/** The position in current XML document (can be null) **/
+	private Locator locator;
+
+//CONSTRUCTOR
+	public OSCParser() {
+		super();
+		dictionary = new StringDictionary();
+	}
+
+//ACCESSORS
+	/**
+	 * @return The dictionary used to share equal strings between read elements, or null if it is disabled
+	 */
+	public StringDictionary getStringDictionary() {
+		return dictionary;
+	}
+
+//MODIFIERS
+	/**
+	 * Sets the dictionary used to share equal strings between read elements. Giving the dictionary of the parser
+	 * which read data allows new elements to share strings with existing ones.
+	 * @param dictionary The string dictionary, or null to keep strings as read
+	 */
+	public void setStringDictionary(StringDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+//OTHER METHODS
+	/**
+	 * Reads an OsmChange file, and applies its changes to the given elements
+	 * @param f The OsmChange file (can be compressed with gzip or bzip2)
+	 * @param elements The elements to update
+	 * @return The summary of changed elements
+	 * @throws IOException If an error occurs during file reading
+	 * @throws SAXException If an error occurs during parsing
+	 */
+	public ChangeSummary apply(File f, ElementStore elements) throws IOException, SAXException {
+		try(InputStream in = Compression.open(f)) {
+			return apply(new InputSource(in), elements);
+		}
+	}
+
+	/**
+	 * Reads OsmChange content, and applies its changes to the given elements
+	 * @param s The OsmChange content, as a String
+	 * @param elements The elements to update
+	 * @return The summary of changed elements
+	 * @throws IOException If an error occurs during reading
+	 * @throws SAXException If an error occurs during parsing
+	 */
+	public ChangeSummary apply(String s, ElementStore elements) throws IOException, SAXException {
+		return apply(new InputSource(new ByteArrayInputStream(s.getBytes("UTF-8"))), elements);
+	}
+
+	/**
+	 * Reads an OsmChange input, and applies its changes to the given elements.
+	 * If input is invalid, no change is applied.
+	 * @param input The OsmChange input
+	 * @param elements The elements to update
+	 * @return The summary of changed elements
+	 * @throws IOException If an error occurs during reading
+	 * @throws SAXException If an error occurs during parsing
+	 */
+	public ChangeSummary apply(InputSource input, ElementStore elements) throws IOException, SAXException {
+		if(elements == null) {
+			throw new NullPointerException("Elements can't be null");
+		}
+		
+		this.elements = elements;
+		changes = new ArrayList<Change>();
+		action = null;
+		current = null;
+		
+		try {
+			SAXParserFactory factory = SAXParserFactory.newInstance();
+			factory.setNamespaceAware(true);
+			XMLReader xr = factory.newSAXParser().getXMLReader();
+			xr.setContentHandler(this);
+			xr.setErrorHandler(this);
+			xr.parse(input);
+			
+			return applyChanges();
+		}
+		catch(ParserConfigurationException e) {
+			throw new SAXException("Can't create XML reader", e);
+		}
+		finally {
+			changes = null;
+			this.elements = null;
+		}
+	}
+
+	/**
+	 * Applies read changes to elements
+	 * @return The summary of changed elements
+	 */
+	private ChangeSummary applyChanges() {
+		ChangeSummary summary = new ChangeSummary();
+		ElementType[] types = ElementType.values();
+		boolean relink = false;
+
+		//Created and modified elements
+		for(ElementType type : types) {
+			for(Change c : changes) {
+				if(c.action != Action.DELETE && c.element.getType() == type) {
+					Element existing = elements.get(type, c.element.getNumericId());
+					
+					if(existing == null) {
+						elements.add(c.element);
+						c.target = c.element;
+						summary.created(c.element);
+
+						//Element existed before, relations may contain it as stub member
+						relink |= (c.action == Action.MODIFY);
+					}
+					else if(c.element.getVersion() > existing.getVersion()) {
+						update(existing, c.element);
+						c.target = existing;
+						summary.modified(existing);
+					}
+					else {
+						summary.skipped(c.element);
+					}
+				}
+			}
+		}
+
+		//Nodes and members, once all elements are available
+		for(Change c : changes) {
+			if(c.target instanceof Way) {
+				setNodes((Way) c.target, c);
+			}
+			else if(c.target instanceof Relation) {
+				setMembers((Relation) c.target, c);
+			}
+		}
+
+		//Deleted elements, parents before their children
+		for(int t = types.length - 1; t >= 0; t--) {
+			for(Change c : changes) {
+				if(c.action == Action.DELETE && c.element.getType() == types[t]) {
+					Element existing = elements.get(types[t], c.element.getNumericId());
+
+					//Some editors write the last version instead of the deleted one
+					if(existing != null && c.element.getVersion() >= existing.getVersion()) {
+						elements.remove(existing);
+						summary.deleted(existing);
+					}
+					else {
+						summary.skipped(c.element);
+					}
+				}
+			}
+		}
+		
+		if(relink) {
+			relinkMembers();
+		}
+		
+		return summary;
+	}
+
+	/**
+	 * Copies coordinates, informations and tags of a newer version into an element
+	 * @param e The element to update
+	 * @param newer The newer version of element
+	 */
+	private void update(Element e, Element newer) {
+		if(e instanceof Node) {
+			((Node) e).setLat(((Node) newer).getLat());
+			((Node) e).setLon(((Node) newer).getLon());
+		}
+		
+		e.setUser(newer.getUser());
+		e.setUid(newer.getUid());
+		e.setVisible(newer.isVisible());
+		e.setVersion(newer.getVersion());
+		e.setChangeset(newer.getChangeset());
+		e.setTimestampSeconds(newer.getTimestampSeconds());
+		
+		e.getTags().clear();
+		for(Map.Entry<String,String> tag : newer.getTags().entrySet()) {
+			e.addTag(tag.getKey(), tag.getValue());
+		}
+	}
+
+	/**
+	 * Replaces the nodes of a way by the read ones. As when data is parsed, unknown nodes are null,
+	 * unless the way only keeps node IDs.
+	 * @param w The way
+	 * @param c The change defining its nodes
+	 */
+	private void setNodes(Way w, Change c) {
+		w.clearNodes();
+		for(int i=0; i < c.refCount; i++) {
+			if(w.getNodeResolver() != null) {
+				w.addNodeId(c.refs[i]);
+			}
+			else {
+				w.addNode(elements.getNode(c.refs[i]));
+			}
+		}
+	}
+
+	/**
+	 * Replaces the members of a relation by the read ones. Unknown members are stub objects.
+	 * @param r The relation
+	 * @param c The change defining its members
+	 */
+	private void setMembers(Relation r, Change c) {
+		r.clearMembers();
+		for(int i=0; i < c.refCount; i++) {
+			Element member = elements.get(c.types[i], c.refs[i]);
+			
+			if(member == null) {
+				switch(c.types[i]) {
+					case NODE:
+						member = new Node(c.refs[i], 0, 0);
+						break;
+					case WAY:
+						member = new Way(c.refs[i]);
+						break;
+					default:
+						member = new Relation(c.refs[i]);
+				}
+			}
+			
+			r.addMember(c.roles[i], member);
+		}
+	}
+
+	/**
+	 * Replaces stub members of all relations by elements now available in data.
+	 * Null way nodes can't be replaced, as their ID is unknown.
+	 */
+	private void relinkMembers() {
+		for(Relation r : elements.getRelations()) {
+			for(int i=0; i < r.getMemberCount(); i++) {
+				Element member = r.getMember(i);
+				Element e = elements.get(member.getType(), member.getNumericId());
+				if(e != null && e != member) {
+					r.setMember(i, e);
+				}
+			}
+		}
+	}
+
+/*
+ * Event handlers
+ */
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException {
+		super.endElement(uri, localName, qName);
+		
+		if(localName.equals("node") || localName.equals("way") || localName.equals("relation")) {
+			if(current != null) {
+				changes.add(current);
+				current = null;
+			}
+		}
+		else if(localName.equals("create") || localName.equals("modify") || localName.equals("delete")) {
+			action = null;
+		}
+	}
+
+	@Override
+	public void setDocumentLocator(Locator locator) {
+		this.locator = locator;
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+		super.startElement(uri, localName, qName, attributes);
+
+		//Case of change block
+		if(localName.equals("create")) {
+			action = Action.CREATE;
+		}
+		else if(localName.equals("modify")) {
+			action = Action.MODIFY;
+		}
+		else if(localName.equals("delete")) {
+			action = Action.DELETE;
+		}
+		//Case of changed element (deleted nodes may have no coordinates)
+		else if(action != null && localName.equals("node")) {
+			String lat = attributes.getValue("lat"), lon = attributes.getValue("lon");
+			Node n = new Node(
+					Long.parseLong(attributes.getValue("id")),
+					(lat == null) ? 0 : Double.parseDouble(lat),
+					(lon == null) ? 0 : Double.parseDouble(lon)
+				);
+			setInformations(n, attributes);
+			current = new Change(action, n);
+		}
+		else if(action != null && localName.equals("way")) {
+			Way w = new Way(Long.parseLong(attributes.getValue("id")));
+			setInformations(w, attributes);
+			current = new Change(action, w);
+		}
+		else if(action != null && localName.equals("relation")) {
+			Relation r = new Relation(Long.parseLong(attributes.getValue("id")));
+			setInformations(r, attributes);
+			current = new Change(action, r);
+		}
+		//Case of way node
+		else if(localName.equals("nd")) {
+			if(current != null) {
+				current.addReference(ElementType.NODE, Long.parseLong(attributes.getValue("ref")), null);
+			}
+		}
+		//Case of relation member
+		else if(localName.equals("member")) {
+			if(current != null) {
+				current.addReference(
+						memberType(attributes.getValue("type")),
+						Long.parseLong(attributes.getValue("ref")),
+						intern(attributes.getValue("role"))
+						);
+			}
+		}
+		//Case of tag
+		else if(localName.equals("tag")) {
+			if(current != null) {
+				current.element.addTag(intern(attributes.getValue("k")), intern(attributes.getValue("v")));
+			}
+		}
+	}
+
+	/**
+	 * Sets the common informations of a read element
+	 * @param e The element
+	 * @param attributes The XML element attributes
+	 * @throws SAXException If timestamp is invalid
+	 */
+	private void setInformations(Element e, Attributes attributes) throws SAXException {
+		e.setUser(intern(attributes.getValue("user")));
+		
+		if(attributes.getValue("uid") != null) {
+			e.setUid(Long.parseLong(attributes.getValue("uid")));
+		}
+		
+		e.setVisible(Boolean.parseBoolean(attributes.getValue("visible")));
+		
+		String version = attributes.getValue("version");
+		e.setVersion((version == null) ? 1 : Integer.parseInt(version));
+		
+		if(attributes.getValue("changeset") != null) {
+			e.setChangeset(Long.parseLong(attributes.getValue("changeset")));
+		}
+		
+		String timestamp = attributes.getValue("timestamp");
+		try {
+			e.setTimestampSeconds(Timestamps.parse(timestamp));
+		}
+		catch(RuntimeException ex) {
+			throw new SAXParseException("Invalid timestamp: "+timestamp, locator, ex);
+		}
+	}
+
+	/**
+	 * @param s The read string
+	 * @return The shared equal string, or the given one if there is no dictionary
+	 */
+	private String intern(String s) {
+		return (dictionary == null) ? s : dictionary.get(s);
+	}
+
+	/**
+	 * @param type The member type, as written in XML
+	 * @return The element type
+	 */
+	private static ElementType memberType(String type) {
+		switch(type) {
+			case "node":
+				return ElementType.NODE;
+			case "way":
+				return ElementType.WAY;
+			case "relation":
+				return ElementType.RELATION;
+			default:
+				throw new RuntimeException("Unknown element type: "+type);
+		}
+	}
+
+//INNER CLASS Action
+	/**
+	 * The kinds of change blocks in OsmChange files.
+	 */
+	private enum Action {
+		CREATE, MODIFY, DELETE
+	}
+
+//INNER CLASS Change
+	/**
+	 * A change is a read element, with the action to apply and the references to its nodes or members.
+	 */
+	private static class Change {
+	//ATTRIBUTES
+		/** The action **/
+		private final Action action;
+		/** The read element, without nodes nor members **/
+		private final Element element;
+		/** The types of referenced elements **/
+		private ElementType[] types;
+		/** The IDs of referenced elements **/
+		private long[] refs;
+		/** The roles of referenced members **/
+		private String[] roles;
+		/** The amount of references **/
+		private int refCount;
+		/** The element in data which received this change, or null if not applied **/
+		private Element target;
+
+	//CONSTRUCTOR
+		private Change(Action action, Element element) {
+			this.action = action;
+			this.element = element;
+			types = new ElementType[4];
+			refs = new long[4];
+			roles = new String[4];
+		}
+
+	//MODIFIERS
+		/**
+		 * Adds a way node or relation member
+		 * @param type The referenced element type
+		 * @param ref The referenced element ID
+		 * @param role The member role (null for way nodes)
+		 */
+		private void addReference(ElementType type, long ref, String role) {
+			if(refCount == refs.length) {
+				types = Arrays.copyOf(types, refCount * 2);
+				refs = Arrays.copyOf(refs, refCount * 2);
+				roles = Arrays.copyOf(roles, refCount * 2);
+			}
+			types[refCount] = type;
+			refs[refCount] = ref;
+			roles[refCount] = role;
+			refCount++;
+		}
+	}
+}
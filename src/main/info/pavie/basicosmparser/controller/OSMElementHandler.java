@@ -0,0 +1,66 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+/**
+ * An OSMElementHandler receives OSM elements as soon as the parser has completely read them.
+ * Elements are given in the same order as in the read data. The parser doesn't keep any reference on them,
+ * so it is up to the handler to store them if needed.
+ * @author Adrien PAVIE
+ */
+public interface OSMElementHandler {
+//OTHER METHODS
+	/**
+	 * Called when a node has been read.
+	 * @param n The read node
+	 */
+	public void onNode(Node n);
+
+	/**
+	 * Called when a way has been read.
+	 * @param w The read way
+	 */
+	public void onWay(Way w);
+
+	/**
+	 * Called when a relation has been read.
+	 * @param r The read relation
+	 */
+	public void onRelation(Relation r);
+
+	/**
+	 * Called when the whole input has been read.
+	 */
+	public void onEnd();
+
+	/**
+	 * Tells if this handler uses coordinates of way nodes. If so, and the parser has no node location index,
+	 * locations of read nodes are kept in memory during the parse, and way nodes which can't be found are null
+	 * instead of stub objects (which have no real coordinates).
+	 * @return True if way nodes must have their coordinates (false by default)
+	 */
+	public default boolean requiresNodeLocations() {
+		return false;
+	}
+}
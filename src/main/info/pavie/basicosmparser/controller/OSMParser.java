@@ -19,22 +19,26 @@
 
 package info.pavie.basicosmparser.controller;
 
+import info.pavie.basicosmparser.index.NodeLocationIndex;
 import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.ElementStore;
+import info.pavie.basicosmparser.model.ElementType;
 import info.pavie.basicosmparser.model.Node;
 import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Timestamps;
 import info.pavie.basicosmparser.model.Way;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InputStream;
 import java.util.Map;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 import org.xml.sax.helpers.XMLReaderFactory;
@@ -45,35 +49,163 @@ import org.xml.sax.helpers.XMLReaderFactory;
  */
 public class OSMParser extends DefaultHandler {
 //ATTRIBUTES
-	/** The parsed OSM elements **/
-	private Map<String,Element> elements;
+	/** The parsed OSM elements, or null if elements are only streamed to a handler **/
+	private ElementStore elements;
+	/** The node locations index, used to find way nodes which aren't kept (can be null) **/
+	private NodeLocationIndex locations;
+	/** The context of current parsing **/
+	private ParsingContext context;
 	/** The current read element **/
 	private Element current;
+	/** The position in current XML document (can be null) **/
+	private Locator locator;
+	/** Should files be read using the byte tokenizer instead of SAX ? **/
+	private boolean byteTokenizer;
+	/** The dictionary sharing read strings (can be null) **/
+	private StringDictionary dictionary;
+	/** Do read ways only keep node IDs ? **/
+	private boolean lazyWayNodes;
+	/** Are coordinates parsed directly as fixed-point values ? **/
+	private boolean fixedPoint;
+	/** The minimal edition time of kept elements, in seconds since epoch **/
+	private long minTime;
+	/** The maximal edition time of kept elements, in seconds since epoch **/
+	private long maxTime;
+	/** Are elements filtered by edition time ? **/
+	private boolean timeFilter;
+	/** The filter of kept elements (can be null) **/
+	private ElementFilter filter;
+	/** The metrics updated while parsing (can be null) **/
+	private ParserMetrics metrics;
 
 //CONSTRUCTOR
 	public OSMParser() {
 		super();
+		dictionary = new StringDictionary();
+	}
+	
+//ACCESSORS
+	/**
+	 * Get the dictionary used to share equal strings between read elements. Its statistics show how much memory it saved.
+	 * @return The string dictionary, or null if it is disabled
+	 */
+	public StringDictionary getStringDictionary() {
+		return dictionary;
+	}
+	
+//MODIFIERS
+	/**
+	 * Sets the node location index used during parsing. Each read node location is stored in this index,
+	 * and way nodes which are not available as objects (because elements are streamed, or because the node
+	 * appears after the way) are created from it. This allows to get coordinates on every way node
+	 * without keeping nodes in memory.
+	 * @param index The node location index, or null to disable it
+	 */
+	public void setNodeLocationIndex(NodeLocationIndex index) {
+		locations = index;
+	}
+	
+	/**
+	 * Sets the dictionary used to share equal strings (tag keys and values, user names, member roles) between read elements.
+	 * By default, each parser has its own dictionary, kept between calls of parse methods.
+	 * @param dictionary The string dictionary, or null to keep strings as read
+	 */
+	public void setStringDictionary(StringDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+	
+	/**
+	 * Sets how read ways keep their nodes. By default, ways keep node objects, and nodes which appear after a way in data are null.
+	 * With lazy way nodes, ways only keep node IDs, and nodes are found when they are requested with {@link Way#getNodes()}:
+	 * from read elements, then from the node location index (if any), and are null if they can't be found. This allows to keep many ways without keeping
+	 * their node objects, and also resolves nodes appearing after the way. The node location index must stay open
+	 * as long as way nodes are requested.
+	 * @param lazy True to keep only node IDs in ways
+	 */
+	public void setLazyWayNodes(boolean lazy) {
+		lazyWayNodes = lazy;
+	}
+	
+	/**
+	 * Sets how node coordinates are parsed. By default, they are parsed as doubles, and kept exactly as written.
+	 * With fixed-point coordinates, they are directly parsed from characters as integers in 1e-7 degrees
+	 * (the precision of OSM data), which is faster. Coordinates with more decimals are then rounded.
+	 * In both cases, nodes store coordinates as fixed-point values when possible (see {@link Node#getLatE7()}).
+	 * @param fixedPoint True to parse coordinates as fixed-point values
+	 */
+	public void setFixedPointCoordinates(boolean fixedPoint) {
+		this.fixedPoint = fixedPoint;
+	}
+	
+	/**
+	 * Sets the time range of kept elements. Elements edited out of this range, or without timestamp, are skipped
+	 * as soon as their timestamp is read, before reading their tags, nodes or members.
+	 * Kept ways still get the coordinates of their skipped nodes: from the node location index if any, or else from
+	 * locations kept in memory during the parse.
+	 * @param from The minimal edition time, in seconds since epoch (inclusive, Long.MIN_VALUE for no minimum)
+	 * @param to The maximal edition time, in seconds since epoch (inclusive, Long.MAX_VALUE for no maximum)
+	 * @see info.pavie.basicosmparser.model.Timestamps#parse(String)
+	 */
+	public void setTimeRange(long from, long to) {
+		if(from > to) {
+			throw new RuntimeException("Invalid time range");
+		}
+		minTime = from;
+		maxTime = to;
+		timeFilter = true;
+	}
+	
+	/**
+	 * Disables filtering elements by edition time
+	 */
+	public void clearTimeRange() {
+		timeFilter = false;
+	}
+	
+	/**
+	 * Sets the filter of kept elements. Conditions on type, version, timestamp and node location are checked as soon as
+	 * an element starts, so skipped elements are never created. Tag conditions are checked once the element is read.
+	 * Kept ways still get the coordinates of their skipped nodes: from the node location index if any, or else from
+	 * locations kept in memory during the parse. Relation members which are skipped are stub objects.
+	 * @param filter The filter, or null to keep all elements
+	 */
+	public void setElementFilter(ElementFilter filter) {
+		this.filter = filter;
+	}
+	
+	/**
+	 * Sets the metrics updated while parsing. They allow to follow the progress of long parses,
+	 * from another thread, with a {@link ProgressListener}, or through JMX. Read bytes are only counted when parsing files.
+	 * @param metrics The metrics, or null to disable them
+	 */
+	public void setMetrics(ParserMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Sets the engine used to read files. By default, files are read with a standard SAX parser.
+	 * The byte tokenizer is a faster reader specialised for OSM XML: it scans raw UTF-8 bytes and parses
+	 * numbers without creating intermediate strings. It only supports the XML subset used by OSM files
+	 * (UTF-8 encoding, no DTD, no CDATA section), and throws a {@link SAXException} on other content.
+	 * This setting only applies to parse methods reading a {@link File}.
+	 * @param enabled True to read files with the byte tokenizer, false to use SAX
+	 */
+	public void setByteTokenizer(boolean enabled) {
+		byteTokenizer = enabled;
 	}
 	
 //OTHER METHODS
 	/**
 	 * Parses a XML file and creates OSM Java objects
-	 * @param f The OSM database extract, in XML format, as a file
+	 * @param f The OSM database extract, in XML format, as a file (can be compressed with gzip or bzip2)
 	 * @return The corresponding OSM objects as a Map. Keys are elements ID, and values are OSM elements objects.
 	 * @throws IOException If an error occurs during file reading
 	 * @throws SAXException If an error occurs during parsing
 	 */
 	public Map<String,Element> parse(File f) throws IOException, SAXException {
-		//File check
-		if(!f.exists() || !f.isFile()) {
-			throw new FileNotFoundException();
-		}
-		
-		if(!f.canRead()) {
-			throw new IOException("Can't read file");
-		}
-		
-		return parse(new InputSource(new FileReader(f)));
+		elements = new ElementStore();
+		read(f, new ParsingContext(elements, locations));
+		return elements.asMap();
 	}
 	
 	/**
@@ -96,41 +228,126 @@ public class OSMParser extends DefaultHandler {
 	 */
 	public Map<String,Element> parse(InputSource input) throws SAXException, IOException {
 		//Init elements set
-		elements = new HashMap<String,Element>();
-
+		elements = new ElementStore();
+		
+		read(input, new ParsingContext(elements, locations));
+		
+		return elements.asMap();
+	}
+	
+	/**
+	 * Get the elements read during the last call of a parse method returning a Map.
+	 * The returned store is the one behind this Map, and allows typed lookups by numeric ID.
+	 * @return The read elements, or null if elements were only sent to an {@link OSMElementHandler}
+	 */
+	public ElementStore getElementStore() {
+		return elements;
+	}
+	
+	/**
+	 * Parses a XML file, and sends each OSM element to the given handler as soon as it is read.
+	 * Read elements are not kept by the parser, so memory usage doesn't depend on file size.
+	 * As a consequence, way nodes and relation members are stub objects, which only define their ID
+	 * (way nodes also have coordinates if a {@link NodeLocationIndex} is set, or if the handler
+	 * {@link OSMElementHandler#requiresNodeLocations() requires node locations}).
+	 * @param f The OSM database extract, in XML format, as a file (can be compressed with gzip or bzip2)
+	 * @param handler The handler which will receive read elements
+	 * @throws IOException If an error occurs during file reading
+	 * @throws SAXException If an error occurs during parsing
+	 */
+	public void parse(File f, OSMElementHandler handler) throws IOException, SAXException {
+		elements = null;
+		read(f, new ParsingContext(handler, locations));
+	}
+	
+	/**
+	 * Parses a XML input, and sends each OSM element to the given handler as soon as it is read.
+	 * Read elements are not kept by the parser, so memory usage doesn't depend on input size.
+	 * As a consequence, way nodes and relation members are stub objects, which only define their ID
+	 * (way nodes also have coordinates if a {@link NodeLocationIndex} is set, or if the handler
+	 * {@link OSMElementHandler#requiresNodeLocations() requires node locations}).
+	 * @param input The OSM database extract, in XML format, as an InputSource
+	 * @param handler The handler which will receive read elements
+	 * @throws IOException If an error occurs during reading
+	 * @throws SAXException If an error occurs during parsing
+	 */
+	public void parse(InputSource input, OSMElementHandler handler) throws SAXException, IOException {
+		elements = null;
+		read(input, new ParsingContext(handler, locations));
+	}
+	
+	/**
+	 * Reads the given XML input, and sends elements to the context
+	 * @param input The OSM XML input
+	 * @param context The parsing context
+	 * @throws IOException If an error occurs during reading
+	 * @throws SAXException If an error occurs during parsing
+	 */
+	private void read(InputSource input, ParsingContext context) throws SAXException, IOException {
+		start(context, -1);
+		read(input);
+	}
+	
+	/**
+	 * Reads the given XML input with SAX, and sends elements to the context set by {@link #start(ParsingContext)}
+	 * @param input The OSM XML input
+	 * @throws IOException If an error occurs during reading
+	 * @throws SAXException If an error occurs during parsing
+	 */
+	private void read(InputSource input) throws SAXException, IOException {
 		//Start parsing
 		XMLReader xr = XMLReaderFactory.createXMLReader();
 		xr.setContentHandler(this);
 		xr.setErrorHandler(this);
 	    xr.parse(input);
-		
-		return elements;
 	}
 	
 	/**
-	 * Get an object ID, in this format: X000000, where X is the object type (N for nodes, W for ways, R for relations).
-	 * @param type The object type (node, way or relation)
-	 * @param ref The object ID in a given type
-	 * @return The object ID, unique for all types
+	 * Prepares the parser for reading a new input. Event handlers will then send elements to the given context.
+	 * @param context The parsing context
 	 */
-	private String getId(String type, String ref) {
-		String result = null;
-		
-		switch(type) {
-			case "node":
-				result="N"+ref;
-				break;
-			case "way":
-				result="W"+ref;
-				break;
-			case "relation":
-				result="R"+ref;
-				break;
-			default:
-				throw new RuntimeException("Unknown element type: "+type);
+	void start(ParsingContext context) {
+		start(context, -1);
+	}
+	
+	/**
+	 * Prepares the parser for reading a new input. Event handlers will then send elements to the context.
+	 * @param context The parsing context
+	 * @param inputSize The input size in bytes, or -1 if unknown
+	 */
+	private void start(ParsingContext context, long inputSize) {
+		context.setDictionary(dictionary);
+		context.setWayNodeIds(lazyWayNodes);
+		context.setFixedPoint(fixedPoint);
+		if(timeFilter) {
+			context.setTimeRange(minTime, maxTime);
 		}
+		context.setFilter(filter);
+		context.setMetrics(metrics, inputSize);
+		this.context = context;
+		current = null;
+	}
+	
+	/**
+	 * Reads the given XML file, with the byte tokenizer if enabled, and sends elements to the context.
+	 * Compressed files (gzip or bzip2) are decompressed on a separate thread while being parsed.
+	 * @param f The OSM XML file
+	 * @param context The parsing context
+	 * @throws IOException If an error occurs during reading
+	 * @throws SAXException If an error occurs during parsing
+	 */
+	private void read(File f, ParsingContext context) throws SAXException, IOException {
+		//Started before opening file, as opening already reads its first bytes
+		start(context, f.length());
 		
-		return result;
+		try(InputStream in = Compression.open(f, metrics)) {
+			if(byteTokenizer) {
+				new OSMTokenizer(context).parse(in);
+			}
+			else {
+				read(new InputSource(in));
+			}
+		}
 	}
 	
 /*
@@ -141,13 +358,13 @@ public class OSMParser extends DefaultHandler {
 //		// TODO Auto-generated method stub
 //		super.startDocument();
 //	}
-//
-//	@Override
-//	public void endDocument() throws SAXException {
-//		// TODO Auto-generated method stub
-//		super.endDocument();
-//	}
-//	
+
+	@Override
+	public void endDocument() throws SAXException {
+		super.endDocument();
+		context.end();
+	}
+	
 //	@Override
 //	public void characters(char[] ch, int start, int length) throws SAXException {
 //		// TODO Auto-generated method stub
@@ -159,133 +376,148 @@ public class OSMParser extends DefaultHandler {
 		super.endElement(uri, localName, qName);
 		
 		if(localName.equals("node") || localName.equals("way") || localName.equals("relation")) {
-			//Add element to list, and delete current
+			//Send element to context, and delete current
 			if(current != null) {
-				if( (localName.equals("way") && ((Way) current).getNodes().size() >= 2)
-						|| localName.equals("node")
-						|| (localName.equals("relation") && ((Relation) current).getMembers().size() > 0)) {
-					
-					elements.put(current.getId(), current);
-				}
+				context.elementRead(current);
 				current = null;
 			}
 		}
 	}
 
+	@Override
+	public void setDocumentLocator(Locator locator) {
+		this.locator = locator;
+	}
+
 	@Override
 	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
 		super.startElement(uri, localName, qName, attributes);
 		
 		//Case of node
 		if(localName.equals("node")) {
-			Node n = new Node(
-							Long.parseLong(attributes.getValue("id")),
-							Double.parseDouble(attributes.getValue("lat")),
-							Double.parseDouble(attributes.getValue("lon"))
-							);
-			n.setUser(attributes.getValue("user"));
+			long id = Long.parseLong(attributes.getValue("id"));
+			long time = timestamp(attributes);
+			int version = version(attributes);
+			int latE7 = 0, lonE7 = 0;
+			double lat, lon;
 			
-			if(attributes.getValue("uid") != null) {
-				n.setUid(Long.parseLong(attributes.getValue("uid")));
+			if(context.isFixedPoint()) {
+				latE7 = Coordinates.parse(attributes.getValue("lat"));
+				lonE7 = Coordinates.parse(attributes.getValue("lon"));
+				lat = latE7 / Node.SCALE;
+				lon = lonE7 / Node.SCALE;
 			}
-			
-			n.setVisible(Boolean.parseBoolean(attributes.getValue("visible")));
-			
-			if(attributes.getValue("version") != null) {
-				n.setVersion(Integer.parseInt(attributes.getValue("version")));
+			else {
+				lat = Double.parseDouble(attributes.getValue("lat"));
+				lon = Double.parseDouble(attributes.getValue("lon"));
 			}
 			
-			if(attributes.getValue("changeset") != null) {
-				n.setChangeset(Long.parseLong(attributes.getValue("changeset")));
-			}
+			context.nodeCreated(id, lat, lon);
 			
-			n.setTimestamp(attributes.getValue("timestamp"));
-			current = n;
+			//Nodes out of time range, or refused by filter, are not created
+			if(context.accept(ElementType.NODE, version, time) && context.acceptLocation(lat, lon)) {
+				Node n = context.isFixedPoint() ? Node.fromFixedPoint(id, latE7, lonE7) : new Node(id, lat, lon);
+				setInformations(n, attributes, time, version);
+				current = n;
+			}
 		}
 		//Case of way
 		else if(localName.equals("way")) {
-			Way w = new Way(Long.parseLong(attributes.getValue("id")));
-			w.setUser(attributes.getValue("user"));
-			
-			if(attributes.getValue("uid") != null) {
-				w.setUid(Long.parseLong(attributes.getValue("uid")));
-			}
-			
-			w.setVisible(Boolean.parseBoolean(attributes.getValue("visible")));
+			long time = timestamp(attributes);
+			int version = version(attributes);
 			
-			if(attributes.getValue("version") != null) {
-				w.setVersion(Integer.parseInt(attributes.getValue("version")));
+			if(context.accept(ElementType.WAY, version, time)) {
+				Way w = new Way(Long.parseLong(attributes.getValue("id")));
+				setInformations(w, attributes, time, version);
+				current = w;
 			}
-			
-			if(attributes.getValue("changeset") != null) {
-				w.setChangeset(Long.parseLong(attributes.getValue("changeset")));
-			}
-			
-			w.setTimestamp(attributes.getValue("timestamp"));
-			current = w;
 		}
 		//Case of way node
 		else if(localName.equals("nd")) {
-			((Way) current).addNode((Node) elements.get("N"+attributes.getValue("ref")));
+			if(current != null) {
+				context.addWayNode((Way) current, Long.parseLong(attributes.getValue("ref")));
+			}
 		}
 		//Case of relation
 		else if(localName.equals("relation")) {
-			Relation r = new Relation(Long.parseLong(attributes.getValue("id")));
-			r.setUser(attributes.getValue("user"));
-			
-			if(attributes.getValue("uid") != null) {
-				r.setUid(Long.parseLong(attributes.getValue("uid")));
-			}
-			
-			r.setVisible(Boolean.parseBoolean(attributes.getValue("visible")));
-			
-			if(attributes.getValue("version") != null) {
-				r.setVersion(Integer.parseInt(attributes.getValue("version")));
-			}
+			long time = timestamp(attributes);
+			int version = version(attributes);
 			
-			if(attributes.getValue("changeset") != null) {
-				r.setChangeset(Long.parseLong(attributes.getValue("changeset")));
+			if(context.accept(ElementType.RELATION, version, time)) {
+				Relation r = new Relation(Long.parseLong(attributes.getValue("id")));
+				setInformations(r, attributes, time, version);
+				current = r;
 			}
-			
-			r.setTimestamp(attributes.getValue("timestamp"));
-			current = r;
 		}
 		//Case of relation member
 		else if(localName.equals("member")) {
-			String refMember = getId(attributes.getValue("type"), attributes.getValue("ref"));
-			
-			//If member isn't contained in data, create stub object
-			Element elemMember = null;
-			if(!elements.containsKey(refMember)) {
-				switch(attributes.getValue("type")) {
-					case "node":
-						elemMember = new Node(Long.parseLong(attributes.getValue("ref")), 0, 0);
-						break;
-					case "way":
-						elemMember = new Way(Long.parseLong(attributes.getValue("ref")));
-						break;
-					case "relation":
-						elemMember = new Relation(Long.parseLong(attributes.getValue("ref")));
-						break;
-				}
-			} else {
-				elemMember = elements.get(refMember);
+			if(current != null) {
+				Element elemMember = context.findMember(attributes.getValue("type"), Long.parseLong(attributes.getValue("ref")));
+				
+				//Add member
+				((Relation) current).addMember(
+						context.intern(attributes.getValue("role")),
+						elemMember
+						);
 			}
-			
-			//Add member
-			((Relation) current).addMember(
-					attributes.getValue("role"),
-					elemMember
-					);
 		}
 		//Case of tag
 		else if(localName.equals("tag")) {
 			if(current != null) {
-				current.addTag(attributes.getValue("k"), attributes.getValue("v"));
+				current.addTag(context.intern(attributes.getValue("k")), context.intern(attributes.getValue("v")));
 			}
 		}
 	}
 	
+	/**
+	 * Sets the common informations of a read element
+	 * @param e The element
+	 * @param attributes The XML element attributes
+	 * @param time The edition time, in seconds since epoch
+	 * @param version The element version
+	 */
+	private void setInformations(Element e, Attributes attributes, long time, int version) {
+		e.setUser(context.intern(attributes.getValue("user")));
+		
+		if(attributes.getValue("uid") != null) {
+			e.setUid(Long.parseLong(attributes.getValue("uid")));
+		}
+		
+		e.setVisible(Boolean.parseBoolean(attributes.getValue("visible")));
+		
+		e.setVersion(version);
+		
+		if(attributes.getValue("changeset") != null) {
+			e.setChangeset(Long.parseLong(attributes.getValue("changeset")));
+		}
+		
+		e.setTimestampSeconds(time);
+	}
+	
+	/**
+	 * @param attributes The XML element attributes
+	 * @return The timestamp attribute value, in seconds since epoch ({@link Timestamps#NONE} if missing)
+	 * @throws SAXException If timestamp is invalid
+	 */
+	private long timestamp(Attributes attributes) throws SAXException {
+		String timestamp = attributes.getValue("timestamp");
+		try {
+			return Timestamps.parse(timestamp);
+		}
+		catch(RuntimeException e) {
+			throw new SAXParseException("Invalid timestamp: "+timestamp, locator, e);
+		}
+	}
+	
+	/**
+	 * @param attributes The XML element attributes
+	 * @return The element version (1 if undefined)
+	 */
+	private static int version(Attributes attributes) {
+		String version = attributes.getValue("version");
+		return (version == null) ? 1 : Integer.parseInt(version);
+	}
+	
 	/**
 	 * Displays some statistics about given elements
 	 * @param elements The elements
@@ -304,4 +536,5 @@ public class OSMParser extends DefaultHandler {
 		System.out.println("* Ways:\t\t"+nbWays);
 		System.out.println("* Relations:\t"+nbRels);
 	}
+
 }
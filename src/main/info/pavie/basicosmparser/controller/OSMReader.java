@@ -0,0 +1,250 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.index.NodeLocationIndex;
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * OSMReader reads a XML file (OSM database extract) on demand, and returns OSM elements one by one.
+ * Unlike {@link OSMParser}, the caller controls the reading: input is only read when the next element is requested,
+ * so reading can be paused or stopped at any time. Elements are created the same way as in {@link OSMParser}.
+ * Read elements are not kept, so way nodes and relation members are stub objects, which only define their ID
+ * (way nodes also have coordinates if a {@link NodeLocationIndex} is given).
+ * The reader must be closed after use, which also closes the read input.
+ * @author Adrien PAVIE
+ */
+public class OSMReader implements Iterator<Element>, Closeable {
+//ATTRIBUTES
+	/** The read input **/
+	private final InputStream input;
+	/** The XML pull reader **/
+	private final XMLStreamReader xml;
+	/** The parser which creates elements from XML events **/
+	private final OSMParser parser;
+	/** The elements read but not returned yet **/
+	private final Queue<Element> pending;
+	/** The values of current XML element attributes **/
+	private final AttributesImpl attributes;
+	/** Is the end of input reached ? **/
+	private boolean ended;
+
+//CONSTRUCTOR
+	/**
+	 * Creates a reader on a XML file
+	 * @param f The OSM database extract, in XML format, as a file (can be compressed with gzip or bzip2)
+	 * @throws IOException If the file can't be opened
+	 */
+	public OSMReader(File f) throws IOException {
+		this(Compression.open(f), null);
+	}
+
+	/**
+	 * Creates a reader on a XML input
+	 * @param input The OSM database extract, in XML format, as a stream
+	 * @throws IOException If the input can't be read
+	 */
+	public OSMReader(InputStream input) throws IOException {
+		this(input, null);
+	}
+
+	/**
+	 * Creates a reader on a XML input, which uses a node location index.
+	 * Each read node location is stored in this index, and way nodes are created from it.
+	 * @param input The OSM database extract, in XML format, as a stream
+	 * @param index The node location index (can be null)
+	 * @throws IOException If the input can't be read
+	 */
+	public OSMReader(InputStream input, NodeLocationIndex index) throws IOException {
+		if(input == null) {
+			throw new NullPointerException("Input can't be null");
+		}
+		
+		this.input = input;
+		pending = new ArrayDeque<Element>();
+		attributes = new AttributesImpl();
+		ended = false;
+		
+		try {
+			xml = XMLInputFactory.newInstance().createXMLStreamReader(input);
+		} catch (XMLStreamException e) {
+			input.close();
+			throw new IOException("Can't read XML input", e);
+		}
+		
+		parser = new OSMParser();
+		parser.start(new ParsingContext(new QueueHandler(pending), index));
+	}
+
+//ACCESSORS
+	/**
+	 * Reads input until next element is available.
+	 * @return True if there is another element to read
+	 * @throws UncheckedIOException If input is not valid OSM XML
+	 */
+	@Override
+	public boolean hasNext() {
+		while(pending.isEmpty() && !ended) {
+			readEvent();
+		}
+		return !pending.isEmpty();
+	}
+
+	/**
+	 * @return The next OSM element
+	 * @throws NoSuchElementException If there is no more element
+	 * @throws UncheckedIOException If input is not valid OSM XML
+	 */
+	@Override
+	public Element next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return pending.poll();
+	}
+
+	/**
+	 * Get the remaining elements as a sequential stream.
+	 * Closing the stream closes this reader.
+	 * @return The elements stream
+	 */
+	public Stream<Element> stream() {
+		return StreamSupport.stream(
+					Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+					false
+				).onClose(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							close();
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+				});
+	}
+
+//OTHER METHODS
+	/**
+	 * Reads the next XML event, and sends it to the parser
+	 */
+	private void readEvent() {
+		try {
+			if(!xml.hasNext()) {
+				ended = true;
+				parser.endDocument();
+				return;
+			}
+			
+			switch(xml.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					attributes.clear();
+					for(int i=0; i < xml.getAttributeCount(); i++) {
+						String name = xml.getAttributeLocalName(i);
+						attributes.addAttribute("", name, name, "CDATA", xml.getAttributeValue(i));
+					}
+					parser.startElement("", xml.getLocalName(), xml.getLocalName(), attributes);
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					parser.endElement("", xml.getLocalName(), xml.getLocalName());
+					break;
+			}
+		}
+		catch(XMLStreamException | SAXException e) {
+			ended = true;
+			throw new UncheckedIOException(new IOException("Invalid OSM XML input", e));
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		ended = true;
+		pending.clear();
+		
+		try {
+			xml.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+		finally {
+			input.close();
+		}
+	}
+
+//INNER CLASS QueueHandler
+	/**
+	 * This handler puts read elements in a queue, until they are returned by the reader.
+	 */
+	private static class QueueHandler implements OSMElementHandler {
+	//ATTRIBUTES
+		/** The queue to fill **/
+		private final Queue<Element> queue;
+
+	//CONSTRUCTOR
+		private QueueHandler(Queue<Element> queue) {
+			this.queue = queue;
+		}
+
+	//OTHER METHODS
+		@Override
+		public void onNode(Node n) {
+			queue.add(n);
+		}
+
+		@Override
+		public void onWay(Way w) {
+			queue.add(w);
+		}
+
+		@Override
+		public void onRelation(Relation r) {
+			queue.add(r);
+		}
+
+		@Override
+		public void onEnd() {
+		}
+	}
+}
@@ -0,0 +1,851 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.ElementType;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Timestamps;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.xml.sax.SAXException;
+
+/**
+ * OSMTokenizer is a XML reader specialised for OSM XML files, encoded in UTF-8.
+ * It scans raw bytes, recognises elements by their names bytes, and parses numbers directly from bytes,
+ * without creating intermediate strings. Only the XML subset used by OSM files is supported
+ * (no DTD, no CDATA section, no namespace), other content causes a {@link SAXException}.
+ * Elements are created the same way as in {@link OSMParser#startElement(String, String, String, org.xml.sax.Attributes)}.
+ * @author Adrien PAVIE
+ */
+class OSMTokenizer {
+//ATTRIBUTES
+	/** The initial buffer size **/
+	private static final int BUFFER_SIZE = 1 << 20;
+	/** Powers of ten, exactly representable as double **/
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/** Attribute: id **/
+	private static final int ID = 0;
+	/** Attribute: lat **/
+	private static final int LAT = 1;
+	/** Attribute: lon **/
+	private static final int LON = 2;
+	/** Attribute: user **/
+	private static final int USER = 3;
+	/** Attribute: uid **/
+	private static final int UID = 4;
+	/** Attribute: visible **/
+	private static final int VISIBLE = 5;
+	/** Attribute: version **/
+	private static final int VERSION = 6;
+	/** Attribute: changeset **/
+	private static final int CHANGESET = 7;
+	/** Attribute: timestamp **/
+	private static final int TIMESTAMP = 8;
+	/** Attribute: ref **/
+	private static final int REF = 9;
+	/** Attribute: type **/
+	private static final int TYPE = 10;
+	/** Attribute: role **/
+	private static final int ROLE = 11;
+	/** Attribute: k **/
+	private static final int K = 12;
+	/** Attribute: v **/
+	private static final int V = 13;
+	/** Amount of known attributes **/
+	private static final int ATTRIBUTES = 14;
+
+	/** Element: unknown **/
+	private static final int OTHER = 0;
+	/** Element: node **/
+	private static final int NODE = 1;
+	/** Element: way **/
+	private static final int WAY = 2;
+	/** Element: nd **/
+	private static final int ND = 3;
+	/** Element: relation **/
+	private static final int RELATION = 4;
+	/** Element: member **/
+	private static final int MEMBER = 5;
+	/** Element: tag **/
+	private static final int TAG = 6;
+
+	/** The parsing context **/
+	private final ParsingContext context;
+	/** The read input **/
+	private InputStream in;
+	/** The bytes buffer **/
+	private byte[] buf;
+	/** The current position in buffer **/
+	private int pos;
+	/** The end of valid data in buffer **/
+	private int limit;
+	/** Is the end of input reached ? **/
+	private boolean eof;
+	/** The amount of bytes discarded from buffer (for error messages) **/
+	private long discarded;
+	/** The known attributes values start, in buffer (-1 if not defined) **/
+	private final int[] attrStart;
+	/** The known attributes values end, in buffer **/
+	private final int[] attrEnd;
+	/** The current read element **/
+	private Element current;
+
+//CONSTRUCTOR
+	/**
+	 * Default constructor
+	 * @param context The parsing context
+	 */
+	OSMTokenizer(ParsingContext context) {
+		this.context = context;
+		attrStart = new int[ATTRIBUTES];
+		attrEnd = new int[ATTRIBUTES];
+	}
+
+//OTHER METHODS
+	/**
+	 * Reads the whole input, and sends elements to the context
+	 * @param in The OSM XML input, in UTF-8
+	 * @throws IOException If an error occurs during reading
+	 * @throws SAXException If input is not supported OSM XML
+	 */
+	void parse(InputStream in) throws IOException, SAXException {
+		this.in = in;
+		buf = new byte[BUFFER_SIZE];
+		pos = 0;
+		limit = 0;
+		eof = false;
+		discarded = 0;
+		current = null;
+		
+		while(true) {
+			//Find next markup
+			while(pos < limit && buf[pos] != '<') {
+				pos++;
+			}
+			
+			if(pos >= limit) {
+				discarded += limit;
+				pos = 0;
+				limit = 0;
+				if(!fill()) {
+					break;
+				}
+				continue;
+			}
+
+			//Read markup, and read more data if it isn't complete in buffer
+			int start = pos;
+			while(!readMarkup()) {
+				pos = start;
+				if(eof) {
+					throw error("Unexpected end of file");
+				}
+				compact();
+				start = pos;
+				fill();
+			}
+		}
+		
+		context.end();
+	}
+
+	/**
+	 * Reads a markup, starting at current position ('&lt;' character)
+	 * @return False if markup isn't complete in buffer
+	 * @throws SAXException If markup is not supported
+	 */
+	private boolean readMarkup() throws SAXException {
+		int p = pos + 1;
+		if(p >= limit) {
+			return false;
+		}
+		
+		byte b = buf[p];
+
+		//Processing instruction
+		if(b == '?') {
+			int end = indexOf('?', '>', p + 1);
+			if(end < 0) {
+				return false;
+			}
+			checkDeclaration(p + 1, end);
+			pos = end + 2;
+		}
+		//Comment
+		else if(b == '!') {
+			if(p + 3 >= limit) {
+				return false;
+			}
+			if(buf[p+1] != '-' || buf[p+2] != '-') {
+				throw error("Unsupported XML markup (DTD or CDATA)");
+			}
+			int end = p + 3;
+			do {
+				end = indexOf('-', '-', end);
+				if(end < 0 || end + 2 >= limit) {
+					return false;
+				}
+				end++;
+			} while(buf[end+1] != '>');
+			pos = end + 2;
+		}
+		//End tag
+		else if(b == '/') {
+			int end = p + 1;
+			while(end < limit && buf[end] != '>') {
+				end++;
+			}
+			if(end >= limit) {
+				return false;
+			}
+			
+			//Name ends before optional spaces
+			int nameEnd = p + 1;
+			while(nameEnd < end && !isSpace(buf[nameEnd])) {
+				nameEnd++;
+			}
+			int element = element(p + 1, nameEnd);
+			if(element == NODE || element == WAY || element == RELATION) {
+				endElement();
+			}
+			pos = end + 1;
+		}
+		//Start tag
+		else {
+			int nameEnd = p;
+			while(nameEnd < limit && !isSpace(buf[nameEnd]) && buf[nameEnd] != '/' && buf[nameEnd] != '>') {
+				nameEnd++;
+			}
+			if(nameEnd >= limit) {
+				return false;
+			}
+			
+			int element = element(p, nameEnd);
+			for(int i=0; i < ATTRIBUTES; i++) {
+				attrStart[i] = -1;
+			}
+
+			//Attributes
+			int a = nameEnd;
+			boolean closed = false;
+			while(true) {
+				while(a < limit && isSpace(buf[a])) {
+					a++;
+				}
+				if(a >= limit) {
+					return false;
+				}
+				if(buf[a] == '>') {
+					a++;
+					break;
+				}
+				if(buf[a] == '/') {
+					if(a + 1 >= limit) {
+						return false;
+					}
+					if(buf[a+1] != '>') {
+						throw error("Invalid tag");
+					}
+					closed = true;
+					a += 2;
+					break;
+				}
+				
+				int attrNameStart = a;
+				while(a < limit && buf[a] != '=' && !isSpace(buf[a])) {
+					a++;
+				}
+				int attrNameEnd = a;
+				while(a < limit && buf[a] != '\'' && buf[a] != '"') {
+					if(buf[a] != '=' && !isSpace(buf[a])) {
+						throw error("Invalid attribute");
+					}
+					a++;
+				}
+				if(a >= limit) {
+					return false;
+				}
+				byte quote = buf[a];
+				int valueStart = ++a;
+				while(a < limit && buf[a] != quote) {
+					if(buf[a] == '<') {
+						throw error("Invalid attribute value");
+					}
+					a++;
+				}
+				if(a >= limit) {
+					return false;
+				}
+				
+				if(element != OTHER) {
+					int attr = attribute(attrNameStart, attrNameEnd);
+					if(attr >= 0) {
+						attrStart[attr] = valueStart;
+						attrEnd[attr] = a;
+					}
+				}
+				a++;
+			}
+			
+			startElement(element, closed);
+			if(closed && (element == NODE || element == WAY || element == RELATION)) {
+				endElement();
+			}
+			pos = a;
+		}
+		
+		return true;
+	}
+
+	/**
+	 * Creates objects for a read start tag
+	 * @param element The element kind
+	 * @param closed True if the tag is self-closing (element has no content)
+	 * @throws SAXException If a required attribute is missing or invalid
+	 */
+	private void startElement(int element, boolean closed) throws SAXException {
+		switch(element) {
+			case NODE:
+				long id = parseLong(ID);
+				long time = timestamp();
+				int version = version();
+				int latE7 = 0, lonE7 = 0;
+				double lat, lon;
+				
+				if(context.isFixedPoint()) {
+					latE7 = parseFixed(LAT);
+					lonE7 = parseFixed(LON);
+					lat = latE7 / Node.SCALE;
+					lon = lonE7 / Node.SCALE;
+				}
+				else {
+					lat = parseDouble(LAT);
+					lon = parseDouble(LON);
+				}
+				
+				context.nodeCreated(id, lat, lon);
+				
+				//Nodes out of time range, or refused by filter, are not created (nodes without tags neither, if tags are required)
+				if(context.accept(ElementType.NODE, version, time) && context.acceptLocation(lat, lon) && !(closed && context.requiresTags())) {
+					Node n = context.isFixedPoint() ? Node.fromFixedPoint(id, latE7, lonE7) : new Node(id, lat, lon);
+					setCommon(n, time, version);
+					current = n;
+				}
+				break;
+			case WAY:
+				time = timestamp();
+				version = version();
+				if(context.accept(ElementType.WAY, version, time)) {
+					Way w = new Way(parseLong(ID));
+					setCommon(w, time, version);
+					current = w;
+				}
+				break;
+			case ND:
+				if(current instanceof Way) {
+					context.addWayNode((Way) current, parseLong(REF));
+				}
+				break;
+			case RELATION:
+				time = timestamp();
+				version = version();
+				if(context.accept(ElementType.RELATION, version, time)) {
+					Relation r = new Relation(parseLong(ID));
+					setCommon(r, time, version);
+					current = r;
+				}
+				break;
+			case MEMBER:
+				if(current instanceof Relation) {
+					Element member = context.findMember(string(TYPE), parseLong(REF));
+					((Relation) current).addMember(context.intern(string(ROLE)), member);
+				}
+				break;
+			case TAG:
+				if(current != null) {
+					current.addTag(context.intern(string(K)), context.intern(string(V)));
+				}
+				break;
+		}
+	}
+
+	/**
+	 * Sends the current element to the context
+	 */
+	private void endElement() {
+		if(current != null) {
+			context.elementRead(current);
+			current = null;
+		}
+	}
+
+	/**
+	 * Sets the metadata of a new element
+	 * @param e The element
+	 * @param time The edition time, in seconds since epoch
+	 * @param version The element version
+	 * @throws SAXException If an attribute is invalid
+	 */
+	private void setCommon(Element e, long time, int version) throws SAXException {
+		e.setUser(context.intern(string(USER)));
+		
+		if(attrStart[UID] >= 0) {
+			e.setUid(parseLong(UID));
+		}
+		
+		e.setVisible(isTrue(VISIBLE));
+		
+		e.setVersion(version);
+		
+		if(attrStart[CHANGESET] >= 0) {
+			e.setChangeset(parseLong(CHANGESET));
+		}
+		
+		e.setTimestampSeconds(time);
+	}
+
+	/**
+	 * @return The version attribute value (1 if missing)
+	 * @throws SAXException If version is invalid
+	 */
+	private int version() throws SAXException {
+		return (attrStart[VERSION] < 0) ? 1 : (int) parseLong(VERSION);
+	}
+
+	/**
+	 * @return The timestamp attribute value, in seconds since epoch ({@link Timestamps#NONE} if missing)
+	 * @throws SAXException If timestamp is invalid
+	 */
+	private long timestamp() throws SAXException {
+		if(attrStart[TIMESTAMP] < 0) {
+			return Timestamps.NONE;
+		}
+		
+		try {
+			return Timestamps.parse(buf, attrStart[TIMESTAMP], attrEnd[TIMESTAMP]);
+		}
+		catch(RuntimeException e) {
+			throw error("Invalid timestamp: "+rawString(TIMESTAMP));
+		}
+	}
+
+	/**
+	 * Checks the XML declaration encoding
+	 * @param start The declaration start
+	 * @param end The declaration end
+	 * @throws SAXException If encoding isn't UTF-8
+	 */
+	private void checkDeclaration(int start, int end) throws SAXException {
+		String declaration = new String(buf, start, end - start, StandardCharsets.US_ASCII);
+		int encoding = declaration.indexOf("encoding");
+		if(encoding >= 0) {
+			String value = declaration.substring(encoding + 8).replaceAll("^[\\s=]*[\"']([^\"']*).*$", "$1");
+			if(!value.equalsIgnoreCase("UTF-8") && !value.equalsIgnoreCase("US-ASCII")) {
+				throw error("Unsupported encoding: "+value);
+			}
+		}
+	}
+
+	/**
+	 * Finds the element kind from its name
+	 * @param start The name start
+	 * @param end The name end
+	 * @return The element kind
+	 */
+	private int element(int start, int end) {
+		int length = end - start;
+		int result = OTHER;
+		
+		switch(buf[start]) {
+			case 'n':
+				if(length == 2 && buf[start+1] == 'd') {
+					result = ND;
+				}
+				else if(length == 4 && buf[start+1] == 'o' && buf[start+2] == 'd' && buf[start+3] == 'e') {
+					result = NODE;
+				}
+				break;
+			case 'w':
+				if(length == 3 && buf[start+1] == 'a' && buf[start+2] == 'y') {
+					result = WAY;
+				}
+				break;
+			case 'r':
+				if(length == 8 && equals(start, "relation")) {
+					result = RELATION;
+				}
+				break;
+			case 'm':
+				if(length == 6 && equals(start, "member")) {
+					result = MEMBER;
+				}
+				break;
+			case 't':
+				if(length == 3 && buf[start+1] == 'a' && buf[start+2] == 'g') {
+					result = TAG;
+				}
+				break;
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Finds the attribute from its name
+	 * @param start The name start
+	 * @param end The name end
+	 * @return The attribute, or -1 if unknown
+	 */
+	private int attribute(int start, int end) {
+		int length = end - start;
+		int result = -1;
+		
+		switch(buf[start]) {
+			case 'i':
+				if(length == 2 && buf[start+1] == 'd') { result = ID; }
+				break;
+			case 'l':
+				if(length == 3 && buf[start+1] == 'a' && buf[start+2] == 't') { result = LAT; }
+				else if(length == 3 && buf[start+1] == 'o' && buf[start+2] == 'n') { result = LON; }
+				break;
+			case 'u':
+				if(length == 4 && equals(start, "user")) { result = USER; }
+				else if(length == 3 && buf[start+1] == 'i' && buf[start+2] == 'd') { result = UID; }
+				break;
+			case 'v':
+				if(length == 1) { result = V; }
+				else if(length == 7 && equals(start, "visible")) { result = VISIBLE; }
+				else if(length == 7 && equals(start, "version")) { result = VERSION; }
+				break;
+			case 'c':
+				if(length == 9 && equals(start, "changeset")) { result = CHANGESET; }
+				break;
+			case 't':
+				if(length == 9 && equals(start, "timestamp")) { result = TIMESTAMP; }
+				else if(length == 4 && equals(start, "type")) { result = TYPE; }
+				break;
+			case 'r':
+				if(length == 3 && buf[start+1] == 'e' && buf[start+2] == 'f') { result = REF; }
+				else if(length == 4 && equals(start, "role")) { result = ROLE; }
+				break;
+			case 'k':
+				if(length == 1) { result = K; }
+				break;
+		}
+		
+		return result;
+	}
+
+	/**
+	 * @param start The position in buffer
+	 * @param name The expected ASCII name
+	 * @return True if buffer contains the name at this position
+	 */
+	private boolean equals(int start, String name) {
+		for(int i=0; i < name.length(); i++) {
+			if(buf[start+i] != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param attr The attribute
+	 * @return The attribute value, as a long
+	 * @throws SAXException If attribute is missing or not a number
+	 */
+	private long parseLong(int attr) throws SAXException {
+		int p = attrStart[attr];
+		int end = attrEnd[attr];
+		if(p < 0 || p == end) {
+			throw error("Missing numeric attribute");
+		}
+		
+		boolean negative = buf[p] == '-';
+		if(negative || buf[p] == '+') {
+			p++;
+		}
+		if(p == end || end - p > 18) {
+			try {
+				return Long.parseLong(rawString(attr));
+			}
+			catch(NumberFormatException e) {
+				throw error("Invalid number: "+rawString(attr));
+			}
+		}
+		
+		long result = 0;
+		for(; p < end; p++) {
+			int digit = buf[p] - '0';
+			if(digit < 0 || digit > 9) {
+				throw error("Invalid number: "+rawString(attr));
+			}
+			result = result * 10 + digit;
+		}
+		
+		return negative ? -result : result;
+	}
+
+	/**
+	 * @param attr The attribute
+	 * @return The attribute value, as a double
+	 * @throws SAXException If attribute is missing or not a number
+	 */
+	private double parseDouble(int attr) throws SAXException {
+		int p = attrStart[attr];
+		int end = attrEnd[attr];
+		if(p < 0) {
+			throw error("Missing numeric attribute");
+		}
+		
+		boolean negative = p < end && buf[p] == '-';
+		if(negative || (p < end && buf[p] == '+')) {
+			p++;
+		}
+		
+		long mantissa = 0;
+		int digits = 0, decimals = 0;
+		boolean point = false;
+		for(; p < end; p++) {
+			byte b = buf[p];
+			if(b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if(point) {
+					decimals++;
+				}
+			}
+			else if(b == '.' && !point) {
+				point = true;
+			}
+			else {
+				digits = Integer.MAX_VALUE; //Exponent or invalid, let Java parse it
+				break;
+			}
+		}
+
+		//Mantissa and power of ten are exact doubles, so division is correctly rounded
+		if(digits > 0 && digits <= 15) {
+			double result = mantissa / POWERS_OF_TEN[decimals];
+			return negative ? -result : result;
+		}
+		else {
+			try {
+				return Double.parseDouble(rawString(attr));
+			}
+			catch(NumberFormatException e) {
+				throw error("Invalid number: "+rawString(attr));
+			}
+		}
+	}
+
+	/**
+	 * @param attr The attribute
+	 * @return The attribute value, as a fixed-point coordinate (in 1e-7 degrees)
+	 * @throws SAXException If attribute is missing or not a number
+	 */
+	private int parseFixed(int attr) throws SAXException {
+		if(attrStart[attr] < 0) {
+			throw error("Missing numeric attribute");
+		}
+		
+		try {
+			return Coordinates.parse(buf, attrStart[attr], attrEnd[attr]);
+		}
+		catch(NumberFormatException e) {
+			throw error("Invalid number: "+rawString(attr));
+		}
+	}
+
+	/**
+	 * @param attr The attribute
+	 * @return True if attribute value is "true" (ignoring case)
+	 */
+	private boolean isTrue(int attr) {
+		int p = attrStart[attr];
+		return p >= 0 && attrEnd[attr] - p == 4
+				&& (buf[p] | 0x20) == 't' && (buf[p+1] | 0x20) == 'r'
+				&& (buf[p+2] | 0x20) == 'u' && (buf[p+3] | 0x20) == 'e';
+	}
+
+	/**
+	 * @param attr The attribute
+	 * @return The attribute value, without entity decoding
+	 */
+	private String rawString(int attr) {
+		return new String(buf, attrStart[attr], attrEnd[attr] - attrStart[attr], StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param attr The attribute
+	 * @return The attribute value (entities are decoded, and white spaces normalized), or null if attribute is missing
+	 * @throws SAXException If an entity is invalid
+	 */
+	private String string(int attr) throws SAXException {
+		int start = attrStart[attr];
+		if(start < 0) {
+			return null;
+		}
+		int end = attrEnd[attr];
+
+		//Fast path, no special character
+		int p = start;
+		while(p < end && buf[p] != '&' && buf[p] != '\t' && buf[p] != '\n' && buf[p] != '\r') {
+			p++;
+		}
+		if(p == end) {
+			return new String(buf, start, end - start, StandardCharsets.UTF_8);
+		}
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream(end - start);
+		out.write(buf, start, p - start);
+		while(p < end) {
+			byte b = buf[p];
+			if(b == '&') {
+				int semicolon = p + 1;
+				while(semicolon < end && buf[semicolon] != ';') {
+					semicolon++;
+				}
+				if(semicolon >= end) {
+					throw error("Invalid entity");
+				}
+				String entity = new String(buf, p + 1, semicolon - p - 1, StandardCharsets.US_ASCII);
+				int c;
+				switch(entity) {
+					case "lt": c = '<'; break;
+					case "gt": c = '>'; break;
+					case "amp": c = '&'; break;
+					case "quot": c = '"'; break;
+					case "apos": c = '\''; break;
+					default:
+						try {
+							if(entity.startsWith("#x")) {
+								c = Integer.parseInt(entity.substring(2), 16);
+							}
+							else if(entity.startsWith("#")) {
+								c = Integer.parseInt(entity.substring(1));
+							}
+							else {
+								throw error("Unknown entity: "+entity);
+							}
+						}
+						catch(NumberFormatException e) {
+							throw error("Invalid entity: "+entity);
+						}
+				}
+				byte[] encoded = new String(Character.toChars(c)).getBytes(StandardCharsets.UTF_8);
+				out.write(encoded, 0, encoded.length);
+				p = semicolon + 1;
+			}
+			else if(b == '\r' && p + 1 < end && buf[p+1] == '\n') {
+				p++; //Line break is normalized as a single space
+			}
+			else {
+				out.write((b == '\t' || b == '\n' || b == '\r') ? ' ' : b);
+				p++;
+			}
+		}
+		
+		try {
+			return out.toString("UTF-8");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @param b The byte
+	 * @return True if it is a XML white space
+	 */
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+	}
+
+	/**
+	 * @param first The first byte
+	 * @param second The second byte
+	 * @param from The search start
+	 * @return The position of the two bytes sequence in buffer, or -1 if not found
+	 */
+	private int indexOf(char first, char second, int from) {
+		for(int i = from; i + 1 < limit; i++) {
+			if(buf[i] == first && buf[i+1] == second) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Moves unread data at buffer start (and grows buffer if it is full)
+	 */
+	private void compact() {
+		if(pos == 0 && limit == buf.length) {
+			byte[] bigger = new byte[buf.length * 2];
+			System.arraycopy(buf, 0, bigger, 0, limit);
+			buf = bigger;
+		}
+		else {
+			System.arraycopy(buf, pos, buf, 0, limit - pos);
+			limit -= pos;
+			discarded += pos;
+			pos = 0;
+		}
+	}
+
+	/**
+	 * Reads more data in buffer
+	 * @return False if end of input is reached
+	 * @throws IOException If an error occurs during reading
+	 */
+	private boolean fill() throws IOException {
+		if(eof) {
+			return false;
+		}
+		
+		int read = in.read(buf, limit, buf.length - limit);
+		if(read < 0) {
+			eof = true;
+			return false;
+		}
+		limit += read;
+		return true;
+	}
+
+	/**
+	 * @param message The error message
+	 * @return The exception to throw, with current position
+	 */
+	private SAXException error(String message) {
+		return new SAXException(message+" (at byte "+(discarded + pos)+")");
+	}
+}
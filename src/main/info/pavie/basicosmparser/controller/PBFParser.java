@@ -0,0 +1,1032 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.index.NodeLocationIndex;
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.ElementStore;
+import info.pavie.basicosmparser.model.ElementType;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * PBFParser reads OSM PBF files (.osm.pbf), and creates the same Java objects as {@link OSMParser}.
+ * A PBF file is made of independent blobs, which are decompressed and decoded in parallel,
+ * by a pool of worker threads. Decoded elements are then given in file order, so way nodes and
+ * relation members are resolved the same way as in XML parsing.
+ * Only zlib-compressed and raw blobs are supported.
+ * @author Adrien PAVIE
+ */
+public class PBFParser {
+//ATTRIBUTES
+	/** The maximal size of a blob header, in bytes **/
+	private static final int MAX_HEADER_SIZE = 64 * 1024;
+	/** The maximal size of a blob, in bytes **/
+	private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+	/** The member types, by PBF type number **/
+	private static final String[] MEMBER_TYPES = { "node", "way", "relation" };
+
+	/** The parsed OSM elements, or null if elements are only streamed to a handler **/
+	private ElementStore elements;
+	/** The node locations index, used to find way nodes which aren't kept (can be null) **/
+	private NodeLocationIndex locations;
+	/** The amount of decoding threads **/
+	private int threads;
+	/** The dictionary sharing read strings (can be null) **/
+	private StringDictionary dictionary;
+	/** Do read ways only keep node IDs ? **/
+	private boolean lazyWayNodes;
+	/** The minimal edition time of kept elements, in seconds since epoch **/
+	private long minTime;
+	/** The maximal edition time of kept elements, in seconds since epoch **/
+	private long maxTime;
+	/** Are elements filtered by edition time ? **/
+	private boolean timeFilter;
+	/** The filter of kept elements (can be null) **/
+	private ElementFilter filter;
+	/** The metrics updated while parsing (can be null) **/
+	private ParserMetrics metrics;
+
+//CONSTRUCTOR
+	public PBFParser() {
+		threads = Runtime.getRuntime().availableProcessors();
+		dictionary = new StringDictionary();
+	}
+
+//ACCESSORS
+	/**
+	 * Get the elements read during the last call of a parse method returning a Map.
+	 * @return The read elements, or null if elements were only sent to an {@link OSMElementHandler}
+	 */
+	public ElementStore getElementStore() {
+		return elements;
+	}
+
+	/**
+	 * Get the dictionary used to share equal strings between read elements (see {@link OSMParser#getStringDictionary()}).
+	 * @return The string dictionary, or null if it is disabled
+	 */
+	public StringDictionary getStringDictionary() {
+		return dictionary;
+	}
+
+//MODIFIERS
+	/**
+	 * @param threads The amount of threads decoding blobs (default: amount of processors)
+	 */
+	public void setThreads(int threads) {
+		if(threads < 1) {
+			throw new RuntimeException("At least one thread is needed");
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the node location index used during parsing (see {@link OSMParser#setNodeLocationIndex(NodeLocationIndex)}).
+	 * @param index The node location index, or null to disable it
+	 */
+	public void setNodeLocationIndex(NodeLocationIndex index) {
+		locations = index;
+	}
+
+	/**
+	 * Sets how read ways keep their nodes (see {@link OSMParser#setLazyWayNodes(boolean)}).
+	 * @param lazy True to keep only node IDs in ways
+	 */
+	public void setLazyWayNodes(boolean lazy) {
+		lazyWayNodes = lazy;
+	}
+
+	/**
+	 * Sets the time range of kept elements (see {@link OSMParser#setTimeRange(long, long)}).
+	 * Elements are decoded in parallel, and skipped before being sent to the handler or the store.
+	 * @param from The minimal edition time, in seconds since epoch (inclusive, Long.MIN_VALUE for no minimum)
+	 * @param to The maximal edition time, in seconds since epoch (inclusive, Long.MAX_VALUE for no maximum)
+	 */
+	public void setTimeRange(long from, long to) {
+		if(from > to) {
+			throw new RuntimeException("Invalid time range");
+		}
+		minTime = from;
+		maxTime = to;
+		timeFilter = true;
+	}
+
+	/**
+	 * Disables filtering elements by edition time
+	 */
+	public void clearTimeRange() {
+		timeFilter = false;
+	}
+
+	/**
+	 * Sets the filter of kept elements (see {@link OSMParser#setElementFilter(ElementFilter)}).
+	 * Elements are decoded in parallel, and skipped before their nodes and members are resolved.
+	 * @param filter The filter, or null to keep all elements
+	 */
+	public void setElementFilter(ElementFilter filter) {
+		this.filter = filter;
+	}
+
+	/**
+	 * Sets the metrics updated while parsing (see {@link OSMParser#setMetrics(ParserMetrics)}).
+	 * @param metrics The metrics, or null to disable them
+	 */
+	public void setMetrics(ParserMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Sets the dictionary used to share equal strings between read elements (see {@link OSMParser#setStringDictionary(StringDictionary)}).
+	 * The strings table of each block is looked up in the dictionary once, before its elements are decoded.
+	 * @param dictionary The string dictionary, or null to keep strings as read
+	 */
+	public void setStringDictionary(StringDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+//OTHER METHODS
+	/**
+	 * Parses a PBF file and creates OSM Java objects
+	 * @param f The OSM database extract, in PBF format
+	 * @return The corresponding OSM objects as a Map. Keys are elements ID, and values are OSM elements objects.
+	 * @throws IOException If an error occurs during file reading, or if file is invalid
+	 */
+	public Map<String,Element> parse(File f) throws IOException {
+		InputStream in = open(f);
+		try {
+			elements = new ElementStore();
+			read(in, new ParsingContext(elements, locations), f.length());
+			return elements.asMap();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Parses a PBF input and creates OSM Java objects
+	 * @param in The OSM database extract, in PBF format
+	 * @return The corresponding OSM objects as a Map. Keys are elements ID, and values are OSM elements objects.
+	 * @throws IOException If an error occurs during reading, or if data is invalid
+	 */
+	public Map<String,Element> parse(InputStream in) throws IOException {
+		elements = new ElementStore();
+		read(in, new ParsingContext(elements, locations), -1);
+		return elements.asMap();
+	}
+
+	/**
+	 * Parses a PBF file, and sends each OSM element to the given handler as soon as it is read.
+	 * See {@link OSMParser#parse(File, OSMElementHandler)} for details.
+	 * @param f The OSM database extract, in PBF format
+	 * @param handler The handler which will receive read elements
+	 * @throws IOException If an error occurs during file reading, or if file is invalid
+	 */
+	public void parse(File f, OSMElementHandler handler) throws IOException {
+		InputStream in = open(f);
+		try {
+			elements = null;
+			read(in, new ParsingContext(handler, locations), f.length());
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Parses a PBF input, and sends each OSM element to the given handler as soon as it is read.
+	 * See {@link OSMParser#parse(File, OSMElementHandler)} for details.
+	 * @param in The OSM database extract, in PBF format
+	 * @param handler The handler which will receive read elements
+	 * @throws IOException If an error occurs during reading, or if data is invalid
+	 */
+	public void parse(InputStream in, OSMElementHandler handler) throws IOException {
+		elements = null;
+		read(in, new ParsingContext(handler, locations), -1);
+	}
+
+	/**
+	 * Opens a PBF file
+	 * @param f The file
+	 * @return The input stream
+	 * @throws IOException If the file can't be read
+	 */
+	private InputStream open(File f) throws IOException {
+		//File check
+		if(!f.exists() || !f.isFile()) {
+			throw new FileNotFoundException();
+		}
+		
+		if(!f.canRead()) {
+			throw new IOException("Can't read file");
+		}
+		
+		return new BufferedInputStream(new FileInputStream(f), 1 << 16);
+	}
+
+	/**
+	 * Reads blobs from input, decodes them in parallel, and sends decoded elements to the context in file order.
+	 * @param in The PBF input
+	 * @param context The parsing context
+	 * @param inputSize The input size in bytes, or -1 if unknown
+	 * @throws IOException If an error occurs during reading, or if data is invalid
+	 */
+	private void read(InputStream in, ParsingContext context, long inputSize) throws IOException {
+		DataInputStream data = new DataInputStream((metrics == null) ? in : new CountingInputStream(in, metrics));
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Deque<Future<DecodedBlock>> pending = new ArrayDeque<Future<DecodedBlock>>();
+		int maxPending = threads * 4;
+		final StringDictionary dictionary = this.dictionary;
+		context.setWayNodeIds(lazyWayNodes);
+		if(timeFilter) {
+			context.setTimeRange(minTime, maxTime);
+		}
+		context.setFilter(filter);
+		context.setMetrics(metrics, inputSize);
+		
+		try {
+			byte[] blob;
+			while((blob = readBlob(data)) != null) {
+				final byte[] content = blob;
+				pending.add(pool.submit(new Callable<DecodedBlock>() {
+					@Override
+					public DecodedBlock call() throws Exception {
+						return decodeBlock(inflate(content), dictionary);
+					}
+				}));
+
+				//Limit the amount of decoded blocks in memory
+				while(pending.size() >= maxPending) {
+					deliver(pending.poll(), context);
+				}
+			}
+			
+			while(!pending.isEmpty()) {
+				deliver(pending.poll(), context);
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		
+		context.end();
+	}
+
+	/**
+	 * Reads the next data blob (header blobs are checked, then skipped)
+	 * @param data The PBF input
+	 * @return The blob content, or null if end of file is reached
+	 * @throws IOException If an error occurs during reading, or if data is invalid
+	 */
+	private byte[] readBlob(DataInputStream data) throws IOException {
+		while(true) {
+			int headerSize;
+			try {
+				headerSize = data.readInt();
+			}
+			catch(EOFException e) {
+				return null;
+			}
+			
+			if(headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+				throw new IOException("Invalid PBF blob header size: "+headerSize);
+			}
+
+			//Read blob header
+			byte[] header = new byte[headerSize];
+			data.readFully(header);
+			String type = null;
+			int dataSize = -1;
+			ProtobufReader headerReader = new ProtobufReader(header);
+			while(headerReader.next()) {
+				switch(headerReader.field()) {
+					case 1:
+						type = headerReader.readString();
+						break;
+					case 3:
+						dataSize = (int) headerReader.readVarint();
+						break;
+					default:
+						headerReader.skip();
+				}
+			}
+			
+			if(dataSize < 0 || dataSize > MAX_BLOB_SIZE) {
+				throw new IOException("Invalid PBF blob size: "+dataSize);
+			}
+			
+			byte[] blob = new byte[dataSize];
+			data.readFully(blob);
+			
+			if("OSMData".equals(type)) {
+				return blob;
+			}
+			else if("OSMHeader".equals(type)) {
+				checkHeader(inflate(blob));
+			}
+			//Unknown blobs are skipped, as allowed by format
+		}
+	}
+
+	/**
+	 * Checks that all features required by the file are supported
+	 * @param header The header block
+	 * @throws IOException If a required feature is not supported
+	 */
+	private void checkHeader(byte[] header) throws IOException {
+		ProtobufReader r = new ProtobufReader(header);
+		while(r.next()) {
+			if(r.field() == 4) {
+				String feature = r.readString();
+				if(!feature.equals("OsmSchema-V0.6") && !feature.equals("DenseNodes")) {
+					throw new IOException("Unsupported PBF feature: "+feature);
+				}
+			}
+			else {
+				r.skip();
+			}
+		}
+	}
+
+	/**
+	 * Gets the decompressed content of a blob
+	 * @param blob The blob
+	 * @return The blob content
+	 * @throws IOException If blob compression is not supported, or if data is invalid
+	 */
+	private static byte[] inflate(byte[] blob) throws IOException {
+		ProtobufReader r = new ProtobufReader(blob);
+		byte[] raw = null;
+		byte[] zlib = null;
+		int rawSize = -1;
+		
+		while(r.next()) {
+			switch(r.field()) {
+				case 1:
+					raw = r.readBytes();
+					break;
+				case 2:
+					rawSize = (int) r.readVarint();
+					break;
+				case 3:
+					zlib = r.readBytes();
+					break;
+				case 4:
+				case 5:
+				case 6:
+				case 7:
+					throw new IOException("Unsupported PBF blob compression (field "+r.field()+")");
+				default:
+					r.skip();
+			}
+		}
+		
+		if(raw != null) {
+			return raw;
+		}
+		else if(zlib != null && rawSize >= 0 && rawSize <= MAX_BLOB_SIZE) {
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(zlib);
+				byte[] result = new byte[rawSize];
+				int read = 0;
+				while(read < rawSize && !inflater.finished()) {
+					int n = inflater.inflate(result, read, rawSize - read);
+					if(n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+					read += n;
+				}
+				if(read != rawSize) {
+					throw new IOException("Invalid PBF blob: "+read+" bytes decompressed, "+rawSize+" expected");
+				}
+				return result;
+			}
+			catch(DataFormatException e) {
+				throw new IOException("Invalid PBF blob compressed data", e);
+			}
+			finally {
+				inflater.end();
+			}
+		}
+		else {
+			throw new IOException("Invalid PBF blob: no data");
+		}
+	}
+
+	/**
+	 * Waits for a block to be decoded, and sends its elements to the context
+	 * @param future The block being decoded
+	 * @param context The parsing context
+	 * @throws IOException If block is invalid
+	 */
+	private void deliver(Future<DecodedBlock> future, ParsingContext context) throws IOException {
+		DecodedBlock block;
+		try {
+			block = future.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while decoding PBF", e);
+		}
+		catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Error while decoding PBF", e.getCause());
+		}
+		
+		int nodeIndex = 0, wayIndex = 0, relIndex = 0;
+		for(Element e : block.elements) {
+			if(e instanceof Node) {
+				context.nodeCreated(block.nodeIds[nodeIndex], ((Node) e).getLat(), ((Node) e).getLon());
+				nodeIndex++;
+				context.elementRead(e);
+			}
+			else if(e instanceof Way) {
+				Way w = (Way) e;
+				if(context.accept(ElementType.WAY, w.getVersion(), w.getTimestampSeconds())) {
+					for(long ref : block.wayRefs.get(wayIndex)) {
+						context.addWayNode(w, ref);
+					}
+					context.elementRead(w);
+				}
+				wayIndex++;
+			}
+			else {
+				Relation r = (Relation) e;
+				if(context.accept(ElementType.RELATION, r.getVersion(), r.getTimestampSeconds())) {
+					PendingMembers members = block.members.get(relIndex);
+					for(int i=0; i < members.ids.length; i++) {
+						r.addMember(members.roles[i], context.findMember(members.types[i], members.ids[i]));
+					}
+					context.elementRead(r);
+				}
+				relIndex++;
+			}
+		}
+	}
+
+	/**
+	 * Decodes a primitive block
+	 * @param data The block content
+	 * @param dictionary The dictionary sharing read strings (can be null)
+	 * @return The decoded elements
+	 * @throws IOException If data is invalid
+	 */
+	private static DecodedBlock decodeBlock(byte[] data, StringDictionary dictionary) throws IOException {
+		DecodedBlock block = new DecodedBlock();
+		List<ProtobufReader> groups = new ArrayList<ProtobufReader>();
+
+		//Read block header fields, which can be after groups
+		ProtobufReader r = new ProtobufReader(data);
+		while(r.next()) {
+			switch(r.field()) {
+				case 1:
+					List<String> strings = new ArrayList<String>();
+					ProtobufReader table = r.readMessage();
+					while(table.next()) {
+						if(table.field() == 1) {
+							strings.add(table.readString());
+						} else {
+							table.skip();
+						}
+					}
+					block.strings = strings.toArray(new String[strings.size()]);
+					break;
+				case 2:
+					groups.add(r.readMessage());
+					break;
+				case 17:
+					block.granularity = r.readVarint();
+					break;
+				case 18:
+					block.dateGranularity = r.readVarint();
+					break;
+				case 19:
+					block.latOffset = r.readVarint();
+					break;
+				case 20:
+					block.lonOffset = r.readVarint();
+					break;
+				default:
+					r.skip();
+			}
+		}
+
+		//Share strings with other blocks (dictionary is used by all decoding threads)
+		if(dictionary != null) {
+			synchronized(dictionary) {
+				for(int i=0; i < block.strings.length; i++) {
+					block.strings[i] = dictionary.get(block.strings[i]);
+				}
+			}
+		}
+
+		//Decode groups
+		for(ProtobufReader group : groups) {
+			while(group.next()) {
+				switch(group.field()) {
+					case 1:
+						decodeNode(block, group.readMessage());
+						break;
+					case 2:
+						decodeDenseNodes(block, group.readMessage());
+						break;
+					case 3:
+						decodeWay(block, group.readMessage());
+						break;
+					case 4:
+						decodeRelation(block, group.readMessage());
+						break;
+					default:
+						group.skip();
+				}
+			}
+		}
+		
+		return block;
+	}
+
+	/**
+	 * Decodes a node
+	 * @param block The current block
+	 * @param r The node message
+	 * @throws IOException If data is invalid
+	 */
+	private static void decodeNode(DecodedBlock block, ProtobufReader r) throws IOException {
+		long id = 0, lat = 0, lon = 0;
+		long[] keys = null, values = null;
+		ProtobufReader info = null;
+		
+		while(r.next()) {
+			switch(r.field()) {
+				case 1:
+					id = r.readSignedVarint();
+					break;
+				case 2:
+					keys = readPacked(r.readMessage(), false);
+					break;
+				case 3:
+					values = readPacked(r.readMessage(), false);
+					break;
+				case 4:
+					info = r.readMessage();
+					break;
+				case 8:
+					lat = r.readSignedVarint();
+					break;
+				case 9:
+					lon = r.readSignedVarint();
+					break;
+				default:
+					r.skip();
+			}
+		}
+		
+		Node n = block.node(id, lat, lon);
+		decodeCommon(block, n, keys, values, info);
+		block.addNode(id, n);
+	}
+
+	/**
+	 * Decodes dense nodes
+	 * @param block The current block
+	 * @param r The dense nodes message
+	 * @throws IOException If data is invalid
+	 */
+	private static void decodeDenseNodes(DecodedBlock block, ProtobufReader r) throws IOException {
+		long[] ids = null, lats = null, lons = null, keysVals = null;
+		long[] versions = null, timestamps = null, changesets = null, uids = null, userSids = null, visibles = null;
+		
+		while(r.next()) {
+			switch(r.field()) {
+				case 1:
+					ids = readPacked(r.readMessage(), true);
+					break;
+				case 5:
+					ProtobufReader info = r.readMessage();
+					while(info.next()) {
+						switch(info.field()) {
+							case 1:
+								versions = readPacked(info.readMessage(), false);
+								break;
+							case 2:
+								timestamps = readPacked(info.readMessage(), true);
+								break;
+							case 3:
+								changesets = readPacked(info.readMessage(), true);
+								break;
+							case 4:
+								uids = readPacked(info.readMessage(), true);
+								break;
+							case 5:
+								userSids = readPacked(info.readMessage(), true);
+								break;
+							case 6:
+								visibles = readPacked(info.readMessage(), false);
+								break;
+							default:
+								info.skip();
+						}
+					}
+					break;
+				case 8:
+					lats = readPacked(r.readMessage(), true);
+					break;
+				case 9:
+					lons = readPacked(r.readMessage(), true);
+					break;
+				case 10:
+					keysVals = readPacked(r.readMessage(), false);
+					break;
+				default:
+					r.skip();
+			}
+		}
+		
+		if(ids == null) {
+			return;
+		}
+		if(lats == null || lons == null || lats.length != ids.length || lons.length != ids.length) {
+			throw new IOException("Invalid PBF dense nodes");
+		}
+		
+		long id = 0, lat = 0, lon = 0, timestamp = 0, changeset = 0, uid = 0, userSid = 0;
+		int kv = 0;
+		for(int i=0; i < ids.length; i++) {
+			id += ids[i];
+			lat += lats[i];
+			lon += lons[i];
+			Node n = block.node(id, lat, lon);
+			
+			//Each metadata array is optional
+			if(versions != null && i < versions.length) {
+				n.setVersion((int) versions[i]);
+			}
+			if(timestamps != null && i < timestamps.length) {
+				timestamp += timestamps[i];
+				n.setTimestampSeconds(block.timestamp(timestamp));
+			}
+			if(changesets != null && i < changesets.length) {
+				changeset += changesets[i];
+				n.setChangeset(changeset);
+			}
+			if(uids != null && i < uids.length) {
+				uid += uids[i];
+				n.setUid(uid);
+			}
+			if(userSids != null && i < userSids.length) {
+				userSid += userSids[i];
+				n.setUser(block.user(userSid));
+			}
+			n.setVisible(visibles == null || i >= visibles.length || visibles[i] != 0);
+
+			//Tags (key, value pairs, separated by 0)
+			if(keysVals != null) {
+				while(kv < keysVals.length && keysVals[kv] != 0) {
+					n.addTag(block.string(keysVals[kv]), block.string(keysVals[kv+1]));
+					kv += 2;
+				}
+				kv++;
+			}
+			
+			block.addNode(id, n);
+		}
+	}
+
+	/**
+	 * Decodes a way
+	 * @param block The current block
+	 * @param r The way message
+	 * @throws IOException If data is invalid
+	 */
+	private static void decodeWay(DecodedBlock block, ProtobufReader r) throws IOException {
+		long id = 0;
+		long[] keys = null, values = null, refs = new long[0];
+		ProtobufReader info = null;
+		
+		while(r.next()) {
+			switch(r.field()) {
+				case 1:
+					id = r.readVarint();
+					break;
+				case 2:
+					keys = readPacked(r.readMessage(), false);
+					break;
+				case 3:
+					values = readPacked(r.readMessage(), false);
+					break;
+				case 4:
+					info = r.readMessage();
+					break;
+				case 8:
+					refs = readPacked(r.readMessage(), true);
+					break;
+				default:
+					r.skip();
+			}
+		}
+
+		//Delta-decode node references
+		for(int i=1; i < refs.length; i++) {
+			refs[i] += refs[i-1];
+		}
+		
+		Way w = new Way(id);
+		decodeCommon(block, w, keys, values, info);
+		block.elements.add(w);
+		block.wayRefs.add(refs);
+	}
+
+	/**
+	 * Decodes a relation
+	 * @param block The current block
+	 * @param r The relation message
+	 * @throws IOException If data is invalid
+	 */
+	private static void decodeRelation(DecodedBlock block, ProtobufReader r) throws IOException {
+		long id = 0;
+		long[] keys = null, values = null, roles = new long[0], memIds = new long[0], types = new long[0];
+		ProtobufReader info = null;
+		
+		while(r.next()) {
+			switch(r.field()) {
+				case 1:
+					id = r.readVarint();
+					break;
+				case 2:
+					keys = readPacked(r.readMessage(), false);
+					break;
+				case 3:
+					values = readPacked(r.readMessage(), false);
+					break;
+				case 4:
+					info = r.readMessage();
+					break;
+				case 8:
+					roles = readPacked(r.readMessage(), false);
+					break;
+				case 9:
+					memIds = readPacked(r.readMessage(), true);
+					break;
+				case 10:
+					types = readPacked(r.readMessage(), false);
+					break;
+				default:
+					r.skip();
+			}
+		}
+		
+		if(roles.length != memIds.length || types.length != memIds.length) {
+			throw new IOException("Invalid PBF relation members: R"+id);
+		}
+		
+		PendingMembers members = new PendingMembers(memIds.length);
+		long memId = 0;
+		for(int i=0; i < memIds.length; i++) {
+			memId += memIds[i];
+			if(types[i] < 0 || types[i] >= MEMBER_TYPES.length) {
+				throw new IOException("Invalid PBF member type: "+types[i]);
+			}
+			members.types[i] = MEMBER_TYPES[(int) types[i]];
+			members.ids[i] = memId;
+			members.roles[i] = block.string(roles[i]);
+		}
+		
+		Relation rel = new Relation(id);
+		decodeCommon(block, rel, keys, values, info);
+		block.elements.add(rel);
+		block.members.add(members);
+	}
+
+	/**
+	 * Decodes tags and metadata of an element
+	 * @param block The current block
+	 * @param e The element
+	 * @param keys The tag keys string IDs
+	 * @param values The tag values string IDs
+	 * @param info The metadata message (can be null)
+	 * @throws IOException If data is invalid
+	 */
+	private static void decodeCommon(DecodedBlock block, Element e, long[] keys, long[] values, ProtobufReader info) throws IOException {
+		if(keys != null) {
+			if(values == null || values.length != keys.length) {
+				throw new IOException("Invalid PBF tags: "+e.getId());
+			}
+			for(int i=0; i < keys.length; i++) {
+				e.addTag(block.string(keys[i]), block.string(values[i]));
+			}
+		}
+		
+		if(info != null) {
+			while(info.next()) {
+				switch(info.field()) {
+					case 1:
+						e.setVersion((int) info.readVarint());
+						break;
+					case 2:
+						e.setTimestampSeconds(block.timestamp(info.readVarint()));
+						break;
+					case 3:
+						e.setChangeset(info.readVarint());
+						break;
+					case 4:
+						e.setUid((int) info.readVarint());
+						break;
+					case 5:
+						e.setUser(block.user(info.readVarint()));
+						break;
+					case 6:
+						e.setVisible(info.readVarint() != 0);
+						break;
+					default:
+						info.skip();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a packed repeated field
+	 * @param r The field content
+	 * @param signed True for zigzag-encoded values
+	 * @return The values
+	 * @throws IOException If data is invalid
+	 */
+	private static long[] readPacked(ProtobufReader r, boolean signed) throws IOException {
+		long[] result = new long[16];
+		int size = 0;
+		
+		while(r.hasRemaining()) {
+			if(size == result.length) {
+				long[] bigger = new long[size * 2];
+				System.arraycopy(result, 0, bigger, 0, size);
+				result = bigger;
+			}
+			result[size++] = signed ? r.readSignedVarint() : r.readVarint();
+		}
+		
+		if(size == result.length) {
+			return result;
+		}
+		long[] exact = new long[size];
+		System.arraycopy(result, 0, exact, 0, size);
+		return exact;
+	}
+
+//INNER CLASS DecodedBlock
+	/**
+	 * The elements decoded from a primitive block, waiting for way nodes and relation members to be resolved.
+	 */
+	private static class DecodedBlock {
+	//ATTRIBUTES
+		/** The strings table **/
+		private String[] strings = new String[0];
+		/** The coordinates granularity, in nanodegrees **/
+		private long granularity = 100;
+		/** The latitude offset, in nanodegrees **/
+		private long latOffset = 0;
+		/** The longitude offset, in nanodegrees **/
+		private long lonOffset = 0;
+		/** The timestamps granularity, in milliseconds **/
+		private long dateGranularity = 1000;
+		/** The decoded elements, in file order **/
+		private final List<Element> elements = new ArrayList<Element>();
+		/** The IDs of decoded nodes **/
+		private long[] nodeIds = new long[16];
+		/** The amount of decoded nodes **/
+		private int nodeCount = 0;
+		/** The node references of each way **/
+		private final List<long[]> wayRefs = new ArrayList<long[]>();
+		/** The members of each relation **/
+		private final List<PendingMembers> members = new ArrayList<PendingMembers>();
+
+	//ACCESSORS
+		/**
+		 * @param index The string ID
+		 * @return The string
+		 * @throws IOException If ID is invalid
+		 */
+		private String string(long index) throws IOException {
+			if(index < 0 || index >= strings.length) {
+				throw new IOException("Invalid PBF string ID: "+index);
+			}
+			return strings[(int) index];
+		}
+
+		/**
+		 * @param index The user name string ID
+		 * @return The user name, or null if ID is 0 (no user)
+		 * @throws IOException If ID is invalid
+		 */
+		private String user(long index) throws IOException {
+			return (index == 0) ? null : string(index);
+		}
+
+		/**
+		 * Creates a node from encoded coordinates. When coordinates are multiples of 1e-7 degrees
+		 * (always true with default granularity), they are directly used as fixed-point values.
+		 * @param id The node ID
+		 * @param lat The encoded latitude
+		 * @param lon The encoded longitude
+		 * @return The node
+		 */
+		private Node node(long id, long lat, long lon) {
+			long latNano = latOffset + granularity * lat;
+			long lonNano = lonOffset + granularity * lon;
+			
+			if(latNano % 100 == 0 && lonNano % 100 == 0
+					&& Math.abs(latNano / 100) <= Integer.MAX_VALUE && Math.abs(lonNano / 100) <= Integer.MAX_VALUE) {
+				return Node.fromFixedPoint(id, (int) (latNano / 100), (int) (lonNano / 100));
+			}
+			else {
+				return new Node(id, latNano / 1e9, lonNano / 1e9);
+			}
+		}
+
+		/**
+		 * @param timestamp The encoded timestamp
+		 * @return The timestamp, in seconds since epoch
+		 */
+		private long timestamp(long timestamp) {
+			return Math.floorDiv(timestamp * dateGranularity, 1000);
+		}
+
+	//MODIFIERS
+		/**
+		 * @param id The node ID
+		 * @param n The decoded node
+		 */
+		private void addNode(long id, Node n) {
+			if(nodeCount == nodeIds.length) {
+				long[] bigger = new long[nodeCount * 2];
+				System.arraycopy(nodeIds, 0, bigger, 0, nodeCount);
+				nodeIds = bigger;
+			}
+			nodeIds[nodeCount++] = id;
+			elements.add(n);
+		}
+	}
+
+//INNER CLASS PendingMembers
+	/**
+	 * The members of a decoded relation.
+	 */
+	private static class PendingMembers {
+	//ATTRIBUTES
+		/** The members types **/
+		private final String[] types;
+		/** The members IDs **/
+		private final long[] ids;
+		/** The members roles **/
+		private final String[] roles;
+
+	//CONSTRUCTOR
+		private PendingMembers(int size) {
+			types = new String[size];
+			ids = new long[size];
+			roles = new String[size];
+		}
+	}
+}
@@ -0,0 +1,478 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.model.Element;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class exports elements as CSV files, like {@link CSVExporter}, but formats rows in parallel
+ * and splits output into several numbered files (shards) : nodes-00001.csv, nodes-00002.csv, ..., ways-00001.csv, ...
+ * A new shard is started once the current one has reached the maximal amount of rows, or the maximal size
+ * (so a shard can exceed the maximal size by one row). Each shard starts with the CSV header.
+ * Elements are grouped in batches, which are formatted by a pool of worker threads, then written in the same order
+ * as they were given. At the end, a manifest.csv file lists all shards, with their element type, amount of rows and size.
+ * <br>
+ * As {@link CSVExporter}, this exporter is an {@link OSMElementHandler}, so it can be given directly to a parser.
+ * Files are closed and the manifest is written when input end is reached.
+ * Given elements must not be modified afterwards, as they are formatted later by other threads.
+ * @author Adrien PAVIE
+ */
+public class ParallelCSVExporter implements Exporter {
+//ATTRIBUTES
+	/** The default maximal amount of rows per shard **/
+	public static final long DEFAULT_MAX_ROWS = 1000000;
+	/** The default amount of elements formatted together by a worker thread **/
+	public static final int DEFAULT_BATCH_SIZE = 10000;
+	/** The name of the file listing shards **/
+	public static final String MANIFEST = "manifest.csv";
+
+	/** The folder where CSV files are written **/
+	private final File outputFolder;
+	/** The nodes shards **/
+	private final Shards nodes;
+	/** The ways shards **/
+	private final Shards ways;
+	/** The relations shards **/
+	private final Shards relations;
+	/** The batches being formatted, in given order **/
+	private final Deque<Future<Chunk>> pending;
+	/** The amount of formatting threads **/
+	private int threads;
+	/** The maximal amount of rows per shard **/
+	private long maxRows;
+	/** The maximal shard size, in bytes **/
+	private long maxBytes;
+	/** The amount of elements per batch **/
+	private int batchSize;
+	/** The formatting threads (created when the first batch is full) **/
+	private ExecutorService pool;
+	/** Is the exporter closed ? **/
+	private boolean closed;
+
+//CONSTRUCTOR
+	/**
+	 * Creates an exporter which writes elements in the given folder.
+	 * Existing shards with the same names in this folder are overwritten.
+	 * @param outputFolder The folder where CSV files will be written
+	 * @throws IOException If the folder doesn't exist
+	 */
+	public ParallelCSVExporter(File outputFolder) throws IOException {
+		if(!outputFolder.isDirectory()) {
+			throw new IOException("Invalid destination folder: "+outputFolder.getPath());
+		}
+		
+		this.outputFolder = outputFolder;
+		nodes = new Shards("nodes", "node", CSVExporter.NODES_HEADER);
+		ways = new Shards("ways", "way", CSVExporter.WAYS_HEADER);
+		relations = new Shards("relations", "relation", CSVExporter.RELATIONS_HEADER);
+		pending = new ArrayDeque<Future<Chunk>>();
+		threads = Runtime.getRuntime().availableProcessors();
+		maxRows = DEFAULT_MAX_ROWS;
+		maxBytes = Long.MAX_VALUE;
+		batchSize = DEFAULT_BATCH_SIZE;
+	}
+
+//ACCESSORS
+	/**
+	 * @return The written shards, in manifest order (nodes, ways, then relations)
+	 */
+	public List<File> getShards() {
+		List<File> result = new ArrayList<File>();
+		for(Shards s : new Shards[] { nodes, ways, relations }) {
+			for(Shard shard : s.created) {
+				result.add(shard.file);
+			}
+		}
+		return result;
+	}
+
+//MODIFIERS
+	/**
+	 * @param threads The amount of threads formatting rows (default: amount of processors)
+	 */
+	public void setThreads(int threads) {
+		if(threads < 1) {
+			throw new RuntimeException("At least one thread is needed");
+		}
+		checkNotStarted();
+		this.threads = threads;
+	}
+
+	/**
+	 * @param maxRows The maximal amount of rows per shard (default: {@link #DEFAULT_MAX_ROWS})
+	 */
+	public void setMaxRows(long maxRows) {
+		if(maxRows < 1) {
+			throw new RuntimeException("Shards should contain at least one row");
+		}
+		checkNotStarted();
+		this.maxRows = maxRows;
+	}
+
+	/**
+	 * @param maxBytes The maximal shard size, in bytes (default: no limit)
+	 */
+	public void setMaxBytes(long maxBytes) {
+		if(maxBytes < 1) {
+			throw new RuntimeException("Shard size must be positive");
+		}
+		checkNotStarted();
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @param batchSize The amount of elements formatted together by a thread (default: {@link #DEFAULT_BATCH_SIZE})
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize < 1) {
+			throw new RuntimeException("Batch size must be positive");
+		}
+		checkNotStarted();
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Checks that export settings can still be changed
+	 */
+	private void checkNotStarted() {
+		if(pool != null || closed) {
+			throw new RuntimeException("Export has already started");
+		}
+	}
+
+//OTHER METHODS
+	/**
+	 * Adds an element to the batch of its kind. The batch is formatted when it is full.
+	 * @param elem The element
+	 * @throws IOException If an error occurs during CSV writing
+	 */
+	public void write(Element elem) throws IOException {
+		if(closed) {
+			throw new IOException("Exporter is closed");
+		}
+		
+		Shards target;
+		switch(elem.getType()) {
+			case NODE:
+				target = nodes;
+				break;
+			case WAY:
+				target = ways;
+				break;
+			default:
+				target = relations;
+		}
+		
+		target.batch.add(elem);
+		if(target.batch.size() >= batchSize) {
+			submit(target);
+		}
+	}
+
+	/**
+	 * Sends the current batch of the given shards to the formatting threads
+	 * @param target The shards where batch will be written
+	 * @throws IOException If an error occurs during CSV writing of previous batches
+	 */
+	private void submit(final Shards target) throws IOException {
+		final List<Element> batch = target.batch;
+		target.batch = new ArrayList<Element>();
+		
+		if(pool == null) {
+			pool = Executors.newFixedThreadPool(threads);
+		}
+		
+		pending.add(pool.submit(new Callable<Chunk>() {
+			@Override
+			public Chunk call() throws Exception {
+				return format(target, batch);
+			}
+		}));
+
+		//Limit the amount of formatted batches in memory
+		while(pending.size() >= threads * 4) {
+			store(pending.poll());
+		}
+	}
+
+	/**
+	 * Formats a batch of elements as CSV rows
+	 * @param target The shards where rows will be written
+	 * @param batch The elements
+	 * @return The formatted rows
+	 * @throws IOException If an error occurs during formatting
+	 */
+	private static Chunk format(Shards target, List<Element> batch) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.size() * 128);
+		int[] ends = new int[batch.size()];
+		
+		UTF8Writer out = new UTF8Writer(Channels.newChannel(bytes), 1 << 16);
+		for(int i=0; i < ends.length; i++) {
+			CSVExporter.writeRow(out, batch.get(i));
+			ends[i] = (int) out.size();
+		}
+		out.close();
+		
+		return new Chunk(target, bytes.toByteArray(), ends);
+	}
+
+	/**
+	 * Waits for a batch to be formatted, and writes its rows in shards
+	 * @param future The batch being formatted
+	 * @throws IOException If an error occurs during CSV writing
+	 */
+	private void store(Future<Chunk> future) throws IOException {
+		Chunk chunk;
+		try {
+			chunk = future.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while formatting CSV", e);
+		}
+		catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Error while formatting CSV", e.getCause());
+		}
+		
+		chunk.target.append(chunk);
+	}
+
+	/**
+	 * Writes the manifest file
+	 * @throws IOException If an error occurs during writing
+	 */
+	private void writeManifest() throws IOException {
+		try(UTF8Writer out = new UTF8Writer(new File(outputFolder, MANIFEST))) {
+			out.write("file;type;rows;bytes");
+			for(Shards s : new Shards[] { nodes, ways, relations }) {
+				for(Shard shard : s.created) {
+					out.write('\n').write(shard.file.getName()).write(';')
+						.write(s.type).write(';')
+						.write(shard.rows).write(';')
+						.write(shard.bytes);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Formats and writes remaining elements, closes shards, and writes the manifest.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		
+		try {
+			for(Shards s : new Shards[] { nodes, ways, relations }) {
+				if(!s.batch.isEmpty()) {
+					submit(s);
+				}
+			}
+			
+			while(!pending.isEmpty()) {
+				store(pending.poll());
+			}
+		}
+		finally {
+			if(pool != null) {
+				pool.shutdownNow();
+			}
+			
+			try {
+				nodes.close();
+			}
+			finally {
+				try {
+					ways.close();
+				}
+				finally {
+					relations.close();
+				}
+			}
+		}
+		
+		writeManifest();
+	}
+
+//INNER CLASS Chunk
+	/**
+	 * A chunk is a batch of elements formatted as CSV rows, waiting to be written.
+	 */
+	private static class Chunk {
+	//ATTRIBUTES
+		/** The shards where rows will be written **/
+		private final Shards target;
+		/** The rows, in UTF-8 **/
+		private final byte[] data;
+		/** The end offset of each row in data **/
+		private final int[] ends;
+
+	//CONSTRUCTOR
+		private Chunk(Shards target, byte[] data, int[] ends) {
+			this.target = target;
+			this.data = data;
+			this.ends = ends;
+		}
+	}
+
+//INNER CLASS Shard
+	/**
+	 * A shard is a single CSV file.
+	 */
+	private static class Shard {
+	//ATTRIBUTES
+		/** The CSV file **/
+		private final File file;
+		/** The amount of written rows **/
+		private long rows;
+		/** The amount of written bytes (header included) **/
+		private long bytes;
+
+	//CONSTRUCTOR
+		private Shard(File file) {
+			this.file = file;
+		}
+	}
+
+//INNER CLASS Shards
+	/**
+	 * The shards of a kind of element, and the batch of elements waiting to be formatted.
+	 */
+	private class Shards {
+	//ATTRIBUTES
+		/** The file names prefix **/
+		private final String name;
+		/** The element type, as written in manifest **/
+		private final String type;
+		/** The CSV header, in UTF-8 **/
+		private final byte[] header;
+		/** The shards created so far (including current one) **/
+		private final List<Shard> created;
+		/** The elements waiting to be formatted **/
+		private List<Element> batch;
+		/** The shard being written (null if none) **/
+		private Shard current;
+		/** The channel of current shard **/
+		private FileChannel channel;
+
+	//CONSTRUCTOR
+		private Shards(String name, String type, String header) {
+			this.name = name;
+			this.type = type;
+			this.header = header.getBytes(StandardCharsets.UTF_8);
+			created = new ArrayList<Shard>();
+			batch = new ArrayList<Element>();
+		}
+
+	//OTHER METHODS
+		/**
+		 * Writes formatted rows, starting new shards when needed.
+		 * @param chunk The formatted rows
+		 * @throws IOException If an error occurs during writing
+		 */
+		private void append(Chunk chunk) throws IOException {
+			int row = 0, start = 0;
+			
+			while(row < chunk.ends.length) {
+				if(current == null || current.rows >= maxRows || current.bytes >= maxBytes) {
+					rotate();
+				}
+
+				//Take rows while shard isn't full
+				long rows = current.rows, bytes = current.bytes;
+				int end = row, pos = start;
+				while(end < chunk.ends.length && (end == row || (rows < maxRows && bytes < maxBytes))) {
+					bytes += chunk.ends[end] - pos;
+					pos = chunk.ends[end];
+					rows++;
+					end++;
+				}
+				
+				write(ByteBuffer.wrap(chunk.data, start, pos - start));
+				current.rows = rows;
+				current.bytes = bytes;
+				row = end;
+				start = pos;
+			}
+		}
+
+		/**
+		 * Closes current shard, and starts the next one
+		 * @throws IOException If an error occurs during writing
+		 */
+		private void rotate() throws IOException {
+			close();
+			
+			current = new Shard(new File(outputFolder, String.format("%s-%05d.csv", name, created.size() + 1)));
+			created.add(current);
+			channel = FileChannel.open(current.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+			
+			write(ByteBuffer.wrap(header));
+			current.bytes = header.length;
+		}
+
+		/**
+		 * Writes bytes in current shard
+		 * @param data The bytes to write
+		 * @throws IOException If an error occurs during writing
+		 */
+		private void write(ByteBuffer data) throws IOException {
+			while(data.hasRemaining()) {
+				channel.write(data);
+			}
+		}
+
+		/**
+		 * Closes current shard
+		 * @throws IOException If an error occurs during closing
+		 */
+		private void close() throws IOException {
+			if(channel != null) {
+				FileChannel c = channel;
+				channel = null;
+				c.close();
+			}
+		}
+	}
+}
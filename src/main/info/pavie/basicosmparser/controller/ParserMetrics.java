@@ -0,0 +1,374 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.model.ElementType;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Parser metrics follow the progress of parsing: read bytes, kept elements, unresolved references, and time spent
+ * in each phase. They are updated by parsers while reading (see {@link OSMParser#setMetrics(ParserMetrics)}),
+ * and can be read at any time from other threads, with a {@link ProgressListener}, or through JMX (see {@link #registerMBean(String)}).
+ * <br>
+ * Phases are: parse (reading input and creating elements), resolve (finding way nodes and relation members),
+ * and export (time spent in the handler, when elements are streamed to an exporter).
+ * Counters accumulate over several parses, until {@link #reset()} is called. Times, progress and rates concern the last parse.
+ * @author Adrien PAVIE
+ */
+public class ParserMetrics implements ParserMetricsMBean {
+//ATTRIBUTES
+	/** The amount of read elements between two checks of progress interval **/
+	static final int PROGRESS_CHECK = 4096;
+
+	/** The amount of read bytes **/
+	private final LongAdder bytesRead;
+	/** The amount of kept elements, by type ordinal **/
+	private final LongAdder[] elements;
+	/** The amount of tags of kept elements **/
+	private final LongAdder tags;
+	/** The amount of unresolved way nodes **/
+	private final LongAdder unresolvedWayNodes;
+	/** The amount of stub members **/
+	private final LongAdder stubMembers;
+	/** The time spent resolving references, in nanoseconds **/
+	private final LongAdder resolveNanos;
+	/** The time spent in handlers, in nanoseconds **/
+	private final LongAdder exportNanos;
+	/** The input size, or -1 if unknown **/
+	private volatile long totalBytes;
+	/** The amount of read bytes when last parse started **/
+	private volatile long startBytes;
+	/** The amount of kept elements when last parse started **/
+	private volatile long startElements;
+	/** The start time of last parse (System.nanoTime) **/
+	private volatile long startNanos;
+	/** The end time of last parse, or 0 if running **/
+	private volatile long endNanos;
+	/** Is a parse running ? **/
+	private volatile boolean running;
+	/** The progress listener (can be null) **/
+	private volatile ProgressListener listener;
+	/** The time between two progress notifications, in nanoseconds **/
+	private volatile long intervalNanos;
+	/** The time of next progress notification (System.nanoTime) **/
+	private final AtomicLong nextProgress;
+
+//CONSTRUCTOR
+	public ParserMetrics() {
+		bytesRead = new LongAdder();
+		elements = new LongAdder[ElementType.values().length];
+		for(int i=0; i < elements.length; i++) {
+			elements[i] = new LongAdder();
+		}
+		tags = new LongAdder();
+		unresolvedWayNodes = new LongAdder();
+		stubMembers = new LongAdder();
+		resolveNanos = new LongAdder();
+		exportNanos = new LongAdder();
+		nextProgress = new AtomicLong();
+		totalBytes = -1;
+	}
+
+//ACCESSORS
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	@Override
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	@Override
+	public double getProgress() {
+		long total = totalBytes;
+		return (total <= 0) ? -1 : Math.min(1, (double) getParseBytes() / total);
+	}
+
+	/**
+	 * @return The amount of bytes read by last parse
+	 */
+	private long getParseBytes() {
+		return bytesRead.sum() - startBytes;
+	}
+
+	@Override
+	public long getNodes() {
+		return elements[ElementType.NODE.ordinal()].sum();
+	}
+
+	@Override
+	public long getWays() {
+		return elements[ElementType.WAY.ordinal()].sum();
+	}
+
+	@Override
+	public long getRelations() {
+		return elements[ElementType.RELATION.ordinal()].sum();
+	}
+
+	@Override
+	public long getElements() {
+		return getNodes() + getWays() + getRelations();
+	}
+
+	@Override
+	public long getTags() {
+		return tags.sum();
+	}
+
+	@Override
+	public long getUnresolvedWayNodes() {
+		return unresolvedWayNodes.sum();
+	}
+
+	@Override
+	public long getStubMembers() {
+		return stubMembers.sum();
+	}
+
+	@Override
+	public long getElapsedMillis() {
+		if(startNanos == 0) {
+			return 0;
+		}
+		long end = running ? System.nanoTime() : endNanos;
+		return (end - startNanos) / 1000000;
+	}
+
+	@Override
+	public long getParseMillis() {
+		return Math.max(0, getElapsedMillis() - getResolveMillis() - getExportMillis());
+	}
+
+	@Override
+	public long getResolveMillis() {
+		return resolveNanos.sum() / 1000000;
+	}
+
+	@Override
+	public long getExportMillis() {
+		return exportNanos.sum() / 1000000;
+	}
+
+	@Override
+	public double getBytesPerSecond() {
+		long elapsed = getElapsedMillis();
+		return (elapsed == 0) ? 0 : getParseBytes() * 1000.0 / elapsed;
+	}
+
+	@Override
+	public double getElementsPerSecond() {
+		long elapsed = getElapsedMillis();
+		return (elapsed == 0) ? 0 : (getElements() - startElements) * 1000.0 / elapsed;
+	}
+
+	@Override
+	public long getRemainingMillis() {
+		double progress = getProgress();
+		if(!running) {
+			return 0;
+		}
+		if(progress <= 0) {
+			return -1;
+		}
+		return (long) (getElapsedMillis() * (1 - progress) / progress);
+	}
+
+	/**
+	 * @return A one-line summary of progress, for example "42.0% | 1234567 elements (1100000 nodes, ...) | 35.2 MB/s | ETA 0:01:05"
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		double progress = getProgress();
+		if(progress >= 0) {
+			sb.append(String.format("%.1f%% | ", progress * 100));
+		}
+		sb.append(getElements()).append(" elements (")
+			.append(getNodes()).append(" nodes, ")
+			.append(getWays()).append(" ways, ")
+			.append(getRelations()).append(" relations) | ")
+			.append(String.format("%.1f MB/s, %.0f elements/s", getBytesPerSecond() / 1e6, getElementsPerSecond()));
+		
+		long remaining = getRemainingMillis();
+		if(running && remaining >= 0) {
+			long seconds = remaining / 1000;
+			sb.append(String.format(" | ETA %d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60));
+		}
+		else if(!running) {
+			sb.append(" | done in ").append(getElapsedMillis()).append(" ms");
+		}
+		return sb.toString();
+	}
+
+//MODIFIERS
+	@Override
+	public void reset() {
+		bytesRead.reset();
+		for(LongAdder counter : elements) {
+			counter.reset();
+		}
+		tags.reset();
+		unresolvedWayNodes.reset();
+		stubMembers.reset();
+		resolveNanos.reset();
+		exportNanos.reset();
+		startBytes = 0;
+		startElements = 0;
+	}
+
+	/**
+	 * Sets the listener notified of progress while parsing
+	 * @param listener The listener, or null to disable notifications
+	 * @param intervalMillis The minimal time between two notifications, in milliseconds
+	 */
+	public void setProgressListener(ProgressListener listener, long intervalMillis) {
+		if(intervalMillis < 0) {
+			throw new RuntimeException("Invalid progress interval");
+		}
+		this.intervalNanos = intervalMillis * 1000000;
+		this.listener = listener;
+	}
+
+	/**
+	 * Called when a parse starts
+	 * @param totalBytes The input size, or -1 if unknown
+	 */
+	void started(long totalBytes) {
+		this.totalBytes = totalBytes;
+		startBytes = bytesRead.sum();
+		startElements = getElements();
+		startNanos = System.nanoTime();
+		endNanos = 0;
+		running = true;
+		resolveNanos.reset();
+		exportNanos.reset();
+		nextProgress.set(startNanos + intervalNanos);
+	}
+
+	/**
+	 * Called when a parse ends, notifies the listener a last time
+	 */
+	void ended() {
+		endNanos = System.nanoTime();
+		running = false;
+		
+		ProgressListener l = listener;
+		if(l != null) {
+			l.onProgress(this);
+		}
+	}
+
+	/**
+	 * @param count The amount of read bytes to add
+	 */
+	void addBytes(long count) {
+		bytesRead.add(count);
+	}
+
+	/**
+	 * Counts a kept element
+	 * @param type The element type
+	 * @param tagCount The amount of element tags
+	 */
+	void addElement(ElementType type, int tagCount) {
+		elements[type.ordinal()].increment();
+		if(tagCount > 0) {
+			tags.add(tagCount);
+		}
+	}
+
+	/**
+	 * Counts a way node which couldn't be resolved
+	 */
+	void addUnresolvedWayNode() {
+		unresolvedWayNodes.increment();
+	}
+
+	/**
+	 * Counts a stub relation member
+	 */
+	void addStubMember() {
+		stubMembers.increment();
+	}
+
+	/**
+	 * @param nanos The time spent resolving a reference, in nanoseconds
+	 */
+	void addResolveTime(long nanos) {
+		resolveNanos.add(nanos);
+	}
+
+	/**
+	 * @param nanos The time spent in a handler, in nanoseconds
+	 */
+	void addExportTime(long nanos) {
+		exportNanos.add(nanos);
+	}
+
+	/**
+	 * Notifies the listener if the progress interval is elapsed. Parsers should call it regularly
+	 * (every {@link #PROGRESS_CHECK} elements), as it reads the clock.
+	 */
+	void checkProgress() {
+		ProgressListener l = listener;
+		if(l != null) {
+			long now = System.nanoTime(), next = nextProgress.get();
+			if(now - next >= 0 && nextProgress.compareAndSet(next, now + intervalNanos)) {
+				l.onProgress(this);
+			}
+		}
+	}
+
+//OTHER METHODS
+	/**
+	 * Registers these metrics in the platform MBean server, so they can be read with JMX tools (for example JConsole)
+	 * @param name The name of the metrics (for example, the input name)
+	 * @return The registered MBean name, with domain info.pavie.basicosmparser and type ParserMetrics
+	 * @throws JMException If the metrics can't be registered (for example, if the name is already used)
+	 */
+	public ObjectName registerMBean(String name) throws JMException {
+		ObjectName result = new ObjectName("info.pavie.basicosmparser:type=ParserMetrics,name="+ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, result);
+		return result;
+	}
+
+	/**
+	 * Unregisters these metrics from the platform MBean server
+	 * @param name The MBean name returned by {@link #registerMBean(String)}
+	 * @throws JMException If the metrics can't be unregistered
+	 */
+	public static void unregisterMBean(ObjectName name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+	}
+}
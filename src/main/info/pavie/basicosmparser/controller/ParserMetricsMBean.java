@@ -0,0 +1,124 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+/**
+ * The management interface of {@link ParserMetrics}, available through JMX.
+ * @author Adrien PAVIE
+ */
+public interface ParserMetricsMBean {
+//ACCESSORS
+	/**
+	 * @return True if a parse is running
+	 */
+	public boolean isRunning();
+
+	/**
+	 * @return The amount of input bytes read (before decompression)
+	 */
+	public long getBytesRead();
+
+	/**
+	 * @return The input size of last parse in bytes, or -1 if unknown
+	 */
+	public long getTotalBytes();
+
+	/**
+	 * @return The read progress of last parse, between 0 and 1, or -1 if input size is unknown
+	 */
+	public double getProgress();
+
+	/**
+	 * @return The amount of kept nodes
+	 */
+	public long getNodes();
+
+	/**
+	 * @return The amount of kept ways
+	 */
+	public long getWays();
+
+	/**
+	 * @return The amount of kept relations
+	 */
+	public long getRelations();
+
+	/**
+	 * @return The amount of kept elements
+	 */
+	public long getElements();
+
+	/**
+	 * @return The amount of tags of kept elements
+	 */
+	public long getTags();
+
+	/**
+	 * @return The amount of way node references which couldn't be resolved when ways were read
+	 * (with lazy way nodes, nodes appearing after a way may still be found later)
+	 */
+	public long getUnresolvedWayNodes();
+
+	/**
+	 * @return The amount of stub relation members created
+	 */
+	public long getStubMembers();
+
+	/**
+	 * @return The time elapsed since the parse started (until it ended), in milliseconds
+	 */
+	public long getElapsedMillis();
+
+	/**
+	 * @return The time spent reading input and creating elements, in milliseconds
+	 */
+	public long getParseMillis();
+
+	/**
+	 * @return The time spent resolving way nodes and relation members, in milliseconds
+	 */
+	public long getResolveMillis();
+
+	/**
+	 * @return The time spent in the element handler (exporter) when elements are streamed, in milliseconds
+	 */
+	public long getExportMillis();
+
+	/**
+	 * @return The read throughput of last parse, in bytes per second
+	 */
+	public double getBytesPerSecond();
+
+	/**
+	 * @return The kept elements per second, during last parse
+	 */
+	public double getElementsPerSecond();
+
+	/**
+	 * @return The estimated remaining time, in milliseconds, or -1 if unknown
+	 */
+	public long getRemainingMillis();
+
+//MODIFIERS
+	/**
+	 * Resets all counters
+	 */
+	public void reset();
+}
@@ -0,0 +1,520 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.index.NodeLocationIndex;
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.ElementStore;
+import info.pavie.basicosmparser.model.ElementType;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.NodeResolver;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Timestamps;
+import info.pavie.basicosmparser.model.Way;
+
+/**
+ * A parsing context contains the state shared by all input readers during a parse:
+ * where read elements go, and how way nodes and relation members are found.
+ * It is also the node resolver of ways which only keep node IDs.
+ * @author Adrien PAVIE
+ */
+class ParsingContext implements NodeResolver {
+//ATTRIBUTES
+	/** Resolution of references is timed once every this amount (power of two), as reading the clock costs more than a lookup **/
+	private static final int RESOLVE_SAMPLING = 64;
+
+	/** The kept elements, or null if elements are only streamed to the handler **/
+	private final ElementStore elements;
+	/** The handler which receives read elements **/
+	private final OSMElementHandler handler;
+	/** The node locations index (can be null) **/
+	private final NodeLocationIndex locations;
+	/** Must way nodes have coordinates, although elements are not kept ? **/
+	private final boolean locationsRequired;
+	/** The dictionary sharing read strings (can be null) **/
+	private StringDictionary dictionary;
+	/** Do ways only keep node IDs ? **/
+	private boolean wayNodeIds;
+	/** Are coordinates parsed directly as fixed-point values ? **/
+	private boolean fixedPoint;
+	/** Are elements filtered by edition time ? **/
+	private boolean timeFilter;
+	/** The minimal edition time of kept elements, in seconds since epoch **/
+	private long minTime;
+	/** The maximal edition time of kept elements, in seconds since epoch **/
+	private long maxTime;
+	/** The filter of kept elements (can be null) **/
+	private ElementFilter filter;
+	/** The locations of read nodes, kept without node location index when a filter or time range is set, or when the handler requires them (can be null) **/
+	private LocationTable filteredLocations;
+	/** The parsing metrics (can be null) **/
+	private ParserMetrics metrics;
+	/** The amount of read elements, until the next progress check **/
+	private int progressCountdown;
+	/** The amount of resolved references, only one of {@link #RESOLVE_SAMPLING} is timed **/
+	private int resolved;
+
+//CONSTRUCTOR
+	/**
+	 * Creates a context which keeps all read elements in the given store
+	 * @param elements The store to fill
+	 * @param locations The node location index (can be null)
+	 */
+	ParsingContext(ElementStore elements, NodeLocationIndex locations) {
+		this(elements, new StoreHandler(elements), locations);
+	}
+
+	/**
+	 * Creates a context which sends all read elements to the given handler, without keeping them
+	 * @param handler The handler
+	 * @param locations The node location index (can be null)
+	 */
+	ParsingContext(OSMElementHandler handler, NodeLocationIndex locations) {
+		this(null, handler, locations);
+	}
+
+	/**
+	 * Default constructor
+	 * @param elements The kept elements (can be null)
+	 * @param handler The handler
+	 * @param locations The node location index (can be null)
+	 */
+	private ParsingContext(ElementStore elements, OSMElementHandler handler, NodeLocationIndex locations) {
+		if(handler == null) {
+			throw new NullPointerException("Handler can't be null");
+		}
+		
+		this.elements = elements;
+		this.handler = handler;
+		this.locations = locations;
+		locationsRequired = (elements == null && handler.requiresNodeLocations());
+		updateFilteredLocations();
+	}
+
+//ACCESSORS
+	/**
+	 * @return The kept elements, or null if elements are not kept
+	 */
+	ElementStore getElements() {
+		return elements;
+	}
+
+	/**
+	 * Finds a way node. If it isn't available as an object, it is created from the location index.
+	 * If elements are not kept, and the handler doesn't require node locations, a stub node is created.
+	 * @param ref The node ID
+	 * @return The node, or null if it can't be found
+	 */
+	Node findWayNode(long ref) {
+		Node n = resolveWayNode(ref);
+
+		//If nodes aren't kept, create stub object
+		if(n == null && elements == null && !locationsRequired) {
+			n = new Node(ref, 0, 0);
+		}
+		
+		return n;
+	}
+
+	/**
+	 * Finds a way node in kept elements, or else in node locations
+	 * @param ref The node ID
+	 * @return The node, or null if it can't be found
+	 */
+	private Node resolveWayNode(long ref) {
+		Node n = (elements == null) ? null : elements.getNode(ref);
+
+		//If node isn't kept as object, use its indexed location
+		if(n == null && locations != null) {
+			n = locations.getNode(ref);
+		}
+		if(n == null && filteredLocations != null) {
+			n = filteredLocations.getNode(ref);
+		}
+		
+		return n;
+	}
+
+	/**
+	 * Finds a way node, when it is requested from a way which only keeps node IDs (see {@link #resolveWayNode(long)}).
+	 * No stub object is created, so unknown nodes are null.
+	 */
+	@Override
+	public Node getNode(long id) {
+		return resolveWayNode(id);
+	}
+
+	/**
+	 * Finds a relation member. If it isn't contained in data, a stub object is created.
+	 * @param type The member type (node, way or relation)
+	 * @param ref The member ID
+	 * @return The member
+	 */
+	Element findMember(String type, long ref) {
+		long start = resolveStart();
+		Element result = null;
+		boolean stub = false;
+		
+		switch(type) {
+			case "node":
+				result = (elements == null) ? null : elements.getNode(ref);
+				if(result == null) {
+					result = new Node(ref, 0, 0);
+					stub = true;
+				}
+				break;
+			case "way":
+				result = (elements == null) ? null : elements.getWay(ref);
+				if(result == null) {
+					result = new Way(ref);
+					stub = true;
+				}
+				break;
+			case "relation":
+				result = (elements == null) ? null : elements.getRelation(ref);
+				if(result == null) {
+					result = new Relation(ref);
+					stub = true;
+				}
+				break;
+			default:
+				throw new RuntimeException("Unknown element type: "+type);
+		}
+		
+		if(metrics != null) {
+			if(stub) {
+				metrics.addStubMember();
+			}
+			resolveEnd(start);
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Get the shared instance of a read string (tag key or value, user name, member role)
+	 * @param s The read string
+	 * @return The shared instance, or s if there is no dictionary
+	 */
+	String intern(String s) {
+		return (dictionary == null) ? s : dictionary.get(s);
+	}
+
+	/**
+	 * @return True if readers should parse coordinates directly as fixed-point values (see {@link Coordinates})
+	 */
+	boolean isFixedPoint() {
+		return fixedPoint;
+	}
+
+	/**
+	 * Checks if an element edited at the given time should be kept. Readers should check it as soon as
+	 * the timestamp is known, to avoid creating skipped elements.
+	 * @param seconds The element edition time, in seconds since epoch ({@link Timestamps#NONE} if unknown)
+	 * @return True if element is in time range (always true if there is no time filter)
+	 */
+	boolean acceptTime(long seconds) {
+		return !timeFilter || (seconds != Timestamps.NONE && seconds >= minTime && seconds <= maxTime);
+	}
+
+	/**
+	 * Checks if an element should be created, from the attributes known when it starts. Readers should check it
+	 * before creating the element, and skip its tags, nodes and members if it is refused.
+	 * @param type The element type
+	 * @param version The element version
+	 * @param seconds The element edition time, in seconds since epoch ({@link Timestamps#NONE} if unknown)
+	 * @return True if element may be kept
+	 */
+	boolean accept(ElementType type, int version, long seconds) {
+		return acceptTime(seconds) && (filter == null || filter.acceptsHeader(type, version, seconds));
+	}
+
+	/**
+	 * Checks if a node at the given location may be kept
+	 * @param lat The node latitude
+	 * @param lon The node longitude
+	 * @return True if location is accepted by the filter (always true if there is no filter)
+	 */
+	boolean acceptLocation(double lat, double lon) {
+		return filter == null || filter.acceptsLocation(lat, lon);
+	}
+
+	/**
+	 * @return True if elements without tags are always skipped
+	 */
+	boolean requiresTags() {
+		return filter != null && filter.hasTagConditions();
+	}
+
+//MODIFIERS
+	/**
+	 * @param fixedPoint True if readers should parse coordinates directly as fixed-point values
+	 */
+	void setFixedPoint(boolean fixedPoint) {
+		this.fixedPoint = fixedPoint;
+	}
+
+	/**
+	 * Only keeps elements edited in the given time range. As with a filter, if there is no node location index,
+	 * locations of read nodes are kept in memory, so kept ways still get nodes out of time range.
+	 * @param from The minimal edition time, in seconds since epoch (inclusive)
+	 * @param to The maximal edition time, in seconds since epoch (inclusive)
+	 */
+	void setTimeRange(long from, long to) {
+		timeFilter = true;
+		minTime = from;
+		maxTime = to;
+		updateFilteredLocations();
+	}
+
+	/**
+	 * Sets the filter of kept elements. If there is no node location index, and ways may be kept while nodes may be
+	 * skipped (or elements are not kept), locations of read nodes are kept in memory, so kept ways still get nodes skipped by the filter.
+	 * @param filter The filter, or null to keep all elements
+	 */
+	void setFilter(ElementFilter filter) {
+		this.filter = filter;
+		updateFilteredLocations();
+	}
+
+	/**
+	 * Creates or drops the in-memory node locations, depending on the filter, time range and handler
+	 */
+	private void updateFilteredLocations() {
+		boolean nodesSkipped = timeFilter || (filter != null && filter.mayReject(ElementType.NODE));
+		boolean waysKept = filter == null || filter.accepts(ElementType.WAY);
+		boolean needed = locations == null && (locationsRequired
+				|| (waysKept && (nodesSkipped || (filter != null && elements == null))));
+		
+		if(!needed) {
+			filteredLocations = null;
+		}
+		else if(filteredLocations == null) {
+			filteredLocations = new LocationTable();
+		}
+	}
+
+	/**
+	 * Sets the metrics updated while reading, and starts their timer
+	 * @param metrics The metrics, or null to disable them
+	 * @param inputSize The input size in bytes, or -1 if unknown
+	 */
+	void setMetrics(ParserMetrics metrics, long inputSize) {
+		this.metrics = metrics;
+		progressCountdown = ParserMetrics.PROGRESS_CHECK;
+		if(metrics != null) {
+			metrics.started(inputSize);
+		}
+	}
+
+	/**
+	 * @param wayNodeIds True if ways should only keep node IDs, and find nodes when they are requested
+	 */
+	void setWayNodeIds(boolean wayNodeIds) {
+		this.wayNodeIds = wayNodeIds;
+	}
+
+	/**
+	 * Adds a node at the end of a read way
+	 * @param w The way
+	 * @param ref The node ID
+	 */
+	void addWayNode(Way w, long ref) {
+		if(wayNodeIds) {
+			if(w.getNodeResolver() == null) {
+				w.setNodeResolver(this);
+			}
+			w.addNodeId(ref);
+			
+			//Count nodes which can't be resolved yet
+			if(metrics != null) {
+				long start = resolveStart();
+				if(resolveWayNode(ref) == null) {
+					metrics.addUnresolvedWayNode();
+				}
+				resolveEnd(start);
+			}
+		}
+		else if(metrics == null) {
+			w.addNode(findWayNode(ref));
+		}
+		else {
+			long start = resolveStart();
+			Node n = resolveWayNode(ref);
+			if(n == null) {
+				metrics.addUnresolvedWayNode();
+				if(elements == null && !locationsRequired) {
+					n = new Node(ref, 0, 0);
+				}
+			}
+			w.addNode(n);
+			resolveEnd(start);
+		}
+	}
+
+	/**
+	 * Starts timing a reference resolution, if it is sampled
+	 * @return The start time, or 0 if this resolution isn't timed
+	 */
+	private long resolveStart() {
+		return (metrics != null && (++resolved & (RESOLVE_SAMPLING - 1)) == 0) ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Ends timing a reference resolution, and adds its estimated time to metrics
+	 * @param start The start time returned by {@link #resolveStart()}
+	 */
+	private void resolveEnd(long start) {
+		if(start != 0) {
+			metrics.addResolveTime((System.nanoTime() - start) * RESOLVE_SAMPLING);
+		}
+	}
+
+	/**
+	 * @param dictionary The dictionary sharing read strings, or null to keep them as read
+	 */
+	void setDictionary(StringDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+//OTHER METHODS
+	/**
+	 * Must be called when a node is read (even if it is skipped), to store its location
+	 * @param id The node ID
+	 * @param lat The node latitude
+	 * @param lon The node longitude
+	 */
+	void nodeCreated(long id, double lat, double lon) {
+		if(locations != null) {
+			locations.put(id, lat, lon);
+		}
+		if(filteredLocations != null) {
+			filteredLocations.put(id, lat, lon);
+		}
+	}
+
+	/**
+	 * Must be called when an element has been completely read.
+	 * Ways with less than two nodes, relations without members, elements out of time range
+	 * and elements refused by the filter are ignored.
+	 * @param e The read element
+	 */
+	void elementRead(Element e) {
+		if(!acceptTime(e.getTimestampSeconds()) || (filter != null && !filter.accepts(e))) {
+			return;
+		}
+		
+		if(metrics == null) {
+			send(e);
+		}
+		else {
+			//Time spent in handler is export time, unless elements are only stored
+			long start = (elements == null) ? System.nanoTime() : 0;
+			if(send(e)) {
+				metrics.addElement(e.getType(), e.getTagCount());
+			}
+			if(elements == null) {
+				metrics.addExportTime(System.nanoTime() - start);
+			}
+			
+			if(--progressCountdown == 0) {
+				progressCountdown = ParserMetrics.PROGRESS_CHECK;
+				metrics.checkProgress();
+			}
+		}
+	}
+
+	/**
+	 * Sends an element to the handler. Ways with less than two nodes and relations without members are ignored.
+	 * @param e The element
+	 * @return True if element was sent
+	 */
+	private boolean send(Element e) {
+		if(e instanceof Node) {
+			handler.onNode((Node) e);
+			return true;
+		}
+		else if(e instanceof Way) {
+			if(((Way) e).getNodeCount() >= 2) {
+				handler.onWay((Way) e);
+				return true;
+			}
+		}
+		else if(e instanceof Relation) {
+			if(((Relation) e).getMemberCount() > 0) {
+				handler.onRelation((Relation) e);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Must be called when the whole input has been read
+	 */
+	void end() {
+		if(metrics == null) {
+			handler.onEnd();
+		}
+		else {
+			long start = System.nanoTime();
+			handler.onEnd();
+			if(elements == null) {
+				metrics.addExportTime(System.nanoTime() - start);
+			}
+			metrics.ended();
+		}
+	}
+
+//INNER CLASS StoreHandler
+	/**
+	 * This handler puts all read elements in a store.
+	 */
+	private static class StoreHandler implements OSMElementHandler {
+	//ATTRIBUTES
+		/** The store to fill **/
+		private final ElementStore elements;
+
+	//CONSTRUCTOR
+		private StoreHandler(ElementStore elements) {
+			this.elements = elements;
+		}
+
+	//OTHER METHODS
+		@Override
+		public void onNode(Node n) {
+			elements.add(n);
+		}
+
+		@Override
+		public void onWay(Way w) {
+			elements.add(w);
+		}
+
+		@Override
+		public void onRelation(Relation r) {
+			elements.add(r);
+		}
+
+		@Override
+		public void onEnd() {
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+/**
+ * A progress listener is notified periodically while a parser reads data (see {@link ParserMetrics#setProgressListener(ProgressListener, long)}).
+ * It is called on the parsing thread, so it should return quickly.
+ * @author Adrien PAVIE
+ */
+public interface ProgressListener {
+//OTHER METHODS
+	/**
+	 * Called when the progress interval is elapsed, and once when parsing ends.
+	 * @param metrics The parsing metrics (see {@link ParserMetrics#isRunning()} to know if parsing ended)
+	 */
+	public void onProgress(ParserMetrics metrics);
+}
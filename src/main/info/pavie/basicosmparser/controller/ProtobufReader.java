@@ -0,0 +1,208 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A minimal Protocol Buffers reader, which reads a message from a byte array.
+ * Only the features used by OSM PBF format are supported.
+ * @author Adrien PAVIE
+ */
+class ProtobufReader {
+//ATTRIBUTES
+	/** Varint wire type **/
+	static final int VARINT = 0;
+	/** 64-bit wire type **/
+	static final int FIXED64 = 1;
+	/** Length-delimited wire type **/
+	static final int LENGTH_DELIMITED = 2;
+	/** 32-bit wire type **/
+	static final int FIXED32 = 5;
+
+	/** The read data **/
+	private final byte[] data;
+	/** The current position **/
+	private int pos;
+	/** The end of the message **/
+	private final int limit;
+	/** The last read field tag **/
+	private int tag;
+
+//CONSTRUCTOR
+	/**
+	 * Creates a reader for a whole array
+	 * @param data The message
+	 */
+	ProtobufReader(byte[] data) {
+		this(data, 0, data.length);
+	}
+
+	/**
+	 * Creates a reader for a part of an array
+	 * @param data The array
+	 * @param offset The message start
+	 * @param length The message length
+	 */
+	ProtobufReader(byte[] data, int offset, int length) {
+		this.data = data;
+		this.pos = offset;
+		this.limit = offset + length;
+	}
+
+//ACCESSORS
+	/**
+	 * Reads the next field key
+	 * @return True if a field was read, false if end of message is reached
+	 * @throws IOException If data is invalid
+	 */
+	boolean next() throws IOException {
+		if(pos >= limit) {
+			return false;
+		}
+		tag = (int) readVarint();
+		return true;
+	}
+
+	/**
+	 * @return The number of the last read field
+	 */
+	int field() {
+		return tag >>> 3;
+	}
+
+	/**
+	 * @return The wire type of the last read field
+	 */
+	int wireType() {
+		return tag & 7;
+	}
+
+	/**
+	 * @return True if there is still data to read
+	 */
+	boolean hasRemaining() {
+		return pos < limit;
+	}
+
+	/**
+	 * @return A varint value
+	 * @throws IOException If data is invalid
+	 */
+	long readVarint() throws IOException {
+		long result = 0;
+		int shift = 0;
+		
+		while(shift < 64) {
+			if(pos >= limit) {
+				throw new IOException("Truncated protobuf message");
+			}
+			byte b = data[pos++];
+			result |= (long) (b & 0x7F) << shift;
+			if(b >= 0) {
+				return result;
+			}
+			shift += 7;
+		}
+		
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * @return A zigzag-encoded signed varint value
+	 * @throws IOException If data is invalid
+	 */
+	long readSignedVarint() throws IOException {
+		long v = readVarint();
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/**
+	 * Reads a length-delimited field, and get a reader for its content
+	 * @return The reader on field content (for embedded messages and packed fields)
+	 * @throws IOException If data is invalid
+	 */
+	ProtobufReader readMessage() throws IOException {
+		int length = readLength();
+		ProtobufReader result = new ProtobufReader(data, pos, length);
+		pos += length;
+		return result;
+	}
+
+	/**
+	 * @return A length-delimited field, as a byte array
+	 * @throws IOException If data is invalid
+	 */
+	byte[] readBytes() throws IOException {
+		int length = readLength();
+		byte[] result = new byte[length];
+		System.arraycopy(data, pos, result, 0, length);
+		pos += length;
+		return result;
+	}
+
+	/**
+	 * @return A length-delimited field, as a UTF-8 string
+	 * @throws IOException If data is invalid
+	 */
+	String readString() throws IOException {
+		int length = readLength();
+		String result = new String(data, pos, length, StandardCharsets.UTF_8);
+		pos += length;
+		return result;
+	}
+
+	/**
+	 * @return The length of a length-delimited field
+	 * @throws IOException If data is invalid
+	 */
+	private int readLength() throws IOException {
+		long length = readVarint();
+		if(length < 0 || length > limit - pos) {
+			throw new IOException("Truncated protobuf message");
+		}
+		return (int) length;
+	}
+
+	/**
+	 * Skips the value of the last read field
+	 * @throws IOException If data is invalid
+	 */
+	void skip() throws IOException {
+		switch(wireType()) {
+			case VARINT:
+				readVarint();
+				break;
+			case FIXED64:
+				pos += 8;
+				break;
+			case LENGTH_DELIMITED:
+				int length = readLength();
+				pos += length;
+				break;
+			case FIXED32:
+				pos += 4;
+				break;
+			default:
+				throw new IOException("Unsupported protobuf wire type: "+wireType());
+		}
+	}
+}
@@ -0,0 +1,1066 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.ElementStore;
+import info.pavie.basicosmparser.model.ElementType;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.NodeResolver;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A snapshot is a compact binary copy of parsed elements, which can be reloaded much faster than parsing data again.
+ * It is written from an {@link ElementStore} (see {@link OSMParser#getElementStore()}) with {@link #write(ElementStore, File)},
+ * and opened with {@link #open(File)}. The file is memory-mapped, and elements are only decoded when they are requested,
+ * by blocks of {@link #BLOCK_SIZE} elements: opening a snapshot doesn't depend on its size. Each element is decoded only once,
+ * so the same object is always returned for a given element, and way nodes and relation members are the same objects
+ * as the ones returned by lookups. {@link #load()} decodes all elements in a new store, which is equal to the written one:
+ * same elements order, informations, tags, coordinates (including the ones which are not fixed-point values),
+ * ways keeping node objects or only node IDs, unknown way nodes, and stub relation members.
+ * <br>
+ * File format (big-endian) :
+ * <ul>
+ * <li>Header : magic number "OSMS", format version, strings offset and amount, then for each type (nodes, ways, relations)
+ * its amount of elements, amount of blocks, block index offset and lookup table offset</li>
+ * <li>Blocks : elements of a type in store order, encoded as in {@link ColumnarExporter} (varints, zigzag-encoded signed values,
+ * IDs, timestamps, changesets, user IDs and coordinates as delta with previous value in block), row by row.
+ * Each element has its ID, version, timestamp, changeset, user ID, user string index, flags (visible, exact coordinates,
+ * way nodes mode) and tags. Nodes then have their coordinates (two doubles if they aren't fixed-point values),
+ * ways their nodes (with their kind if some are not in data), relations their members (type, stub flag, ID and role)</li>
+ * <li>Strings : each string as its length and UTF-8 bytes, then the offset of each string (longs). Index 0 means null.</li>
+ * <li>Block indexes : for each block, its first element ID and offset (longs)</li>
+ * <li>Lookup tables : only if IDs of a type are not sorted in store, (ID, position) pairs sorted by ID (longs)</li>
+ * </ul>
+ * Blocks and strings never cross a 1 GB boundary, so they can be read from a single mapped segment.
+ * A snapshot is not thread-safe, and must be closed after use. Decoded elements stay valid after closing, except the nodes
+ * of ways which only keep node IDs: they are found in the snapshot, so they can't be requested anymore.
+ * Use {@link #load()} to keep these ways usable after closing.
+ * @author Adrien PAVIE
+ */
+public class Snapshot implements Closeable, NodeResolver {
+//ATTRIBUTES
+	/** The magic number ("OSMS") **/
+	public static final int MAGIC = 0x4F534D53;
+	/** The format version **/
+	public static final int FORMAT_VERSION = 1;
+	/** The amount of elements per block **/
+	public static final int BLOCK_SIZE = 256;
+	/** The header size, in bytes **/
+	static final int HEADER_SIZE = 96;
+	/** The bit shift to get segment number from offset **/
+	private static final int SEGMENT_SHIFT = 30;
+	/** The size of a mapped segment, in bytes **/
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+	/** The mask to get offset in segment **/
+	private static final int SEGMENT_MASK = (int) (SEGMENT_SIZE - 1);
+	/** The element types, by ordinal **/
+	private static final ElementType[] TYPES = ElementType.values();
+
+	/** Element flag: the element is visible **/
+	private static final int VISIBLE = 1;
+	/** Node flag: coordinates are written as doubles **/
+	private static final int EXACT = 2;
+	/** Way flag: the way only keeps node IDs **/
+	private static final int NODE_IDS = 2;
+	/** Way flag: some way nodes are not the ones in data, each node has its kind **/
+	private static final int MIXED_NODES = 4;
+	/** Way node kind: the node in data **/
+	private static final int STORED = 0;
+	/** Way node kind: a node out of data, with fixed-point coordinates **/
+	private static final int DETACHED = 1;
+	/** Way node kind: a node out of data, with exact coordinates **/
+	private static final int DETACHED_EXACT = 2;
+	/** Way node kind: an unknown node (null) **/
+	private static final int UNKNOWN = 3;
+	/** Member flag: the member is a stub object, not the element in data **/
+	private static final int STUB = 4;
+
+	/** The mapped segments (null if closed) **/
+	private ByteBuffer[] segments;
+	/** The offset of the string offsets **/
+	private final long stringsOffset;
+	/** The decoded strings, by index (minus one) **/
+	private final String[] strings;
+	/** The amount of elements, by type ordinal **/
+	private final int[] counts;
+	/** The offset of block indexes, by type ordinal **/
+	private final long[] indexOffsets;
+	/** The offset of lookup tables, by type ordinal (0 if IDs are sorted) **/
+	private final long[] lookupOffsets;
+	/** The decoded blocks, by type ordinal and block number (null if not decoded yet) **/
+	private final Element[][][] blocks;
+	/** The amount of decoded blocks **/
+	private int decodedBlocks;
+	/** The decoded relations whose members are not linked yet **/
+	private final ArrayDeque<PendingMembers> pendingMembers;
+	/** Are pending members being linked ? **/
+	private boolean linking;
+
+//CONSTRUCTOR
+	/**
+	 * Opens a snapshot file
+	 * @param f The snapshot file
+	 * @throws IOException If the file can't be read, or isn't a snapshot
+	 */
+	private Snapshot(File f) throws IOException {
+		try(FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while(header.hasRemaining() && channel.read(header, header.position()) > 0);
+			header.flip();
+			
+			if(size < HEADER_SIZE || header.getInt() != MAGIC) {
+				throw new IOException("Invalid snapshot file: "+f.getPath());
+			}
+			int version = header.getInt();
+			if(version != FORMAT_VERSION) {
+				throw new IOException("Unsupported snapshot format version: "+version);
+			}
+			
+			stringsOffset = header.getLong();
+			strings = new String[header.getInt()];
+			header.getInt();
+			
+			int types = TYPES.length;
+			counts = new int[types];
+			indexOffsets = new long[types];
+			lookupOffsets = new long[types];
+			blocks = new Element[types][][];
+			for(int t=0; t < types; t++) {
+				counts[t] = header.getInt();
+				blocks[t] = new Element[header.getInt()][];
+				indexOffsets[t] = header.getLong();
+				lookupOffsets[t] = header.getLong();
+			}
+			pendingMembers = new ArrayDeque<PendingMembers>();
+
+			//Mapping stays valid once channel is closed
+			segments = new ByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+			for(int i=0; i < segments.length; i++) {
+				long start = (long) i << SEGMENT_SHIFT;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+			}
+		}
+	}
+
+//ACCESSORS
+	/**
+	 * @return The amount of nodes
+	 */
+	public int getNodeCount() {
+		return counts[ElementType.NODE.ordinal()];
+	}
+
+	/**
+	 * @return The amount of ways
+	 */
+	public int getWayCount() {
+		return counts[ElementType.WAY.ordinal()];
+	}
+
+	/**
+	 * @return The amount of relations
+	 */
+	public int getRelationCount() {
+		return counts[ElementType.RELATION.ordinal()];
+	}
+
+	/**
+	 * @return The amount of elements
+	 */
+	public int size() {
+		return getNodeCount() + getWayCount() + getRelationCount();
+	}
+
+	/**
+	 * @param id The node ID
+	 * @return The node, or null if not found
+	 */
+	@Override
+	public Node getNode(long id) {
+		return (Node) get(ElementType.NODE, id);
+	}
+
+	/**
+	 * @param id The way ID
+	 * @return The way, or null if not found
+	 */
+	public Way getWay(long id) {
+		return (Way) get(ElementType.WAY, id);
+	}
+
+	/**
+	 * @param id The relation ID
+	 * @return The relation, or null if not found
+	 */
+	public Relation getRelation(long id) {
+		return (Relation) get(ElementType.RELATION, id);
+	}
+
+	/**
+	 * Get an element, and decodes its block if needed
+	 * @param type The element type
+	 * @param id The element numeric ID
+	 * @return The element, or null if not found
+	 */
+	public Element get(ElementType type, long id) {
+		if(segments == null) {
+			throw new RuntimeException("Snapshot is closed");
+		}
+		int t = type.ordinal();
+
+		//Unsorted IDs: position is found in lookup table
+		if(lookupOffsets[t] != 0) {
+			int low = 0, high = counts[t] - 1;
+			while(low <= high) {
+				int mid = (low + high) >>> 1;
+				long midId = getLong(lookupOffsets[t] + mid * 16L);
+				if(midId < id) {
+					low = mid + 1;
+				}
+				else if(midId > id) {
+					high = mid - 1;
+				}
+				else {
+					int position = (int) getLong(lookupOffsets[t] + mid * 16L + 8);
+					return block(type, position / BLOCK_SIZE)[position % BLOCK_SIZE];
+				}
+			}
+			return null;
+		}
+
+		//Sorted IDs: find last block starting before ID, then element in block
+		int low = 0, high = blocks[t].length - 1, found = -1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			if(getLong(indexOffsets[t] + mid * 16L) <= id) {
+				found = mid;
+				low = mid + 1;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+		if(found < 0) {
+			return null;
+		}
+		
+		Element[] block = block(type, found);
+		low = 0;
+		high = block.length - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			long midId = block[mid].getNumericId();
+			if(midId < id) {
+				low = mid + 1;
+			}
+			else if(midId > id) {
+				high = mid - 1;
+			}
+			else {
+				return block[mid];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return The amount of blocks decoded since the snapshot was opened
+	 */
+	int getDecodedBlocks() {
+		return decodedBlocks;
+	}
+
+	/**
+	 * Get the elements of a block, and decodes it if needed
+	 * @param type The element type
+	 * @param b The block number
+	 * @return The block elements
+	 */
+	private Element[] block(ElementType type, int b) {
+		int t = type.ordinal();
+		Element[] result = blocks[t][b];
+		
+		if(result == null) {
+			if(segments == null) {
+				throw new RuntimeException("Snapshot is closed");
+			}
+			result = decode(type, b);
+		}
+		
+		return result;
+	}
+
+	/**
+	 * @param index The string index
+	 * @return The string, or null if index is 0
+	 */
+	private String string(long index) {
+		if(index == 0) {
+			return null;
+		}
+		
+		String result = strings[(int) index - 1];
+		if(result == null) {
+			ByteBuffer in = buffer(getLong(stringsOffset + (index - 1) * 8));
+			byte[] bytes = new byte[(int) readVarint(in)];
+			in.get(bytes);
+			result = new String(bytes, StandardCharsets.UTF_8);
+			strings[(int) index - 1] = result;
+		}
+		return result;
+	}
+
+	/**
+	 * @param offset The offset in file
+	 * @return The long value at this offset
+	 */
+	private long getLong(long offset) {
+		return segments[(int) (offset >>> SEGMENT_SHIFT)].getLong((int) offset & SEGMENT_MASK);
+	}
+
+	/**
+	 * @param offset The offset in file
+	 * @return A buffer on the segment containing this offset, positioned at this offset
+	 */
+	private ByteBuffer buffer(long offset) {
+		ByteBuffer result = segments[(int) (offset >>> SEGMENT_SHIFT)].duplicate();
+		result.position((int) offset & SEGMENT_MASK);
+		return result;
+	}
+
+//OTHER METHODS
+	/**
+	 * Writes elements in a snapshot file. Way nodes and relation members which are not the objects contained in the store
+	 * are written as out of data: way nodes with their ID and coordinates, relation members as stubs with their type and ID.
+	 * @param elements The elements to write
+	 * @param f The snapshot file (overwritten if it exists)
+	 * @throws IOException If the file can't be written
+	 */
+	public static void write(ElementStore elements, File f) throws IOException {
+		try(FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			new Writer(elements, channel).write();
+		}
+	}
+
+	/**
+	 * Opens a snapshot file. Only the header is read, elements are decoded when they are requested.
+	 * @param f The snapshot file
+	 * @return The snapshot
+	 * @throws IOException If the file can't be read, or isn't a snapshot of a supported version
+	 */
+	public static Snapshot open(File f) throws IOException {
+		return new Snapshot(f);
+	}
+
+	/**
+	 * Decodes all elements, and puts them in a new store, in the order they were written.
+	 * Ways which only keep node IDs find their nodes in the returned store, so the snapshot can be closed after this call.
+	 * @return The elements
+	 */
+	public ElementStore load() {
+		ElementStore result = new ElementStore();
+		
+		for(ElementType type : TYPES) {
+			for(int b=0; b < blocks[type.ordinal()].length; b++) {
+				for(Element e : block(type, b)) {
+					result.add(e);
+				}
+			}
+		}
+		
+		for(Way w : result.getWays()) {
+			if(w.getNodeResolver() != null) {
+				w.setNodeResolver(result);
+			}
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Decodes a block of elements
+	 * @param type The element type
+	 * @param b The block number
+	 * @return The block elements
+	 */
+	private Element[] decode(ElementType type, int b) {
+		int t = type.ordinal();
+		ByteBuffer in = buffer(getLong(indexOffsets[t] + b * 16L + 8));
+		Element[] result = new Element[Math.min(BLOCK_SIZE, counts[t] - b * BLOCK_SIZE)];
+		Deltas d = new Deltas();
+
+		
+		for(int i=0; i < result.length; i++) {
+			d.id += readSigned(in);
+			int version = (int) readSigned(in);
+			d.timestamp += readSigned(in);
+			d.changeset += readSigned(in);
+			d.uid += readSigned(in);
+			String user = string(readVarint(in));
+			int flags = in.get();
+			
+			Element e;
+			switch(type) {
+				case NODE:
+					e = readNode(in, d, d.id, (flags & EXACT) != 0);
+					break;
+				case WAY:
+					e = new Way(d.id);
+					break;
+				default:
+					e = new Relation(d.id);
+			}
+			
+			e.setVersion(version);
+			e.setTimestampSeconds(d.timestamp);
+			e.setChangeset(d.changeset);
+			e.setUid(d.uid);
+			e.setUser(user);
+			e.setVisible((flags & VISIBLE) != 0);
+			
+			int tags = (int) readVarint(in);
+			for(int j=0; j < tags; j++) {
+				e.addTag(string(readVarint(in)), string(readVarint(in)));
+			}
+			
+			if(e instanceof Way) {
+				readNodes((Way) e, in, d, flags);
+			}
+			else if(e instanceof Relation) {
+				int count = (int) readVarint(in);
+				long[] refs = new long[count * 2];
+				String[] memberRoles = new String[count];
+				for(int j=0; j < count; j++) {
+					refs[j*2] = in.get();
+					d.ref += readSigned(in);
+					refs[j*2+1] = d.ref;
+					memberRoles[j] = string(readVarint(in));
+				}
+				pendingMembers.add(new PendingMembers((Relation) e, refs, memberRoles));
+			}
+			
+			result[i] = e;
+		}
+		
+		blocks[t][b] = result;
+		decodedBlocks++;
+		
+		//Relation members are found once the block is available, as they can be in this block
+		if(!linking) {
+			linkMembers();
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Links members of decoded relations. Member lookups can decode other relation blocks, whose members are added
+	 * to the pending ones instead of being linked recursively, so long chains of relations don't overflow the stack.
+	 */
+	private void linkMembers() {
+		linking = true;
+		try {
+			PendingMembers p;
+			while((p = pendingMembers.poll()) != null) {
+				for(int j=0; j < p.roles.length; j++) {
+					ElementType memberType = TYPES[(int) p.refs[j*2] & 3];
+					long ref = p.refs[j*2+1];
+					Element member = ((p.refs[j*2] & STUB) != 0) ? stub(memberType, ref) : get(memberType, ref);
+					p.relation.addMember(p.roles[j], member);
+				}
+			}
+		}
+		finally {
+			pendingMembers.clear();
+			linking = false;
+		}
+	}
+
+	/**
+	 * Reads node coordinates, and creates the node
+	 * @param in The input
+	 * @param d The block delta values
+	 * @param id The node ID
+	 * @param exact True if coordinates are written as doubles
+	 * @return The node
+	 */
+	private static Node readNode(ByteBuffer in, Deltas d, long id, boolean exact) {
+		if(exact) {
+			return new Node(id, in.getDouble(), in.getDouble());
+		}
+		else {
+			d.lat += readSigned(in);
+			d.lon += readSigned(in);
+			return Node.fromFixedPoint(id, (int) d.lat, (int) d.lon);
+		}
+	}
+
+	/**
+	 * Reads the nodes of a way
+	 * @param w The way
+	 * @param in The input
+	 * @param d The block delta values
+	 * @param flags The way flags
+	 */
+	private void readNodes(Way w, ByteBuffer in, Deltas d, int flags) {
+		int count = (int) readVarint(in);
+		
+		if((flags & NODE_IDS) != 0) {
+			w.setNodeResolver(this);
+			for(int i=0; i < count; i++) {
+				d.ref += readSigned(in);
+				w.addNodeId(d.ref);
+			}
+		}
+		else {
+			boolean mixed = (flags & MIXED_NODES) != 0;
+			for(int i=0; i < count; i++) {
+				int kind = mixed ? in.get() : STORED;
+				if(kind == UNKNOWN) {
+					w.addNode(null);
+				}
+				else {
+					d.ref += readSigned(in);
+					w.addNode((kind == STORED) ? getNode(d.ref) : readNode(in, d, d.ref, kind == DETACHED_EXACT));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param type The element type
+	 * @param id The element ID
+	 * @return A stub element, which only defines its ID (as created by parsers for members out of data)
+	 */
+	private static Element stub(ElementType type, long id) {
+		switch(type) {
+			case NODE:
+				return new Node(id, 0, 0);
+			case WAY:
+				return new Way(id);
+			default:
+				return new Relation(id);
+		}
+	}
+
+	/**
+	 * Closes the snapshot. Elements already decoded stay valid, but other elements can't be requested anymore,
+	 * including nodes of decoded ways which only keep node IDs.
+	 */
+	@Override
+	public void close() {
+		segments = null;
+	}
+
+	/**
+	 * @param in The input
+	 * @return The read varint
+	 */
+	private static long readVarint(ByteBuffer in) {
+		long result = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.get();
+			result |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while(b < 0);
+		return result;
+	}
+
+	/**
+	 * @param in The input
+	 * @return The read zigzag-encoded signed varint
+	 */
+	private static long readSigned(ByteBuffer in) {
+		long v = readVarint(in);
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+//INNER CLASS Deltas
+	/**
+	 * The previous values in a block, used for delta encoding.
+	 */
+	private static class Deltas {
+		private long id, timestamp, changeset, uid, lat, lon, ref;
+	}
+
+//INNER CLASS PendingMembers
+	/**
+	 * The members of a decoded relation, before they are linked.
+	 */
+	private static class PendingMembers {
+		/** The relation **/
+		private final Relation relation;
+		/** The type and flags, then ID, of each member **/
+		private final long[] refs;
+		/** The role of each member **/
+		private final String[] roles;
+
+		/**
+		 * @param relation The relation
+		 * @param refs The type and flags, then ID, of each member
+		 * @param roles The role of each member
+		 */
+		private PendingMembers(Relation relation, long[] refs, String[] roles) {
+			this.relation = relation;
+			this.refs = refs;
+			this.roles = roles;
+		}
+	}
+
+//INNER CLASS Writer
+	/**
+	 * The writer encodes elements of a store in a snapshot file.
+	 */
+	private static class Writer {
+	//ATTRIBUTES
+		/** The amount of buffered bytes which causes writing to file **/
+		private static final int FLUSH_SIZE = 1 << 20;
+
+		/** The written elements **/
+		private final ElementStore elements;
+		/** The output file **/
+		private final FileChannel channel;
+		/** The bytes not written to file yet **/
+		private byte[] buffer;
+		/** The amount of buffered bytes **/
+		private int size;
+		/** The file offset of first buffered byte **/
+		private long position;
+		/** The index of each written string **/
+		private final Map<String,Integer> stringIndexes;
+		/** The written strings, by index (minus one) **/
+		private final List<String> strings;
+
+	//CONSTRUCTOR
+		private Writer(ElementStore elements, FileChannel channel) {
+			this.elements = elements;
+			this.channel = channel;
+			buffer = new byte[FLUSH_SIZE * 2];
+			position = HEADER_SIZE;
+			stringIndexes = new HashMap<String,Integer>();
+			strings = new ArrayList<String>();
+		}
+
+	//OTHER METHODS
+		/**
+		 * Writes elements, strings, indexes and header
+		 * @throws IOException If the file can't be written
+		 */
+		private void write() throws IOException {
+			ElementType[] types = TYPES;
+			int[] counts = new int[types.length];
+			long[][] blockIndexes = new long[types.length][];
+			boolean[] sorted = new boolean[types.length];
+			
+			for(ElementType type : types) {
+				int t = type.ordinal();
+				Iterable<? extends Element> list = (type == ElementType.NODE) ? elements.getNodes() : (type == ElementType.WAY) ? elements.getWays() : elements.getRelations();
+				long[] index = new long[16];
+				int blockStart = 0, count = 0;
+				long previousId = Long.MIN_VALUE;
+				Deltas d = new Deltas();
+				sorted[t] = true;
+				
+				for(Element e : list) {
+					if(count % BLOCK_SIZE == 0) {
+						if(count > 0) {
+							index[count / BLOCK_SIZE * 2 - 1] = endRecord(blockStart);
+						}
+						if(index.length < (count / BLOCK_SIZE + 1) * 2) {
+							index = Arrays.copyOf(index, index.length * 2);
+						}
+						index[count / BLOCK_SIZE * 2] = e.getNumericId();
+						blockStart = size;
+						d = new Deltas();
+					}
+					if(count > 0 && e.getNumericId() <= previousId) {
+						sorted[t] = false;
+					}
+					previousId = e.getNumericId();
+					
+					writeElement(e, d);
+					count++;
+				}
+				if(count > 0) {
+					index[((count - 1) / BLOCK_SIZE) * 2 + 1] = endRecord(blockStart);
+				}
+				
+				counts[t] = count;
+				blockIndexes[t] = Arrays.copyOf(index, ((count + BLOCK_SIZE - 1) / BLOCK_SIZE) * 2);
+			}
+
+			//Strings, then their offsets
+			long[] stringOffsets = new long[strings.size()];
+			for(int i=0; i < stringOffsets.length; i++) {
+				int start = size;
+				byte[] bytes = strings.get(i).getBytes(StandardCharsets.UTF_8);
+				writeVarint(bytes.length);
+				writeBytes(bytes);
+				stringOffsets[i] = endRecord(start);
+			}
+			long stringsOffset = writeLongs(stringOffsets);
+
+			//Block indexes and lookup tables
+			long[] indexOffsets = new long[types.length];
+			long[] lookupOffsets = new long[types.length];
+			for(ElementType type : types) {
+				int t = type.ordinal();
+				indexOffsets[t] = writeLongs(blockIndexes[t]);
+				if(!sorted[t]) {
+					lookupOffsets[t] = writeLongs(lookup(type, counts[t]));
+				}
+			}
+			flush();
+
+			//Header
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(FORMAT_VERSION);
+			header.putLong(stringsOffset);
+			header.putInt(strings.size());
+			header.putInt(0);
+			for(ElementType type : types) {
+				int t = type.ordinal();
+				header.putInt(counts[t]);
+				header.putInt(blockIndexes[t].length / 2);
+				header.putLong(indexOffsets[t]);
+				header.putLong(lookupOffsets[t]);
+			}
+			header.flip();
+			while(header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+		}
+
+		/**
+		 * Encodes an element
+		 * @param e The element
+		 * @param d The block delta values
+		 */
+		private void writeElement(Element e, Deltas d) {
+			int flags = e.isVisible() ? VISIBLE : 0;
+			if(e instanceof Node && isExact((Node) e)) {
+				flags |= EXACT;
+			}
+			else if(e instanceof Way) {
+				Way w = (Way) e;
+				if(w.getNodeResolver() != null) {
+					flags |= NODE_IDS;
+				}
+				else {
+					for(Node n : w.getNodes()) {
+						if(n == null || elements.getNode(n.getNumericId()) != n) {
+							flags |= MIXED_NODES;
+							break;
+						}
+					}
+				}
+			}
+			
+			writeSigned(e.getNumericId() - d.id);
+			d.id = e.getNumericId();
+			writeSigned(e.getVersion());
+			writeSigned(e.getTimestampSeconds() - d.timestamp);
+			d.timestamp = e.getTimestampSeconds();
+			writeSigned(e.getChangeset() - d.changeset);
+			d.changeset = e.getChangeset();
+			writeSigned(e.getUid() - d.uid);
+			d.uid = e.getUid();
+			writeVarint(string(e.getUser()));
+			writeByte(flags);
+			
+			if(e instanceof Node) {
+				writeLocation((Node) e, d, (flags & EXACT) != 0);
+			}
+			
+			writeVarint(e.getTagCount());
+			for(Map.Entry<String,String> tag : e.getTags().entrySet()) {
+				writeVarint(string(tag.getKey()));
+				writeVarint(string(tag.getValue()));
+			}
+			
+			if(e instanceof Way) {
+				writeNodes((Way) e, d, flags);
+			}
+			else if(e instanceof Relation) {
+				Relation r = (Relation) e;
+				writeVarint(r.getMemberCount());
+				for(int i=0; i < r.getMemberCount(); i++) {
+					Element member = r.getMember(i);
+					boolean stub = elements.get(member.getType(), member.getNumericId()) != member;
+					writeByte(member.getType().ordinal() | (stub ? STUB : 0));
+					writeSigned(member.getNumericId() - d.ref);
+					d.ref = member.getNumericId();
+					writeVarint(string(r.getMemberRole(i)));
+				}
+			}
+		}
+
+		/**
+		 * Encodes the nodes of a way
+		 * @param w The way
+		 * @param d The block delta values
+		 * @param flags The way flags
+		 */
+		private void writeNodes(Way w, Deltas d, int flags) {
+			writeVarint(w.getNodeCount());
+			
+			if((flags & NODE_IDS) != 0) {
+				for(long ref : w.getNodeIds()) {
+					writeSigned(ref - d.ref);
+					d.ref = ref;
+				}
+			}
+			else {
+				for(Node n : w.getNodes()) {
+					int kind = STORED;
+					if(n == null) {
+						kind = UNKNOWN;
+					}
+					else if(elements.getNode(n.getNumericId()) != n) {
+						kind = isExact(n) ? DETACHED_EXACT : DETACHED;
+					}
+					
+					if((flags & MIXED_NODES) != 0) {
+						writeByte(kind);
+					}
+					if(kind != UNKNOWN) {
+						writeSigned(n.getNumericId() - d.ref);
+						d.ref = n.getNumericId();
+						if(kind != STORED) {
+							writeLocation(n, d, kind == DETACHED_EXACT);
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Encodes node coordinates
+		 * @param n The node
+		 * @param d The block delta values
+		 * @param exact True to write coordinates as doubles
+		 */
+		private void writeLocation(Node n, Deltas d, boolean exact) {
+			if(exact) {
+				writeLong(Double.doubleToRawLongBits(n.getLat()));
+				writeLong(Double.doubleToRawLongBits(n.getLon()));
+			}
+			else {
+				writeSigned(n.getLatE7() - d.lat);
+				d.lat = n.getLatE7();
+				writeSigned(n.getLonE7() - d.lon);
+				d.lon = n.getLonE7();
+			}
+		}
+
+		/**
+		 * @param n The node
+		 * @return True if node coordinates can't be exactly represented as fixed-point values
+		 */
+		private static boolean isExact(Node n) {
+			return n.getLat() != n.getLatE7() / Node.SCALE || n.getLon() != n.getLonE7() / Node.SCALE;
+		}
+
+		/**
+		 * @param s The string
+		 * @return The string index (0 for null)
+		 */
+		private int string(String s) {
+			if(s == null) {
+				return 0;
+			}
+			
+			Integer result = stringIndexes.get(s);
+			if(result == null) {
+				strings.add(s);
+				result = strings.size();
+				stringIndexes.put(s, result);
+			}
+			return result;
+		}
+
+		/**
+		 * Creates the lookup table of a type whose IDs are not sorted
+		 * @param type The element type
+		 * @param count The amount of elements
+		 * @return The (ID, position) pairs, sorted by ID
+		 */
+		private long[] lookup(ElementType type, int count) {
+			final long[] ids = new long[count];
+			Iterable<? extends Element> list = (type == ElementType.NODE) ? elements.getNodes() : (type == ElementType.WAY) ? elements.getWays() : elements.getRelations();
+			int i = 0;
+			for(Element e : list) {
+				ids[i++] = e.getNumericId();
+			}
+			
+			Integer[] positions = new Integer[count];
+			for(i=0; i < count; i++) {
+				positions[i] = i;
+			}
+			Arrays.sort(positions, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return Long.compare(ids[a], ids[b]);
+				}
+			});
+			
+			long[] result = new long[count * 2];
+			for(i=0; i < count; i++) {
+				result[i*2] = ids[positions[i]];
+				result[i*2+1] = positions[i];
+			}
+			return result;
+		}
+
+		/**
+		 * Ends a record (block or string), which is moved to next segment if it crosses a segment boundary
+		 * @param start The position of record in buffer
+		 * @return The record offset in file
+		 * @throws UncheckedIOException If the record can't be written
+		 */
+		private long endRecord(int start) {
+			long offset = position + start;
+			long last = position + size - 1;
+			
+			if(size > start && (offset >>> SEGMENT_SHIFT) != (last >>> SEGMENT_SHIFT)) {
+				int length = size - start;
+				if(length > SEGMENT_SIZE) {
+					throw new RuntimeException("Snapshot block too big: "+length+" bytes");
+				}
+				int padding = (int) (((last >>> SEGMENT_SHIFT) << SEGMENT_SHIFT) - offset);
+				grow(padding);
+				System.arraycopy(buffer, start, buffer, start + padding, length);
+				Arrays.fill(buffer, start, start + padding, (byte) 0);
+				size += padding;
+				offset += padding;
+			}
+			
+			if(size >= FLUSH_SIZE) {
+				flushUnchecked();
+			}
+			return offset;
+		}
+
+		/**
+		 * Writes long values, aligned on 8 bytes
+		 * @param values The values
+		 * @return The offset of first value in file
+		 */
+		private long writeLongs(long[] values) {
+			while((position + size) % 8 != 0) {
+				writeByte(0);
+			}
+			long result = position + size;
+			for(long v : values) {
+				writeLong(v);
+				if(size >= FLUSH_SIZE) {
+					flushUnchecked();
+				}
+			}
+			return result;
+		}
+		
+		private void writeVarint(long value) {
+			grow(10);
+			while((value & ~0x7FL) != 0) {
+				buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer[size++] = (byte) value;
+		}
+		
+		private void writeSigned(long value) {
+			writeVarint((value << 1) ^ (value >> 63));
+		}
+		
+		private void writeByte(int value) {
+			grow(1);
+			buffer[size++] = (byte) value;
+		}
+		
+		private void writeLong(long value) {
+			grow(8);
+			for(int i=56; i >= 0; i-=8) {
+				buffer[size++] = (byte) (value >>> i);
+			}
+		}
+		
+		private void writeBytes(byte[] bytes) {
+			grow(bytes.length);
+			System.arraycopy(bytes, 0, buffer, size, bytes.length);
+			size += bytes.length;
+		}
+
+		/**
+		 * @param needed The amount of bytes to add to buffer
+		 */
+		private void grow(int needed) {
+			if(size + needed > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + needed));
+			}
+		}
+
+		/**
+		 * Writes buffered bytes to file
+		 * @throws IOException If the file can't be written
+		 */
+		private void flush() throws IOException {
+			ByteBuffer bb = ByteBuffer.wrap(buffer, 0, size);
+			while(bb.hasRemaining()) {
+				position += channel.write(bb, position);
+			}
+			size = 0;
+		}
+
+		/**
+		 * Writes buffered bytes to file, from encoding methods
+		 * @throws UncheckedIOException If the file can't be written
+		 */
+		private void flushUnchecked() {
+			try {
+				flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A string dictionary allows to share a single String instance between all equal strings read by a parser
+ * (tag keys and values, user names, member roles). It is bounded: when it is full, the least recently
+ * used strings are removed, so rare values don't fill memory. Long strings (like descriptions) are not kept.
+ * It also counts how many strings were deduplicated, and the memory this saved.
+ * This class is not thread-safe.
+ * @author Adrien PAVIE
+ */
+public class StringDictionary {
+//ATTRIBUTES
+	/** The default maximal amount of kept strings **/
+	public static final int DEFAULT_CAPACITY = 100000;
+	/** The maximal length of a kept string **/
+	public static final int MAX_LENGTH = 64;
+
+	/** The kept strings, in access order **/
+	private final Map<String,String> strings;
+	/** The maximal amount of kept strings **/
+	private final int capacity;
+	/** The amount of calls to get() **/
+	private long requests;
+	/** The amount of strings found in dictionary **/
+	private long hits;
+	/** The estimated amount of saved bytes **/
+	private long savedBytes;
+
+//CONSTRUCTOR
+	/**
+	 * Creates a dictionary with default capacity
+	 */
+	public StringDictionary() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a dictionary with the given capacity
+	 * @param capacity The maximal amount of kept strings
+	 */
+	public StringDictionary(int capacity) {
+		if(capacity < 1) {
+			throw new RuntimeException("Capacity must be positive");
+		}
+		
+		this.capacity = capacity;
+		strings = new LinkedHashMap<String,String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String,String> eldest) {
+				return size() > StringDictionary.this.capacity;
+			}
+		};
+	}
+
+//ACCESSORS
+	/**
+	 * Get the shared instance of a string. If the string isn't known, it is added in the dictionary.
+	 * @param s The string
+	 * @return The shared instance equal to s (or s itself if it is new, null or too long)
+	 */
+	public String get(String s) {
+		if(s == null || s.length() > MAX_LENGTH) {
+			return s;
+		}
+		
+		requests++;
+		String result = strings.get(s);
+		
+		if(result == null) {
+			strings.put(s, s);
+			result = s;
+		}
+		else if(result != s) {
+			hits++;
+			savedBytes += 40 + 2 * s.length(); //String object and its characters array, on a 64-bit JVM
+		}
+		
+		return result;
+	}
+
+	/**
+	 * @return The maximal amount of kept strings
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return The amount of kept strings
+	 */
+	public int size() {
+		return strings.size();
+	}
+
+	/**
+	 * @return The amount of strings looked up in the dictionary
+	 */
+	public long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return The amount of strings which were replaced by a shared instance
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return The estimated amount of memory saved by sharing strings, in bytes
+	 */
+	public long getSavedBytes() {
+		return savedBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "StringDictionary [size="+size()+", requests="+requests+", hits="+hits+", saved="+(savedBytes / 1024)+" KB]";
+	}
+
+//MODIFIERS
+	/**
+	 * Removes all kept strings, and resets statistics
+	 */
+	public void clear() {
+		strings.clear();
+		requests = 0;
+		hits = 0;
+		savedBytes = 0;
+	}
+}
@@ -0,0 +1,326 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import info.pavie.basicosmparser.model.Node;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A buffered text writer, which encodes characters as UTF-8 directly into a large byte buffer,
+ * and writes it to a channel when full. Numbers are written digit by digit, without intermediate strings.
+ * Unlike standard writers, this class is not synchronized.
+ * @author Adrien PAVIE
+ */
+class UTF8Writer implements Closeable, Flushable {
+//ATTRIBUTES
+	/** The default buffer size, in bytes **/
+	static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+	/** The minimal space needed in buffer for writing a number or a character **/
+	private static final int MAX_CHUNK = 20;
+
+	/** The written channel **/
+	private final WritableByteChannel channel;
+	/** The bytes not written yet **/
+	private final ByteBuffer buffer;
+	/** The digits of the number being written **/
+	private final byte[] digits;
+	/** The amount of bytes already written to the channel **/
+	private long written;
+	/** Is the writer closed ? **/
+	private boolean closed;
+
+//CONSTRUCTOR
+	/**
+	 * Creates a writer on a new file (an existing file is overwritten)
+	 * @param output The file to write
+	 * @throws IOException If the file can't be created
+	 */
+	UTF8Writer(File output) throws IOException {
+		this(output, false);
+	}
+
+	/**
+	 * Creates a writer on a new file (an existing file is overwritten)
+	 * @param output The file to write
+	 * @param gzip True to compress written data with gzip
+	 * @throws IOException If the file can't be created
+	 */
+	UTF8Writer(File output, boolean gzip) throws IOException {
+		this(Compression.create(output, gzip), DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a writer on a channel
+	 * @param channel The channel to write
+	 * @param bufferSize The buffer size, in bytes
+	 */
+	UTF8Writer(WritableByteChannel channel, int bufferSize) {
+		if(channel == null) {
+			throw new NullPointerException("Channel can't be null");
+		}
+		
+		this.channel = channel;
+		buffer = ByteBuffer.allocate(Math.max(bufferSize, MAX_CHUNK * 4));
+		digits = new byte[MAX_CHUNK];
+	}
+
+//ACCESSORS
+	/**
+	 * @return The amount of bytes written since creation (including buffered ones)
+	 */
+	long size() {
+		return written + buffer.position();
+	}
+
+//MODIFIERS
+	/**
+	 * Writes a character. A surrogate pair must be written with {@link #write(CharSequence)}.
+	 * @param c The character
+	 * @return This writer
+	 * @throws IOException If an error occurs during writing
+	 */
+	UTF8Writer write(char c) throws IOException {
+		if(buffer.remaining() < 3) {
+			drain();
+		}
+		
+		if(c < 0x80) {
+			buffer.put((byte) c);
+		}
+		else {
+			encode(c);
+		}
+		return this;
+	}
+
+	/**
+	 * Writes a text. A null text is written as "null", as in {@link StringBuilder}.
+	 * @param s The text
+	 * @return This writer
+	 * @throws IOException If an error occurs during writing
+	 */
+	UTF8Writer write(CharSequence s) throws IOException {
+		if(s == null) {
+			s = "null";
+		}
+		
+		int length = s.length();
+		for(int i=0; i < length; i++) {
+			if(buffer.remaining() < 4) {
+				drain();
+			}
+			
+			char c = s.charAt(i);
+			if(c < 0x80) {
+				buffer.put((byte) c);
+			}
+			else if(Character.isHighSurrogate(c) && i+1 < length && Character.isLowSurrogate(s.charAt(i+1))) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				buffer.put((byte) (0xF0 | (cp >> 18)));
+				buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (cp & 0x3F)));
+			}
+			else {
+				encode(c);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Writes already encoded bytes
+	 * @param b The bytes
+	 * @param off The offset of first byte
+	 * @param len The amount of bytes
+	 * @return This writer
+	 * @throws IOException If an error occurs during writing
+	 */
+	UTF8Writer write(byte[] b, int off, int len) throws IOException {
+		while(len > 0) {
+			if(!buffer.hasRemaining()) {
+				drain();
+			}
+			int count = Math.min(len, buffer.remaining());
+			buffer.put(b, off, count);
+			off += count;
+			len -= count;
+		}
+		return this;
+	}
+
+	/**
+	 * Writes an integer number, in decimal form
+	 * @param value The number
+	 * @return This writer
+	 * @throws IOException If an error occurs during writing
+	 */
+	UTF8Writer write(long value) throws IOException {
+		if(buffer.remaining() < MAX_CHUNK) {
+			drain();
+		}
+		
+		if(value == Long.MIN_VALUE) {
+			return write(Long.toString(value));
+		}
+		if(value < 0) {
+			buffer.put((byte) '-');
+			value = -value;
+		}
+		
+		int pos = digits.length;
+		do {
+			digits[--pos] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while(value > 0);
+		
+		buffer.put(digits, pos, digits.length - pos);
+		return this;
+	}
+
+	/**
+	 * Writes a fixed-point number, in decimal form, with trailing zeros of fractional part removed
+	 * (but at least one decimal, as in {@link Double#toString(double)}).
+	 * @param value The number, in units of 10^-decimals
+	 * @param decimals The amount of decimals (1 to 18)
+	 * @return This writer
+	 * @throws IOException If an error occurs during writing
+	 */
+	UTF8Writer writeFixedPoint(long value, int decimals) throws IOException {
+		if(buffer.remaining() < MAX_CHUNK + 2) {
+			drain();
+		}
+		
+		if(value < 0) {
+			buffer.put((byte) '-');
+			value = -value;
+		}
+
+		//Fractional part, without trailing zeros
+		int pos = digits.length;
+		boolean significant = false;
+		for(int i=0; i < decimals; i++) {
+			int digit = (int) (value % 10);
+			value /= 10;
+			if(digit != 0 || significant || i == decimals - 1) {
+				digits[--pos] = (byte) ('0' + digit);
+				significant = true;
+			}
+		}
+		digits[--pos] = '.';
+
+		//Integer part
+		do {
+			digits[--pos] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while(value > 0);
+		
+		buffer.put(digits, pos, digits.length - pos);
+		return this;
+	}
+
+	/**
+	 * Writes a coordinate, as {@link Double#toString(double)} does, but directly from its fixed-point value when possible
+	 * @param value The coordinate
+	 * @param fixed The coordinate, in 1e-7 degrees
+	 * @return This writer
+	 * @throws IOException If an error occurs during writing
+	 */
+	UTF8Writer writeCoordinate(double value, int fixed) throws IOException {
+		//Values under 1e-3 are written in scientific notation by Double.toString
+		if(fixed / Node.SCALE == value && (fixed == 0 || Math.abs(fixed) >= 10000)) {
+			return writeFixedPoint(fixed, 7);
+		}
+		else {
+			return write(Double.toString(value));
+		}
+	}
+
+	/**
+	 * Writes a boolean, as "true" or "false"
+	 * @param value The boolean
+	 * @return This writer
+	 * @throws IOException If an error occurs during writing
+	 */
+	UTF8Writer write(boolean value) throws IOException {
+		return write(value ? "true" : "false");
+	}
+
+	/**
+	 * Encodes a non-ASCII character of the basic multilingual plane
+	 * @param c The character (unpaired surrogates are replaced by '?')
+	 */
+	private void encode(char c) {
+		if(c < 0x800) {
+			buffer.put((byte) (0xC0 | (c >> 6)));
+			buffer.put((byte) (0x80 | (c & 0x3F)));
+		}
+		else if(Character.isSurrogate(c)) {
+			buffer.put((byte) '?');
+		}
+		else {
+			buffer.put((byte) (0xE0 | (c >> 12)));
+			buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+			buffer.put((byte) (0x80 | (c & 0x3F)));
+		}
+	}
+
+//OTHER METHODS
+	/**
+	 * Writes buffer content to the channel
+	 * @throws IOException If an error occurs during writing
+	 */
+	private void drain() throws IOException {
+		if(closed) {
+			throw new IOException("Writer is closed");
+		}
+		
+		buffer.flip();
+		written += buffer.remaining();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		drain();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(!closed) {
+			try {
+				drain();
+			}
+			finally {
+				closed = true;
+				channel.close();
+			}
+		}
+	}
+}
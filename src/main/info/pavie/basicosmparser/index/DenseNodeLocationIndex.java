@@ -0,0 +1,83 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.index;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A dense node location index, where the location of node N is stored in the N-th cell of the file.
+ * Latitudes are shifted so that a zero cell means no location, which allows to use sparse files.
+ * @author Adrien PAVIE
+ */
+class DenseNodeLocationIndex extends NodeLocationIndex {
+//ATTRIBUTES
+	/** The magic number of dense index files **/
+	private static final long MAGIC = 0x424F534D4C4F4344L; // "BOSMLOCD"
+	/** The shift applied on stored latitudes (greater than 90 degrees as fixed-point integer) **/
+	private static final int LAT_SHIFT = 900000001;
+	/** The size of a cell, in bytes **/
+	private static final int CELL_SIZE = 8;
+
+//CONSTRUCTOR
+	/**
+	 * Default constructor
+	 * @param f The index file
+	 * @throws IOException If the file can't be opened
+	 */
+	DenseNodeLocationIndex(File f) throws IOException {
+		super(f, MAGIC);
+	}
+
+//ACCESSORS
+	@Override
+	public long get(long id) {
+		if(id < 0 || id >= size()) {
+			return MISSING;
+		}
+		
+		long offset = HEADER_SIZE + id * CELL_SIZE;
+		int lat = file.getInt(offset);
+		
+		return (lat == 0) ? MISSING : ((long) (lat - LAT_SHIFT) << 32) | (file.getInt(offset + 4) & 0xFFFFFFFFL);
+	}
+
+//MODIFIERS
+	@Override
+	public void put(long id, double lat, double lon) {
+		if(id < 0) {
+			throw new RuntimeException("Dense index can't store negative IDs: "+id);
+		}
+		
+		long offset = HEADER_SIZE + id * CELL_SIZE;
+		file.putInt(offset, (int) Math.round(lat * 1e7) + LAT_SHIFT);
+		file.putInt(offset + 4, (int) Math.round(lon * 1e7));
+		
+		if(id >= size()) {
+			file.putLong(8, id + 1);
+		}
+	}
+
+//OTHER METHODS
+	@Override
+	public void close() throws IOException {
+		file.close(HEADER_SIZE + size() * CELL_SIZE);
+	}
+}
@@ -0,0 +1,190 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.index;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A memory-mapped file, which can be bigger than 2 GB.
+ * The file is mapped by segments of up to 1 GB, created when they are first accessed.
+ * A segment only maps the part of the file which is used, and is mapped again with twice its size when a value
+ * is written after its end, so the file grows by steps instead of by whole segments.
+ * Values are addressed by their byte offset, and must not overlap two segments.
+ * @author Adrien PAVIE
+ */
+class MappedFile implements Closeable {
+//ATTRIBUTES
+	/** The bit shift to get segment number from offset **/
+	private static final int SEGMENT_SHIFT = 30;
+	/** The size of a segment, in bytes **/
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+	/** The mask to get offset in segment **/
+	private static final int SEGMENT_MASK = (int) (SEGMENT_SIZE - 1);
+	/** The minimal size of a mapped segment, in bytes **/
+	private static final long MIN_MAPPING_SIZE = 1L << 20;
+	/** The size of the largest value, in bytes **/
+	private static final int VALUE_SIZE = 8;
+
+	/** The underlying file **/
+	private final RandomAccessFile file;
+	/** The file channel **/
+	private final FileChannel channel;
+	/** The mapped segments **/
+	private MappedByteBuffer[] segments;
+
+//CONSTRUCTOR
+	/**
+	 * Opens the given file, or creates it if it doesn't exist.
+	 * @param f The file to map
+	 * @throws IOException If the file can't be opened
+	 */
+	MappedFile(File f) throws IOException {
+		file = new RandomAccessFile(f, "rw");
+		channel = file.getChannel();
+		segments = new MappedByteBuffer[0];
+	}
+
+//ACCESSORS
+	/**
+	 * @return The current file size, in bytes
+	 * @throws IOException If size can't be read
+	 */
+	long length() throws IOException {
+		return channel.size();
+	}
+
+	/**
+	 * @param offset The offset, in bytes
+	 * @return The int value at this offset
+	 */
+	int getInt(long offset) {
+		return segment(offset).getInt((int) offset & SEGMENT_MASK);
+	}
+
+	/**
+	 * @param offset The offset, in bytes
+	 * @return The long value at this offset
+	 */
+	long getLong(long offset) {
+		return segment(offset).getLong((int) offset & SEGMENT_MASK);
+	}
+
+	/**
+	 * Get the segment containing the given offset, and maps it if needed
+	 * @param offset The offset, in bytes
+	 * @return The segment
+	 */
+	private MappedByteBuffer segment(long offset) {
+		int index = (int) (offset >>> SEGMENT_SHIFT);
+		int end = ((int) offset & SEGMENT_MASK) + VALUE_SIZE;
+		
+		if(index >= segments.length) {
+			segments = Arrays.copyOf(segments, index + 1);
+		}
+		
+		MappedByteBuffer segment = segments[index];
+		if(segment == null || segment.capacity() < end) {
+			segment = map(index, (segment == null) ? 0 : segment.capacity(), end);
+			segments[index] = segment;
+		}
+		
+		return segment;
+	}
+
+	/**
+	 * Maps a segment, with a size covering at least the needed bytes and the existing file part
+	 * @param index The segment number
+	 * @param previous The size of the previous mapping of this segment (0 if none)
+	 * @param needed The minimal size, in bytes
+	 * @return The mapped segment
+	 */
+	private MappedByteBuffer map(int index, long previous, long needed) {
+		long start = (long) index << SEGMENT_SHIFT;
+		
+		try {
+			long size = Math.max(MIN_MAPPING_SIZE, Math.max(previous * 2, channel.size() - start));
+			while(size < needed) {
+				size *= 2;
+			}
+			
+			return channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(size, SEGMENT_SIZE));
+		} catch (IOException e) {
+			throw new RuntimeException("Can't map index file", e);
+		}
+	}
+
+//MODIFIERS
+	/**
+	 * @param offset The offset, in bytes
+	 * @param value The int value to write
+	 */
+	void putInt(long offset, int value) {
+		segment(offset).putInt((int) offset & SEGMENT_MASK, value);
+	}
+
+	/**
+	 * @param offset The offset, in bytes
+	 * @param value The long value to write
+	 */
+	void putLong(long offset, long value) {
+		segment(offset).putLong((int) offset & SEGMENT_MASK, value);
+	}
+
+//OTHER METHODS
+	/**
+	 * Writes changes on disk, and closes the file. As mappings are only released by the garbage collector,
+	 * the file may keep a few unused bytes (less than one mapping step) on systems which can't truncate mapped files.
+	 * @param length The amount of bytes to keep in file
+	 * @throws IOException If an error occurs during writing
+	 */
+	void close(long length) throws IOException {
+		MappedByteBuffer[] mapped = segments;
+		segments = new MappedByteBuffer[0];
+		for(int i=0; i < mapped.length; i++) {
+			if(mapped[i] != null) {
+				mapped[i].force();
+				mapped[i] = null;
+			}
+		}
+		
+		try {
+			if(channel.size() > length) {
+				channel.truncate(length);
+			}
+		}
+		catch(IOException e) {
+			//File is still mapped (on Windows), unused bytes are kept
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		close(Long.MAX_VALUE);
+	}
+}
@@ -0,0 +1,174 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.index;
+
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.NodeResolver;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * A node location index stores nodes coordinates, by node ID, outside of the Java heap.
+ * It is backed by a memory-mapped file, so it can be bigger than the heap, and can be reused
+ * between several runs. Coordinates are stored as fixed-point integers (1e-7 degree precision, as in OSM database).
+ * Two modes are available :
+ * <ul>
+ * <li>Dense ({@link #dense(File)}): one cell per possible ID, for planet-like data with many nodes</li>
+ * <li>Sparse ({@link #sparse(File)}): sorted (ID, location) pairs, for extracts</li>
+ * </ul>
+ * @author Adrien PAVIE
+ */
+public abstract class NodeLocationIndex implements Closeable, NodeResolver {
+//ATTRIBUTES
+	/** Value returned by {@link #get(long)} when no location is stored for a node **/
+	public static final long MISSING = Long.MIN_VALUE;
+	/** The file header size, in bytes **/
+	protected static final long HEADER_SIZE = 16;
+
+	/** The mapped file **/
+	protected final MappedFile file;
+
+//CONSTRUCTOR
+	/**
+	 * Default constructor
+	 * @param f The index file
+	 * @param magic The header magic number for this kind of index
+	 * @throws IOException If the file can't be opened, or isn't an index of this kind
+	 */
+	protected NodeLocationIndex(File f, long magic) throws IOException {
+		boolean exists = f.exists() && f.length() > 0;
+
+		//Check header before mapping, as mapping grows the file
+		if(exists) {
+			RandomAccessFile raf = new RandomAccessFile(f, "r");
+			try {
+				if(raf.length() < HEADER_SIZE || raf.readLong() != magic) {
+					throw new IOException("Invalid node location index: "+f.getPath());
+				}
+			}
+			finally {
+				raf.close();
+			}
+		}
+		
+		file = new MappedFile(f);
+		
+		if(!exists) {
+			file.putLong(0, magic);
+			file.putLong(8, 0);
+		}
+	}
+
+//ACCESSORS
+	/**
+	 * Get the location of a node, packed in a long value.
+	 * Use {@link #getLat(long)} and {@link #getLon(long)} to read coordinates.
+	 * @param id The node ID
+	 * @return The packed location, or {@link #MISSING} if unknown
+	 */
+	public abstract long get(long id);
+
+	/**
+	 * @param id The node ID
+	 * @return True if the index contains a location for this node
+	 */
+	public boolean contains(long id) {
+		return get(id) != MISSING;
+	}
+
+	/**
+	 * Creates a node object, using the stored location
+	 * @param id The node ID
+	 * @return The node, or null if its location is unknown
+	 */
+	@Override
+	public Node getNode(long id) {
+		long location = get(id);
+		return (location == MISSING) ? null : Node.fromFixedPoint(id, (int) (location >> 32), (int) location);
+	}
+
+	/**
+	 * @return The amount of stored locations (for dense index, the highest stored ID plus one)
+	 */
+	public long size() {
+		return file.getLong(8);
+	}
+
+//MODIFIERS
+	/**
+	 * Stores the location of a node
+	 * @param id The node ID
+	 * @param lat The latitude
+	 * @param lon The longitude
+	 */
+	public abstract void put(long id, double lat, double lon);
+
+//OTHER METHODS
+	/**
+	 * Creates or opens a dense index, where each node ID has its own cell.
+	 * It uses 8 bytes per ID between 0 and the highest stored ID, so it should be used when most IDs are present.
+	 * @param f The index file (if it exists, it is reused)
+	 * @return The index
+	 * @throws IOException If the file can't be opened
+	 */
+	public static NodeLocationIndex dense(File f) throws IOException {
+		return new DenseNodeLocationIndex(f);
+	}
+
+	/**
+	 * Creates or opens a sparse index, where each stored node uses 16 bytes.
+	 * Lookups are binary searches, and are faster if nodes are added sorted by ID (as in OSM extracts).
+	 * Otherwise, the whole index is sorted on the first lookup after additions, so lookups should come after all additions.
+	 * @param f The index file (if it exists, it is reused)
+	 * @return The index
+	 * @throws IOException If the file can't be opened
+	 */
+	public static NodeLocationIndex sparse(File f) throws IOException {
+		return new SparseNodeLocationIndex(f);
+	}
+
+	/**
+	 * @param location The packed location
+	 * @return The latitude
+	 */
+	public static double getLat(long location) {
+		return (int) (location >> 32) / 1e7;
+	}
+
+	/**
+	 * @param location The packed location
+	 * @return The longitude
+	 */
+	public static double getLon(long location) {
+		return (int) location / 1e7;
+	}
+
+	/**
+	 * @param lat The latitude
+	 * @param lon The longitude
+	 * @return The packed location
+	 */
+	public static long pack(double lat, double lon) {
+		return ((long) (int) Math.round(lat * 1e7) << 32) | (Math.round(lon * 1e7) & 0xFFFFFFFFL);
+	}
+}
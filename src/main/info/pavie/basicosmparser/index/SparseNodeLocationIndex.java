@@ -0,0 +1,215 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.index;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A sparse node location index, which stores (ID, latitude, longitude) records sorted by ID.
+ * Records are appended, and if they are not added in ID order, they are sorted in place before the next lookup.
+ * As the whole file is sorted each time, lookups should not be interleaved with out of order additions:
+ * add all locations first (as when reading OSM data, where nodes come before ways), then look them up.
+ * A node already stored in the sorted records (for example when the file is reused) is updated in place,
+ * so each node has a single record.
+ * @author Adrien PAVIE
+ */
+class SparseNodeLocationIndex extends NodeLocationIndex {
+//ATTRIBUTES
+	/** The magic number of sparse index files **/
+	private static final long MAGIC = 0x424F534D4C4F4353L; // "BOSMLOCS"
+	/** The size of a record, in bytes **/
+	private static final int RECORD_SIZE = 16;
+
+	/** The amount of records at file start which are sorted by ID, without duplicates **/
+	private long sortedCount;
+
+//CONSTRUCTOR
+	/**
+	 * Default constructor
+	 * @param f The index file
+	 * @throws IOException If the file can't be opened
+	 */
+	SparseNodeLocationIndex(File f) throws IOException {
+		super(f, MAGIC);
+		sortedCount = size();
+	}
+
+//ACCESSORS
+	/**
+	 * Get the location of a node. If records were added out of ID order since last lookup, they are sorted first,
+	 * which takes O(n log n) time.
+	 */
+	@Override
+	public long get(long id) {
+		if(sortedCount < size()) {
+			sort();
+		}
+		
+		long record = find(id);
+		return (record < 0) ? MISSING : file.getLong(offset(record) + 8);
+	}
+
+	/**
+	 * Finds a node in sorted records
+	 * @param id The node ID
+	 * @return The record number, or -1 if not found
+	 */
+	private long find(long id) {
+		long low = 0;
+		long high = sortedCount - 1;
+		
+		while(low <= high) {
+			long middle = (low + high) >>> 1;
+			long middleId = file.getLong(offset(middle));
+			
+			if(middleId < id) {
+				low = middle + 1;
+			}
+			else if(middleId > id) {
+				high = middle - 1;
+			}
+			else {
+				return middle;
+			}
+		}
+		
+		return -1;
+	}
+
+	/**
+	 * @param record The record number
+	 * @return The record offset in file
+	 */
+	private static long offset(long record) {
+		return HEADER_SIZE + record * RECORD_SIZE;
+	}
+
+//MODIFIERS
+	@Override
+	public void put(long id, double lat, double lon) {
+		long size = size();
+		long location = pack(lat, lon);
+		
+		if(size > 0) {
+			long lastId = file.getLong(offset(size - 1));
+
+			//Same node as last one, update location
+			if(lastId == id) {
+				file.putLong(offset(size - 1) + 8, location);
+				return;
+			}
+			//Node before last one, update it if it is already in sorted records
+			else if(lastId > id) {
+				long record = find(id);
+				if(record >= 0) {
+					file.putLong(offset(record) + 8, location);
+					return;
+				}
+			}
+			else if(sortedCount == size) {
+				sortedCount++;
+			}
+		}
+		else {
+			sortedCount = 1;
+		}
+		
+		file.putLong(offset(size), id);
+		file.putLong(offset(size) + 8, location);
+		file.putLong(8, size + 1);
+	}
+
+	/**
+	 * Sorts records by ID (heap sort, in place), and removes duplicate records
+	 * (a node added twice out of order since last sort keeps one of its locations)
+	 */
+	private void sort() {
+		long size = size();
+		
+		for(long i = size / 2 - 1; i >= 0; i--) {
+			siftDown(i, size);
+		}
+		for(long end = size - 1; end > 0; end--) {
+			swap(0, end);
+			siftDown(0, end);
+		}
+		
+		//Remove duplicates
+		long kept = Math.min(size, 1);
+		for(long i=1; i < size; i++) {
+			long id = file.getLong(offset(i));
+			if(id != file.getLong(offset(kept - 1))) {
+				if(i != kept) {
+					file.putLong(offset(kept), id);
+					file.putLong(offset(kept) + 8, file.getLong(offset(i) + 8));
+				}
+				kept++;
+			}
+		}
+		if(kept != size) {
+			file.putLong(8, kept);
+		}
+		
+		sortedCount = kept;
+	}
+
+	/**
+	 * Moves a record down in the heap, until heap order is respected
+	 * @param root The record to move
+	 * @param size The heap size
+	 */
+	private void siftDown(long root, long size) {
+		long child;
+		while((child = 2 * root + 1) < size) {
+			if(child + 1 < size && file.getLong(offset(child + 1)) > file.getLong(offset(child))) {
+				child++;
+			}
+			if(file.getLong(offset(root)) >= file.getLong(offset(child))) {
+				return;
+			}
+			swap(root, child);
+			root = child;
+		}
+	}
+
+	/**
+	 * Swaps two records
+	 * @param a The first record
+	 * @param b The second record
+	 */
+	private void swap(long a, long b) {
+		long id = file.getLong(offset(a));
+		long location = file.getLong(offset(a) + 8);
+		file.putLong(offset(a), file.getLong(offset(b)));
+		file.putLong(offset(a) + 8, file.getLong(offset(b) + 8));
+		file.putLong(offset(b), id);
+		file.putLong(offset(b) + 8, location);
+	}
+
+//OTHER METHODS
+	@Override
+	public void close() throws IOException {
+		if(sortedCount < size()) {
+			sort();
+		}
+		file.close(offset(size()));
+	}
+}
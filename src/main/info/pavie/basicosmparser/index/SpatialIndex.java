@@ -0,0 +1,367 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.index;
+
+import info.pavie.basicosmparser.controller.OSMElementHandler;
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A spatial index allows to find nodes and ways in a bounding box, without scanning all elements.
+ * It is a packed R-tree : elements are sorted along a Hilbert curve, then grouped by {@link #NODE_SIZE}
+ * in tree nodes, level by level. Queries visit only the tree nodes intersecting the searched box, so they take
+ * logarithmic time (plus the amount of results).
+ * <br>
+ * Nodes are indexed by their coordinates, and ways by the bounding box of their known nodes. Relations are not indexed.
+ * Boxes are stored as fixed-point integers (1e-7 degree precision, as in OSM database).
+ * The index is immutable once built. It is created from parsed elements, or during a parse with a {@link Builder}.
+ * @author Adrien PAVIE
+ */
+public class SpatialIndex {
+//ATTRIBUTES
+	/** The maximal amount of children per tree node **/
+	public static final int NODE_SIZE = 16;
+
+	/** The indexed elements, in tree order **/
+	private final Element[] elements;
+	/** The boxes of elements and tree nodes, level by level (min lat, min lon, max lat, max lon) **/
+	private final int[] boxes;
+	/** The start of each level in boxes (level 0 for elements, last level for root), plus total size **/
+	private final int[] levels;
+
+//CONSTRUCTOR
+	/**
+	 * Creates the index of the given elements
+	 * @param elements The elements (relations are ignored)
+	 */
+	public SpatialIndex(Collection<? extends Element> elements) {
+		this(builder(elements));
+	}
+
+	/**
+	 * Creates the index from the elements added to a builder
+	 * @param builder The builder
+	 */
+	private SpatialIndex(Builder builder) {
+		int count = builder.count;
+
+		//Compute levels sizes, until root level (only one tree node)
+		List<Integer> starts = new ArrayList<Integer>();
+		int levelSize = count, total = 0;
+		starts.add(total);
+		total += levelSize;
+		while(levelSize > 1) {
+			levelSize = (levelSize + NODE_SIZE - 1) / NODE_SIZE;
+			starts.add(total);
+			total += levelSize;
+		}
+		levels = new int[starts.size() + 1];
+		for(int i=0; i < starts.size(); i++) {
+			levels[i] = starts.get(i);
+		}
+		levels[starts.size()] = total;
+
+		//Sort elements along Hilbert curve
+		elements = new Element[count];
+		boxes = new int[total * 4];
+		long[] order = hilbertOrder(builder.boxes, count);
+		for(int i=0; i < count; i++) {
+			int source = (int) order[i];
+			elements[i] = builder.elements[source];
+			System.arraycopy(builder.boxes, source * 4, boxes, i * 4, 4);
+		}
+
+		//Compute tree nodes boxes
+		for(int l=1; l < levels.length - 1; l++) {
+			int childStart = levels[l-1], childEnd = levels[l];
+			for(int i=levels[l]; i < levels[l+1]; i++) {
+				int from = childStart + (i - levels[l]) * NODE_SIZE;
+				int to = Math.min(from + NODE_SIZE, childEnd);
+				
+				int minLat = Integer.MAX_VALUE, minLon = Integer.MAX_VALUE, maxLat = Integer.MIN_VALUE, maxLon = Integer.MIN_VALUE;
+				for(int c=from; c < to; c++) {
+					minLat = Math.min(minLat, boxes[c*4]);
+					minLon = Math.min(minLon, boxes[c*4+1]);
+					maxLat = Math.max(maxLat, boxes[c*4+2]);
+					maxLon = Math.max(maxLon, boxes[c*4+3]);
+				}
+				boxes[i*4] = minLat;
+				boxes[i*4+1] = minLon;
+				boxes[i*4+2] = maxLat;
+				boxes[i*4+3] = maxLon;
+			}
+		}
+	}
+
+	/**
+	 * @param elements The elements to add
+	 * @return A builder containing the given elements
+	 */
+	private static Builder builder(Collection<? extends Element> elements) {
+		Builder result = new Builder();
+		for(Element e : elements) {
+			result.add(e);
+		}
+		return result;
+	}
+
+//ACCESSORS
+	/**
+	 * @return The amount of indexed elements
+	 */
+	public int size() {
+		return elements.length;
+	}
+
+	/**
+	 * Finds elements intersecting a bounding box (borders included)
+	 * @param minLat The minimal latitude
+	 * @param minLon The minimal longitude
+	 * @param maxLat The maximal latitude
+	 * @param maxLon The maximal longitude
+	 * @return The nodes in the box, and the ways whose bounding box intersects it
+	 */
+	public List<Element> queryBBox(double minLat, double minLon, double maxLat, double maxLon) {
+		List<Element> result = new ArrayList<Element>();
+		if(elements.length == 0 || minLat > maxLat || minLon > maxLon) {
+			return result;
+		}
+		
+		int qMinLat = toFixed(minLat, true), qMinLon = toFixed(minLon, true);
+		int qMaxLat = toFixed(maxLat, false), qMaxLon = toFixed(maxLon, false);
+
+		//Depth-first visit, starting from root
+		int root = levels.length - 2;
+		int[] stack = new int[root * NODE_SIZE + 1];
+		int[] stackLevels = new int[stack.length];
+		int stackSize = 0;
+		stack[stackSize] = levels[root];
+		stackLevels[stackSize] = root;
+		stackSize++;
+		
+		while(stackSize > 0) {
+			stackSize--;
+			int i = stack[stackSize], level = stackLevels[stackSize];
+			
+			if(boxes[i*4] > qMaxLat || boxes[i*4+2] < qMinLat || boxes[i*4+1] > qMaxLon || boxes[i*4+3] < qMinLon) {
+				continue;
+			}
+			
+			if(level == 0) {
+				result.add(elements[i]);
+			}
+			else {
+				int from = levels[level-1] + (i - levels[level]) * NODE_SIZE;
+				int to = Math.min(from + NODE_SIZE, levels[level]);
+				for(int c=to-1; c >= from; c--) {
+					stack[stackSize] = c;
+					stackLevels[stackSize] = level - 1;
+					stackSize++;
+				}
+			}
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Converts a query bound into fixed-point, rounded inside the query box.
+	 * Bounds already at 1e-7 precision are kept as is, despite floating-point errors.
+	 * @param value The coordinate
+	 * @param min True for a minimal bound (rounded up), false for a maximal bound (rounded down)
+	 * @return The fixed-point coordinate, clamped in int range
+	 */
+	private static int toFixed(double value, boolean min) {
+		double fixed = value * Node.SCALE;
+		double rounded = Math.rint(fixed);
+		if(Math.abs(fixed - rounded) > 1e-6) {
+			rounded = min ? Math.ceil(fixed) : Math.floor(fixed);
+		}
+		return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, rounded));
+	}
+
+//OTHER METHODS
+	/**
+	 * Sorts boxes along a Hilbert curve, using their center
+	 * @param boxes The boxes
+	 * @param count The amount of boxes
+	 * @return The boxes indexes, in curve order (in the 32 lower bits of each value)
+	 */
+	private static long[] hilbertOrder(int[] boxes, int count) {
+		//Data extent
+		long minLat = Long.MAX_VALUE, minLon = Long.MAX_VALUE, maxLat = Long.MIN_VALUE, maxLon = Long.MIN_VALUE;
+		for(int i=0; i < count; i++) {
+			long lat = ((long) boxes[i*4] + boxes[i*4+2]) / 2, lon = ((long) boxes[i*4+1] + boxes[i*4+3]) / 2;
+			minLat = Math.min(minLat, lat);
+			minLon = Math.min(minLon, lon);
+			maxLat = Math.max(maxLat, lat);
+			maxLon = Math.max(maxLon, lon);
+		}
+		double scaleLat = 65535.0 / Math.max(1, maxLat - minLat), scaleLon = 65535.0 / Math.max(1, maxLon - minLon);
+
+		//Sort on Hilbert value (unsigned, made sortable by flipping sign bit), then index
+		long[] keys = new long[count];
+		for(int i=0; i < count; i++) {
+			long lat = ((long) boxes[i*4] + boxes[i*4+2]) / 2, lon = ((long) boxes[i*4+1] + boxes[i*4+3]) / 2;
+			int x = (int) ((lon - minLon) * scaleLon), y = (int) ((lat - minLat) * scaleLat);
+			keys[i] = ((hilbert(x, y) << 32) | i) ^ Long.MIN_VALUE;
+		}
+		Arrays.sort(keys);
+		
+		for(int i=0; i < count; i++) {
+			keys[i] &= 0xFFFFFFFFL;
+		}
+		return keys;
+	}
+
+	/**
+	 * Computes the position of a cell on a Hilbert curve filling a 65536x65536 grid
+	 * @param x The cell column
+	 * @param y The cell row
+	 * @return The position on the curve
+	 */
+	static long hilbert(int x, int y) {
+		long d = 0;
+		for(int s = 1 << 15; s > 0; s >>= 1) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+
+			//Rotate quadrant
+			if(ry == 0) {
+				if(rx == 1) {
+					x = s - 1 - x;
+					y = s - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+
+//INNER CLASS Builder
+	/**
+	 * A builder collects elements and their bounding boxes, then creates the index.
+	 * It is also an {@link OSMElementHandler}, so the index can be prepared during a parse. In this case, way nodes
+	 * have coordinates from the {@link NodeLocationIndex} set on the parser, or else from node locations kept in memory
+	 * by the parser (see {@link #requiresNodeLocations()}). For large inputs, an index should be set.
+	 */
+	public static class Builder implements OSMElementHandler {
+	//ATTRIBUTES
+		/** The added elements **/
+		private Element[] elements;
+		/** The boxes of added elements **/
+		private int[] boxes;
+		/** The amount of added elements **/
+		private int count;
+
+	//CONSTRUCTOR
+		public Builder() {
+			elements = new Element[1024];
+			boxes = new int[1024 * 4];
+		}
+
+	//MODIFIERS
+		/**
+		 * Adds an element to index. Relations, and ways without any known node, are ignored.
+		 * @param e The element
+		 */
+		public void add(Element e) {
+			int minLat = Integer.MAX_VALUE, minLon = Integer.MAX_VALUE, maxLat = Integer.MIN_VALUE, maxLon = Integer.MIN_VALUE;
+			
+			if(e instanceof Node) {
+				Node n = (Node) e;
+				minLat = maxLat = n.getLatE7();
+				minLon = maxLon = n.getLonE7();
+			}
+			else if(e instanceof Way) {
+				for(Node n : ((Way) e).getNodes()) {
+					if(n != null) {
+						minLat = Math.min(minLat, n.getLatE7());
+						minLon = Math.min(minLon, n.getLonE7());
+						maxLat = Math.max(maxLat, n.getLatE7());
+						maxLon = Math.max(maxLon, n.getLonE7());
+					}
+				}
+				if(minLat > maxLat) {
+					return;
+				}
+			}
+			else {
+				return;
+			}
+			
+			if(count == elements.length) {
+				elements = Arrays.copyOf(elements, count * 2);
+				boxes = Arrays.copyOf(boxes, count * 8);
+			}
+			elements[count] = e;
+			boxes[count*4] = minLat;
+			boxes[count*4+1] = minLon;
+			boxes[count*4+2] = maxLat;
+			boxes[count*4+3] = maxLon;
+			count++;
+		}
+
+	//OTHER METHODS
+		/**
+		 * @return The index of added elements
+		 */
+		public SpatialIndex build() {
+			return new SpatialIndex(this);
+		}
+
+		@Override
+		public void onNode(Node n) {
+			add(n);
+		}
+
+		@Override
+		public void onWay(Way w) {
+			add(w);
+		}
+
+		@Override
+		public void onRelation(Relation r) {
+		}
+
+		@Override
+		public void onEnd() {
+		}
+
+		/**
+		 * Way bounding boxes need coordinates of their nodes
+		 * @return True
+		 */
+		@Override
+		public boolean requiresNodeLocations() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,5 @@
+/**
+ * The indexes package.
+ * Contains data structures allowing to find elements or their locations without keeping them as Java objects.
+ */
+package info.pavie.basicosmparser.index;
\ No newline at end of file
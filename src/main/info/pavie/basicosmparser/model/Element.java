@@ -19,8 +19,15 @@
 
 package info.pavie.basicosmparser.model;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * An element is a generic OSM object.
@@ -28,22 +35,29 @@ import java.util.Map;
  */
 public abstract class Element {
 //ATTRIBUTES
+	/** The amount of tags above which they are stored in a hash map **/
+	private static final int HASH_THRESHOLD = 16;
+	/** The tags array of elements without tags, shared by all of them **/
+	private static final String[] NO_TAGS = new String[0];
+
 	/** The object ID, unique per object type **/
 	protected long id;
 	/** The last editor name **/
 	protected String user;
 	/** The last editor ID **/
 	protected long uid;
-	/** The last edition time **/
-	protected String timestamp;
+	/** The last edition time, in seconds since epoch ({@link Timestamps#NONE} if unknown) **/
+	protected long timestamp;
 	/** Is this object visible or deleted ? **/
 	protected boolean visible;
 	/** The version of the object (default: 1) **/
 	protected int version;
 	/** The last changeset ID **/
 	protected long changeset;
-	/** The objects tags, which describe it **/
-	protected Map<String,String> tags;
+	/** The objects tags, which describe it, as alternated keys and values (unused if tagsMap is defined) **/
+	private String[] tags;
+	/** The objects tags, when there are too many for the array (null otherwise) **/
+	private Map<String,String> tagsMap;
 
 //CONSTRUCTOR
 	/**
@@ -54,7 +68,8 @@ public abstract class Element {
 		this.id = id;
 		version = 1;
 		visible = true;
-		tags = new HashMap<String,String>();
+		timestamp = Timestamps.NONE;
+		tags = NO_TAGS;
 	}
 
 //ACCESSORS
@@ -62,6 +77,25 @@ public abstract class Element {
 	 * @return the ID, with format : X000000, where X is the object type (N: node, W: way, R: relation)
 	 */
 	public abstract String getId();
+	
+	/**
+	 * @return The element type
+	 */
+	public abstract ElementType getType();
+	
+	/**
+	 * @return The numeric ID, unique per object type
+	 */
+	public long getNumericId() {
+		return id;
+	}
+	
+	/**
+	 * @return The element ID, packing type and numeric ID in a long (see {@link ElementId})
+	 */
+	public long getElementId() {
+		return ElementId.of(getType(), id);
+	}
 
 	/**
 	 * @return the user
@@ -78,9 +112,18 @@ public abstract class Element {
 	}
 
 	/**
-	 * @return the last edit timestamp
+	 * Get the last edit timestamp. As it is stored as seconds since epoch, it is always written in UTC
+	 * without fraction of seconds: a timestamp set as 2012-07-20T11:43:19.750+02:00 is returned as 2012-07-20T09:43:19Z.
+	 * @return the last edit timestamp, in ISO 8601 format (like 2012-07-20T09:43:19Z), or null if unknown
 	 */
 	public String getTimestamp() {
+		return Timestamps.format(timestamp);
+	}
+	
+	/**
+	 * @return the last edit time, in seconds since epoch, or {@link Timestamps#NONE} if unknown
+	 */
+	public long getTimestampSeconds() {
 		return timestamp;
 	}
 
@@ -106,12 +149,46 @@ public abstract class Element {
 	}
 
 	/**
+	 * Get the tags as a map. Tags are kept in insertion order, and changes on the returned map are applied to the element.
 	 * @return the tags
 	 */
 	public Map<String, String> getTags() {
-		return tags;
+		return new TagsView();
 	}
-	
+
+	/**
+	 * @param key The tag key
+	 * @return The tag value, or null if the element has no such tag
+	 */
+	public String getTag(String key) {
+		if(tagsMap != null) {
+			return tagsMap.get(key);
+		}
+		
+		int i = indexOfTag(key);
+		return (i < 0) ? null : tags[i+1];
+	}
+
+	/**
+	 * @return The amount of tags
+	 */
+	public int getTagCount() {
+		return (tagsMap != null) ? tagsMap.size() : tags.length / 2;
+	}
+
+	/**
+	 * @param key The tag key
+	 * @return The position of the key in tags array, or -1 if not found
+	 */
+	private int indexOfTag(Object key) {
+		for(int i=0; i < tags.length; i+=2) {
+			if(Objects.equals(tags[i], key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
 	@Override
 	public String toString() {
 		return "Element "+getId()+" ("+getTags()+")";
@@ -133,10 +210,20 @@ public abstract class Element {
 	}
 
 	/**
-	 * @param timestamp the last edit timestamp
+	 * Sets the last edit timestamp. It is converted to seconds since epoch, so it must be a valid ISO 8601 date:
+	 * other texts are rejected rather than kept as is. See {@link #getTimestamp()} for the returned form.
+	 * @param timestamp the last edit timestamp, in ISO 8601 format (null if unknown)
+	 * @throws RuntimeException If timestamp is not valid
 	 */
 	public void setTimestamp(String timestamp) {
-		this.timestamp = timestamp;
+		this.timestamp = Timestamps.parse(timestamp);
+	}
+	
+	/**
+	 * @param seconds the last edit time, in seconds since epoch ({@link Timestamps#NONE} if unknown)
+	 */
+	public void setTimestampSeconds(long seconds) {
+		this.timestamp = seconds;
 	}
 
 	/**
@@ -166,14 +253,170 @@ public abstract class Element {
 	 * @param value The tag value
 	 */
 	public void addTag(String key, String value) {
-		tags.put(key, value);
+		if(tagsMap != null) {
+			tagsMap.put(key, value);
+			return;
+		}
+		
+		int i = indexOfTag(key);
+
+		//Existing tag, replace value
+		if(i >= 0) {
+			tags[i+1] = value;
+		}
+		//Too many tags for array, switch to hash map
+		else if(tags.length / 2 >= HASH_THRESHOLD) {
+			tagsMap = new LinkedHashMap<String,String>(HASH_THRESHOLD * 4);
+			for(int j=0; j < tags.length; j+=2) {
+				tagsMap.put(tags[j], tags[j+1]);
+			}
+			tagsMap.put(key, value);
+			tags = NO_TAGS;
+		}
+		//New tag, append it
+		else {
+			i = tags.length;
+			tags = Arrays.copyOf(tags, i + 2);
+			tags[i] = key;
+			tags[i+1] = value;
+		}
 	}
-	
+
 	/**
 	 * Remove the given tag
 	 * @param key The tag key
 	 */
 	public void deleteTag(String key) {
-		tags.remove(key);
+		if(tagsMap != null) {
+			tagsMap.remove(key);
+			return;
+		}
+		
+		int i = indexOfTag(key);
+		if(i >= 0) {
+			if(tags.length == 2) {
+				tags = NO_TAGS;
+			}
+			else {
+				String[] newTags = new String[tags.length - 2];
+				System.arraycopy(tags, 0, newTags, 0, i);
+				System.arraycopy(tags, i + 2, newTags, i, tags.length - i - 2);
+				tags = newTags;
+			}
+		}
+	}
+
+//INNER CLASS TagsView
+	/**
+	 * A map view on the element tags, which reads and writes tags of the element.
+	 */
+	private class TagsView extends AbstractMap<String,String> {
+	//ACCESSORS
+		@Override
+		public int size() {
+			return getTagCount();
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return (tagsMap != null) ? tagsMap.containsKey(key) : indexOfTag(key) >= 0;
+		}
+
+		@Override
+		public String get(Object key) {
+			if(tagsMap != null) {
+				return tagsMap.get(key);
+			}
+			int i = indexOfTag(key);
+			return (i < 0) ? null : tags[i+1];
+		}
+
+		@Override
+		public Set<Entry<String,String>> entrySet() {
+			return new AbstractSet<Entry<String,String>>() {
+				@Override
+				public int size() {
+					return getTagCount();
+				}
+
+				@Override
+				public Iterator<Entry<String,String>> iterator() {
+					return (tagsMap != null) ? tagsMap.entrySet().iterator() : new TagsIterator();
+				}
+			};
+		}
+
+	//MODIFIERS
+		@Override
+		public String put(String key, String value) {
+			String previous = get(key);
+			addTag(key, value);
+			return previous;
+		}
+
+		@Override
+		public String remove(Object key) {
+			String previous = get(key);
+			if(key instanceof String) {
+				deleteTag((String) key);
+			}
+			return previous;
+		}
+
+		@Override
+		public void clear() {
+			tags = NO_TAGS;
+			tagsMap = null;
+		}
+	}
+
+//INNER CLASS TagsIterator
+	/**
+	 * Iterator on tags array entries.
+	 */
+	private class TagsIterator implements Iterator<Map.Entry<String,String>> {
+	//ATTRIBUTES
+		/** The position of next tag in array **/
+		private int next = 0;
+		/** Can the last returned tag be removed ? **/
+		private boolean removable = false;
+
+	//ACCESSORS
+		@Override
+		public boolean hasNext() {
+			return next < tags.length;
+		}
+
+		@Override
+		public Map.Entry<String,String> next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			
+			final int i = next;
+			next += 2;
+			removable = true;
+			
+			return new AbstractMap.SimpleEntry<String,String>(tags[i], tags[i+1]) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public String setValue(String value) {
+					addTag(getKey(), value);
+					return super.setValue(value);
+				}
+			};
+		}
+
+	//MODIFIERS
+		@Override
+		public void remove() {
+			if(!removable) {
+				throw new IllegalStateException();
+			}
+			next -= 2;
+			deleteTag(tags[next]);
+			removable = false;
+		}
 	}
 }
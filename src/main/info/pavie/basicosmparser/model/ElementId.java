@@ -0,0 +1,112 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.model;
+
+/**
+ * An element ID packs the type and the numeric ID of an OSM element in a single long value,
+ * which identifies the element without creating objects. The type is stored in the two highest bits,
+ * and the numeric ID in the 62 other bits, so IDs between -2^61 and 2^61-1 are supported.
+ * This class only contains static methods to create and read such values.
+ * @author Adrien PAVIE
+ */
+public final class ElementId {
+//ATTRIBUTES
+	/** The smallest supported numeric ID **/
+	public static final long MIN_ID = -(1L << 61);
+	/** The biggest supported numeric ID **/
+	public static final long MAX_ID = (1L << 61) - 1;
+	/** The bits containing numeric ID **/
+	private static final long ID_MASK = (1L << 62) - 1;
+
+//CONSTRUCTOR
+	private ElementId() {
+	}
+
+//OTHER METHODS
+	/**
+	 * Creates an element ID
+	 * @param type The element type
+	 * @param id The numeric ID
+	 * @return The element ID
+	 * @throws RuntimeException If numeric ID is out of supported range
+	 */
+	public static long of(ElementType type, long id) {
+		if(type == null) {
+			throw new NullPointerException("Type can't be null");
+		}
+		if(id < MIN_ID || id > MAX_ID) {
+			throw new RuntimeException("Numeric ID out of range: "+id);
+		}
+		return ((long) type.ordinal() << 62) | (id & ID_MASK);
+	}
+
+	/**
+	 * @param elementId The element ID
+	 * @return The element type
+	 */
+	public static ElementType getType(long elementId) {
+		return ElementType.fromOrdinal((int) (elementId >>> 62));
+	}
+
+	/**
+	 * @param elementId The element ID
+	 * @return The numeric ID of the element
+	 */
+	public static long getNumericId(long elementId) {
+		return (elementId << 2) >> 2;
+	}
+
+	/**
+	 * @param elementId The element ID
+	 * @return The element ID, with format : X000000, where X is the object type (N: node, W: way, R: relation)
+	 */
+	public static String toString(long elementId) {
+		return getType(elementId).getPrefix()+Long.toString(getNumericId(elementId));
+	}
+
+	/**
+	 * Reads an element ID written as text
+	 * @param id The element ID, with format : X000000, where X is the object type (N: node, W: way, R: relation)
+	 * @return The element ID
+	 * @throws RuntimeException If text isn't a valid element ID
+	 */
+	public static long parse(String id) {
+		if(id == null || id.length() < 2 || ElementType.fromPrefix(id.charAt(0)) == null) {
+			throw new RuntimeException("Invalid element ID: "+id);
+		}
+		
+		boolean negative = id.charAt(1) == '-';
+		int start = negative ? 2 : 1;
+		if(start == id.length() || id.length() - start > 19) {
+			throw new RuntimeException("Invalid element ID: "+id);
+		}
+		
+		long result = 0;
+		for(int i = start; i < id.length(); i++) {
+			int digit = id.charAt(i) - '0';
+			if(digit < 0 || digit > 9 || result > (MAX_ID - digit) / 10) {
+				throw new RuntimeException("Invalid element ID: "+id);
+			}
+			result = result * 10 + digit;
+		}
+		
+		return of(ElementType.fromPrefix(id.charAt(0)), negative ? -result : result);
+	}
+}
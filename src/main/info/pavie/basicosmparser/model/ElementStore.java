@@ -0,0 +1,534 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An element store contains OSM elements, indexed by their numeric ID.
+ * There is one table per element type, using primitive long keys, so no key object is created
+ * when adding or looking for an element. Elements of a given type are iterated in the order they were added
+ * (as long as no element was removed).
+ * A {@link Map} view, using the "X000000" string IDs, is available through {@link #asMap()}.
+ * @author Adrien PAVIE
+ */
+public class ElementStore implements NodeResolver {
+//ATTRIBUTES
+	/** The nodes **/
+	private final Table<Node> nodes;
+	/** The ways **/
+	private final Table<Way> ways;
+	/** The relations **/
+	private final Table<Relation> relations;
+	/** The map view of this store **/
+	private Map<String,Element> mapView;
+
+//CONSTRUCTOR
+	public ElementStore() {
+		nodes = new Table<Node>();
+		ways = new Table<Way>();
+		relations = new Table<Relation>();
+	}
+
+//ACCESSORS
+	/**
+	 * @param id The node ID
+	 * @return The node, or null if not in store
+	 */
+	@Override
+	public Node getNode(long id) {
+		return nodes.get(id);
+	}
+
+	/**
+	 * @param id The way ID
+	 * @return The way, or null if not in store
+	 */
+	public Way getWay(long id) {
+		return ways.get(id);
+	}
+
+	/**
+	 * @param id The relation ID
+	 * @return The relation, or null if not in store
+	 */
+	public Relation getRelation(long id) {
+		return relations.get(id);
+	}
+
+	/**
+	 * @param type The element type
+	 * @param id The numeric ID
+	 * @return The element, or null if not in store
+	 */
+	public Element get(ElementType type, long id) {
+		switch(type) {
+			case NODE:
+				return nodes.get(id);
+			case WAY:
+				return ways.get(id);
+			default:
+				return relations.get(id);
+		}
+	}
+
+	/**
+	 * @param elementId The element ID, packing type and numeric ID (see {@link ElementId})
+	 * @return The element, or null if not in store
+	 */
+	public Element get(long elementId) {
+		return get(ElementId.getType(elementId), ElementId.getNumericId(elementId));
+	}
+
+	/**
+	 * @param id The element ID, with format : X000000, where X is the object type (N: node, W: way, R: relation)
+	 * @return The element, or null if not in store or if ID is invalid
+	 */
+	public Element get(String id) {
+		long elementId;
+		try {
+			elementId = ElementId.parse(id);
+		}
+		catch(RuntimeException e) {
+			return null;
+		}
+		
+		return get(elementId);
+	}
+
+	/**
+	 * @return The amount of nodes
+	 */
+	public int getNodeCount() {
+		return nodes.size;
+	}
+
+	/**
+	 * @return The amount of ways
+	 */
+	public int getWayCount() {
+		return ways.size;
+	}
+
+	/**
+	 * @return The amount of relations
+	 */
+	public int getRelationCount() {
+		return relations.size;
+	}
+
+	/**
+	 * @return The total amount of elements
+	 */
+	public int size() {
+		return nodes.size + ways.size + relations.size;
+	}
+
+	/**
+	 * @return The nodes, in insertion order
+	 */
+	public Iterable<Node> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return The ways, in insertion order
+	 */
+	public Iterable<Way> getWays() {
+		return ways;
+	}
+
+	/**
+	 * @return The relations, in insertion order
+	 */
+	public Iterable<Relation> getRelations() {
+		return relations;
+	}
+
+	/**
+	 * Get a map view of this store. Keys are elements ID (see {@link Element#getId()}), and values are elements.
+	 * Elements are iterated by type (nodes, then ways, then relations). Changes on the map are applied on the store.
+	 * @return The map view
+	 */
+	public Map<String,Element> asMap() {
+		if(mapView == null) {
+			mapView = new MapView();
+		}
+		return mapView;
+	}
+
+//MODIFIERS
+	/**
+	 * Adds an element in the store. If an element with same type and ID already exists, it is replaced.
+	 * @param e The element to add
+	 * @return The replaced element, or null if none
+	 */
+	public Element add(Element e) {
+		Element result = null;
+		
+		if(e instanceof Node) {
+			result = nodes.put(e.id, (Node) e);
+		}
+		else if(e instanceof Way) {
+			result = ways.put(e.id, (Way) e);
+		}
+		else if(e instanceof Relation) {
+			result = relations.put(e.id, (Relation) e);
+		}
+		else if(e == null) {
+			throw new NullPointerException("Element can't be null");
+		}
+		else {
+			throw new RuntimeException("Unexpected kind of Element: "+e.getClass().toString());
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Removes an element from the store
+	 * @param e The element to remove
+	 * @return The removed element, or null if it wasn't in the store
+	 */
+	public Element remove(Element e) {
+		Element result = null;
+		
+		if(e instanceof Node) {
+			result = nodes.remove(e.id);
+		}
+		else if(e instanceof Way) {
+			result = ways.remove(e.id);
+		}
+		else if(e instanceof Relation) {
+			result = relations.remove(e.id);
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Removes all elements
+	 */
+	public void clear() {
+		nodes.clear();
+		ways.clear();
+		relations.clear();
+	}
+
+//INNER CLASS Table
+	/**
+	 * An open-addressing hash table, with primitive long keys.
+	 * Values are stored in a dense array, in insertion order, and the hash table contains their indexes.
+	 * @param <E> The kind of element
+	 */
+	private static class Table<E extends Element> implements Iterable<E> {
+	//ATTRIBUTES
+		/** The initial amount of slots (power of two) **/
+		private static final int INITIAL_CAPACITY = 16;
+		/** Maximal load factor of hash table **/
+		private static final float LOAD_FACTOR = 0.6f;
+
+		/** The keys of hash table slots **/
+		private long[] keys;
+		/** The value indexes of hash table slots, plus one (0 means empty slot) **/
+		private int[] indexes;
+		/** The values, in insertion order **/
+		private Element[] values;
+		/** The amount of values **/
+		private int size;
+		/** The bit shift applied on hashes, to get slot number **/
+		private int shift;
+		/** The amount of values which causes the table to grow **/
+		private int threshold;
+
+	//CONSTRUCTOR
+		private Table() {
+			clear();
+		}
+
+	//ACCESSORS
+		/**
+		 * @param key The element ID
+		 * @return The slot of this key, or the empty slot where it should be added
+		 */
+		private int slot(long key) {
+			int mask = keys.length - 1;
+			int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+			while(indexes[slot] != 0 && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		/**
+		 * @param key The element ID
+		 * @return The element, or null if not found
+		 */
+		@SuppressWarnings("unchecked")
+		private E get(long key) {
+			int index = indexes[slot(key)];
+			return (index == 0) ? null : (E) values[index-1];
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			return new Iterator<E>() {
+				private int next = 0;
+
+				@Override
+				public boolean hasNext() {
+					return next < size;
+				}
+
+				@SuppressWarnings("unchecked")
+				@Override
+				public E next() {
+					if(next >= size) {
+						throw new NoSuchElementException();
+					}
+					return (E) values[next++];
+				}
+
+				@Override
+				public void remove() {
+					if(next == 0) {
+						throw new IllegalStateException();
+					}
+					//Last value is moved in the removed cell, so it must be read again
+					next--;
+					Table.this.remove(values[next].id);
+				}
+			};
+		}
+
+	//MODIFIERS
+		/**
+		 * @param key The element ID
+		 * @param value The element
+		 * @return The replaced element, or null
+		 */
+		@SuppressWarnings("unchecked")
+		private E put(long key, E value) {
+			int slot = slot(key);
+			E result = null;
+			
+			if(indexes[slot] != 0) {
+				result = (E) values[indexes[slot]-1];
+				values[indexes[slot]-1] = value;
+			}
+			else {
+				if(size == values.length) {
+					values = Arrays.copyOf(values, size * 2);
+				}
+				values[size] = value;
+				size++;
+				keys[slot] = key;
+				indexes[slot] = size;
+				
+				if(size > threshold) {
+					grow();
+				}
+			}
+			
+			return result;
+		}
+
+		/**
+		 * @param key The ID of element to remove
+		 * @return The removed element, or null
+		 */
+		@SuppressWarnings("unchecked")
+		private E remove(long key) {
+			int slot = slot(key);
+			if(indexes[slot] == 0) {
+				return null;
+			}
+			
+			int index = indexes[slot] - 1;
+			E result = (E) values[index];
+
+			//Free slot, and shift back following slots of the same cluster
+			int mask = keys.length - 1;
+			int free = slot;
+			int next = (free + 1) & mask;
+			while(indexes[next] != 0) {
+				int ideal = (int) ((keys[next] * 0x9E3779B97F4A7C15L) >>> shift);
+				if(((next - ideal) & mask) >= ((next - free) & mask)) {
+					keys[free] = keys[next];
+					indexes[free] = indexes[next];
+					free = next;
+				}
+				next = (next + 1) & mask;
+			}
+			indexes[free] = 0;
+
+			//Move last value in the removed cell
+			size--;
+			if(index < size) {
+				values[index] = values[size];
+				indexes[slot(values[index].id)] = index + 1;
+			}
+			values[size] = null;
+			
+			return result;
+		}
+
+		/**
+		 * Doubles the hash table size
+		 */
+		private void grow() {
+			long[] oldKeys = keys;
+			int[] oldIndexes = indexes;
+			
+			keys = new long[oldKeys.length * 2];
+			indexes = new int[oldKeys.length * 2];
+			shift--;
+			threshold = (int) (keys.length * LOAD_FACTOR);
+			
+			for(int i=0; i < oldKeys.length; i++) {
+				if(oldIndexes[i] != 0) {
+					int slot = slot(oldKeys[i]);
+					keys[slot] = oldKeys[i];
+					indexes[slot] = oldIndexes[i];
+				}
+			}
+		}
+
+		/**
+		 * Removes all values
+		 */
+		private void clear() {
+			keys = new long[INITIAL_CAPACITY];
+			indexes = new int[INITIAL_CAPACITY];
+			values = new Element[INITIAL_CAPACITY];
+			size = 0;
+			shift = 64 - Integer.numberOfTrailingZeros(INITIAL_CAPACITY);
+			threshold = (int) (INITIAL_CAPACITY * LOAD_FACTOR);
+		}
+	}
+
+//INNER CLASS MapView
+	/**
+	 * A map view of the store, using string IDs as keys.
+	 */
+	private class MapView extends AbstractMap<String,Element> {
+	//ATTRIBUTES
+		/** The entries set **/
+		private Set<Map.Entry<String,Element>> entries;
+
+	//ACCESSORS
+		@Override
+		public Element get(Object key) {
+			return (key instanceof String) ? ElementStore.this.get((String) key) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public int size() {
+			return ElementStore.this.size();
+		}
+
+		@Override
+		public Set<Map.Entry<String,Element>> entrySet() {
+			if(entries == null) {
+				entries = new AbstractSet<Map.Entry<String,Element>>() {
+					@Override
+					public Iterator<Map.Entry<String,Element>> iterator() {
+						return new EntryIterator();
+					}
+
+					@Override
+					public int size() {
+						return ElementStore.this.size();
+					}
+				};
+			}
+			return entries;
+		}
+
+	//MODIFIERS
+		@Override
+		public Element put(String key, Element value) {
+			if(value == null) {
+				throw new NullPointerException("Element can't be null");
+			}
+			if(!value.getId().equals(key)) {
+				throw new RuntimeException("Key "+key+" doesn't match element ID "+value.getId());
+			}
+			return add(value);
+		}
+
+		@Override
+		public Element remove(Object key) {
+			Element e = get(key);
+			return (e == null) ? null : ElementStore.this.remove(e);
+		}
+
+		@Override
+		public void clear() {
+			ElementStore.this.clear();
+		}
+	}
+
+//INNER CLASS EntryIterator
+	/**
+	 * Iterates over all elements of the store, as map entries.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<String,Element>> {
+	//ATTRIBUTES
+		/** The tables to iterate over **/
+		private final Iterator<?>[] iterators = { nodes.iterator(), ways.iterator(), relations.iterator() };
+		/** The current table **/
+		private int current = 0;
+
+	//OTHER METHODS
+		@Override
+		public boolean hasNext() {
+			while(current < iterators.length - 1 && !iterators[current].hasNext()) {
+				current++;
+			}
+			return iterators[current].hasNext();
+		}
+
+		@Override
+		public Map.Entry<String,Element> next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Element e = (Element) iterators[current].next();
+			return new AbstractMap.SimpleImmutableEntry<String,Element>(e.getId(), e);
+		}
+
+		@Override
+		public void remove() {
+			iterators[current].remove();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.model;
+
+/**
+ * The type of an OSM element.
+ * @author Adrien PAVIE
+ */
+public enum ElementType {
+	NODE('N'),
+	WAY('W'),
+	RELATION('R');
+
+//ATTRIBUTES
+	/** The types, by ordinal **/
+	private static final ElementType[] VALUES = values();
+
+	/** The prefix of element IDs of this type **/
+	private final char prefix;
+
+//CONSTRUCTOR
+	/**
+	 * Default constructor
+	 * @param prefix The prefix of element IDs of this type
+	 */
+	private ElementType(char prefix) {
+		this.prefix = prefix;
+	}
+
+//ACCESSORS
+	/**
+	 * @return The prefix of element IDs of this type (N: node, W: way, R: relation)
+	 */
+	public char getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * @param prefix The element ID prefix (N: node, W: way, R: relation)
+	 * @return The corresponding type, or null if prefix is unknown
+	 */
+	public static ElementType fromPrefix(char prefix) {
+		switch(prefix) {
+			case 'N': return NODE;
+			case 'W': return WAY;
+			case 'R': return RELATION;
+			default: return null;
+		}
+	}
+
+	/**
+	 * @param ordinal The type ordinal
+	 * @return The type
+	 */
+	static ElementType fromOrdinal(int ordinal) {
+		return VALUES[ordinal];
+	}
+}
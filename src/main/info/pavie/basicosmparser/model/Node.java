@@ -21,15 +21,22 @@ package info.pavie.basicosmparser.model;
 
 /**
  * A node is an OSM element with coordinates.
+ * Coordinates are stored as fixed-point integers, in 1e-7 degrees (the precision of OSM data).
+ * Coordinates which can't be exactly represented this way are also kept as doubles, so they are never altered.
  * @author Adrien PAVIE
  */
 public class Node extends Element {
 //ATTRIBUTES
-	/** The latitude **/
-	private double lat;
-	/** The longitude **/
-	private double lon;
-	
+	/** The amount of fixed-point units per degree **/
+	public static final double SCALE = 1e7;
+
+	/** The latitude, in 1e-7 degrees **/
+	private int lat;
+	/** The longitude, in 1e-7 degrees **/
+	private int lon;
+	/** The exact latitude and longitude, if they can't be stored as fixed-point values (null otherwise) **/
+	private double[] exact;
+
 //CONSTRUCTOR
 	/**
 	 * Default constructor
@@ -39,8 +46,21 @@ public class Node extends Element {
 	 */
 	public Node(long id, double lat, double lon) {
 		super(id);
-		this.lat = lat;
-		this.lon = lon;
+		setCoordinates(lat, lon);
+	}
+
+	/**
+	 * Creates a node from fixed-point coordinates
+	 * @param id The object ID
+	 * @param latE7 The latitude, in 1e-7 degrees
+	 * @param lonE7 The longitude, in 1e-7 degrees
+	 * @return The new node
+	 */
+	public static Node fromFixedPoint(long id, int latE7, int lonE7) {
+		Node result = new Node(id, 0, 0);
+		result.lat = latE7;
+		result.lon = lonE7;
+		return result;
 	}
 
 //ACCESSORS
@@ -49,32 +69,70 @@ public class Node extends Element {
 		return "N"+id;
 	}
 
+	@Override
+	public ElementType getType() {
+		return ElementType.NODE;
+	}
+
 	/**
 	 * @return the latitude
 	 */
 	public double getLat() {
-		return lat;
+		return (exact == null) ? lat / SCALE : exact[0];
 	}
 
 	/**
 	 * @return the longitude
 	 */
 	public double getLon() {
+		return (exact == null) ? lon / SCALE : exact[1];
+	}
+
+	/**
+	 * @return the latitude, in 1e-7 degrees (rounded if it has a better precision)
+	 */
+	public int getLatE7() {
+		return lat;
+	}
+
+	/**
+	 * @return the longitude, in 1e-7 degrees (rounded if it has a better precision)
+	 */
+	public int getLonE7() {
 		return lon;
 	}
 
+	/**
+	 * @param value The coordinate
+	 * @return True if the coordinate can be exactly represented as fixed-point value
+	 */
+	private static boolean isFixedPoint(double value) {
+		long fixed = Math.round(value * SCALE);
+		return fixed >= Integer.MIN_VALUE && fixed <= Integer.MAX_VALUE && fixed / SCALE == value;
+	}
+
 //MODIFIERS
 	/**
 	 * @param lat the new latitude
 	 */
 	public void setLat(double lat) {
-		this.lat = lat;
+		setCoordinates(lat, getLon());
 	}
 
 	/**
 	 * @param lon the new longitude
 	 */
 	public void setLon(double lon) {
-		this.lon = lon;
+		setCoordinates(getLat(), lon);
+	}
+
+	/**
+	 * @param lat the new latitude
+	 * @param lon the new longitude
+	 */
+	private void setCoordinates(double lat, double lon) {
+		this.lat = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, Math.round(lat * SCALE)));
+		this.lon = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, Math.round(lon * SCALE)));
+		exact = (isFixedPoint(lat) && isFixedPoint(lon)) ? null : new double[] { lat, lon };
 	}
 }
@@ -0,0 +1,34 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.model;
+
+/**
+ * A node resolver finds node objects from their ID.
+ * It is used by {@link Way}s which only keep the IDs of their nodes.
+ * @author Adrien PAVIE
+ */
+public interface NodeResolver {
+//ACCESSORS
+	/**
+	 * @param id The node ID
+	 * @return The node, or null if it can't be found
+	 */
+	Node getNode(long id);
+}
@@ -19,8 +19,10 @@
 
 package info.pavie.basicosmparser.model;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * A relation is a meta OSM object. It allows to combine other elements.
@@ -28,13 +30,23 @@ import java.util.List;
  */
 public class Relation extends Element {
 //ATTRIBUTES
+	/** The member arrays of relations without members, shared by all of them **/
+	private static final Element[] NO_MEMBERS = new Element[0];
+	/** The roles arrays of relations without members, shared by all of them **/
+	private static final String[] NO_ROLES = new String[0];
+
 	/** The relation members **/
-	private List<Member> members;
+	private Element[] members;
+	/** The members roles (same order as members) **/
+	private String[] roles;
+	/** The amount of members **/
+	private int memberCount;
 
 //CONSTRUCTOR
 	public Relation(long id) {
 		super(id);
-		members = new ArrayList<Member>();
+		members = NO_MEMBERS;
+		roles = NO_ROLES;
 	}
 
 //ACCESSORS
@@ -42,40 +54,79 @@ public class Relation extends Element {
 	public String getId() {
 		return "R"+id;
 	}
-	
+
+	@Override
+	public ElementType getType() {
+		return ElementType.RELATION;
+	}
+
 	/**
 	 * @param e The element
 	 * @return The role of this element, or null if no role
 	 */
 	public String getMemberRole(Element e) {
-		String result = null;
+		int index = indexOfMember(e);
 		
-		boolean found = false;
-		int index = 0;
-		while(!found && index < members.size()) {
-			if(members.get(index).elem == e) {
-				found = true;
-				result = members.get(index).role;
-			}
-			index++;
-		}
-		
-		if(!found) {
+		if(index < 0) {
 			throw new RuntimeException("Element "+e.getId()+" not found");
 		}
 		
-		return result;
+		return roles[index];
 	}
-	
+
+	/**
+	 * @param index The member position
+	 * @return The role of the member at this position, or null if no role
+	 */
+	public String getMemberRole(int index) {
+		checkIndex(index);
+		return roles[index];
+	}
+
 	/**
-	 * @return The list of member elements
+	 * @param index The member position
+	 * @return The member element at this position
+	 */
+	public Element getMember(int index) {
+		checkIndex(index);
+		return members[index];
+	}
+
+	/**
+	 * @return The amount of members
+	 */
+	public int getMemberCount() {
+		return memberCount;
+	}
+
+	/**
+	 * @return The list of member elements (read-only, and following changes on members)
 	 */
 	public List<Element> getMembers() {
-		List<Element> elems = new ArrayList<Element>(members.size());
-		for(Member m : members) {
-			elems.add(m.elem);
+		return new MembersView();
+	}
+
+	/**
+	 * @param e The element
+	 * @return The position of the element in members, or -1 if not found
+	 */
+	private int indexOfMember(Element e) {
+		for(int i=0; i < memberCount; i++) {
+			if(members[i] == e) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param index The member position
+	 * @throws IndexOutOfBoundsException If there is no member at this position
+	 */
+	private void checkIndex(int index) {
+		if(index < 0 || index >= memberCount) {
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+memberCount);
 		}
-		return elems;
 	}
 
 //MODIFIERS
@@ -89,42 +140,70 @@ public class Relation extends Element {
 			throw new NullPointerException("Element can't be null");
 		}
 		
-		members.add(new Member(role, e));
+		if(memberCount == members.length) {
+			int capacity = Math.max(4, memberCount * 2);
+			members = Arrays.copyOf(members, capacity);
+			roles = Arrays.copyOf(roles, capacity);
+		}
+		
+		members[memberCount] = e;
+		roles[memberCount] = role;
+		memberCount++;
 	}
-	
+
 	/**
 	 * Removes a member
 	 * @param e The element to remove
 	 */
 	public void removeMember(Element e) {
-		boolean found = false;
-		int index = 0;
-		while(!found && index < members.size()) {
-			if(members.get(index).elem == e) {
-				found = true;
-				members.remove(index);
-			}
-			index++;
+		int index = indexOfMember(e);
+		
+		if(index >= 0) {
+			int moved = memberCount - index - 1;
+			System.arraycopy(members, index + 1, members, index, moved);
+			System.arraycopy(roles, index + 1, roles, index, moved);
+			memberCount--;
+			members[memberCount] = null;
+			roles[memberCount] = null;
 		}
 	}
-	
-//INNER CLASS Member
-	private class Member {
-	//ATTRIBUTES
-		/** The member role **/
-		private String role;
-		/** The member object **/
-		private Element elem;
-		
-	//CONSTRUCTOR
-		/**
-		 * Default constructor
-		 * @param role The member role
-		 * @param elem The member object
-		 */
-		private Member(String role, Element elem) {
-			this.role = role;
-			this.elem = elem;
+
+	/**
+	 * Replaces the member at the given position, keeping its role
+	 * @param index The member position
+	 * @param e The new member element
+	 */
+	public void setMember(int index, Element e) {
+		if(e == null) {
+			throw new NullPointerException("Element can't be null");
+		}
+		checkIndex(index);
+		members[index] = e;
+	}
+
+	/**
+	 * Removes all members
+	 */
+	public void clearMembers() {
+		Arrays.fill(members, 0, memberCount, null);
+		Arrays.fill(roles, 0, memberCount, null);
+		memberCount = 0;
+	}
+
+//INNER CLASS MembersView
+	/**
+	 * A read-only list view on the relation members.
+	 */
+	private class MembersView extends AbstractList<Element> implements RandomAccess {
+	//ACCESSORS
+		@Override
+		public Element get(int index) {
+			return getMember(index);
+		}
+
+		@Override
+		public int size() {
+			return memberCount;
 		}
 	}
 }
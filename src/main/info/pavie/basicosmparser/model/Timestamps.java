@@ -0,0 +1,243 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Timestamps converts OSM timestamps between their ISO 8601 text form (like 2012-07-20T09:43:19Z)
+ * and a number of seconds since epoch (1970-01-01T00:00:00Z).
+ * Timestamps in UTC with the usual OSM format are parsed without creating any object,
+ * other ISO 8601 forms (with offset or fraction of seconds) are parsed using java.time.
+ * @author Adrien PAVIE
+ */
+public final class Timestamps {
+//ATTRIBUTES
+	/** The value used when there is no timestamp **/
+	public static final long NONE = Long.MIN_VALUE;
+	/** The length of a timestamp in OSM format **/
+	private static final int LENGTH = 20;
+
+//CONSTRUCTOR
+	private Timestamps() {
+	}
+
+//OTHER METHODS
+	/**
+	 * Reads a timestamp
+	 * @param text The timestamp, in ISO 8601 format
+	 * @return The amount of seconds since epoch, or {@link #NONE} if text is null
+	 * @throws RuntimeException If text is not a valid timestamp
+	 */
+	public static long parse(String text) {
+		if(text == null) {
+			return NONE;
+		}
+		
+		if(text.length() == LENGTH && text.charAt(4) == '-' && text.charAt(7) == '-' && text.charAt(10) == 'T'
+				&& text.charAt(13) == ':' && text.charAt(16) == ':' && text.charAt(19) == 'Z') {
+			long result = toSeconds(
+					number(text.charAt(0), text.charAt(1), text.charAt(2), text.charAt(3)),
+					number(text.charAt(5), text.charAt(6)),
+					number(text.charAt(8), text.charAt(9)),
+					number(text.charAt(11), text.charAt(12)),
+					number(text.charAt(14), text.charAt(15)),
+					number(text.charAt(17), text.charAt(18))
+				);
+			if(result != NONE) {
+				return result;
+			}
+		}
+		
+		return parseSlow(text);
+	}
+
+	/**
+	 * Reads a timestamp from UTF-8 bytes
+	 * @param b The bytes
+	 * @param start The timestamp start
+	 * @param end The timestamp end
+	 * @return The amount of seconds since epoch
+	 * @throws RuntimeException If text is not a valid timestamp
+	 */
+	public static long parse(byte[] b, int start, int end) {
+		if(end - start == LENGTH && b[start+4] == '-' && b[start+7] == '-' && b[start+10] == 'T'
+				&& b[start+13] == ':' && b[start+16] == ':' && b[start+19] == 'Z') {
+			long result = toSeconds(
+					number(b[start], b[start+1], b[start+2], b[start+3]),
+					number(b[start+5], b[start+6]),
+					number(b[start+8], b[start+9]),
+					number(b[start+11], b[start+12]),
+					number(b[start+14], b[start+15]),
+					number(b[start+17], b[start+18])
+				);
+			if(result != NONE) {
+				return result;
+			}
+		}
+		
+		return parseSlow(new String(b, start, end - start, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Writes a timestamp
+	 * @param seconds The amount of seconds since epoch
+	 * @return The timestamp in OSM format (like 2012-07-20T09:43:19Z), or null if seconds is {@link #NONE}
+	 */
+	public static String format(long seconds) {
+		if(seconds == NONE) {
+			return null;
+		}
+		
+		long days = Math.floorDiv(seconds, 86400);
+		int secondOfDay = (int) (seconds - days * 86400);
+
+		//Civil date from days (see http://howardhinnant.github.io/date_algorithms.html)
+		long z = days + 719468;
+		long era = Math.floorDiv(z, 146097);
+		long dayOfEra = z - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long mp = (5 * dayOfYear + 2) / 153;
+		int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		
+		if(year < 0 || year > 9999) {
+			return OffsetDateTime.ofInstant(Instant.ofEpochSecond(seconds), ZoneOffset.UTC).toString();
+		}
+		
+		char[] result = new char[LENGTH];
+		write(result, 0, (int) year, 4);
+		result[4] = '-';
+		write(result, 5, month, 2);
+		result[7] = '-';
+		write(result, 8, day, 2);
+		result[10] = 'T';
+		write(result, 11, secondOfDay / 3600, 2);
+		result[13] = ':';
+		write(result, 14, (secondOfDay / 60) % 60, 2);
+		result[16] = ':';
+		write(result, 17, secondOfDay % 60, 2);
+		result[19] = 'Z';
+		
+		return new String(result);
+	}
+
+	/**
+	 * Reads a timestamp using java.time
+	 * @param text The timestamp, in ISO 8601 format
+	 * @return The amount of seconds since epoch
+	 * @throws RuntimeException If text is not a valid timestamp
+	 */
+	private static long parseSlow(String text) {
+		try {
+			return OffsetDateTime.parse(text).toEpochSecond();
+		}
+		catch(DateTimeParseException e) {
+			throw new RuntimeException("Invalid timestamp: "+text, e);
+		}
+	}
+
+	/**
+	 * @param year The year
+	 * @param month The month (1 to 12)
+	 * @param day The day of month
+	 * @param hour The hour
+	 * @param minute The minute
+	 * @param second The second
+	 * @return The amount of seconds since epoch, or {@link #NONE} if a field is invalid
+	 */
+	private static long toSeconds(int year, int month, int day, int hour, int minute, int second) {
+		if(year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+				|| hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+			return NONE;
+		}
+
+		//Days from civil date (see http://howardhinnant.github.io/date_algorithms.html)
+		int y = (month <= 2) ? year - 1 : year;
+		int era = Math.floorDiv(y, 400);
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		long days = era * 146097L + dayOfEra - 719468;
+		
+		return days * 86400 + hour * 3600 + minute * 60 + second;
+	}
+
+	/**
+	 * @param year The year
+	 * @param month The month (1 to 12)
+	 * @return The amount of days in this month
+	 */
+	private static int daysInMonth(int year, int month) {
+		switch(month) {
+			case 2:
+				return ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0) ? 29 : 28;
+			case 4: case 6: case 9: case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+	/**
+	 * @param a The first digit character
+	 * @param b The second digit character
+	 * @return The two-digits number, or -1 if a character isn't a digit
+	 */
+	private static int number(int a, int b) {
+		if(a < '0' || a > '9' || b < '0' || b > '9') {
+			return -1;
+		}
+		return (a - '0') * 10 + (b - '0');
+	}
+
+	/**
+	 * @param a The first digit character
+	 * @param b The second digit character
+	 * @param c The third digit character
+	 * @param d The fourth digit character
+	 * @return The four-digits number, or -1 if a character isn't a digit
+	 */
+	private static int number(int a, int b, int c, int d) {
+		int high = number(a, b);
+		int low = number(c, d);
+		return (high < 0 || low < 0) ? -1 : high * 100 + low;
+	}
+
+	/**
+	 * Writes a number with leading zeros
+	 * @param dest The destination array
+	 * @param offset The position in array
+	 * @param value The number
+	 * @param length The amount of digits
+	 */
+	private static void write(char[] dest, int offset, int value, int length) {
+		for(int i = offset + length - 1; i >= offset; i--) {
+			dest[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+}
@@ -19,18 +19,28 @@
 
 package info.pavie.basicosmparser.model;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * A way is an OSM element, which combines several {@link Node}s to create a path.
+ * Nodes can be kept as objects (default), or only as IDs if a {@link NodeResolver} is set.
+ * In that case, node objects are only found by the resolver when they are requested.
  * @author Adrien PAVIE
  */
 public class Way extends Element {
 //ATTRIBUTES
-	/** The list of nodes of the way **/
+	/** The list of nodes of the way (null if only node IDs are kept) **/
 	private List<Node> nodes;
-	
+	/** The IDs of the way nodes, when only node IDs are kept (null otherwise) **/
+	private long[] nodeIds;
+	/** The amount of node IDs **/
+	private int nodeCount;
+	/** The resolver which finds nodes from their IDs (null if nodes are kept as objects) **/
+	private NodeResolver resolver;
+
 //CONSTRUCTOR
 	/**
 	 * Default constructor
@@ -39,7 +49,7 @@ public class Way extends Element {
 	 */
 	public Way(long id, List<Node> nodes) {
 		super(id);
-		
+
 		//Conditions on nodes
 		if(nodes == null) {
 			throw new NullPointerException("Nodes list can't be null");
@@ -50,7 +60,7 @@ public class Way extends Element {
 		
 		this.nodes = nodes;
 	}
-	
+
 	/**
 	 * Constructor without nodes, not safe to use !
 	 * Don't forget to add at least two nodes
@@ -67,11 +77,84 @@ public class Way extends Element {
 		return "W"+id;
 	}
 
+	@Override
+	public ElementType getType() {
+		return ElementType.WAY;
+	}
+
 	/**
+	 * Get the nodes of the way. If only node IDs are kept, the returned list is read-only,
+	 * and each node is found by the resolver when it is requested (and is null if the resolver can't find it).
 	 * @return The list of nodes of the way
 	 */
 	public List<Node> getNodes() {
-		return nodes;
+		if(resolver == null) {
+			return nodes;
+		}
+		
+		return new AbstractList<Node>() {
+			@Override
+			public Node get(int index) {
+				return resolver.getNode(getNodeId(index));
+			}
+
+			@Override
+			public int size() {
+				return nodeCount;
+			}
+		};
+	}
+
+	/**
+	 * @return The amount of nodes
+	 */
+	public int getNodeCount() {
+		return (resolver == null) ? nodes.size() : nodeCount;
+	}
+
+	/**
+	 * @param index The node position in way
+	 * @return The ID of the node
+	 * @throws RuntimeException If the node at this position is unknown
+	 */
+	public long getNodeId(int index) {
+		if(resolver == null) {
+			Node n = nodes.get(index);
+			if(n == null) {
+				throw new RuntimeException("Unknown node at index "+index);
+			}
+			return n.id;
+		}
+		else {
+			if(index < 0 || index >= nodeCount) {
+				throw new IndexOutOfBoundsException("Index: "+index+", Size: "+nodeCount);
+			}
+			return nodeIds[index];
+		}
+	}
+
+	/**
+	 * @return The IDs of the way nodes
+	 * @throws RuntimeException If a node is unknown
+	 */
+	public long[] getNodeIds() {
+		if(resolver == null) {
+			long[] result = new long[nodes.size()];
+			for(int i=0; i < result.length; i++) {
+				result[i] = getNodeId(i);
+			}
+			return result;
+		}
+		else {
+			return Arrays.copyOf(nodeIds, nodeCount);
+		}
+	}
+
+	/**
+	 * @return The resolver which finds nodes from their IDs, or null if nodes are kept as objects
+	 */
+	public NodeResolver getNodeResolver() {
+		return resolver;
 	}
 
 //MODIFIERS
@@ -79,16 +162,81 @@ public class Way extends Element {
 	 * @param n The node to add at the end of the way
 	 */
 	public void addNode(Node n) {
-		nodes.add(n);
+		if(resolver == null) {
+			nodes.add(n);
+		}
+		else {
+			if(n == null) {
+				throw new NullPointerException("Node can't be null");
+			}
+			addNodeId(n.id);
+		}
 	}
-	
+
+	/**
+	 * Adds a node at the end of the way, using only its ID. A node resolver must have been set.
+	 * @param ref The ID of the node to add
+	 */
+	public void addNodeId(long ref) {
+		if(resolver == null) {
+			throw new RuntimeException("Node IDs can only be added when a node resolver is set");
+		}
+		
+		if(nodeCount == nodeIds.length) {
+			nodeIds = Arrays.copyOf(nodeIds, Math.max(4, nodeCount * 2));
+		}
+		nodeIds[nodeCount++] = ref;
+	}
+
+	/**
+	 * Sets the resolver used to find nodes. After this call, the way only keeps the IDs of its nodes.
+	 * Nodes already added as objects are replaced by their IDs.
+	 * @param resolver The node resolver
+	 * @throws RuntimeException If a node already added is unknown
+	 */
+	public void setNodeResolver(NodeResolver resolver) {
+		if(resolver == null) {
+			throw new NullPointerException("Resolver can't be null");
+		}
+		
+		if(this.resolver == null) {
+			nodeIds = getNodeIds();
+			nodeCount = nodeIds.length;
+			nodes = null;
+		}
+		this.resolver = resolver;
+	}
+
+	/**
+	 * Removes all nodes, to replace them with new ones. Don't forget to add at least two nodes.
+	 * The way keeps its node resolver, if any.
+	 */
+	public void clearNodes() {
+		if(resolver == null) {
+			nodes.clear();
+		}
+		else {
+			nodeCount = 0;
+		}
+	}
+
 	/**
 	 * @param index The index of the node to remove
 	 */
 	public void removeNode(int index) {
-		if(nodes.size() == 2) {
+		if(getNodeCount() == 2) {
 			throw new RuntimeException("Can't remove node, only two remaining");
 		}
-		nodes.remove(index);
+		
+		if(resolver == null) {
+			nodes.remove(index);
+		}
+		else {
+			if(index < 0 || index >= nodeCount) {
+				throw new IndexOutOfBoundsException("Index: "+index+", Size: "+nodeCount);
+			}
+			System.arraycopy(nodeIds, index + 1, nodeIds, index, nodeCount - index - 1);
+			nodeCount--;
+		}
 	}
 }
@@ -20,7 +20,28 @@
 package info.pavie.basicosmparser;
 
 import info.pavie.basicosmparser.controller.TestCSVExporter;
+import info.pavie.basicosmparser.controller.TestColumnarExporter;
+import info.pavie.basicosmparser.controller.TestCompression;
+import info.pavie.basicosmparser.controller.TestGeoJSONExporter;
+import info.pavie.basicosmparser.controller.TestCoordinates;
+import info.pavie.basicosmparser.controller.TestElementFilter;
+import info.pavie.basicosmparser.controller.TestOSCParser;
 import info.pavie.basicosmparser.controller.TestOSMParser;
+import info.pavie.basicosmparser.controller.TestOSMReader;
+import info.pavie.basicosmparser.controller.TestPBFParser;
+import info.pavie.basicosmparser.controller.TestParallelCSVExporter;
+import info.pavie.basicosmparser.controller.TestParserMetrics;
+import info.pavie.basicosmparser.controller.TestSnapshot;
+import info.pavie.basicosmparser.controller.TestStringDictionary;
+import info.pavie.basicosmparser.controller.TestUTF8Writer;
+import info.pavie.basicosmparser.index.TestNodeLocationIndex;
+import info.pavie.basicosmparser.index.TestSpatialIndex;
+import info.pavie.basicosmparser.model.TestElement;
+import info.pavie.basicosmparser.model.TestElementId;
+import info.pavie.basicosmparser.model.TestNode;
+import info.pavie.basicosmparser.model.TestRelation;
+import info.pavie.basicosmparser.model.TestTimestamps;
+import info.pavie.basicosmparser.model.TestWay;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -32,7 +53,28 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
 		TestOSMParser.class,
-		TestCSVExporter.class
+		TestOSMReader.class,
+		TestOSCParser.class,
+		TestElementFilter.class,
+		TestParserMetrics.class,
+		TestCSVExporter.class,
+		TestParallelCSVExporter.class,
+		TestColumnarExporter.class,
+		TestGeoJSONExporter.class,
+		TestPBFParser.class,
+		TestSnapshot.class,
+		TestStringDictionary.class,
+		TestCoordinates.class,
+		TestUTF8Writer.class,
+		TestCompression.class,
+		TestNodeLocationIndex.class,
+		TestSpatialIndex.class,
+		TestElement.class,
+		TestWay.class,
+		TestRelation.class,
+		TestElementId.class,
+		TestTimestamps.class,
+		TestNode.class
 		})
 
 public class TestSuite {
@@ -20,15 +20,23 @@
 package info.pavie.basicosmparser.controller;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import info.pavie.basicosmparser.TestSuite;
 import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.Node;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Scanner;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.xml.sax.SAXException;
 
 /**
  * Test class for {@link CSVExporter}.
@@ -60,11 +68,11 @@ public class TestCSVExporter {
 		expected =
 "ID;UserID;timestamp;isVisible;version;changesetID;latitude;longitude;tags\n"+
 "N298884269;46882;2008-09-21T21:37:45Z;true;1;676636;54.0901746;12.2482632;\"[]\"\n"+
-"N298884272;46882;2008-09-21T21:37:45Z;true;1;676636;54.0901447;12.2516513;\"[]\"\n"+
 "N261728686;36744;2008-05-03T13:39:23Z;true;1;323878;54.0906309;12.2441924;\"[]\"\n"+
-"N1831881213;75625;2012-07-20T09:43:19Z;true;1;12370172;54.0900666;12.2539381;\"[traffic_sign=city_limit,name=Neu Broderstorf]\"\n"
+"N1831881213;75625;2012-07-20T09:43:19Z;true;1;12370172;54.0900666;12.2539381;\"[name=Neu Broderstorf,traffic_sign=city_limit]\"\n"+
+"N298884272;46882;2008-09-21T21:37:45Z;true;1;676636;54.0901447;12.2516513;\"[]\"\n"
 ;
-		assertEquals(expected, result);
+		assertEquals(sortTags(expected), sortTags(result));
 		
 		//Test ways.csv
 		result = TestSuite.readTextFile(new File(output.getPath()+File.separator+"ways.csv"));
@@ -72,14 +80,102 @@ public class TestCSVExporter {
 "ID;UserID;timestamp;isVisible;version;changesetID;nodes;tags\n"+
 "W26659127;55988;2010-03-16T11:47:08Z;true;5;4142606;\"[N298884269,N298884272,N261728686]\";\"[highway=unclassified,name=Pastower Straße]\"\n"
 ;
-		assertEquals(expected, result);
+		assertEquals(sortTags(expected), sortTags(result));
 		
 		//Test relations.csv
 		result = TestSuite.readTextFile(new File(output.getPath()+File.separator+"relations.csv"));
 		expected =
 "ID;UserID;timestamp;isVisible;version;changesetID;members;tags\n"+
-"R56688;56190;2011-01-12T14:23:49Z;true;28;6947637;\"[N298884269=stop,N261728686=null,W26659127=path,N298884272=null]\";\"[ref=123,route=bus,name=Küstenbus Linie 123,type=route,operator=Regionalverkehr Küste,network=VVW]\"\n"
+"R56688;56190;2011-01-12T14:23:49Z;true;28;6947637;\"[N298884269=stop,N261728686=null,W26659127=path,N298884272=null]\";\"[name=Küstenbus Linie 123,network=VVW,operator=Regionalverkehr Küste,ref=123,route=bus,type=route]\"\n"
 ;
-		assertEquals(expected, result);
+		assertEquals(sortTags(expected), sortTags(result));
+	}
+
+	@Test
+	public void testExportStreaming() throws IOException, SAXException {
+		File expectedFolder = new File("res/");
+		exporter.export(data, expectedFolder);
+		
+		File output = new File("res/csv-streaming/");
+		output.mkdirs();
+		new OSMParser().parse(new File("res/xml/sample.osm"), new CSVExporter(output));
+		
+		for(String name : new String[] { "nodes.csv", "ways.csv", "relations.csv" }) {
+			assertEquals(
+					TestSuite.readTextFile(new File(expectedFolder, name)),
+					TestSuite.readTextFile(new File(output, name))
+			);
+			new File(output, name).delete();
+		}
+		output.delete();
+	}
+	
+	@Test
+	public void testExportCoordinates() throws IOException {
+		Map<String,Element> nodes = new HashMap<String,Element>();
+		nodes.put("N1", new Node(1, -0.0001, 1.0 / 3));
+		nodes.put("N2", new Node(2, 0, -180));
+		nodes.put("N3", new Node(3, -1.5, 0.001));
+		
+		File output = new File("res/");
+		exporter.export(nodes, output);
+		String result = TestSuite.readTextFile(new File(output, "nodes.csv"));
+		
+		assertTrue(result.contains("\nN1;0;null;true;1;0;-1.0E-4;0.3333333333333333;"));
+		assertTrue(result.contains("\nN2;0;null;true;1;0;0.0;-180.0;"));
+		assertTrue(result.contains("\nN3;0;null;true;1;0;-1.5;0.001;"));
+	}
+	
+	@Test(expected=NullPointerException.class)
+	public void testWriteNoOutput() throws IOException {
+		exporter.write(data.get("N298884269"));
+	}
+
+	@Test
+	public void testExportGzip() throws IOException {
+		File expectedFolder = new File("res/");
+		exporter.export(data, expectedFolder);
+		
+		File output = new File("res/csv-gzip/");
+		output.mkdirs();
+		try(CSVExporter gzip = new CSVExporter(output, true)) {
+			for(Element e : data.values()) {
+				gzip.write(e);
+			}
+		}
+		
+		for(String name : new String[] { "nodes", "ways", "relations" }) {
+			File compressed = new File(output, name+".csv.gz");
+			Scanner s = new Scanner(new GZIPInputStream(new FileInputStream(compressed)), "UTF-8");
+			StringBuilder result = new StringBuilder();
+			while(s.hasNextLine()) {
+				result.append(s.nextLine()+"\n");
+			}
+			s.close();
+			
+			assertEquals(TestSuite.readTextFile(new File(expectedFolder, name+".csv")), result.toString());
+			compressed.delete();
+		}
+		output.delete();
+	}
+
+//OTHER METHODS
+	/**
+	 * Sorts the tags column of each CSV line, so tests don't depend on tags order
+	 * @param csv The CSV content
+	 * @return The CSV content with sorted tags
+	 */
+	private static String sortTags(String csv) {
+		StringBuilder result = new StringBuilder();
+		for(String line : csv.split("\n")) {
+			int start = line.lastIndexOf(";\"[");
+			if(start >= 0 && line.endsWith("]\"") && line.length() > start + 4) {
+				String[] tags = line.substring(start + 3, line.length() - 2).split(",");
+				Arrays.sort(tags);
+				line = line.substring(0, start + 3) + String.join(",", tags) + "]\"";
+			}
+			result.append(line).append('\n');
+		}
+		return result.toString();
 	}
 }
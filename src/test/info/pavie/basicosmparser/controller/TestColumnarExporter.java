@@ -0,0 +1,257 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link ColumnarExporter}.
+ * @author Adrien PAVIE
+ */
+public class TestColumnarExporter {
+//ATTRIBUTES
+	private File output;
+	private Map<String,Element> data;
+	private List<Node> nodes;
+	private List<Way> ways;
+	private List<Relation> relations;
+
+//SETUP
+	@Before
+	public void setUp() throws Exception {
+		output = new File("res/columnar/");
+		output.mkdirs();
+		data = new OSMParser().parse(new File("res/xml/bleruais.osm"));
+		
+		nodes = new ArrayList<Node>();
+		ways = new ArrayList<Way>();
+		relations = new ArrayList<Relation>();
+		for(Element e : data.values()) {
+			if(e instanceof Node) { nodes.add((Node) e); }
+			else if(e instanceof Way) { ways.add((Way) e); }
+			else { relations.add((Relation) e); }
+		}
+		
+		new ColumnarExporter(output).export(data);
+	}
+
+	@After
+	public void tearDown() {
+		for(File f : output.listFiles()) {
+			f.delete();
+		}
+		output.delete();
+	}
+
+//TESTS
+	@Test
+	public void testIndex() throws IOException {
+		try(DataInputStream in = new DataInputStream(new FileInputStream(new File(output, "nodes.index")))) {
+			assertEquals(ColumnarExporter.MAGIC, in.readInt());
+			assertEquals(ColumnarExporter.FORMAT_VERSION, in.readInt());
+			assertEquals(10, in.readInt());
+			assertEquals("id", in.readUTF());
+			for(int i=1; i < 8; i++) {
+				in.readUTF();
+			}
+			assertEquals("lat", in.readUTF());
+			assertEquals("lon", in.readUTF());
+
+			//11450 nodes in 8192 rows blocks
+			assertEquals(2, in.readInt());
+			assertEquals(8192, in.readInt());
+			assertEquals(nodes.get(0).getNumericId(), in.readLong());
+			assertEquals(nodes.get(8191).getNumericId(), in.readLong());
+			assertEquals(0, in.readLong());
+		}
+	}
+
+	@Test
+	public void testNodes() throws IOException {
+		List<Long> ids = readDeltaColumn("nodes", "id");
+		List<Long> lats = readDeltaColumn("nodes", "lat");
+		List<Long> lons = readDeltaColumn("nodes", "lon");
+		
+		assertEquals(nodes.size(), ids.size());
+		for(int i=0; i < nodes.size(); i++) {
+			assertEquals(nodes.get(i).getNumericId(), (long) ids.get(i));
+			assertEquals(nodes.get(i).getLatE7(), (long) lats.get(i));
+			assertEquals(nodes.get(i).getLonE7(), (long) lons.get(i));
+		}
+	}
+
+	@Test
+	public void testWays() throws IOException {
+		byte[] column = Files.readAllBytes(new File(output, "ways.nodes.col").toPath());
+		int[] pos = { 0 };
+		
+		for(Way w : ways) {
+			assertEquals(w.getNodeCount(), readVarint(column, pos));
+			long id = 0;
+			for(int i=0; i < w.getNodeCount(); i++) {
+				id += unzigzag(readVarint(column, pos));
+				assertEquals(w.getNodeId(i), id);
+			}
+		}
+		assertEquals(column.length, pos[0]);
+	}
+
+	@Test
+	public void testTags() throws IOException {
+		List<String> strings = readStrings();
+		byte[] column = Files.readAllBytes(new File(output, "relations.tags.col").toPath());
+		int[] pos = { 0 };
+		
+		for(Relation r : relations) {
+			Map<String,String> tags = new LinkedHashMap<String,String>();
+			int count = (int) readVarint(column, pos);
+			for(int i=0; i < count; i++) {
+				tags.put(strings.get((int) readVarint(column, pos) - 1), strings.get((int) readVarint(column, pos) - 1));
+			}
+			assertEquals(r.getTags(), tags);
+		}
+	}
+
+	@Test
+	public void testSize() throws IOException {
+		File csv = new File("res/");
+		new CSVExporter().export(data, csv);
+		long csvSize = new File(csv, "nodes.csv").length() + new File(csv, "ways.csv").length() + new File(csv, "relations.csv").length();
+		
+		long size = 0;
+		for(File f : output.listFiles()) {
+			size += f.length();
+		}
+		assertTrue(size * 3 < csvSize);
+	}
+
+	@Test
+	public void testFormat() throws IOException {
+		assertEquals(ExportFormat.COLUMNAR, ExportFormat.fromName("columnar"));
+		assertEquals(null, ExportFormat.fromName("xml"));
+		
+		Exporter exporter = ExportFormat.COLUMNAR.create(output);
+		assertTrue(exporter instanceof ColumnarExporter);
+		exporter.close();
+	}
+
+	/**
+	 * Reads a column made of one delta-encoded value per row, block by block using the index
+	 * @param type The element type
+	 * @param column The column name
+	 * @return The value of each row
+	 */
+	private List<Long> readDeltaColumn(String type, String column) throws IOException {
+		byte[] data = Files.readAllBytes(new File(output, type+"."+column+".col").toPath());
+		List<Long> result = new ArrayList<Long>();
+		
+		try(DataInputStream in = new DataInputStream(new FileInputStream(new File(output, type+".index")))) {
+			in.readInt();
+			in.readInt();
+			int columns = in.readInt();
+			int columnIndex = -1;
+			for(int i=0; i < columns; i++) {
+				if(in.readUTF().equals(column)) {
+					columnIndex = i;
+				}
+			}
+			
+			int blocks = in.readInt();
+			for(int b=0; b < blocks; b++) {
+				int rows = in.readInt();
+				in.readLong();
+				in.readLong();
+				long offset = 0;
+				for(int i=0; i < columns; i++) {
+					long o = in.readLong();
+					in.readLong();
+					if(i == columnIndex) {
+						offset = o;
+					}
+				}
+
+				//Blocks are decoded alone
+				int[] pos = { (int) offset };
+				long previous = 0;
+				for(int r=0; r < rows; r++) {
+					previous += unzigzag(readVarint(data, pos));
+					result.add(previous);
+				}
+			}
+		}
+		
+		return result;
+	}
+
+	/**
+	 * @return The strings dictionary
+	 */
+	private List<String> readStrings() throws IOException {
+		byte[] data = Files.readAllBytes(new File(output, ColumnarExporter.STRINGS).toPath());
+		int[] pos = { 0 };
+		List<String> result = new ArrayList<String>();
+		
+		long count = readVarint(data, pos);
+		for(int i=0; i < count; i++) {
+			int length = (int) readVarint(data, pos);
+			result.add(new String(data, pos[0], length, StandardCharsets.UTF_8));
+			pos[0] += length;
+		}
+		assertEquals(data.length, pos[0]);
+		
+		return result;
+	}
+
+	private static long readVarint(byte[] data, int[] pos) {
+		long result = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = data[pos[0]++];
+			result |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while(b < 0);
+		return result;
+	}
+
+	private static long unzigzag(long v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+}
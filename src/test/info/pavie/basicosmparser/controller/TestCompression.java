@@ -0,0 +1,203 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Test class for {@link Compression}, {@link BZip2InputStream} and {@link BackgroundInputStream}.
+ * @author Adrien PAVIE
+ */
+public class TestCompression {
+//TESTS
+// open()
+	@Test
+	public void testOpen() throws IOException {
+		byte[] expected = Files.readAllBytes(new File("res/xml/sample.osm").toPath());
+		
+		for(String name : new String[] { "sample.osm", "sample.osm.gz", "sample.osm.bz2" }) {
+			try(InputStream in = Compression.open(new File("res/xml/"+name))) {
+				assertArrayEquals(expected, readAll(in));
+			}
+		}
+	}
+
+// BZip2InputStream
+	@Test
+	public void testBZip2Blocks() throws IOException {
+		//Compressed with 100k blocks
+		byte[] expected = Files.readAllBytes(new File("res/xml/bleruais.osm").toPath());
+		
+		try(InputStream in = Compression.open(new File("res/xml/bleruais.osm.bz2"))) {
+			assertArrayEquals(expected, readAll(in));
+		}
+	}
+
+	@Test
+	public void testBZip2Concatenated() throws IOException {
+		byte[] text = Files.readAllBytes(new File("res/xml/sample.osm").toPath());
+		byte[] compressed = Files.readAllBytes(new File("res/xml/sample.osm.bz2").toPath());
+		
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.write(compressed);
+		data.write(compressed);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		expected.write(text);
+		expected.write(text);
+		
+		try(InputStream in = new BZip2InputStream(new ByteArrayInputStream(data.toByteArray()))) {
+			assertArrayEquals(expected.toByteArray(), readAll(in));
+		}
+	}
+
+	@Test(expected=IOException.class)
+	public void testBZip2Corrupted() throws IOException {
+		byte[] compressed = Files.readAllBytes(new File("res/xml/sample.osm.bz2").toPath());
+		compressed[compressed.length / 2] ^= 0x10;
+		
+		try(InputStream in = new BZip2InputStream(new ByteArrayInputStream(compressed))) {
+			readAll(in);
+		}
+	}
+
+	@Test(expected=IOException.class)
+	public void testBZip2Truncated() throws IOException {
+		byte[] compressed = Files.readAllBytes(new File("res/xml/sample.osm.bz2").toPath());
+		
+		try(InputStream in = new BZip2InputStream(new ByteArrayInputStream(Arrays.copyOf(compressed, compressed.length - 10)))) {
+			readAll(in);
+		}
+	}
+
+// BackgroundInputStream
+	@Test
+	public void testBackground() throws IOException {
+		byte[] data = new byte[100000];
+		for(int i=0; i < data.length; i++) {
+			data[i] = (byte) (i * 31);
+		}
+		
+		try(InputStream in = new BackgroundInputStream(new ByteArrayInputStream(data), 1000, 2)) {
+			assertEquals(data[0] & 0xFF, in.read());
+			byte[] rest = readAll(in);
+			assertArrayEquals(Arrays.copyOfRange(data, 1, data.length), rest);
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	public void testBackgroundClose() throws IOException {
+		final boolean[] closed = { false };
+		InputStream source = new ByteArrayInputStream(new byte[1000000]) {
+			@Override
+			public void close() {
+				closed[0] = true;
+			}
+		};
+
+		//Reader thread is blocked by the full queue, closing must stop it
+		InputStream in = new BackgroundInputStream(source, 100, 1);
+		in.read();
+		in.close();
+		assertTrue(closed[0]);
+		assertEquals(-1, in.read());
+	}
+
+	@Test(expected=IOException.class)
+	public void testBackgroundError() throws IOException {
+		InputStream source = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new IOException("Broken input");
+			}
+		};
+		
+		try(InputStream in = new BackgroundInputStream(source)) {
+			readAll(in);
+		}
+	}
+
+	@Test(timeout=10000)
+	public void testBackgroundRuntimeError() {
+		InputStream source = new InputStream() {
+			@Override
+			public int read() {
+				throw new IllegalStateException("Broken decoder");
+			}
+		};
+		
+		try(InputStream in = new BackgroundInputStream(source)) {
+			readAll(in);
+			fail("Exception expected");
+		}
+		catch(IOException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test(timeout=10000)
+	public void testBackgroundCorruptedBZip2() throws IOException {
+		byte[] compressed = Files.readAllBytes(new File("res/xml/sample.osm.bz2").toPath());
+		byte[][] inputs = {
+			Arrays.copyOf(compressed, compressed.length / 2),
+			Arrays.copyOf(compressed, compressed.length)
+		};
+		inputs[1][compressed.length / 3] ^= 0x55;
+		inputs[1][compressed.length / 2] ^= 0x21;
+		
+		for(byte[] input : inputs) {
+			try(InputStream in = new BackgroundInputStream(new BZip2InputStream(new ByteArrayInputStream(input)))) {
+				readAll(in);
+				fail("Exception expected");
+			}
+			catch(IOException e) {
+				//Expected, without waiting forever
+			}
+		}
+	}
+
+	/**
+	 * Reads a stream until its end
+	 * @param in The stream
+	 * @return The read bytes
+	 */
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while((read = in.read(buffer)) >= 0) {
+			result.write(buffer, 0, read);
+		}
+		return result.toByteArray();
+	}
+}
@@ -0,0 +1,101 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import static org.junit.Assert.assertEquals;
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.Node;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+/**
+ * Test class for {@link Coordinates}.
+ * @author Adrien PAVIE
+ */
+public class TestCoordinates {
+//TESTS
+// parse()
+	@Test
+	public void testParse() {
+		assertEquals(540901746, Coordinates.parse("54.0901746"));
+		assertEquals(-122482632, Coordinates.parse("-12.2482632"));
+		assertEquals(1800000000, Coordinates.parse("180"));
+		assertEquals(-15000000, Coordinates.parse("-1.5"));
+		assertEquals(5000000, Coordinates.parse(".5"));
+		assertEquals(0, Coordinates.parse("-0.0"));
+
+		//Rounding of extra decimals
+		assertEquals(481234568, Coordinates.parse("48.123456789"));
+		assertEquals(481234567, Coordinates.parse("48.12345674"));
+		assertEquals(-481234568, Coordinates.parse("-48.12345675"));
+
+		//Exponent notation
+		assertEquals(15000000, Coordinates.parse("1.5e0"));
+	}
+
+	@Test
+	public void testParseBytes() {
+		byte[] b = "lat=\"-54.0901746\"".getBytes(StandardCharsets.UTF_8);
+		assertEquals(-540901746, Coordinates.parse(b, 5, 16));
+	}
+
+	@Test(expected=NumberFormatException.class)
+	public void testParseEmpty() {
+		Coordinates.parse("-");
+	}
+
+	@Test(expected=NumberFormatException.class)
+	public void testParseInvalid() {
+		Coordinates.parse("12.3a");
+	}
+
+	@Test(expected=NumberFormatException.class)
+	public void testParseOutOfRange() {
+		Coordinates.parse("1000");
+	}
+
+// OSMParser
+	@Test
+	public void testOSMParser() throws IOException, SAXException {
+		Map<String,Element> expected = new OSMParser().parse(new File("res/xml/bleruais.osm"));
+		
+		for(int i=0; i < 2; i++) {
+			OSMParser p = new OSMParser();
+			p.setFixedPointCoordinates(true);
+			p.setByteTokenizer(i == 1);
+			Map<String,Element> result = p.parse(new File("res/xml/bleruais.osm"));
+			
+			assertEquals(expected.size(), result.size());
+			for(Element e : expected.values()) {
+				if(e instanceof Node) {
+					Node n = (Node) result.get(e.getId());
+					assertEquals(((Node) e).getLat(), n.getLat(), 0);
+					assertEquals(((Node) e).getLon(), n.getLon(), 0);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.ElementType;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.File;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link ElementFilter}.
+ * @author Adrien PAVIE
+ */
+public class TestElementFilter {
+//ATTRIBUTES
+	private ElementFilter filter;
+
+//SETUP
+	@Before
+	public void setUp() throws Exception {
+		filter = new ElementFilter();
+	}
+
+//TESTS
+// accepts()
+	@Test
+	public void testAcceptsAll() {
+		Node n = new Node(1, 48.1, -2.1);
+		assertTrue(filter.accepts(n));
+		assertTrue(filter.accepts(new Relation(2)));
+		assertFalse(filter.hasTagConditions());
+	}
+
+	@Test
+	public void testAcceptsHeader() {
+		filter.setTypes(ElementType.WAY);
+		filter.setVersionRange(2, 5);
+		filter.setTimeRange(1000, 2000);
+		
+		assertTrue(filter.acceptsHeader(ElementType.WAY, 2, 1000));
+		assertFalse(filter.acceptsHeader(ElementType.NODE, 2, 1000));
+		assertFalse(filter.acceptsHeader(ElementType.WAY, 6, 1000));
+		assertFalse(filter.acceptsHeader(ElementType.WAY, 3, 2001));
+	}
+
+	@Test
+	public void testAcceptsTags() {
+		filter.requireTag("highway", "residential", "tertiary");
+		filter.requireTag("name");
+		Way w = new Way(1);
+		w.addTag("highway", "residential");
+		
+		assertTrue(filter.hasTagConditions());
+		assertFalse(filter.acceptsTags(w));
+		w.addTag("name", "Rue de la Gare");
+		assertTrue(filter.acceptsTags(w));
+		w.addTag("highway", "footway");
+		assertFalse(filter.acceptsTags(w));
+	}
+
+	@Test
+	public void testAcceptsBBox() {
+		filter.setBBox(48, -2.2, 48.2, -2);
+		Way w = new Way(1);
+		w.addNode(new Node(1, 47.9, -2.1));
+		
+		assertTrue(filter.acceptsLocation(48.2, -2));
+		assertFalse(filter.acceptsLocation(48.3, -2.1));
+		assertFalse(filter.acceptsNodes(w));
+		w.addNode(new Node(2, 48.1, -2.1));
+		assertTrue(filter.acceptsNodes(w));
+		assertTrue(filter.accepts(new Relation(1)));
+	}
+
+	@Test
+	public void testMayReject() {
+		assertFalse(filter.mayReject(ElementType.NODE));
+		filter.setTypes(ElementType.NODE, ElementType.WAY);
+		assertFalse(filter.mayReject(ElementType.NODE));
+		assertTrue(filter.mayReject(ElementType.RELATION));
+		filter.setBBox(48, -2.2, 48.2, -2);
+		assertTrue(filter.mayReject(ElementType.NODE));
+		assertTrue(filter.mayReject(ElementType.WAY));
+		
+		ElementFilter versions = new ElementFilter();
+		versions.setVersionRange(2, Integer.MAX_VALUE);
+		assertTrue(versions.mayReject(ElementType.RELATION));
+		
+		ElementFilter tags = new ElementFilter();
+		tags.requireTag("highway");
+		assertTrue(tags.mayReject(ElementType.NODE));
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testInvalidBBox() {
+		filter.setBBox(48.2, -2, 48, -2.2);
+	}
+
+// Parsers
+	/**
+	 * Checks elements of bleruais.osm kept by a filter on highways
+	 */
+	private void testHighways(boolean byteTokenizer) throws Exception {
+		filter.setTypes(ElementType.WAY);
+		filter.requireTag("highway");
+		OSMParser p = new OSMParser();
+		p.setByteTokenizer(byteTokenizer);
+		p.setElementFilter(filter);
+		Map<String,Element> result = p.parse(new File("res/xml/bleruais.osm"));
+		
+		assertEquals(101, result.size());
+		assertEquals(0, p.getElementStore().getNodeCount());
+		for(Element e : result.values()) {
+			Way w = (Way) e;
+			assertNotNull(w.getTag("highway"));
+
+			//Skipped nodes are still available with their location
+			for(Node n : w.getNodes()) {
+				assertNotNull(n);
+				assertTrue(n.getLat() > 48);
+			}
+		}
+	}
+
+	@Test
+	public void testParseHighways() throws Exception {
+		testHighways(false);
+	}
+
+	@Test
+	public void testParseHighwaysTokenizer() throws Exception {
+		testHighways(true);
+	}
+
+	@Test
+	public void testParseBBox() throws Exception {
+		filter.setTypes(ElementType.NODE, ElementType.WAY);
+		filter.setBBox(48.09, -2.15, 48.12, -2.10);
+		OSMParser p = new OSMParser();
+		p.setElementFilter(filter);
+		p.parse(new File("res/xml/bleruais.osm"));
+		
+		assertEquals(4402, p.getElementStore().getNodeCount());
+		assertEquals(545, p.getElementStore().getWayCount());
+		assertEquals(0, p.getElementStore().getRelationCount());
+	}
+
+	@Test
+	public void testParseStreaming() throws Exception {
+		final int[] counts = new int[3];
+		filter.setVersionRange(3, Integer.MAX_VALUE);
+		filter.setBBox(48.09, -2.15, 48.12, -2.10);
+		OSMParser p = new OSMParser();
+		p.setByteTokenizer(true);
+		p.setElementFilter(filter);
+		
+		p.parse(new File("res/xml/bleruais.osm"), new OSMElementHandler() {
+			@Override
+			public void onNode(Node n) {
+				assertTrue(n.getVersion() >= 3);
+				counts[0]++;
+			}
+
+			@Override
+			public void onWay(Way w) {
+				assertTrue(w.getVersion() >= 3);
+				assertTrue(filter.acceptsNodes(w));
+				counts[1]++;
+			}
+
+			@Override
+			public void onRelation(Relation r) {
+				assertTrue(r.getVersion() >= 3);
+				counts[2]++;
+			}
+
+			@Override
+			public void onEnd() {}
+		});
+		
+		assertTrue(counts[0] > 0 && counts[0] < 147);
+		assertTrue(counts[1] > 0 && counts[1] < 99);
+		assertEquals(24, counts[2]);
+	}
+
+	@Test
+	public void testParsePBF() throws Exception {
+		filter.requireTag("highway");
+		OSMParser xml = new OSMParser();
+		xml.setElementFilter(filter);
+		PBFParser pbf = new PBFParser();
+		pbf.setElementFilter(filter);
+		
+		Map<String,Element> expected = xml.parse(new File("res/xml/sample.osm"));
+		Map<String,Element> result = pbf.parse(new File("res/pbf/sample.osm.pbf"));
+		assertFalse(result.isEmpty());
+		assertEquals(expected.keySet(), result.keySet());
+	}
+}
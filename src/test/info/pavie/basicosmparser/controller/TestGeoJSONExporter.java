@@ -0,0 +1,160 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import static org.junit.Assert.assertEquals;
+import info.pavie.basicosmparser.index.NodeLocationIndex;
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+/**
+ * Test class for {@link GeoJSONExporter}.
+ * @author Adrien PAVIE
+ */
+public class TestGeoJSONExporter {
+//ATTRIBUTES
+	private File output;
+
+//SETUP
+	@Before
+	public void setUp() {
+		output = new File("res/geojson/");
+		output.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		for(File f : output.listFiles()) {
+			f.delete();
+		}
+		output.delete();
+	}
+
+//TESTS
+	@Test
+	public void testExport() throws IOException, SAXException {
+		new GeoJSONExporter(output).export(new OSMParser().parse(new File("res/xml/sample.osm")));
+		
+		String expected =
+"{\"type\":\"FeatureCollection\",\"features\":[\n"+
+"{\"type\":\"Feature\",\"id\":\"N1831881213\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[12.2539381,54.0900666]},\"properties\":{\"name\":\"Neu Broderstorf\",\"traffic_sign\":\"city_limit\"}},\n"+
+"{\"type\":\"Feature\",\"id\":\"W26659127\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[12.2482632,54.0901746],[12.2516513,54.0901447],[12.2441924,54.0906309]]},\"properties\":{\"highway\":\"unclassified\",\"name\":\"Pastower Straße\"}}\n"+
+"]}\n";
+		assertEquals(expected, read("elements.geojson"));
+	}
+
+	@Test
+	public void testExportPolygon() throws IOException {
+		Map<String,Element> data = new LinkedHashMap<String,Element>();
+		Node n1 = new Node(1, 0, 0), n2 = new Node(2, 0, 1), n3 = new Node(3, 1, 1);
+		Way w1 = new Way(10);
+		w1.addNode(n1); w1.addNode(n2); w1.addNode(n3); w1.addNode(n1);
+		w1.addTag("building", "yes");
+		Way w2 = new Way(11);
+		w2.addNode(n1); w2.addNode(n2); w2.addNode(n3); w2.addNode(n1);
+		w2.addTag("highway", "pedestrian");
+		w2.addTag("area", "no");
+		data.put(w1.getId(), w1);
+		data.put(w2.getId(), w2);
+		
+		new GeoJSONExporter(output, true).export(data);
+		
+		String expected =
+"{\"type\":\"Feature\",\"id\":\"W10\",\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[[0.0,0.0],[1.0,0.0],[1.0,1.0],[0.0,0.0]]]},\"properties\":{\"building\":\"yes\"}}\n"+
+"{\"type\":\"Feature\",\"id\":\"W11\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[0.0,0.0],[1.0,0.0],[1.0,1.0],[0.0,0.0]]},\"properties\":{\"highway\":\"pedestrian\",\"area\":\"no\"}}\n";
+		assertEquals(expected, read("elements.ndjson"));
+	}
+
+	@Test
+	public void testExportEscaped() throws IOException {
+		Map<String,Element> data = new LinkedHashMap<String,Element>();
+		Node n1 = new Node(1, 48.1, -1.6);
+		n1.addTag("name", "Le \"Bar\"\\\n\u0001é");
+		data.put(n1.getId(), n1);
+		
+		new GeoJSONExporter(output, true).export(data);
+		
+		assertEquals(
+				"{\"type\":\"Feature\",\"id\":\"N1\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[-1.6,48.1]},\"properties\":{\"name\":\"Le \\\"Bar\\\"\\\\\\n\\u0001é\"}}\n",
+				read("elements.ndjson")
+		);
+	}
+
+	@Test
+	public void testExportParallel() throws IOException, SAXException {
+		Map<String,Element> data = new OSMParser().parse(new File("res/xml/bleruais.osm"));
+		
+		GeoJSONExporter single = new GeoJSONExporter(output);
+		single.setThreads(1);
+		single.setBatchSize(100000);
+		single.export(data);
+		String expected = read("elements.geojson");
+		
+		GeoJSONExporter parallel = new GeoJSONExporter(output);
+		parallel.setThreads(4);
+		parallel.setBatchSize(37);
+		parallel.export(data);
+		assertEquals(expected, read("elements.geojson"));
+	}
+
+	@Test
+	public void testExportStreaming() throws IOException, SAXException {
+		new GeoJSONExporter(output, true).export(new OSMParser().parse(new File("res/xml/bleruais.osm")));
+		String expected = read("elements.ndjson");
+
+		//Way geometries come from the node location index
+		File indexFile = new File(output, "nodes.idx");
+		NodeLocationIndex index = NodeLocationIndex.sparse(indexFile);
+		OSMParser parser = new OSMParser();
+		parser.setNodeLocationIndex(index);
+		parser.parse(new File("res/xml/bleruais.osm"), new GeoJSONExporter(output, true));
+		index.close();
+		
+		assertEquals(expected, read("elements.ndjson"));
+	}
+
+	@Test
+	public void testExportStreamingWithoutIndex() throws IOException, SAXException {
+		new GeoJSONExporter(output, true).export(new OSMParser().parse(new File("res/xml/bleruais.osm")));
+		String expected = read("elements.ndjson");
+
+		//Way geometries come from node locations kept by parser
+		new OSMParser().parse(new File("res/xml/bleruais.osm"), new GeoJSONExporter(output, true));
+		
+		assertEquals(expected, read("elements.ndjson"));
+	}
+
+	private String read(String name) throws IOException {
+		return new String(Files.readAllBytes(new File(output, name).toPath()), StandardCharsets.UTF_8);
+	}
+}
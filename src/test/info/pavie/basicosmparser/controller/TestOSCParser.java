@@ -0,0 +1,219 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.ElementStore;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Test class for {@link OSCParser}.
+ * @author Adrien PAVIE
+ */
+public class TestOSCParser {
+//ATTRIBUTES
+	private OSMParser p1;
+	private OSCParser c1;
+	private ElementStore data;
+	private File oscFile;
+
+//SETUP
+	@Before
+	public void setUp() throws Exception {
+		p1 = new OSMParser();
+		p1.parse(new File("res/xml/sample.osm"));
+		data = p1.getElementStore();
+		c1 = new OSCParser();
+		oscFile = new File("res/osc/sample.osc");
+	}
+
+//TESTS
+// apply()
+	@Test
+	public void testApplySummary() throws Exception {
+		ChangeSummary result = c1.apply(oscFile, data);
+		
+		assertEquals(Arrays.asList("N5000000001", "W5000000002"), result.getCreated());
+		assertEquals(Arrays.asList("N298884269", "W26659127"), result.getModified());
+		assertEquals(Arrays.asList("N1831881213"), result.getDeleted());
+		assertEquals(Arrays.asList("R56688", "N999"), result.getSkipped());
+		assertEquals(5, result.size());
+		assertEquals(7, data.size());
+	}
+
+	@Test
+	public void testApplyModified() throws Exception {
+		Node n1 = data.getNode(298884269);
+		Way w1 = data.getWay(26659127);
+		Relation r1 = data.getRelation(56688);
+		c1.apply(oscFile, data);
+
+		//Modified elements keep their object, so parents see changes
+		assertSame(n1, data.getNode(298884269));
+		assertEquals(54.09018, n1.getLat(), 0);
+		assertEquals(2, n1.getVersion());
+		assertEquals("2014-06-02T08:12:39Z", n1.getTimestamp());
+		assertSame(n1, r1.getMember(0));
+		
+		assertSame(w1, data.getWay(26659127));
+		assertEquals(6, w1.getVersion());
+		assertEquals(2, w1.getNodeCount());
+		assertSame(n1, w1.getNodes().get(0));
+		assertEquals("residential", w1.getTag("highway"));
+		assertEquals("30", w1.getTag("maxspeed"));
+		assertEquals(3, w1.getTagCount());
+		assertSame(w1, r1.getMember(2));
+
+		//Older version is ignored
+		assertEquals(28, r1.getVersion());
+		assertEquals(4, r1.getMemberCount());
+		assertEquals("bus", r1.getTag("route"));
+	}
+
+	@Test
+	public void testApplyCreated() throws Exception {
+		c1.apply(oscFile, data);
+
+		//Way is created before its node in file
+		Way w2 = data.getWay(5000000002L);
+		Node n2 = data.getNode(5000000001L);
+		assertEquals(12.251987, n2.getLon(), 0);
+		assertSame(data.getNode(298884272), w2.getNodes().get(0));
+		assertSame(n2, w2.getNodes().get(1));
+		assertEquals("service", w2.getTag("highway"));
+	}
+
+	@Test
+	public void testApplyDeleted() throws Exception {
+		c1.apply(oscFile, data);
+		assertNull(data.getNode(1831881213));
+		assertNull(p1.getElementStore().asMap().get("N1831881213"));
+	}
+
+	@Test
+	public void testApplyTwice() throws Exception {
+		c1.apply(oscFile, data);
+		ChangeSummary result = c1.apply(oscFile, data);
+		
+		assertEquals(0, result.size());
+		assertEquals(7, result.getSkipped().size());
+		assertEquals(7, data.size());
+	}
+
+	@Test
+	public void testApplyLazyWayNodes() throws Exception {
+		p1.setLazyWayNodes(true);
+		p1.parse(new File("res/xml/sample.osm"));
+		data = p1.getElementStore();
+		c1.apply(oscFile, data);
+		
+		Way w1 = data.getWay(26659127);
+		assertArrayEquals(new long[] { 298884269, 261728686 }, w1.getNodeIds());
+		assertSame(data.getNode(298884269), w1.getNodes().get(0));
+	}
+
+	@Test
+	public void testApplyLazyWayNodesMissing() throws Exception {
+		p1.setLazyWayNodes(true);
+		p1.parse("<osm><way id=\"1\"><nd ref=\"1\"/><nd ref=\"2\"/></way><node id=\"1\" lat=\"1\" lon=\"2\"/></osm>");
+		data = p1.getElementStore();
+		Way w1 = data.getWay(1);
+		assertNull(w1.getNodes().get(1));
+		
+		//Node missing from data is found once the diff adds it
+		c1.apply("<osmChange version=\"0.6\"><modify><node id=\"2\" version=\"2\" lat=\"3\" lon=\"4\"/></modify></osmChange>", data);
+		assertSame(data.getNode(2), w1.getNodes().get(1));
+	}
+
+	@Test
+	public void testApplyRelink() throws Exception {
+		c1.apply(
+				"<osmChange version=\"0.6\"><modify>"
+				+ "<relation id=\"56688\" version=\"29\"><member type=\"way\" ref=\"26659127\" role=\"path\"/><member type=\"way\" ref=\"42\" role=\"path\"/></relation>"
+				+ "</modify></osmChange>",
+				data);
+		Relation r1 = data.getRelation(56688);
+		Element stub = r1.getMember(1);
+		assertEquals("W42", stub.getId());
+		assertEquals(0, ((Way) stub).getNodeCount());
+
+		//Way was out of data, stub member is replaced when it is added
+		ChangeSummary result = c1.apply(
+				"<osmChange version=\"0.6\"><modify>"
+				+ "<way id=\"42\" version=\"3\"><nd ref=\"298884269\"/><nd ref=\"298884272\"/></way>"
+				+ "</modify></osmChange>",
+				data);
+		assertEquals(Collections.singletonList("W42"), result.getCreated());
+		assertSame(data.getWay(42), r1.getMember(1));
+		assertEquals("path", r1.getMemberRole(1));
+	}
+
+	@Test
+	public void testApplyDeletedRelation() throws Exception {
+		ChangeSummary result = c1.apply(
+				"<osmChange version=\"0.6\"><delete>"
+				+ "<node id=\"298884269\" version=\"2\"/>"
+				+ "<relation id=\"56688\" version=\"29\"/>"
+				+ "</delete></osmChange>",
+				data);
+
+		//Parents are deleted before children
+		assertEquals(Arrays.asList("R56688", "N298884269"), result.getDeleted());
+		assertEquals(4, data.size());
+	}
+
+	@Test
+	public void testApplyInvalid() throws Exception {
+		try {
+			c1.apply("<osmChange version=\"0.6\"><delete><node id=\"298884269\" version=\"2\"/></delete>", data);
+		}
+		catch(SAXException e) {
+			//No change applied
+			assertEquals(6, data.size());
+			return;
+		}
+		throw new AssertionError("Invalid input should be refused");
+	}
+
+	@Test(expected=SAXParseException.class)
+	public void testApplyInvalidTimestamp() throws Exception {
+		c1.apply("<osmChange version=\"0.6\"><create><node id=\"1\" version=\"1\" lat=\"1\" lon=\"2\" timestamp=\"yesterday\"/></create></osmChange>", data);
+	}
+
+	@Test(expected=NullPointerException.class)
+	public void testApplyNull() throws Exception {
+		c1.apply(oscFile, null);
+	}
+}
@@ -20,22 +20,30 @@
 package info.pavie.basicosmparser.controller;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import info.pavie.basicosmparser.TestSuite;
 import info.pavie.basicosmparser.model.Element;
 import info.pavie.basicosmparser.model.Node;
 import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Timestamps;
 import info.pavie.basicosmparser.model.Way;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
 /**
  * Test class for {@link OSMParser}.
@@ -158,4 +166,256 @@ public class TestOSMParser {
 		assertEquals(single4_1.getNodes().get(1), single4_2.getNodes().get(0));
 //		System.out.println("Parsing: "+result.size()+" elements read");
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void testParseHandler() throws IOException, SAXException {
+		final List<Element> read = new ArrayList<Element>();
+		final boolean[] ended = { false };
+		
+		p1.parse(new File("res/xml/sample.osm"), new OSMElementHandler() {
+			@Override
+			public void onNode(Node n) { read.add(n); }
+			
+			@Override
+			public void onWay(Way w) { read.add(w); }
+			
+			@Override
+			public void onRelation(Relation r) { read.add(r); }
+			
+			@Override
+			public void onEnd() { ended[0] = true; }
+		});
+		
+		assertTrue(ended[0]);
+		assertEquals(6, read.size());
+		assertEquals("N298884269", read.get(0).getId());
+		assertEquals("N298884272", read.get(3).getId());
+		
+		//Way nodes are stubs
+		Way w1 = (Way) read.get(4);
+		assertEquals("W26659127", w1.getId());
+		assertEquals(3, w1.getNodes().size());
+		assertEquals("N261728686", w1.getNodes().get(2).getId());
+		
+		//Relation members are stubs
+		Relation r1 = (Relation) read.get(5);
+		assertEquals(4, r1.getMembers().size());
+		assertEquals("W26659127", r1.getMembers().get(2).getId());
+		assertEquals("path", r1.getMemberRole(r1.getMembers().get(2)));
+	}
+	
+	@Test
+	public void testParseByteTokenizer() throws IOException, SAXException {
+		p1.setByteTokenizer(true);
+		result = p1.parse(new File("res/xml/sample.osm"));
+		testSampleFile();
+	}
+	
+	@Test
+	public void testParseByteTokenizerVillage() throws IOException, SAXException {
+		Map<String,Element> expected = p1.parse(new File("res/xml/bleruais.osm"));
+		
+		OSMParser p2 = new OSMParser();
+		p2.setByteTokenizer(true);
+		result = p2.parse(new File("res/xml/bleruais.osm"));
+		
+		assertEquals(expected.size(), result.size());
+		for(Element e : expected.values()) {
+			Element read = result.get(e.getId());
+			assertEquals(e.getUser(), read.getUser());
+			assertEquals(e.getUid(), read.getUid());
+			assertEquals(e.getTimestamp(), read.getTimestamp());
+			assertEquals(e.isVisible(), read.isVisible());
+			assertEquals(e.getVersion(), read.getVersion());
+			assertEquals(e.getChangeset(), read.getChangeset());
+			assertEquals(e.getTags(), read.getTags());
+			
+			if(e instanceof Node) {
+				assertEquals(((Node) e).getLat(), ((Node) read).getLat(), 0);
+				assertEquals(((Node) e).getLon(), ((Node) read).getLon(), 0);
+			}
+			else if(e instanceof Way) {
+				assertEquals(((Way) e).getNodes().toString(), ((Way) read).getNodes().toString());
+			}
+			else if(e instanceof Relation) {
+				assertEquals(((Relation) e).getMembers().toString(), ((Relation) read).getMembers().toString());
+			}
+		}
+	}
+	
+	@Test
+	public void testParseByteTokenizerEntities() throws IOException, SAXException {
+		File f = File.createTempFile("entities", ".osm");
+		f.deleteOnExit();
+		try(OutputStream out = new FileOutputStream(f)) {
+			out.write((
+					"<?xml version='1.0' encoding='UTF-8'?>\n<!-- A comment with <node> -->\n<osm version=\"0.6\">\n"
+					+ "<node id=\"-1\" lat=\"48.1\" lon=\"-1.5e0\" visible=\"true\">\n"
+					+ "<tag k=\"name\" v=\"Caf&#233; &quot;L&apos;&#x41;rt&quot; &lt;&amp;&gt;\"/>\n"
+					+ "<tag k='note' v='a\tb\r\nc'/>\n</node>\n</osm>"
+					).getBytes("UTF-8"));
+		}
+		
+		p1.setByteTokenizer(true);
+		result = p1.parse(f);
+		Node n = (Node) result.get("N-1");
+		assertEquals(48.1, n.getLat(), 0);
+		assertEquals(-1.5, n.getLon(), 0);
+		assertTrue(n.isVisible());
+		assertEquals("Caf\u00e9 \"L'Art\" <&>", n.getTags().get("name"));
+		assertEquals("a b c", n.getTags().get("note"));
+	}
+	
+	@Test
+	public void testParseByteTokenizerEndTagSpaces() throws IOException, SAXException {
+		File f = File.createTempFile("endtags", ".osm");
+		f.deleteOnExit();
+		try(OutputStream out = new FileOutputStream(f)) {
+			out.write((
+					"<osm>\n<node id=\"1\" lat=\"1\" lon=\"2\"><tag k=\"a\" v=\"b\"/></node >\n"
+					+ "<way id=\"2\"><nd ref=\"1\"/><nd ref=\"1\"/></way\n>\n</osm>"
+					).getBytes("UTF-8"));
+		}
+		
+		p1.setByteTokenizer(true);
+		result = p1.parse(f);
+		assertEquals(2, result.size());
+		assertEquals("b", result.get("N1").getTags().get("a"));
+		assertEquals(2, ((Way) result.get("W2")).getNodeCount());
+	}
+	
+	@Test(expected=SAXException.class)
+	public void testParseByteTokenizerInvalidNumber() throws IOException, SAXException {
+		File f = File.createTempFile("number", ".osm");
+		f.deleteOnExit();
+		try(OutputStream out = new FileOutputStream(f)) {
+			out.write("<osm><node id=\"123456789012345678901234\" lat=\"1\" lon=\"2\"/></osm>".getBytes("UTF-8"));
+		}
+		
+		p1.setByteTokenizer(true);
+		p1.parse(f);
+	}
+	
+	@Test(expected=SAXException.class)
+	public void testParseByteTokenizerDoctype() throws IOException, SAXException {
+		File f = File.createTempFile("doctype", ".osm");
+		f.deleteOnExit();
+		try(OutputStream out = new FileOutputStream(f)) {
+			out.write("<?xml version='1.0'?><!DOCTYPE osm><osm></osm>".getBytes("UTF-8"));
+		}
+		
+		p1.setByteTokenizer(true);
+		p1.parse(f);
+	}
+	
+	@Test
+	public void testParseLazyWayNodes() throws IOException, SAXException {
+		p1.setLazyWayNodes(true);
+		result = p1.parse(new File("res/xml/sample.osm"));
+		testSampleFile();
+		
+		//Node defined after the way is also found
+		String osmXml = "<osm><way id=\"1\"><nd ref=\"1\"/><nd ref=\"2\"/></way>"
+				+ "<node id=\"1\" lat=\"1\" lon=\"2\"/><node id=\"2\" lat=\"3\" lon=\"4\"/></osm>";
+		result = p1.parse(osmXml);
+		Way w1 = (Way) result.get("W1");
+		assertEquals(2, w1.getNodeCount());
+		assertEquals(result.get("N2"), w1.getNodes().get(1));
+	}
+	
+	@Test
+	public void testParseLazyWayNodesHandler() throws IOException, SAXException {
+		final List<Way> read = new ArrayList<Way>();
+		p1.setLazyWayNodes(true);
+		p1.parse(new File("res/xml/sample.osm"), new OSMElementHandler() {
+			@Override
+			public void onNode(Node n) {}
+			
+			@Override
+			public void onWay(Way w) { read.add(w); }
+			
+			@Override
+			public void onRelation(Relation r) {}
+			
+			@Override
+			public void onEnd() {}
+		});
+		
+		//Without kept elements nor location index, way nodes can't be found
+		Way w1 = read.get(0);
+		assertEquals(3, w1.getNodeCount());
+		assertEquals(261728686, w1.getNodeId(2));
+		assertNull(w1.getNodes().get(2));
+	}
+	
+	@Test
+	public void testParseTimeRange() throws IOException, SAXException {
+		p1.setTimeRange(Timestamps.parse("2010-01-01T00:00:00Z"), Long.MAX_VALUE);
+		for(int i=0; i < 2; i++) {
+			p1.setByteTokenizer(i == 1);
+			result = p1.parse(new File("res/xml/sample.osm"));
+			
+			assertEquals(3, result.size());
+			assertTrue(result.containsKey("N1831881213"));
+			assertTrue(result.containsKey("W26659127"));
+			assertTrue(result.containsKey("R56688"));
+			assertEquals(2, result.get("N1831881213").getTagCount());
+			
+			//Way nodes out of time range are created from their location
+			Way w1 = (Way) result.get("W26659127");
+			assertEquals(298884269, w1.getNodes().get(0).getNumericId());
+			assertEquals(54.0901746, w1.getNodes().get(0).getLat(), 1e-7);
+		}
+		
+		p1.clearTimeRange();
+		result = p1.parse(new File("res/xml/sample.osm"));
+		assertEquals(6, result.size());
+	}
+
+	@Test
+	public void testParseInvalidTimestamp() throws IOException {
+		String osmXml = "<osm>\n<node id=\"1\" lat=\"1\" lon=\"2\" timestamp=\"yesterday\"/>\n</osm>";
+		
+		try {
+			p1.parse(osmXml);
+			fail("Exception expected");
+		}
+		catch(SAXParseException e) {
+			assertEquals(2, e.getLineNumber());
+			assertTrue(e.getMessage().contains("yesterday"));
+		}
+		catch(SAXException e) {
+			fail("Parse exception expected");
+		}
+	}
+
+	@Test
+	public void testParseCompressed() throws IOException, SAXException {
+		result = p1.parse(new File("res/xml/sample.osm.gz"));
+		testSampleFile();
+		
+		result = p1.parse(new File("res/xml/sample.osm.bz2"));
+		testSampleFile();
+		
+		p1.setByteTokenizer(true);
+		result = p1.parse(new File("res/xml/sample.osm.gz"));
+		testSampleFile();
+		
+		result = p1.parse(new File("res/xml/sample.osm.bz2"));
+		testSampleFile();
+	}
+	
+	@Test
+	public void testParseCompressedVillage() throws IOException, SAXException {
+		Map<String,Element> expected = p1.parse(new File("res/xml/bleruais.osm"));
+		
+		OSMParser p2 = new OSMParser();
+		p2.setByteTokenizer(true);
+		result = p2.parse(new File("res/xml/bleruais.osm.bz2"));
+		
+		assertEquals(expected.size(), result.size());
+		for(Element e : expected.values()) {
+			assertEquals(e.getTags(), result.get(e.getId()).getTags());
+		}
+	}
+}
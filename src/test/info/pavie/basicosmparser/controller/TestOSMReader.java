@@ -0,0 +1,116 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link OSMReader}.
+ * @author Adrien PAVIE
+ */
+public class TestOSMReader {
+//ATTRIBUTES
+	private OSMReader r1;
+
+//SETUP
+	@Before
+	public void setUp() throws Exception {
+		r1 = new OSMReader(new File("res/xml/sample.osm"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		r1.close();
+	}
+
+//TESTS
+// next()
+	@Test
+	public void testNext() {
+		assertTrue(r1.hasNext());
+		Node n1 = (Node) r1.next();
+		assertEquals("N298884269", n1.getId());
+		assertEquals(54.0901746, n1.getLat(), 0);
+		assertEquals("SvenHRO", n1.getUser());
+		
+		r1.next();
+		r1.next();
+		assertEquals("N298884272", r1.next().getId());
+		
+		Way w1 = (Way) r1.next();
+		assertEquals("W26659127", w1.getId());
+		assertEquals(3, w1.getNodes().size());
+		assertEquals("N261728686", w1.getNodes().get(2).getId());
+		
+		Relation r = (Relation) r1.next();
+		assertEquals("R56688", r.getId());
+		assertEquals(4, r.getMembers().size());
+		assertEquals("path", r.getMemberRole(r.getMembers().get(2)));
+		
+		assertFalse(r1.hasNext());
+	}
+
+	@Test(expected=NoSuchElementException.class)
+	public void testNextEnded() {
+		while(r1.hasNext()) {
+			r1.next();
+		}
+		r1.next();
+	}
+
+	@Test(expected=UncheckedIOException.class)
+	public void testNextInvalid() throws IOException {
+		r1.close();
+		r1 = new OSMReader(new ByteArrayInputStream("<osm><node id=\"1\" lat=\"1\" lon=\"1\"></osm>".getBytes("UTF-8")));
+		r1.next();
+	}
+
+// stream()
+	@Test
+	public void testStream() throws IOException {
+		try(Stream<Element> s = r1.stream()) {
+			List<String> ids = s.filter(e -> e instanceof Node && !e.getTags().isEmpty())
+								.limit(1)
+								.map(Element::getId)
+								.collect(Collectors.toList());
+			assertEquals(1, ids.size());
+			assertEquals("N1831881213", ids.get(0));
+		}
+	}
+}
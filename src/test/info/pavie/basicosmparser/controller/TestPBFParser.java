@@ -0,0 +1,217 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Timestamps;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+/**
+ * Test class for {@link PBFParser}.
+ * @author Adrien PAVIE
+ */
+public class TestPBFParser {
+//ATTRIBUTES
+	private PBFParser p1;
+	private Map<String,Element> expected;
+
+//SETUP
+	@Before
+	public void setUp() throws Exception {
+		p1 = new PBFParser();
+		expected = new OSMParser().parse(new File("res/xml/sample.osm"));
+	}
+
+//TESTS
+// parse()
+	/**
+	 * Checks that the given element is the same as the one read from XML
+	 */
+	private void checkElement(Element e) {
+		Element exp = expected.get(e.getId());
+		assertEquals(exp.getUser(), e.getUser());
+		assertEquals(exp.getUid(), e.getUid());
+		assertEquals(exp.getTimestamp(), e.getTimestamp());
+		assertEquals(exp.isVisible(), e.isVisible());
+		assertEquals(exp.getVersion(), e.getVersion());
+		assertEquals(exp.getChangeset(), e.getChangeset());
+		assertEquals(exp.getTags(), e.getTags());
+		
+		if(e instanceof Node) {
+			assertEquals(((Node) exp).getLat(), ((Node) e).getLat(), 0);
+			assertEquals(((Node) exp).getLon(), ((Node) e).getLon(), 0);
+		}
+		else if(e instanceof Way) {
+			assertEquals(((Way) exp).getNodes().size(), ((Way) e).getNodes().size());
+			for(int i=0; i < ((Way) e).getNodes().size(); i++) {
+				assertEquals(((Way) exp).getNodes().get(i).getId(), ((Way) e).getNodes().get(i).getId());
+			}
+		}
+		else {
+			Relation rExp = (Relation) exp, r = (Relation) e;
+			assertEquals(rExp.getMembers().size(), r.getMembers().size());
+			for(int i=0; i < r.getMembers().size(); i++) {
+				assertEquals(rExp.getMembers().get(i).getId(), r.getMembers().get(i).getId());
+				assertEquals(rExp.getMemberRole(rExp.getMembers().get(i)), r.getMemberRole(r.getMembers().get(i)));
+			}
+		}
+	}
+
+	@Test
+	public void testParseFile() throws IOException {
+		Map<String,Element> result = p1.parse(new File("res/pbf/sample.osm.pbf"));
+		assertEquals(expected.size(), result.size());
+		
+		for(Element e : result.values()) {
+			checkElement(e);
+		}
+
+		//Way nodes and members are resolved to parsed objects
+		Way w1 = (Way) result.get("W26659127");
+		assertSame(result.get("N298884272"), w1.getNodes().get(1));
+		Relation r1 = (Relation) result.get("R56688");
+		assertSame(w1, r1.getMembers().get(2));
+	}
+
+	@Test
+	public void testParseHandler() throws IOException, SAXException {
+		final List<Element> read = new ArrayList<Element>();
+		p1.setThreads(1);
+		
+		p1.parse(new File("res/pbf/sample.osm.pbf"), new OSMElementHandler() {
+			@Override
+			public void onNode(Node n) { read.add(n); }
+
+			@Override
+			public void onWay(Way w) { read.add(w); }
+
+			@Override
+			public void onRelation(Relation r) { read.add(r); }
+
+			@Override
+			public void onEnd() {}
+		});
+		
+		assertEquals(6, read.size());
+		assertEquals("N298884269", read.get(0).getId());
+		assertEquals("R56688", read.get(5).getId());
+		for(Element e : read) {
+			checkElement(e);
+		}
+	}
+
+	@Test(expected=IOException.class)
+	public void testParseInvalid() throws IOException {
+		p1.parse(new ByteArrayInputStream(new byte[] { 0, 0, 0, 5, 1, 2, 3 }));
+	}
+	
+	@Test
+	public void testParseDenseInfoPartial() throws IOException {
+		//Dense nodes with versions, but without other metadata
+		byte[] dense = concat(
+				field(1, varints(zigzag(1), zigzag(1))),
+				field(5, field(1, varints(3, 4))),
+				field(8, varints(zigzag(100), zigzag(100))),
+				field(9, varints(zigzag(200), zigzag(200)))
+			);
+		byte[] block = concat(field(1, field(1, new byte[0])), field(2, field(2, dense)));
+		byte[] blob = field(1, block);
+		byte[] header = concat(field(1, "OSMData".getBytes("UTF-8")), new byte[] { 3 << 3 }, varints(blob.length));
+		byte[] file = concat(new byte[] { 0, 0, 0, (byte) header.length }, header, blob);
+		
+		Map<String,Element> result = p1.parse(new ByteArrayInputStream(file));
+		assertEquals(2, result.size());
+		Element n2 = result.get("N2");
+		assertEquals(4, n2.getVersion());
+		assertEquals(Timestamps.NONE, n2.getTimestampSeconds());
+		assertNull(n2.getUser());
+		assertEquals(2e-5, ((Node) n2).getLat(), 1e-9);
+	}
+	
+	@Test
+	public void testParseTimeRange() throws IOException {
+		p1.setTimeRange(Long.MIN_VALUE, Timestamps.parse("2009-01-01T00:00:00Z"));
+		Map<String,Element> result = p1.parse(new File("res/pbf/sample.osm.pbf"));
+		assertEquals(3, result.size());
+		assertEquals("2008-05-03T13:39:23Z", result.get("N261728686").getTimestamp());
+	}
+
+	/**
+	 * @param number The field number
+	 * @param value The field value
+	 * @return The encoded length-delimited protobuf field
+	 */
+	private static byte[] field(int number, byte[] value) {
+		return concat(varints(number << 3 | 2), varints(value.length), value);
+	}
+
+	/**
+	 * @param values The values
+	 * @return The values encoded as protobuf varints
+	 */
+	private static byte[] varints(long... values) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for(long v : values) {
+			while((v & ~0x7FL) != 0) {
+				out.write((int) (v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			out.write((int) v);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * @param v The signed value
+	 * @return The value with protobuf zigzag encoding
+	 */
+	private static long zigzag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+	/**
+	 * @param parts The byte arrays
+	 * @return The concatenated arrays
+	 */
+	private static byte[] concat(byte[]... parts) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for(byte[] p : parts) {
+			out.write(p, 0, p.length);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,144 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import info.pavie.basicosmparser.TestSuite;
+import info.pavie.basicosmparser.model.Element;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+/**
+ * Test class for {@link ParallelCSVExporter}.
+ * @author Adrien PAVIE
+ */
+public class TestParallelCSVExporter {
+//ATTRIBUTES
+	private File output;
+	private File expected;
+	private Map<String,Element> data;
+
+//SETUP
+	@Before
+	public void setUp() throws Exception {
+		output = new File("res/csv-shards/");
+		output.mkdirs();
+		expected = new File("res/");
+		data = new OSMParser().parse(new File("res/xml/bleruais.osm"));
+		new CSVExporter().export(data, expected);
+	}
+
+	@After
+	public void tearDown() {
+		for(File f : output.listFiles()) {
+			f.delete();
+		}
+		output.delete();
+	}
+
+//TESTS
+	@Test
+	public void testExportMaxRows() throws IOException {
+		ParallelCSVExporter exporter = new ParallelCSVExporter(output);
+		exporter.setThreads(3);
+		exporter.setBatchSize(700);
+		exporter.setMaxRows(2000);
+		exporter.export(data);
+		
+		List<File> shards = exporter.getShards();
+		assertEquals(6 + 1 + 1, shards.size());
+		assertEquals("nodes-00001.csv", shards.get(0).getName());
+		assertEquals("nodes-00006.csv", shards.get(5).getName());
+		assertEquals("ways-00001.csv", shards.get(6).getName());
+		assertEquals("relations-00001.csv", shards.get(7).getName());
+		
+		for(File shard : shards) {
+			//Header + rows
+			assertTrue(TestSuite.readTextFile(shard).split("\n").length <= 2001);
+		}
+		
+		checkContent(shards);
+
+		//Manifest
+		String[] manifest = TestSuite.readTextFile(new File(output, ParallelCSVExporter.MANIFEST)).split("\n");
+		assertEquals("file;type;rows;bytes", manifest[0]);
+		assertEquals(9, manifest.length);
+		assertTrue(manifest[1].startsWith("nodes-00001.csv;node;2000;"));
+		assertEquals("nodes-00001.csv;node;2000;"+shards.get(0).length(), manifest[1]);
+		assertTrue(manifest[6].startsWith("nodes-00006.csv;node;1450;"));
+	}
+
+	@Test
+	public void testExportMaxBytes() throws IOException, SAXException {
+		ParallelCSVExporter exporter = new ParallelCSVExporter(output);
+		exporter.setBatchSize(100);
+		exporter.setMaxBytes(50000);
+		new OSMParser().parse(new File("res/xml/bleruais.osm"), exporter);
+		
+		List<File> shards = exporter.getShards();
+		assertTrue(shards.size() > 3);
+		
+		for(File shard : shards) {
+			//Shards can exceed limit by their last row
+			String content = new String(Files.readAllBytes(shard.toPath()), StandardCharsets.UTF_8);
+			assertTrue(content.substring(0, content.lastIndexOf('\n')).getBytes(StandardCharsets.UTF_8).length < 50000);
+		}
+		
+		checkContent(shards);
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testSetAfterStart() throws IOException {
+		ParallelCSVExporter exporter = new ParallelCSVExporter(output);
+		exporter.close();
+		exporter.setThreads(2);
+	}
+
+	/**
+	 * Checks that shards contain the same rows as the single file export
+	 * @param shards The written shards
+	 */
+	private void checkContent(List<File> shards) throws IOException {
+		for(String name : new String[] { "nodes", "ways", "relations" }) {
+			StringBuilder result = new StringBuilder();
+			String header = null;
+			for(File shard : shards) {
+				if(shard.getName().startsWith(name+"-")) {
+					String content = TestSuite.readTextFile(shard);
+					int headerEnd = content.indexOf('\n') + 1;
+					header = content.substring(0, headerEnd);
+					result.append(content.substring(headerEnd));
+				}
+			}
+			assertEquals(TestSuite.readTextFile(new File(expected, name+".csv")), header + result);
+		}
+	}
+}
@@ -0,0 +1,272 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import info.pavie.basicosmparser.model.ElementType;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link ParserMetrics}.
+ * @author Adrien PAVIE
+ */
+public class TestParserMetrics {
+//ATTRIBUTES
+	private ParserMetrics metrics;
+	private File osmFile;
+
+//SETUP
+	@Before
+	public void setUp() throws Exception {
+		metrics = new ParserMetrics();
+		osmFile = new File("res/xml/bleruais.osm");
+	}
+
+//TESTS
+// Counters
+	@Test
+	public void testParse() throws Exception {
+		OSMParser p = new OSMParser();
+		p.setMetrics(metrics);
+		p.parse(osmFile);
+		
+		assertFalse(metrics.isRunning());
+		assertEquals(11450, metrics.getNodes());
+		assertEquals(729, metrics.getWays());
+		assertEquals(53, metrics.getRelations());
+		assertEquals(12232, metrics.getElements());
+		assertEquals(osmFile.length(), metrics.getBytesRead());
+		assertEquals(osmFile.length(), metrics.getTotalBytes());
+		assertEquals(1.0, metrics.getProgress(), 0);
+		assertEquals(0, metrics.getUnresolvedWayNodes());
+		assertEquals(0, metrics.getRemainingMillis());
+		assertTrue(metrics.getTags() > 0);
+		assertTrue(metrics.getStubMembers() > 0);
+	}
+
+	@Test
+	public void testParseByteTokenizer() throws Exception {
+		OSMParser p = new OSMParser();
+		p.setByteTokenizer(true);
+		p.setMetrics(metrics);
+		p.parse(osmFile);
+		
+		assertEquals(12232, metrics.getElements());
+		assertEquals(osmFile.length(), metrics.getBytesRead());
+	}
+
+	@Test
+	public void testParseCompressed() throws Exception {
+		File compressed = new File("res/xml/sample.osm.bz2");
+		OSMParser p = new OSMParser();
+		p.setMetrics(metrics);
+		p.parse(compressed);
+
+		//Compressed bytes are counted, as progress is relative to file size
+		assertEquals(compressed.length(), metrics.getBytesRead());
+		assertEquals(6, metrics.getElements());
+	}
+
+	@Test
+	public void testParseHandler() throws Exception {
+		OSMParser p = new OSMParser();
+		p.setMetrics(metrics);
+		p.parse(osmFile, new CountingHandler());
+
+		//Without elements nor location index, way nodes and members are stubs
+		assertEquals(12232, metrics.getElements());
+		assertTrue(metrics.getUnresolvedWayNodes() > 0);
+		assertTrue(metrics.getStubMembers() > 0);
+	}
+
+	@Test
+	public void testParseLazyWayNodes() throws Exception {
+		OSMParser p = new OSMParser();
+		p.setMetrics(metrics);
+		p.parse(osmFile, new CountingHandler());
+		long expected = metrics.getUnresolvedWayNodes();
+		
+		//Way nodes are counted the same way when only their IDs are kept
+		metrics.reset();
+		p.setLazyWayNodes(true);
+		p.parse(osmFile, new CountingHandler());
+		assertTrue(expected > 0);
+		assertEquals(expected, metrics.getUnresolvedWayNodes());
+	}
+
+	@Test
+	public void testParsePBF() throws Exception {
+		File pbf = new File("res/pbf/sample.osm.pbf");
+		PBFParser p = new PBFParser();
+		p.setMetrics(metrics);
+		p.parse(pbf);
+		
+		assertEquals(4, metrics.getNodes());
+		assertEquals(1, metrics.getWays());
+		assertEquals(1, metrics.getRelations());
+		assertEquals(pbf.length(), metrics.getBytesRead());
+	}
+
+	@Test
+	public void testParseFiltered() throws Exception {
+		ElementFilter filter = new ElementFilter();
+		filter.setTypes(ElementType.WAY);
+		filter.requireTag("highway");
+		OSMParser p = new OSMParser();
+		p.setElementFilter(filter);
+		p.setMetrics(metrics);
+		p.parse(osmFile);
+
+		//Only kept elements are counted
+		assertEquals(101, metrics.getElements());
+		assertEquals(101, metrics.getWays());
+	}
+
+	@Test
+	public void testReset() throws Exception {
+		OSMParser p = new OSMParser();
+		p.setMetrics(metrics);
+		p.parse(osmFile);
+		p.parse(osmFile);
+		assertEquals(2 * 12232, metrics.getElements());
+		
+		metrics.reset();
+		assertEquals(0, metrics.getElements());
+		assertEquals(0, metrics.getBytesRead());
+		assertEquals(0, metrics.getTags());
+	}
+
+	@Test
+	public void testTwoParses() throws Exception {
+		OSMParser p = new OSMParser();
+		p.setMetrics(metrics);
+		p.parse(osmFile);
+		
+		final List<Double> progress = new ArrayList<Double>();
+		metrics.setProgressListener(new ProgressListener() {
+			@Override
+			public void onProgress(ParserMetrics m) {
+				progress.add(m.getProgress());
+			}
+		}, 0);
+		p.parse(osmFile);
+		
+		//Progress and rates only concern second parse, totals concern both
+		assertTrue(progress.get(0) < 1);
+		assertEquals(1.0, progress.get(progress.size()-1), 0);
+		assertEquals(2 * osmFile.length(), metrics.getBytesRead());
+		long elapsed = metrics.getElapsedMillis();
+		if(elapsed > 0) {
+			assertEquals(osmFile.length() * 1000.0 / elapsed, metrics.getBytesPerSecond(), 1e-6);
+			assertEquals(12232 * 1000.0 / elapsed, metrics.getElementsPerSecond(), 1e-6);
+		}
+	}
+
+	@Test
+	public void testNotStarted() {
+		assertFalse(metrics.isRunning());
+		assertEquals(-1, metrics.getProgress(), 0);
+		assertEquals(0, metrics.getElapsedMillis());
+		assertEquals(0, metrics.getElementsPerSecond(), 0);
+	}
+
+// Progress listener
+	@Test
+	public void testProgressListener() throws Exception {
+		final List<Long> notified = new ArrayList<Long>();
+		metrics.setProgressListener(new ProgressListener() {
+			@Override
+			public void onProgress(ParserMetrics m) {
+				notified.add(m.getElements());
+			}
+		}, 0);
+		
+		OSMParser p = new OSMParser();
+		p.setMetrics(metrics);
+		p.parse(osmFile);
+
+		//Notified every PROGRESS_CHECK elements, and at end
+		assertEquals(12232 / ParserMetrics.PROGRESS_CHECK + 1, notified.size());
+		assertEquals(12232, notified.get(notified.size()-1).longValue());
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testProgressListenerInvalidInterval() {
+		metrics.setProgressListener(null, -1);
+	}
+
+// JMX
+	@Test
+	public void testRegisterMBean() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = metrics.registerMBean("test");
+		
+		try {
+			OSMParser p = new OSMParser();
+			p.setMetrics(metrics);
+			p.parse(osmFile);
+			
+			assertTrue(server.isRegistered(name));
+			assertEquals(12232L, server.getAttribute(name, "Elements"));
+			assertEquals(false, server.getAttribute(name, "Running"));
+		}
+		finally {
+			ParserMetrics.unregisterMBean(name);
+		}
+		assertFalse(server.isRegistered(name));
+	}
+
+//INNER CLASS CountingHandler
+	/**
+	 * This handler ignores read elements.
+	 */
+	private static class CountingHandler implements OSMElementHandler {
+		@Override
+		public void onNode(Node n) {
+		}
+
+		@Override
+		public void onWay(Way w) {
+		}
+
+		@Override
+		public void onRelation(Relation r) {
+		}
+
+		@Override
+		public void onEnd() {
+		}
+	}
+}
@@ -0,0 +1,338 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.ElementStore;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link Snapshot}.
+ * @author Adrien PAVIE
+ */
+public class TestSnapshot {
+//ATTRIBUTES
+	private File snapshotFile;
+	private ElementStore store;
+
+//SETUP
+	@Before
+	public void setUp() throws Exception {
+		snapshotFile = File.createTempFile("elements", ".snapshot");
+		store = new ElementStore();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		snapshotFile.delete();
+	}
+
+//TESTS
+// load()
+	@Test
+	public void testLoad() throws Exception {
+		OSMParser p = new OSMParser();
+		p.parse(new File("res/xml/bleruais.osm"));
+		store = p.getElementStore();
+		Snapshot.write(store, snapshotFile);
+		
+		ElementStore result;
+		try(Snapshot s = Snapshot.open(snapshotFile)) {
+			assertEquals(11450, s.getNodeCount());
+			assertEquals(729, s.getWayCount());
+			assertEquals(53, s.getRelationCount());
+			result = s.load();
+		}
+
+		//Same elements, in same order
+		assertEquals(store.size(), result.size());
+		Iterator<Element> it = result.asMap().values().iterator();
+		int stubs = 0;
+		for(Element e : store.asMap().values()) {
+			Element loaded = it.next();
+			assertSameElement(e, loaded, result);
+			
+			if(e instanceof Relation) {
+				for(Element m : ((Relation) e).getMembers()) {
+					if(store.get(m.getType(), m.getNumericId()) != m) {
+						stubs++;
+					}
+				}
+			}
+		}
+		assertTrue(stubs > 0);
+	}
+
+	@Test
+	public void testLoadLazyWayNodes() throws Exception {
+		OSMParser p = new OSMParser();
+		p.setLazyWayNodes(true);
+		p.parse(new File("res/xml/sample.osm"));
+		Snapshot.write(p.getElementStore(), snapshotFile);
+		
+		ElementStore result;
+		try(Snapshot s = Snapshot.open(snapshotFile)) {
+			result = s.load();
+		}
+
+		//Nodes are found in loaded elements once snapshot is closed
+		Way w = result.getWay(26659127);
+		assertSame(result, w.getNodeResolver());
+		assertArrayEquals(new long[] { 298884269, 298884272, 261728686 }, w.getNodeIds());
+		assertSame(result.getNode(261728686), w.getNodes().get(2));
+	}
+
+	@Test
+	public void testLoadSpecialCases() throws Exception {
+		//Coordinates more precise than OSM ones, unsorted IDs, way nodes out of data
+		Node n1 = new Node(5, 48.123456789, -1.5);
+		Node n2 = new Node(3, 48.1, -1.6);
+		Node detached = Node.fromFixedPoint(99, 481000000, -16000000);
+		store.add(n1);
+		store.add(n2);
+		Way w1 = new Way(2);
+		w1.addNode(n1);
+		w1.addNode(null);
+		w1.addNode(detached);
+		w1.addNode(new Node(98, 1.23456789012, 2));
+		w1.addTag("highway", "");
+		store.add(w1);
+
+		//Relations containing each other, and a stub member
+		Relation r1 = new Relation(1);
+		Relation r2 = new Relation(2);
+		r1.addMember("sub", r2);
+		r1.addMember(null, new Way(42));
+		r2.addMember("parent", r1);
+		r2.addMember("node", n2);
+		r2.setVisible(false);
+		store.add(r1);
+		store.add(r2);
+		
+		Snapshot.write(store, snapshotFile);
+		ElementStore result;
+		try(Snapshot s = Snapshot.open(snapshotFile)) {
+			result = s.load();
+		}
+		
+		assertEquals(new ArrayList<Element>(store.asMap().values()).toString(), new ArrayList<Element>(result.asMap().values()).toString());
+		Iterator<Element> it = result.asMap().values().iterator();
+		for(Element e : store.asMap().values()) {
+			assertSameElement(e, it.next(), result);
+		}
+		
+		assertEquals(48.123456789, result.getNode(5).getLat(), 0);
+		Way w = result.getWay(2);
+		assertNull(w.getNodes().get(1));
+		assertNotSame(result.getNode(5), w.getNodes().get(3));
+		assertEquals(1.23456789012, w.getNodes().get(3).getLat(), 0);
+		assertEquals("", w.getTag("highway"));
+		
+		Relation r = result.getRelation(1);
+		assertSame(result.getRelation(2), r.getMember(0));
+		assertSame(r, result.getRelation(2).getMember(0));
+		assertNull(result.getWay(42));
+		assertEquals("W42", r.getMember(1).getId());
+		assertNull(r.getMemberRole(1));
+		assertFalse(result.getRelation(2).isVisible());
+	}
+
+	@Test
+	public void testLoadEmpty() throws Exception {
+		Snapshot.write(store, snapshotFile);
+		try(Snapshot s = Snapshot.open(snapshotFile)) {
+			assertEquals(0, s.size());
+			assertNull(s.getNode(1));
+			assertEquals(0, s.load().size());
+		}
+	}
+
+// get()
+	@Test
+	public void testGet() throws Exception {
+		OSMParser p = new OSMParser();
+		p.parse(new File("res/xml/bleruais.osm"));
+		store = p.getElementStore();
+		Snapshot.write(store, snapshotFile);
+		
+		try(Snapshot s = Snapshot.open(snapshotFile)) {
+			assertEquals(0, s.getDecodedBlocks());
+
+			//Only the block of requested node is decoded, and always gives the same object
+			Node n = s.getNode(82796084);
+			assertSameElement(store.getNode(82796084), n, null);
+			assertEquals(1, s.getDecodedBlocks());
+			assertSame(n, s.getNode(82796084));
+			assertEquals(1, s.getDecodedBlocks());
+
+			//Way nodes are the same objects as requested ones
+			Way w = s.getWay(35210306);
+			assertEquals(store.getWay(35210306).getNodeCount(), w.getNodeCount());
+			for(int i=0; i < w.getNodeCount(); i++) {
+				assertSame(s.getNode(w.getNodeId(i)), w.getNodes().get(i));
+			}
+			
+			assertNull(s.getNode(1));
+			assertNull(s.getWay(Long.MAX_VALUE));
+			assertNull(s.getRelation(Long.MIN_VALUE));
+		}
+	}
+
+	@Test
+	public void testGetRelationChain() throws Exception {
+		//First relation of each block is a member of the previous one
+		int blocks = 2000;
+		Relation previous = null;
+		for(int i=0; i < blocks * Snapshot.BLOCK_SIZE; i++) {
+			Relation r = new Relation(i);
+			if(i % Snapshot.BLOCK_SIZE == 0) {
+				if(previous != null) {
+					previous.addMember("sub", r);
+				}
+				previous = r;
+			}
+			store.add(r);
+		}
+		Snapshot.write(store, snapshotFile);
+		
+		final Snapshot s = Snapshot.open(snapshotFile);
+		final Relation[] read = new Relation[1];
+		final Throwable[] error = new Throwable[1];
+		
+		//Members are linked without recursion, even with a small stack
+		Thread t = new Thread(null, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					read[0] = s.getRelation(0);
+				}
+				catch(Throwable e) {
+					error[0] = e;
+				}
+			}
+		}, "snapshot", 160 * 1024);
+		t.start();
+		t.join();
+		
+		assertNull(error[0]);
+		assertEquals(blocks, s.getDecodedBlocks());
+		Relation r = read[0];
+		for(int i=1; i < blocks; i++) {
+			r = (Relation) r.getMember(0);
+			assertSame(s.getRelation(i * Snapshot.BLOCK_SIZE), r);
+		}
+		assertEquals(0, r.getMemberCount());
+		s.close();
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testGetClosed() throws Exception {
+		store.add(new Node(1, 48.1, -1.6));
+		Snapshot.write(store, snapshotFile);
+		Snapshot s = Snapshot.open(snapshotFile);
+		s.close();
+		s.getNode(1);
+	}
+
+// open()
+	@Test(expected=IOException.class)
+	public void testOpenInvalid() throws Exception {
+		Snapshot.open(new File("res/xml/sample.osm"));
+	}
+
+	@Test(expected=IOException.class)
+	public void testOpenUnsupportedVersion() throws Exception {
+		Snapshot.write(store, snapshotFile);
+		try(RandomAccessFile raf = new RandomAccessFile(snapshotFile, "rw")) {
+			raf.seek(4);
+			raf.writeInt(Snapshot.FORMAT_VERSION + 1);
+		}
+		Snapshot.open(snapshotFile);
+	}
+
+//OTHER METHODS
+	/**
+	 * Checks that a loaded element is equal to the written one
+	 * @param expected The written element
+	 * @param e The loaded element
+	 * @param result The loaded elements (null to skip checking way nodes and members)
+	 */
+	private void assertSameElement(Element expected, Element e, ElementStore result) {
+		assertEquals(expected.getClass(), e.getClass());
+		assertEquals(expected.getId(), e.getId());
+		assertEquals(expected.getVersion(), e.getVersion());
+		assertEquals(expected.getTimestampSeconds(), e.getTimestampSeconds());
+		assertEquals(expected.getChangeset(), e.getChangeset());
+		assertEquals(expected.getUid(), e.getUid());
+		assertEquals(expected.getUser(), e.getUser());
+		assertEquals(expected.isVisible(), e.isVisible());
+		assertEquals(new ArrayList<Object>(expected.getTags().entrySet()), new ArrayList<Object>(e.getTags().entrySet()));
+		
+		if(expected instanceof Node) {
+			assertEquals(((Node) expected).getLat(), ((Node) e).getLat(), 0);
+			assertEquals(((Node) expected).getLon(), ((Node) e).getLon(), 0);
+			assertEquals(((Node) expected).getLatE7(), ((Node) e).getLatE7());
+		}
+		else if(expected instanceof Way && result != null) {
+			Way w1 = (Way) expected, w2 = (Way) e;
+			assertEquals(w1.getNodeCount(), w2.getNodeCount());
+			for(int i=0; i < w1.getNodeCount(); i++) {
+				Node n1 = w1.getNodes().get(i), n2 = w2.getNodes().get(i);
+				if(n1 == null) {
+					assertNull(n2);
+				}
+				else {
+					assertSameElement(n1, n2, null);
+					assertEquals(store.getNode(n1.getNumericId()) == n1, result.getNode(n2.getNumericId()) == n2);
+				}
+			}
+		}
+		else if(expected instanceof Relation && result != null) {
+			Relation r1 = (Relation) expected, r2 = (Relation) e;
+			assertEquals(r1.getMemberCount(), r2.getMemberCount());
+			for(int i=0; i < r1.getMemberCount(); i++) {
+				Element m1 = r1.getMember(i), m2 = r2.getMember(i);
+				assertEquals(m1.getClass(), m2.getClass());
+				assertEquals(m1.getId(), m2.getId());
+				assertEquals(r1.getMemberRole(i), r2.getMemberRole(i));
+				assertEquals(store.get(m1.getType(), m1.getNumericId()) == m1, result.get(m2.getType(), m2.getNumericId()) == m2);
+			}
+		}
+	}
+}
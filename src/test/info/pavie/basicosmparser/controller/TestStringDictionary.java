@@ -0,0 +1,145 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.Node;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+/**
+ * Test class for {@link StringDictionary}.
+ * @author Adrien PAVIE
+ */
+public class TestStringDictionary {
+//ATTRIBUTES
+	private StringDictionary d1;
+
+//SETUP
+	@Before
+	public void setUp() throws Exception {
+		d1 = new StringDictionary(2);
+	}
+
+//TESTS
+// get()
+	@Test
+	public void testGet() {
+		String s1 = new String("highway");
+		String s2 = new String("highway");
+		
+		assertSame(s1, d1.get(s1));
+		assertSame(s1, d1.get(s2));
+		assertSame(s1, d1.get(s1));
+		assertNull(d1.get(null));
+		
+		assertEquals(1, d1.size());
+		assertEquals(3, d1.getRequests());
+		assertEquals(1, d1.getHits());
+		assertTrue(d1.getSavedBytes() > 0);
+	}
+
+	@Test
+	public void testGetEvicted() {
+		String s1 = new String("yes");
+		d1.get(s1);
+		d1.get("no");
+		d1.get(s1);
+		d1.get("maybe");
+
+		//"no" is the least recently used, so it was removed
+		assertEquals(2, d1.size());
+		assertSame(s1, d1.get(new String("yes")));
+		String no = new String("no");
+		assertSame(no, d1.get(no));
+	}
+
+	@Test
+	public void testGetLong() {
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i <= StringDictionary.MAX_LENGTH; i++) {
+			sb.append('a');
+		}
+		String s1 = sb.toString();
+		String s2 = sb.toString();
+		
+		assertSame(s1, d1.get(s1));
+		assertSame(s2, d1.get(s2));
+		assertEquals(0, d1.size());
+	}
+
+// clear()
+	@Test
+	public void testClear() {
+		d1.get("a");
+		d1.get(new String("a"));
+		d1.clear();
+		
+		assertEquals(0, d1.size());
+		assertEquals(0, d1.getRequests());
+		assertEquals(0, d1.getHits());
+		assertEquals(0, d1.getSavedBytes());
+	}
+
+// Parsers
+	@Test
+	public void testOSMParser() throws IOException, SAXException {
+		OSMParser p = new OSMParser();
+		Map<String,Element> result = p.parse(new File("res/xml/sample.osm"));
+
+		//Same user for two nodes
+		assertSame(result.get("N298884269").getUser(), result.get("N298884272").getUser());
+		assertTrue(p.getStringDictionary().getHits() > 0);
+
+		//Disabled dictionary
+		p.setStringDictionary(null);
+		result = p.parse(new File("res/xml/sample.osm"));
+		assertEquals(result.get("N298884269").getUser(), result.get("N298884272").getUser());
+		assertNotSame(result.get("N298884269").getUser(), result.get("N298884272").getUser());
+	}
+
+	@Test
+	public void testByteTokenizer() throws IOException, SAXException {
+		OSMParser p = new OSMParser();
+		p.setByteTokenizer(true);
+		Map<String,Element> result = p.parse(new File("res/xml/sample.osm"));
+		assertSame(result.get("N298884269").getUser(), result.get("N298884272").getUser());
+	}
+
+	@Test
+	public void testPBFParser() throws IOException {
+		PBFParser p = new PBFParser();
+		Map<String,Element> result = p.parse(new File("res/pbf/sample.osm.pbf"));
+		Node n1 = (Node) result.get("N298884269");
+		assertSame(n1.getUser(), result.get("N298884272").getUser());
+		assertTrue(p.getStringDictionary().getRequests() > 0);
+	}
+}
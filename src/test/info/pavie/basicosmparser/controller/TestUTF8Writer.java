@@ -0,0 +1,83 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.controller;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link UTF8Writer}.
+ * @author Adrien PAVIE
+ */
+public class TestUTF8Writer {
+//ATTRIBUTES
+	private ByteArrayOutputStream bytes;
+	private UTF8Writer writer;
+
+//SETUP
+	@Before
+	public void setUp() {
+		bytes = new ByteArrayOutputStream();
+		//Small buffer, to test draining
+		writer = new UTF8Writer(Channels.newChannel(bytes), 16);
+	}
+
+	private String result() throws IOException {
+		writer.close();
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+//TESTS
+	@Test
+	public void testWriteText() throws IOException {
+		String text = "Küstenbus € 123 🚌 ; ascii text longer than the buffer";
+		writer.write(text).write(';').write('é').write((String) null);
+		assertEquals(text+";énull", result());
+	}
+
+	@Test
+	public void testWriteNumbers() throws IOException {
+		writer.write(0L).write(',').write(-42).write(',').write(Long.MAX_VALUE).write(',').write(Long.MIN_VALUE).write(',').write(true);
+		assertEquals("0,-42,9223372036854775807,-9223372036854775808,true", result());
+	}
+
+	@Test
+	public void testWriteFixedPoint() throws IOException {
+		writer.writeFixedPoint(540901746, 7).write(',')
+				.writeFixedPoint(-1800000000, 7).write(',')
+				.writeFixedPoint(0, 7).write(',')
+				.writeFixedPoint(-15000, 7).write(',')
+				.writeFixedPoint(1200, 3);
+		assertEquals("54.0901746,-180.0,0.0,-0.0015,1.2", result());
+	}
+
+	@Test(expected=IOException.class)
+	public void testWriteClosed() throws IOException {
+		writer.close();
+		writer.flush();
+	}
+}
@@ -0,0 +1,175 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import info.pavie.basicosmparser.controller.OSMElementHandler;
+import info.pavie.basicosmparser.controller.OSMParser;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Relation;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+/**
+ * Test class for {@link NodeLocationIndex}.
+ * @author Adrien PAVIE
+ */
+public class TestNodeLocationIndex {
+//ATTRIBUTES
+	private File indexFile;
+
+//SETUP
+	@Before
+	public void setUp() throws Exception {
+		indexFile = File.createTempFile("locations", ".idx");
+		indexFile.delete();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		indexFile.delete();
+	}
+
+//TESTS
+	/**
+	 * Stores and reads some locations, then reopens the index file
+	 */
+	private void testIndex(boolean dense) throws IOException {
+		NodeLocationIndex index = dense ? NodeLocationIndex.dense(indexFile) : NodeLocationIndex.sparse(indexFile);
+		index.put(298884272, 54.0901447, 12.2516513);
+		index.put(261728686, -54.0906309, -12.2441924);
+		index.put(298884269, 54.0901746, 12.2482632);
+		
+		assertEquals(54.0901447, NodeLocationIndex.getLat(index.get(298884272)), 0);
+		assertEquals(12.2516513, NodeLocationIndex.getLon(index.get(298884272)), 0);
+		assertEquals(-54.0906309, index.getNode(261728686).getLat(), 0);
+		assertEquals(-12.2441924, index.getNode(261728686).getLon(), 0);
+		assertFalse(index.contains(298884270));
+		assertNull(index.getNode(1));
+		index.close();
+
+		//Reuse existing file
+		index = dense ? NodeLocationIndex.dense(indexFile) : NodeLocationIndex.sparse(indexFile);
+		assertTrue(index.contains(298884269));
+		assertEquals(12.2482632, index.getNode(298884269).getLon(), 0);
+		assertFalse(index.contains(298884268));
+		index.close();
+	}
+
+	@Test
+	public void testDense() throws IOException {
+		testIndex(true);
+	}
+
+	@Test
+	public void testSparse() throws IOException {
+		testIndex(false);
+	}
+
+	@Test
+	public void testFileSize() throws IOException {
+		NodeLocationIndex index = NodeLocationIndex.sparse(indexFile);
+		for(int i=0; i < 100000; i++) {
+			index.put(i, 1, 2);
+		}
+		
+		//File only grows to the used size, by steps
+		assertTrue(indexFile.length() < 4L << 20);
+		index.close();
+		assertEquals(16 + 100000 * 16, indexFile.length());
+		
+		index = NodeLocationIndex.sparse(indexFile);
+		assertEquals(100000, index.size());
+		assertEquals(1, NodeLocationIndex.getLat(index.get(99999)), 0);
+		index.close();
+	}
+
+	@Test
+	public void testSparseReuse() throws IOException {
+		NodeLocationIndex index = NodeLocationIndex.sparse(indexFile);
+		for(int i=1; i <= 1000; i++) {
+			index.put(i, 10, 10);
+		}
+		index.close();
+		
+		//Nodes stored again get their new location, without duplicates
+		index = NodeLocationIndex.sparse(indexFile);
+		for(int i=1; i <= 1000; i++) {
+			index.put(i, 20, 20);
+		}
+		index.put(2000, 30, 30);
+		index.put(1500, 40, 40);
+		index.put(5, 50, 50);
+		assertEquals(1002, index.size());
+		for(int i=1; i <= 1000; i++) {
+			assertEquals((i == 5) ? 50 : 20, NodeLocationIndex.getLat(index.get(i)), 0);
+		}
+		assertEquals(40, NodeLocationIndex.getLat(index.get(1500)), 0);
+		index.close();
+		
+		index = NodeLocationIndex.sparse(indexFile);
+		assertEquals(1002, index.size());
+		assertEquals(30, NodeLocationIndex.getLat(index.get(2000)), 0);
+		index.close();
+	}
+
+	@Test(expected=IOException.class)
+	public void testInvalidFile() throws IOException {
+		NodeLocationIndex.sparse(indexFile).close();
+		NodeLocationIndex.dense(indexFile);
+	}
+
+	@Test
+	public void testParserStreaming() throws IOException, SAXException {
+		final Way[] read = new Way[1];
+		NodeLocationIndex index = NodeLocationIndex.sparse(indexFile);
+		OSMParser p = new OSMParser();
+		p.setNodeLocationIndex(index);
+		
+		p.parse(new File("res/xml/sample.osm"), new OSMElementHandler() {
+			@Override
+			public void onNode(Node n) {}
+
+			@Override
+			public void onWay(Way w) { read[0] = w; }
+
+			@Override
+			public void onRelation(Relation r) {}
+
+			@Override
+			public void onEnd() {}
+		});
+		index.close();
+		
+		assertEquals(54.0901746, read[0].getNodes().get(0).getLat(), 0);
+		assertEquals(12.2482632, read[0].getNodes().get(0).getLon(), 0);
+		assertEquals(54.0906309, read[0].getNodes().get(2).getLat(), 0);
+	}
+}
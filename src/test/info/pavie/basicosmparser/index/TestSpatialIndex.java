@@ -0,0 +1,160 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import info.pavie.basicosmparser.controller.OSMParser;
+import info.pavie.basicosmparser.model.Element;
+import info.pavie.basicosmparser.model.Node;
+import info.pavie.basicosmparser.model.Way;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link SpatialIndex}.
+ * @author Adrien PAVIE
+ */
+public class TestSpatialIndex {
+//ATTRIBUTES
+	private Collection<Element> elements;
+	private SpatialIndex index;
+
+//SETUP
+	@Before
+	public void setUp() throws Exception {
+		elements = new OSMParser().parse(new File("res/xml/bleruais.osm")).values();
+		index = new SpatialIndex(elements);
+	}
+
+//TESTS
+	/**
+	 * Finds elements in a box by scanning all elements
+	 */
+	private Set<Element> scan(double minLat, double minLon, double maxLat, double maxLon) {
+		Set<Element> result = new HashSet<Element>();
+		for(Element e : elements) {
+			List<Node> nodes = new ArrayList<Node>();
+			if(e instanceof Node) {
+				nodes.add((Node) e);
+			}
+			else if(e instanceof Way) {
+				nodes.addAll(((Way) e).getNodes());
+			}
+			
+			if(!nodes.isEmpty()) {
+				double eMinLat = 90, eMinLon = 180, eMaxLat = -90, eMaxLon = -180;
+				for(Node n : nodes) {
+					eMinLat = Math.min(eMinLat, n.getLat());
+					eMinLon = Math.min(eMinLon, n.getLon());
+					eMaxLat = Math.max(eMaxLat, n.getLat());
+					eMaxLon = Math.max(eMaxLon, n.getLon());
+				}
+				if(eMinLat <= maxLat && eMaxLat >= minLat && eMinLon <= maxLon && eMaxLon >= minLon) {
+					result.add(e);
+				}
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void testSize() {
+		assertEquals(11450 + 729, index.size());
+	}
+
+	@Test
+	public void testQueryBBox() {
+		Random random = new Random(42);
+		for(int i=0; i < 100; i++) {
+			double lat = 48.07 + random.nextDouble() * 0.11, lon = -2.29 + random.nextDouble() * 0.25;
+			double size = random.nextDouble() * 0.02;
+			
+			List<Element> result = index.queryBBox(lat, lon, lat + size, lon + size);
+			assertEquals(scan(lat, lon, lat + size, lon + size), new HashSet<Element>(result));
+			assertEquals(new HashSet<Element>(result).size(), result.size());
+		}
+	}
+
+	@Test
+	public void testQueryWorld() {
+		assertEquals(index.size(), index.queryBBox(-90, -180, 90, 180).size());
+		assertTrue(index.queryBBox(0, 0, 1, 1).isEmpty());
+		assertTrue(index.queryBBox(90, 180, -90, -180).isEmpty());
+	}
+
+	@Test
+	public void testQueryPoint() {
+		Node n = new Node(1, 48.1234567, -1.7654321);
+		SpatialIndex small = new SpatialIndex(Collections.singleton(n));
+		
+		assertEquals(1, small.queryBBox(48.1234567, -1.7654321, 48.1234567, -1.7654321).size());
+		assertEquals(0, small.queryBBox(48.1234568, -1.7654321, 48.1234569, -1.7654321).size());
+	}
+
+	@Test
+	public void testEmpty() {
+		SpatialIndex empty = new SpatialIndex(new ArrayList<Element>());
+		assertEquals(0, empty.size());
+		assertTrue(empty.queryBBox(-90, -180, 90, 180).isEmpty());
+	}
+
+	@Test
+	public void testBuilder() throws Exception {
+		File indexFile = File.createTempFile("locations", ".idx");
+		indexFile.delete();
+		NodeLocationIndex locations = NodeLocationIndex.sparse(indexFile);
+		
+		OSMParser p = new OSMParser();
+		p.setNodeLocationIndex(locations);
+		SpatialIndex.Builder builder = new SpatialIndex.Builder();
+		p.parse(new File("res/xml/bleruais.osm"), builder);
+		SpatialIndex streamed = builder.build();
+		locations.close();
+		indexFile.delete();
+		
+		int expected = index.queryBBox(48.09, -2.15, 48.12, -2.1).size();
+		assertEquals(index.size(), streamed.size());
+		assertTrue(expected > 0);
+		assertEquals(expected, streamed.queryBBox(48.09, -2.15, 48.12, -2.1).size());
+	}
+
+	@Test
+	public void testBuilderWithoutIndex() throws Exception {
+		SpatialIndex.Builder builder = new SpatialIndex.Builder();
+		new OSMParser().parse(new File("res/xml/bleruais.osm"), builder);
+		SpatialIndex streamed = builder.build();
+		
+		int expected = index.queryBBox(48.09, -2.15, 48.12, -2.1).size();
+		assertEquals(index.size(), streamed.size());
+		assertEquals(expected, streamed.queryBBox(48.09, -2.15, 48.12, -2.1).size());
+		assertTrue(streamed.queryBBox(-1, -1, 1, 1).isEmpty());
+	}
+}
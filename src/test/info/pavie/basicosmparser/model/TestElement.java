@@ -0,0 +1,129 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link Element} tags.
+ * @author Adrien PAVIE
+ */
+public class TestElement {
+//ATTRIBUTES
+	private Element e1;
+
+//SETUP
+	@Before
+	public void setUp() throws Exception {
+		e1 = new Node(1, 48.1, -1.6);
+	}
+
+//TESTS
+// addTag()
+	@Test
+	public void testAddTag() {
+		assertEquals(0, e1.getTagCount());
+		assertTrue(e1.getTags().isEmpty());
+		
+		e1.addTag("highway", "bus_stop");
+		e1.addTag("name", "Gare");
+		e1.addTag("highway", "stop");
+		
+		assertEquals(2, e1.getTagCount());
+		assertEquals("stop", e1.getTag("highway"));
+		assertEquals("Gare", e1.getTag("name"));
+		assertNull(e1.getTag("amenity"));
+		assertEquals("{highway=stop, name=Gare}", e1.getTags().toString());
+	}
+
+	@Test
+	public void testAddTagMany() {
+		Map<String,String> expected = new HashMap<String,String>();
+		for(int i=0; i < 50; i++) {
+			e1.addTag("key"+i, "value"+i);
+			expected.put("key"+i, "value"+i);
+		}
+		
+		assertEquals(50, e1.getTagCount());
+		assertEquals("value42", e1.getTag("key42"));
+		assertEquals(expected, e1.getTags());
+
+		//Insertion order is kept
+		Iterator<String> keys = e1.getTags().keySet().iterator();
+		assertEquals("key0", keys.next());
+		assertEquals("key1", keys.next());
+		
+		e1.deleteTag("key0");
+		assertEquals(49, e1.getTagCount());
+		assertNull(e1.getTag("key0"));
+	}
+
+// deleteTag()
+	@Test
+	public void testDeleteTag() {
+		e1.addTag("a", "1");
+		e1.addTag("b", "2");
+		e1.addTag("c", "3");
+		
+		e1.deleteTag("b");
+		e1.deleteTag("d");
+		assertEquals("{a=1, c=3}", e1.getTags().toString());
+		
+		e1.deleteTag("a");
+		e1.deleteTag("c");
+		assertEquals(0, e1.getTagCount());
+	}
+
+// getTags()
+	@Test
+	public void testGetTagsView() {
+		Map<String,String> tags = e1.getTags();
+		tags.put("a", "1");
+		tags.put("b", "2");
+		assertEquals("1", e1.getTag("a"));
+		assertEquals("2", tags.remove("b"));
+		assertFalse(tags.containsKey("b"));
+
+		//Changes through entries
+		e1.addTag("c", "3");
+		for(Map.Entry<String,String> tag : tags.entrySet()) {
+			tag.setValue(tag.getValue()+"0");
+		}
+		assertEquals("{a=10, c=30}", e1.getTags().toString());
+		
+		Iterator<String> it = tags.keySet().iterator();
+		it.next();
+		it.remove();
+		assertEquals("{c=30}", e1.getTags().toString());
+		
+		tags.clear();
+		assertEquals(0, e1.getTagCount());
+	}
+}
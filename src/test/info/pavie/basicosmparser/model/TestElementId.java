@@ -0,0 +1,91 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Test class for {@link ElementId}.
+ * @author Adrien PAVIE
+ */
+public class TestElementId {
+//TESTS
+// of()
+	@Test
+	public void testOf() {
+		long id = ElementId.of(ElementType.WAY, 26659127);
+		assertEquals(ElementType.WAY, ElementId.getType(id));
+		assertEquals(26659127, ElementId.getNumericId(id));
+		assertEquals("W26659127", ElementId.toString(id));
+		assertNotEquals(id, ElementId.of(ElementType.NODE, 26659127));
+		
+		long negative = ElementId.of(ElementType.RELATION, -42);
+		assertEquals(ElementType.RELATION, ElementId.getType(negative));
+		assertEquals(-42, ElementId.getNumericId(negative));
+		
+		long max = ElementId.of(ElementType.NODE, ElementId.MAX_ID);
+		assertEquals(ElementId.MAX_ID, ElementId.getNumericId(max));
+		assertEquals(ElementId.MIN_ID, ElementId.getNumericId(ElementId.of(ElementType.WAY, ElementId.MIN_ID)));
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testOfOutOfRange() {
+		ElementId.of(ElementType.NODE, ElementId.MAX_ID + 1);
+	}
+
+// parse()
+	@Test
+	public void testParse() {
+		assertEquals(ElementId.of(ElementType.NODE, 298884269), ElementId.parse("N298884269"));
+		assertEquals(ElementId.of(ElementType.RELATION, -1), ElementId.parse("R-1"));
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testParseInvalidType() {
+		ElementId.parse("X12");
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testParseInvalidNumber() {
+		ElementId.parse("N12a");
+	}
+
+// Element
+	@Test
+	public void testElement() {
+		Way w = new Way(12);
+		assertSame(ElementType.WAY, w.getType());
+		assertEquals(12, w.getNumericId());
+		assertEquals(w.getId(), ElementId.toString(w.getElementId()));
+		
+		ElementStore store = new ElementStore();
+		store.add(w);
+		assertSame(w, store.get(w.getElementId()));
+		assertSame(w, store.get(ElementType.WAY, 12));
+		assertSame(w, store.get("W12"));
+		assertNull(store.get("W1a"));
+		assertNull(store.get(ElementType.NODE, 12));
+	}
+}
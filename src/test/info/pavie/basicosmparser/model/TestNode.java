@@ -0,0 +1,65 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Test class for {@link Node}.
+ * @author Adrien PAVIE
+ */
+public class TestNode {
+//TESTS
+// Constructors
+	@Test
+	public void testNode() {
+		Node n1 = new Node(1, 54.0901746, -12.2482632);
+		assertEquals(54.0901746, n1.getLat(), 0);
+		assertEquals(-12.2482632, n1.getLon(), 0);
+		assertEquals(540901746, n1.getLatE7());
+		assertEquals(-122482632, n1.getLonE7());
+	}
+
+	@Test
+	public void testNodeExact() {
+		//More precise than fixed-point, value is kept
+		Node n1 = new Node(1, 48.123456789, 1.0 / 3);
+		assertEquals(48.123456789, n1.getLat(), 0);
+		assertEquals(1.0 / 3, n1.getLon(), 0);
+		assertEquals(481234568, n1.getLatE7());
+		assertEquals(3333333, n1.getLonE7());
+
+		//Back to fixed-point
+		n1.setLat(48.1);
+		n1.setLon(-1.6);
+		assertEquals(48.1, n1.getLat(), 0);
+		assertEquals(-1.6, n1.getLon(), 0);
+	}
+
+	@Test
+	public void testFromFixedPoint() {
+		Node n1 = Node.fromFixedPoint(1, -900000000, 1800000000);
+		assertEquals(-90, n1.getLat(), 0);
+		assertEquals(180, n1.getLon(), 0);
+		assertEquals(1800000000, n1.getLonE7());
+	}
+}
@@ -0,0 +1,131 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link Relation}.
+ * @author Adrien PAVIE
+ */
+public class TestRelation {
+//ATTRIBUTES
+	private Relation r1;
+	private Node n1;
+	private Way w1;
+
+//SETUP
+	@Before
+	public void setUp() throws Exception {
+		r1 = new Relation(1);
+		n1 = new Node(1, 48.1, -1.6);
+		w1 = new Way(2);
+	}
+
+//TESTS
+// addMember()
+	@Test
+	public void testAddMember() {
+		for(int i=0; i < 10; i++) {
+			r1.addMember("outer", new Way(100+i));
+		}
+		r1.addMember("admin_centre", n1);
+		
+		assertEquals(11, r1.getMemberCount());
+		assertEquals("W105", r1.getMember(5).getId());
+		assertEquals("outer", r1.getMemberRole(5));
+		assertEquals("admin_centre", r1.getMemberRole(n1));
+		assertSame(n1, r1.getMembers().get(10));
+	}
+
+	@Test(expected=NullPointerException.class)
+	public void testAddMemberNull() {
+		r1.addMember("outer", null);
+	}
+
+// setMember()
+	@Test
+	public void testSetMember() {
+		r1.addMember("outer", new Way(2));
+		r1.setMember(0, w1);
+		
+		assertSame(w1, r1.getMember(0));
+		assertEquals("outer", r1.getMemberRole(w1));
+	}
+
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testSetMemberIndex() {
+		r1.setMember(0, w1);
+	}
+
+// clearMembers()
+	@Test
+	public void testClearMembers() {
+		r1.addMember("stop", n1);
+		r1.addMember("", w1);
+		r1.clearMembers();
+		assertEquals(0, r1.getMemberCount());
+		
+		r1.addMember("platform", w1);
+		assertEquals("platform", r1.getMemberRole(0));
+	}
+
+// getMemberRole()
+	@Test(expected=RuntimeException.class)
+	public void testGetMemberRoleUnknown() {
+		r1.addMember("outer", w1);
+		r1.getMemberRole(n1);
+	}
+
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testGetMemberRoleIndex() {
+		r1.addMember("outer", w1);
+		r1.getMemberRole(1);
+	}
+
+// getMembers()
+	@Test
+	public void testGetMembers() {
+		List<Element> members = r1.getMembers();
+		assertEquals(0, members.size());
+
+		//View follows changes
+		r1.addMember("stop", n1);
+		r1.addMember("", w1);
+		assertEquals(2, members.size());
+		assertSame(w1, members.get(1));
+		
+		r1.removeMember(n1);
+		assertEquals(1, members.size());
+		assertSame(w1, members.get(0));
+		assertEquals("", r1.getMemberRole(0));
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void testGetMembersReadOnly() {
+		r1.getMembers().add(n1);
+	}
+}
@@ -0,0 +1,107 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import org.junit.Test;
+
+/**
+ * Test class for {@link Timestamps}.
+ * @author Adrien PAVIE
+ */
+public class TestTimestamps {
+//TESTS
+// parse()
+	@Test
+	public void testParse() {
+		assertEquals(0, Timestamps.parse("1970-01-01T00:00:00Z"));
+		assertEquals(Instant.parse("2012-07-20T09:43:19Z").getEpochSecond(), Timestamps.parse("2012-07-20T09:43:19Z"));
+		assertEquals(Instant.parse("2000-02-29T23:59:59Z").getEpochSecond(), Timestamps.parse("2000-02-29T23:59:59Z"));
+		assertEquals(Instant.parse("1969-12-31T12:00:00Z").getEpochSecond(), Timestamps.parse("1969-12-31T12:00:00Z"));
+		assertEquals(Timestamps.NONE, Timestamps.parse(null));
+
+		//Other ISO 8601 forms
+		assertEquals(Timestamps.parse("2012-07-20T09:43:19Z"), Timestamps.parse("2012-07-20T11:43:19+02:00"));
+		assertEquals(Timestamps.parse("2012-07-20T09:43:19Z"), Timestamps.parse("2012-07-20T09:43:19.500Z"));
+	}
+
+	@Test
+	public void testParseBytes() {
+		byte[] b = " t=\"2008-09-21T21:37:45Z\"".getBytes(StandardCharsets.UTF_8);
+		assertEquals(Instant.parse("2008-09-21T21:37:45Z").getEpochSecond(), Timestamps.parse(b, 4, 24));
+	}
+
+	@Test
+	public void testParseExhaustive() {
+		//One timestamp per day, over several centuries
+		for(long seconds = Instant.parse("1890-01-01T00:00:00Z").getEpochSecond(); seconds < 5000000000L; seconds += 86400 + 3671) {
+			String text = Instant.ofEpochSecond(seconds).toString();
+			assertEquals(text, seconds, Timestamps.parse(text));
+			assertEquals(text, Timestamps.format(seconds));
+		}
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testParseInvalidDay() {
+		Timestamps.parse("2011-02-29T00:00:00Z");
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testParseInvalid() {
+		Timestamps.parse("yesterday");
+	}
+
+// format()
+	@Test
+	public void testFormat() {
+		assertEquals("1970-01-01T00:00:00Z", Timestamps.format(0));
+		assertEquals("2012-07-20T09:43:19Z", Timestamps.format(Timestamps.parse("2012-07-20T09:43:19Z")));
+		assertNull(Timestamps.format(Timestamps.NONE));
+	}
+
+// Element
+	@Test
+	public void testElement() {
+		Node n = new Node(1, 0, 0);
+		assertNull(n.getTimestamp());
+		assertEquals(Timestamps.NONE, n.getTimestampSeconds());
+		
+		n.setTimestamp("2012-07-20T09:43:19Z");
+		assertEquals("2012-07-20T09:43:19Z", n.getTimestamp());
+		n.setTimestampSeconds(0);
+		assertEquals("1970-01-01T00:00:00Z", n.getTimestamp());
+		
+		//Other ISO 8601 forms are normalized to UTC, without fraction of seconds
+		n.setTimestamp("2012-07-20T11:43:19.750+02:00");
+		assertEquals("2012-07-20T09:43:19Z", n.getTimestamp());
+		n.setTimestamp(null);
+		assertNull(n.getTimestamp());
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testElementInvalid() {
+		new Node(1, 0, 0).setTimestamp("yesterday");
+	}
+}
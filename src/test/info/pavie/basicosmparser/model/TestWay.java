@@ -0,0 +1,126 @@
+/*
+	Copyright 2014 Adrien PAVIE
+	
+	This file is part of BasicOSMParser.
+	
+	BasicOSMParser is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+	
+	BasicOSMParser is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with BasicOSMParser. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.pavie.basicosmparser.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link Way}.
+ * @author Adrien PAVIE
+ */
+public class TestWay {
+//ATTRIBUTES
+	private ElementStore store;
+	private Node n1, n2, n3;
+	private Way w1;
+
+//SETUP
+	@Before
+	public void setUp() throws Exception {
+		store = new ElementStore();
+		n1 = new Node(1, 48.1, -1.6);
+		n2 = new Node(2, 48.2, -1.7);
+		n3 = new Node(3, 48.3, -1.8);
+		store.add(n1);
+		store.add(n2);
+		
+		w1 = new Way(10);
+	}
+
+//TESTS
+// addNode()
+	@Test
+	public void testAddNode() {
+		w1.addNode(n1);
+		w1.addNode(n2);
+		
+		assertEquals(2, w1.getNodeCount());
+		assertEquals(2, w1.getNodeId(1));
+		assertSame(n2, w1.getNodes().get(1));
+		assertArrayEquals(new long[] { 1, 2 }, w1.getNodeIds());
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testAddNodeIdWithoutResolver() {
+		w1.addNodeId(1);
+	}
+
+// setNodeResolver()
+	@Test
+	public void testSetNodeResolver() {
+		w1.addNode(n1);
+		w1.setNodeResolver(store);
+		w1.addNodeId(2);
+		w1.addNode(n3);
+		w1.addNodeId(4);
+		
+		assertSame(store, w1.getNodeResolver());
+		assertEquals(4, w1.getNodeCount());
+		assertEquals(4, w1.getNodes().size());
+		assertArrayEquals(new long[] { 1, 2, 3, 4 }, w1.getNodeIds());
+
+		//Nodes are found when requested
+		assertSame(n1, w1.getNodes().get(0));
+		assertSame(n2, w1.getNodes().get(1));
+		assertNull(w1.getNodes().get(2));
+		store.add(n3);
+		assertSame(n3, w1.getNodes().get(2));
+		
+		w1.removeNode(1);
+		assertArrayEquals(new long[] { 1, 3, 4 }, w1.getNodeIds());
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testSetNodeResolverUnknown() {
+		w1.addNode(null);
+		w1.setNodeResolver(store);
+	}
+
+// removeNode()
+	@Test(expected=RuntimeException.class)
+	public void testRemoveNodeLast() {
+		w1.setNodeResolver(store);
+		w1.addNodeId(1);
+		w1.addNodeId(2);
+		w1.removeNode(0);
+	}
+
+// clearNodes()
+	@Test
+	public void testClearNodes() {
+		w1.addNode(n1);
+		w1.addNode(n2);
+		w1.clearNodes();
+		assertEquals(0, w1.getNodeCount());
+		
+		w1.setNodeResolver(store);
+		w1.addNodeId(1);
+		w1.clearNodes();
+		w1.addNodeId(2);
+		assertArrayEquals(new long[] { 2 }, w1.getNodeIds());
+		assertSame(store, w1.getNodeResolver());
+	}
+}